@@ -0,0 +1,35 @@
+plugins {
+    java
+    kotlin("jvm") version ("1.3.50")
+
+    id("me.champeau.gradle.jmh") version "0.5.0"
+}
+
+dependencies {
+    jmh(project(":common"))
+    jmh(project(":client"))
+}
+
+description = "JMH microbenchmarks for the engine core and client"
+
+// These load the core content, next to this repository as ../chunkstories-core
+val coreContentLocation = rootProject.projectDir.resolve("../chunkstories-core/res")
+val contentBenchmarks = listOf("PacketCodecBenchmark", "InboundPacketStreamBenchmark", "RecipeLookupBenchmark", "ChunkMeshingBenchmark", "CollisionsBenchmark",
+        "OggDecodingBenchmark")
+
+// Run with ./gradlew benchmarks:jmh ; pass -PjmhInclude=<regex> to only run some of them
+jmh {
+    jmhVersion = "1.23"
+    if (project.hasProperty("jmhInclude"))
+        include = listOf(project.property("jmhInclude") as String)
+    if (!coreContentLocation.exists()) {
+        logger.warn("No core content at $coreContentLocation, skipping ${contentBenchmarks.joinToString()}")
+        exclude = contentBenchmarks.map { ".*\\.$it\\..*" }
+    }
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    failOnError = true
+    resultFormat = "JSON"
+    jvmArgs = listOf("-Xmx2G", "-Djava.awt.headless=true", "-DcoreContentLocation=$coreContentLocation")
+}
@@ -0,0 +1,159 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.joml.Vector3d
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.EngineImplemI
+import xyz.chunkstories.api.Engine
+import xyz.chunkstories.api.content.ContentTranslator
+import xyz.chunkstories.api.player.Player
+import xyz.chunkstories.api.player.PlayerID
+import xyz.chunkstories.api.server.Host
+import xyz.chunkstories.api.server.PermissionsManager
+import xyz.chunkstories.api.world.World
+import xyz.chunkstories.api.world.WorldSize
+import xyz.chunkstories.api.world.WorldUser
+import xyz.chunkstories.api.world.cell.CellData
+import xyz.chunkstories.api.world.chunk.ChunkHolder
+import xyz.chunkstories.content.GameContentStore
+import xyz.chunkstories.content.mods.ModsManagerImplementation
+import xyz.chunkstories.plugin.DefaultPluginManager
+import xyz.chunkstories.task.WorkerThreadPool
+import xyz.chunkstories.util.concurrency.CompoundFence
+import xyz.chunkstories.world.WorldTool
+import xyz.chunkstories.world.WorldTool.Companion.createWorld
+import xyz.chunkstories.world.chunk.ChunkHolderImplementation
+import java.io.File
+import java.util.*
+
+/**
+ * A headless engine and host for the benchmarks that need content or a world: loads the core content from
+ * -DcoreContentLocation (the build passes ../chunkstories-core/res, and leaves these benchmarks out when it's missing),
+ * and can make a blank world in a temporary folder.
+ */
+class BenchmarkEngine : EngineImplemI, Host {
+    override val logger: Logger = LoggerFactory.getLogger("benchmarks")
+
+    // Up before the content, so its reload uses these workers
+    override val tasks = WorkerThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors())).also { it.start() }
+
+    override val content = GameContentStore(this, coreContentLocation(), emptyList()).also { it.reload() }
+
+    override val modsManager: ModsManagerImplementation
+        get() = content.modsManager
+
+    override val engine: Engine
+        get() = this
+
+    override val pluginManager = DefaultPluginManager(this)
+
+    override var permissionsManager: PermissionsManager = object : PermissionsManager {
+        override fun hasPermission(player: Player, permissionNode: String) = false
+    }
+
+    override val players: Sequence<Player>
+        get() = emptySequence()
+
+    override fun getPlayer(playerName: String): Player? = null
+
+    override fun getPlayer(id: PlayerID): Player? = null
+
+    override fun broadcastMessage(message: String) {}
+
+    private var worldTool: WorldTool? = null
+    private var worldFolder: File? = null
+
+    override val world: WorldTool
+        get() = worldTool ?: throw IllegalStateException("No world yet, call createBlankWorld() first")
+
+    override val contentTranslator: ContentTranslator
+        get() = world.contentTranslator
+
+    /** Makes a blank world in a temporary folder, deleted again by cleanup() */
+    fun createBlankWorld(size: WorldSize = WorldSize.MEDIUM): WorldTool {
+        val folder = createTempDir("world")
+        // createWorld() wants to make that folder itself
+        folder.delete()
+        worldFolder = folder
+
+        val properties = World.Properties("benchmark", "Benchmark", "Blank world for the benchmarks", "42", size, Vector3d(), "blank")
+        return createWorld(folder, properties).also { worldTool = it }
+    }
+
+    /** Loads the chunks in that box (inclusive), and keeps them loaded on behalf of the returned user */
+    fun loadChunks(minX: Int, minY: Int, minZ: Int, maxX: Int, maxY: Int, maxZ: Int): WorldUser {
+        val user = object : WorldUser {}
+        val fence = CompoundFence()
+        for (chunkX in minX..maxX)
+            for (chunkY in minY..maxY)
+                for (chunkZ in minZ..maxZ) {
+                    val holder = world.chunksManager.acquireChunkHolder(user, chunkX, chunkY, chunkZ) as ChunkHolderImplementation
+                    fence.add(holder.waitUntilStateIs(ChunkHolder.State.Available::class.java))
+                }
+        fence.traverse()
+        return user
+    }
+
+    /**
+     * Fills a box of the world with blocks from the core content, loaded beforehand: "surface" is rolling terrain,
+     * "caves" is ground riddled with holes (lots of faces), "mixed" is the surface with every other block type strewn on
+     * it, custom models and all.
+     */
+    fun fillTerrain(kind: String, minX: Int, minY: Int, minZ: Int, size: Int) {
+        if (kind !in terrainKinds)
+            throw IllegalArgumentException("Unknown terrain kind $kind")
+
+        val blockTypes = content.blockTypes
+        val solids = blockTypes.all.filter { it.solid && it.opaque }.toList()
+        val others = blockTypes.all.filter { it != blockTypes.air && !(it.solid && it.opaque) }.toList()
+        val stone = blockTypes.get("stone") ?: solids.first()
+        val dirt = blockTypes.get("dirt") ?: stone
+        val grass = blockTypes.get("grass") ?: dirt
+
+        val random = Random(42)
+        for (x in minX until minX + size)
+            for (z in minZ until minZ + size) {
+                val height = minY + size / 2 + (size / 8 * Math.sin(x / 7.0) * Math.cos(z / 9.0)).toInt()
+                for (y in minY until minY + size) {
+                    val data = when {
+                        kind == "caves" && y <= height -> if (random.nextInt(3) == 0) CellData(blockTypes.air, 0, 0, 0) else CellData(solids[random.nextInt(solids.size)], 0, 0, 0)
+                        y < height - 3 -> CellData(stone, 0, 0, 0)
+                        y < height -> CellData(dirt, 0, 0, 0)
+                        y == height -> CellData(grass, 15, 0, 0)
+                        kind == "mixed" && y == height + 1 && others.isNotEmpty() && random.nextInt(4) == 0 -> CellData(others[random.nextInt(others.size)], 15, 0, 0)
+                        else -> CellData(blockTypes.air, 15, 0, 0)
+                    }
+                    world.setCellData(x, y, z, data)
+                }
+            }
+    }
+
+    /** Waits for the workers to be done with what the setup left them (lighting, occlusion...), so it doesn't get measured */
+    fun settle() {
+        while (tasks.submittedTasks() > 0)
+            Thread.sleep(10)
+    }
+
+    fun cleanup() {
+        worldTool?.destroy()
+        worldFolder?.deleteRecursively()
+        tasks.cleanup()
+    }
+
+    companion object {
+        val terrainKinds = arrayOf("surface", "caves", "mixed")
+
+        fun coreContentLocation(): File {
+            val location = File(System.getProperty("coreContentLocation", "../chunkstories-core/res"))
+            if (!location.exists())
+                throw IllegalStateException("Core content not found at ${location.absolutePath}, point -DcoreContentLocation to chunkstories-core/res")
+            return location
+        }
+    }
+}
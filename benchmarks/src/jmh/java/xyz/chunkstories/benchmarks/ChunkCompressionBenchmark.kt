@@ -0,0 +1,57 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.concurrent.TimeUnit
+
+/** LZ4 (de)compression of chunk voxel data, and its serialized form as found in region files */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ChunkCompressionBenchmark {
+    @Param("surface", "underground", "noise")
+    @JvmField
+    var kind = ""
+
+    private lateinit var voxelData: IntArray
+    private lateinit var compressed: ChunkCompressedData.NonAir
+    private lateinit var serialized: ByteArray
+    private val buffer = ByteArrayOutputStream(ChunkSamples.CHUNK_VOLUME * 4)
+
+    @Setup
+    fun setup() {
+        voxelData = ChunkSamples.generate(kind)
+        compressed = ChunkCompressedData.fromVoxelData(voxelData) as ChunkCompressedData.NonAir
+        serialized = serialize(compressed)
+    }
+
+    private fun serialize(data: ChunkCompressedData): ByteArray {
+        buffer.reset()
+        val dos = DataOutputStream(buffer)
+        data.toBytes(dos)
+        dos.flush()
+        return buffer.toByteArray()
+    }
+
+    @Benchmark
+    fun compress() = ChunkCompressedData.fromVoxelData(voxelData)
+
+    @Benchmark
+    fun decompress() = compressed.extractVoxelData()
+
+    @Benchmark
+    fun toBytes() = serialize(compressed)
+
+    @Benchmark
+    fun fromBytes() = ChunkCompressedData.fromBytes(DataInputStream(ByteArrayInputStream(serialized)))
+}
@@ -0,0 +1,65 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.graphics.common.world.TaskCreateChunkMesh
+import xyz.chunkstories.world.chunk.ChunkImplementation
+import xyz.chunkstories.world.chunk.deriveddata.AutoRebuildingProperty
+import java.util.concurrent.TimeUnit
+
+/**
+ * Meshing one chunk with TaskCreateChunkMesh, in a headless world where it and its neighbours are filled with core
+ * content blocks. The mesh never leaves the scratch buffers, so this is the CPU side of a chunk rebuild only.
+ *
+ * Needs the core content for its blocks and models: -DcoreContentLocation (the build passes ../chunkstories-core/res)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ChunkMeshingBenchmark {
+    @Param("surface", "caves", "mixed")
+    @JvmField
+    var terrain = ""
+
+    private lateinit var engine: BenchmarkEngine
+    private lateinit var chunk: ChunkImplementation
+    private lateinit var property: AutoRebuildingProperty
+    private val executor = object : TaskExecutor {}
+
+    @Setup
+    fun setup() {
+        engine = BenchmarkEngine()
+        engine.createBlankWorld()
+
+        // The chunk at 4,2,4 and all of its neighbours
+        engine.loadChunks(3, 1, 3, 5, 3, 5)
+        engine.fillTerrain(terrain, 3 * 32, 1 * 32, 3 * 32, 3 * 32)
+        engine.settle()
+
+        chunk = engine.world.chunksManager.getChunk(4, 2, 4)!!
+        // Only there for the task to report to, starts clean so it never schedules anything itself
+        property = object : AutoRebuildingProperty(engine.tasks, true) {
+            override fun createTask(updatesToConsider: Int): UpdateTask = throw UnsupportedOperationException()
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        engine.cleanup()
+    }
+
+    @Benchmark
+    fun meshChunk(): Int {
+        var sections = 0
+        val task = object : TaskCreateChunkMesh(chunk, property, 0, { sections = it.size }) {}
+        if (!task.update(executor) || sections == 0)
+            throw IllegalStateException("The chunk didn't get meshed")
+        return sections
+    }
+}
@@ -0,0 +1,64 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import xyz.chunkstories.api.content.json.Json
+import xyz.chunkstories.block.VoxelFormat
+import java.util.*
+
+/** Deterministic voxel data standing in for real chunks, so the numbers don't depend on what's lying around on disk */
+object ChunkSamples {
+    const val CHUNK_VOLUME = 32 * 32 * 32
+
+    /** "surface": rolling terrain crossing the chunk, "underground": mostly stone with ores, "noise": worst case for the compressor */
+    val kinds = arrayOf("surface", "underground", "noise")
+
+    fun generate(kind: String, seed: Long = 42L): IntArray {
+        val random = Random(seed)
+        val data = IntArray(CHUNK_VOLUME)
+        for (x in 0 until 32)
+            for (z in 0 until 32) {
+                val height = (16 + 8 * Math.sin(x / 7.0) * Math.cos(z / 9.0)).toInt()
+                for (y in 0 until 32) {
+                    data[x * 1024 + y * 32 + z] = when (kind) {
+                        "surface" -> when {
+                            y < height - 3 -> VoxelFormat.format(1, 0, 0, 0)
+                            y < height -> VoxelFormat.format(3, 0, 0, 0)
+                            y == height -> VoxelFormat.format(2, 0, 15, 0)
+                            else -> VoxelFormat.format(0, 0, 15, 0)
+                        }
+                        "underground" -> if (random.nextInt(64) == 0) VoxelFormat.format(16 + random.nextInt(4), 0, 0, 0) else VoxelFormat.format(1, 0, 0, 0)
+                        "noise" -> random.nextInt()
+                        else -> throw IllegalArgumentException("Unknown chunk kind $kind")
+                    }
+                }
+            }
+        return data
+    }
+
+    /** Saved item drops, about what a chunk next to a mob farm or a blown up house holds */
+    fun itemDrops(count: Int, seed: Long = 42L): Json.Array {
+        val random = Random(seed)
+        val items = arrayOf("stone", "dirt", "wood", "sand", "iron_ore")
+        return Json.Array(List(count) {
+            Json.Dict(mapOf(
+                    "type" to Json.Value.Text("item_drop"),
+                    "traits" to Json.Dict(mapOf(
+                            "location" to Json.Dict(mapOf(
+                                    "x" to Json.Value.Number(random.nextDouble() * 32.0),
+                                    "y" to Json.Value.Number(64.0 + random.nextInt(8)),
+                                    "z" to Json.Value.Number(random.nextDouble() * 32.0))),
+                            "velocity" to Json.Dict(mapOf(
+                                    "x" to Json.Value.Number(0.0),
+                                    "y" to Json.Value.Number(0.0),
+                                    "z" to Json.Value.Number(0.0))),
+                            "item" to Json.Dict(mapOf(
+                                    "name" to Json.Value.Text(items[random.nextInt(items.size)]),
+                                    "amount" to Json.Value.Number(1.0 + random.nextInt(64))))))))
+        })
+    }
+}
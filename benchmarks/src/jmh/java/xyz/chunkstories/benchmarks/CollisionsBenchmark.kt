@@ -0,0 +1,71 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.joml.Vector3d
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import xyz.chunkstories.api.entity.Entity
+import xyz.chunkstories.api.entity.traits.TraitCollidable
+import xyz.chunkstories.world.DefaultWorldCollisionsManager
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Running a player entity against the world voxels with DefaultWorldCollisionsManager, from spots around the surface of
+ * a headless world filled with core content blocks, in random directions about as far as one tick of walking or falling.
+ *
+ * Needs the core content for its blocks and the player entity: -DcoreContentLocation (the build passes ../chunkstories-core/res)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class CollisionsBenchmark {
+    @Param("surface", "caves")
+    @JvmField
+    var terrain = ""
+
+    private val movesCount = 256
+
+    private lateinit var engine: BenchmarkEngine
+    private lateinit var collisions: DefaultWorldCollisionsManager
+    private lateinit var entity: Entity
+    private lateinit var from: Array<Vector3d>
+    private lateinit var deltas: Array<Vector3d>
+
+    @Setup
+    fun setup() {
+        engine = BenchmarkEngine()
+        val world = engine.createBlankWorld()
+
+        engine.loadChunks(3, 1, 3, 5, 3, 5)
+        engine.fillTerrain(terrain, 3 * 32, 1 * 32, 3 * 32, 3 * 32)
+        engine.settle()
+
+        collisions = DefaultWorldCollisionsManager(world)
+        entity = engine.content.entities.getEntityDefinition("player")!!.newEntity(world)
+        if (entity.traits[TraitCollidable::class.java] == null)
+            throw IllegalStateException("The player entity has no collision boxes")
+
+        // Away from the edges of the filled box, around the surface height
+        val random = Random(1234)
+        from = Array(movesCount) { Vector3d(112.0 + random.nextDouble() * 64, 72.0 + random.nextDouble() * 16, 112.0 + random.nextDouble() * 64) }
+        deltas = Array(movesCount) { Vector3d(random.nextDouble() - 0.5, random.nextDouble() - 0.75, random.nextDouble() - 0.5).mul(0.5) }
+    }
+
+    @TearDown
+    fun tearDown() {
+        engine.cleanup()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    fun runAgainstVoxels(blackhole: Blackhole) {
+        for (i in 0 until movesCount)
+            blackhole.consume(collisions.runEntityAgainst(entity, from[i], deltas[i], false))
+    }
+}
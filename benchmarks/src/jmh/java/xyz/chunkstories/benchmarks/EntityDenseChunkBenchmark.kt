@@ -0,0 +1,52 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.concurrent.TimeUnit
+
+/** Saving and loading chunks full of item drops, in the compact binary format and in the old json-as-text one */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class EntityDenseChunkBenchmark {
+    @Param("compact", "legacy")
+    @JvmField
+    var format = ""
+
+    /** The legacy format can't go much higher, writeUTF caps the json at 64KB */
+    @Param("50", "250")
+    @JvmField
+    var entities = 0
+
+    private lateinit var chunk: ChunkCompressedData
+    private lateinit var serialized: ByteArray
+    private val buffer = ByteArrayOutputStream(1024 * 1024)
+
+    @Setup
+    fun setup() {
+        chunk = ChunkCompressedData.fromVoxelData(ChunkSamples.generate("surface"), ChunkSamples.itemDrops(entities))
+        serialized = save()
+    }
+
+    @Benchmark
+    fun save(): ByteArray {
+        buffer.reset()
+        val dos = DataOutputStream(buffer)
+        chunk.toBytes(dos, format == "legacy")
+        dos.flush()
+        return buffer.toByteArray()
+    }
+
+    @Benchmark
+    fun load() = ChunkCompressedData.fromBytes(DataInputStream(ByteArrayInputStream(serialized)))
+}
@@ -0,0 +1,75 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.util.math.HeightmapMesher
+import xyz.chunkstories.world.heightmap.HeightmapImplementation
+import java.nio.ByteBuffer
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Meshing a whole region's worth of far terrain at one mip level, out of synthetic rolling hills with a noisy block type
+ * layer. The quad counts per level are printed at setup, against one quad per cell.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class HeightmapMesherBenchmark {
+    @Param("0", "1", "2", "3")
+    @JvmField
+    var level = 0
+
+    private val mesher = HeightmapMesher()
+    private val out = ByteBuffer.allocateDirect(32 * 1024 * 1024)
+    private lateinit var heights: IntArray
+    private lateinit var ids: IntArray
+
+    @Setup
+    fun setup() {
+        val dataSize = HeightmapImplementation.mainMimpmapOffsets[9]
+        heights = IntArray(dataSize)
+        ids = IntArray(dataSize)
+
+        val random = Random(1234)
+        for (x in 0 until 256)
+            for (z in 0 until 256) {
+                val height = 64 + (12 * Math.sin(x / 23.0) * Math.cos(z / 19.0) + 4 * Math.sin((x + z) / 7.0)).toInt()
+                heights[x * 256 + z] = height
+                ids[x * 256 + z] = if (height > 70) 3 else if (random.nextInt(16) == 0) 2 else 1
+            }
+
+        // Same as HeightmapImplementation: each mip cell is the highest of the 4 under it
+        for (level in 1..8) {
+            val resolution = 256 shr level
+            val source = HeightmapImplementation.mainMimpmapOffsets[level - 1]
+            for (x in 0 until resolution)
+                for (z in 0 until resolution) {
+                    var maxIndex = source + resolution * 2 * (x * 2) + z * 2
+                    for (i in 0..1)
+                        for (j in 0..1) {
+                            val index = source + resolution * 2 * (x * 2 + i) + z * 2 + j
+                            if (heights[index] >= heights[maxIndex])
+                                maxIndex = index
+                        }
+                    val destination = HeightmapImplementation.mainMimpmapOffsets[level] + resolution * x + z
+                    heights[destination] = heights[maxIndex]
+                    ids[destination] = ids[maxIndex]
+                }
+        }
+
+        val resolution = 256 shr level
+        println("Level $level: ${meshRegion()} quads for ${resolution * resolution} cells")
+    }
+
+    @Benchmark
+    fun meshRegion(): Int {
+        out.clear()
+        return mesher.mesh(heights, ids, level, 0, 0, 256 shr level, 1 shl level, out)
+    }
+}
@@ -0,0 +1,88 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import net.jpountz.lz4.LZ4Factory
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.world.heightmap.HeightmapCodec
+import xyz.chunkstories.world.heightmap.HeightmapFileSerialization
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Saving a heightmap and loading it back, with each codec and with what IOTaskSaveHeightmap used to do ("legacy").
+ * The file sizes are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class HeightmapSerializationBenchmark {
+    @Param("legacy", "LZ4_FAST", "LZ4_HIGH", "DELTA_VARINT")
+    @JvmField
+    var codec = ""
+
+    private val heights = IntArray(256 * 256)
+    private val ids = IntArray(256 * 256)
+    private val readHeights = IntArray(256 * 256)
+    private val readIds = IntArray(256 * 256)
+
+    private lateinit var folder: File
+    private lateinit var file: File
+
+    @Setup
+    fun setup() {
+        // Something terrain-looking: smooth heights, large patches of the same block
+        val random = Random(42)
+        for (x in 0 until 256)
+            for (z in 0 until 256) {
+                heights[x * 256 + z] = (64 + 20 * Math.sin(x / 17.0) * Math.cos(z / 23.0)).toInt() + random.nextInt(2)
+                ids[x * 256 + z] = if ((x / 32 + z / 32) % 3 == 0) 4 else 2
+            }
+
+        folder = createTempDir("heightmaps")
+        file = File(folder, "heightmap.heightmap")
+        save()
+        println("$codec: ${file.length()} bytes")
+    }
+
+    @TearDown
+    fun tearDown() {
+        folder.deleteRecursively()
+    }
+
+    @Benchmark
+    fun save(): File {
+        if (codec == "legacy")
+            writeLegacy()
+        else
+            HeightmapFileSerialization.write(file, heights, ids, HeightmapCodec.valueOf(codec))
+        return file
+    }
+
+    @Benchmark
+    fun load(): IntArray {
+        HeightmapFileSerialization.read(file, readHeights, readIds)
+        return readHeights
+    }
+
+    private fun writeLegacy() {
+        val compressor = LZ4Factory.fastestInstance().highCompressor(10)
+        FileOutputStream(file).use { out ->
+            for (array in arrayOf(heights, ids)) {
+                val writeMe = ByteBuffer.allocate(256 * 256 * 4)
+                for (i in 0 until 256 * 256)
+                    writeMe.putInt(array[i])
+                val compressed = compressor.compress(writeMe.array())
+                out.write(ByteBuffer.allocate(4).putInt(compressed.size).array())
+                out.write(compressed)
+            }
+        }
+    }
+}
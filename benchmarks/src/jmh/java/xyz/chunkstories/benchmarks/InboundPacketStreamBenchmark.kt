@@ -0,0 +1,91 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import xyz.chunkstories.api.net.packets.PacketText
+import xyz.chunkstories.benchmarks.PacketCodecBenchmark.BenchmarkConnection
+import xyz.chunkstories.net.PacketDefinition
+import xyz.chunkstories.net.PacketFramePool
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Receiving a synthetic stream of packets the way a connection does: framing, instantiation, decoding and dispose().
+ * The stream mixes mostly small packets, like player input, with some bigger ones.
+ *
+ * Run it with the GC profiler (-prof gc) to see the allocation rate per packet: the pooled frames and the bound
+ * factories can be turned off with the params to compare.
+ *
+ * Needs the core content to resolve packet definitions: -DcoreContentLocation (the build passes ../chunkstories-core/res)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class InboundPacketStreamBenchmark {
+    @Param("true", "false")
+    @JvmField
+    var pooledFrames = true
+
+    @Param("false", "true")
+    @JvmField
+    var reflectiveInstantiation = false
+
+    private val packetsInStream = 4096
+
+    private lateinit var engine: BenchmarkEngine
+    private lateinit var connection: BenchmarkConnection
+    private lateinit var stream: ByteArray
+
+    @Setup
+    fun setup() {
+        PacketFramePool.enabled = pooledFrames
+        PacketDefinition.reflectiveInstantiation = reflectiveInstantiation
+
+        engine = BenchmarkEngine()
+        connection = BenchmarkConnection(engine, engine.content)
+
+        val random = Random(1234)
+        val buffer = ByteArrayOutputStream()
+        val dos = DataOutputStream(buffer)
+        for (i in 0 until packetsInStream) {
+            val packet = PacketText(engine)
+            // 90% input-sized packets, the rest up to a few KiB
+            val length = if (random.nextInt(10) != 0) 8 + random.nextInt(56) else 256 + random.nextInt(4096)
+            packet.text = "x".repeat(length)
+            connection.encoderDecoder.buildOutgoingPacket(packet).write(dos)
+        }
+        dos.flush()
+        stream = buffer.toByteArray()
+    }
+
+    @TearDown
+    fun tearDown() {
+        PacketFramePool.enabled = true
+        PacketDefinition.reflectiveInstantiation = false
+        engine.cleanup()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    fun receiveStream(blackhole: Blackhole) {
+        val input = DataInputStream(ByteArrayInputStream(stream))
+        for (i in 0 until packetsInStream) {
+            val datagram = connection.encoderDecoder.digestIncommingPacket(input)
+            val definition = datagram.packetDefinition as PacketDefinition
+            val packet = definition.createNewWithEngine(false, engine)!!
+            packet.receive(datagram.data, null)
+            datagram.dispose()
+            blackhole.consume(packet)
+        }
+    }
+}
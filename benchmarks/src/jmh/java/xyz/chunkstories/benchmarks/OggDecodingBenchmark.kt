@@ -0,0 +1,51 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.sound.ogg.OggInputStream
+import xyz.chunkstories.sound.ogg.PcmSample
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Decoding a sound sample from memory, no audio device involved: the bulk path the sounds library uses against the
+ * byte at a time loop it used to have.
+ *
+ * Decodes the largest .ogg under -DcoreContentLocation (the build passes ../chunkstories-core/res), or -DoggSample
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class OggDecodingBenchmark {
+    private lateinit var encoded: ByteArray
+
+    @Setup
+    fun setup() {
+        val sample = System.getProperty("oggSample")?.let { File(it) }
+                ?: File(System.getProperty("coreContentLocation", "../chunkstories-core/res")).walkTopDown()
+                        .filter { it.isFile && it.name.endsWith(".ogg") }
+                        .maxBy { it.length() }
+                ?: throw Exception("No .ogg sample found, pass one with -DoggSample")
+        encoded = sample.readBytes()
+    }
+
+    @Benchmark
+    fun bulk() = PcmSample.decodeOgg(ByteArrayInputStream(encoded))
+
+    @Benchmark
+    fun bytewise(): ByteArray {
+        val decoded = ByteArrayOutputStream()
+        val oggInput = OggInputStream(ByteArrayInputStream(encoded))
+        while (!oggInput.atEnd())
+            decoded.write(oggInput.read())
+        oggInput.close()
+        return decoded.toByteArray()
+    }
+}
@@ -0,0 +1,97 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.EngineImplemI
+import xyz.chunkstories.api.net.Packet
+import xyz.chunkstories.api.net.packets.PacketText
+import xyz.chunkstories.api.server.UserConnection
+import xyz.chunkstories.content.GameContentStore
+import xyz.chunkstories.content.translator.InitialContentTranslator
+import xyz.chunkstories.net.Connection
+import xyz.chunkstories.net.PacketDefinition
+import xyz.chunkstories.net.PacketsEncoderDecoder
+import xyz.chunkstories.world.WorldImplementation
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Encoding and decoding packets through PacketsEncoderDecoder, as the connections do it, minus the sockets. Only
+ * world-less packets can be built without a world, so this uses text packets.
+ *
+ * Needs the core content to resolve packet definitions: -DcoreContentLocation (the build passes ../chunkstories-core/res)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class PacketCodecBenchmark {
+    @Param("16", "1024")
+    @JvmField
+    var messageLength = 0
+
+    private lateinit var engine: BenchmarkEngine
+    private lateinit var connection: BenchmarkConnection
+    private lateinit var packet: PacketText
+    private lateinit var encoded: ByteArray
+    private val buffer = ByteArrayOutputStream(64 * 1024)
+
+    @Setup
+    fun setup() {
+        engine = BenchmarkEngine()
+        connection = BenchmarkConnection(engine, engine.content)
+
+        packet = PacketText(engine)
+        packet.text = "x".repeat(messageLength)
+        encoded = encode()
+    }
+
+    @TearDown
+    fun tearDown() {
+        engine.cleanup()
+    }
+
+    private fun encode(): ByteArray {
+        buffer.reset()
+        val dos = DataOutputStream(buffer)
+        connection.encoderDecoder.buildOutgoingPacket(packet).write(dos)
+        dos.flush()
+        return buffer.toByteArray()
+    }
+
+    @Benchmark
+    fun encodePacket() = encode()
+
+    @Benchmark
+    fun decodePacket(): Packet {
+        val datagram = connection.encoderDecoder.digestIncommingPacket(DataInputStream(ByteArrayInputStream(encoded)))
+        val definition = datagram.packetDefinition as PacketDefinition
+        val decoded = definition.createNewWithEngine(false, engine)!!
+        decoded.receive(datagram.data, null)
+        datagram.dispose()
+        return decoded
+    }
+
+    class BenchmarkConnection(engine: EngineImplemI, content: GameContentStore) : Connection(engine, "localhost", 0) {
+        override val encoderDecoder: PacketsEncoderDecoder = object : PacketsEncoderDecoder(content.packets, this) {
+            override val world: WorldImplementation? = null
+        }.also { it.contentTranslator = InitialContentTranslator(content) }
+
+        override val isOpen = true
+        override val world: WorldImplementation? = null
+        override val userConnection: UserConnection? = null
+
+        override fun connect() = true
+        override fun flush() {}
+        override fun handleSystemRequest(message: String) = false
+        override fun pushPacket(packet: Packet) {}
+        override fun close(reason: String) {}
+    }
+}
@@ -0,0 +1,98 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import xyz.chunkstories.api.gui.inventory.InventorySlot
+import xyz.chunkstories.api.item.Item
+import xyz.chunkstories.api.item.ItemDefinition
+import xyz.chunkstories.crafting.RecipesStore
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Finding the recipe for a 3x3 crafting grid among a synthetic set of patterned recipes made of the core items, the way
+ * the crafting UI does it: getRecipeForInventorySlots() on a grid of slots, candidates confirmed with canCraftUsing().
+ * indexed=false is the same call with -DindexedRecipes=false, asking every recipe in turn as it used to.
+ *
+ * Needs the core content for its item definitions: -DcoreContentLocation (the build passes ../chunkstories-core/res)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class RecipeLookupBenchmark {
+    @Param("1000", "10000")
+    @JvmField
+    var recipesCount = 0
+
+    @Param("true", "false")
+    @JvmField
+    var indexed = true
+
+    private val gridsCount = 256
+
+    private lateinit var engine: BenchmarkEngine
+    private lateinit var recipes: RecipesStore
+    private lateinit var grids: Array<Array<Array<InventorySlot.FakeSlot>>>
+    private var wasIndexed = true
+
+    private class GridSlot(item: Item?) : InventorySlot.FakeSlot() {
+        override val visibleContents: Pair<Item, Int>? = item?.let { Pair(it, 1) }
+    }
+
+    @Setup
+    fun setup() {
+        engine = BenchmarkEngine()
+        val content = engine.content
+        val items = content.items.all.toList()
+
+        val random = Random(1234)
+        recipes = RecipesStore(content)
+        val patterns = List(recipesCount) {
+            val width = 1 + random.nextInt(3)
+            val height = 1 + random.nextInt(3)
+            Array(height) { Array(width) { if (random.nextInt(5) == 0) null else items[random.nextInt(items.size)] } }
+        }
+        for (pattern in patterns)
+            recipes.addPatternedRecipe(pattern, Pair(items[random.nextInt(items.size)], 1))
+
+        // Patterns put somewhere on the grid, and a few grids nothing can be crafted from
+        grids = Array(gridsCount) {
+            val grid = Array(3) { arrayOfNulls<ItemDefinition>(3) }
+            if (random.nextInt(8) == 0) {
+                for (row in grid)
+                    for (x in 0 until 3)
+                        row[x] = items[random.nextInt(items.size)]
+            } else {
+                val pattern = patterns[random.nextInt(patterns.size)]
+                val offsetY = random.nextInt(4 - pattern.size)
+                val offsetX = random.nextInt(4 - pattern[0].size)
+                for (y in pattern.indices)
+                    for (x in pattern[y].indices)
+                        grid[offsetY + y][offsetX + x] = pattern[y][x]
+            }
+            Array(3) { y -> Array<InventorySlot.FakeSlot>(3) { x -> GridSlot(grid[y][x]?.newItem()) } }
+        }
+
+        wasIndexed = RecipesStore.indexedLookup
+        RecipesStore.indexedLookup = indexed
+    }
+
+    @TearDown
+    fun tearDown() {
+        RecipesStore.indexedLookup = wasIndexed
+        engine.cleanup()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    fun getRecipeForInventorySlots(blackhole: Blackhole) {
+        for (grid in grids)
+            blackhole.consume(recipes.getRecipeForInventorySlots(grid))
+    }
+}
@@ -0,0 +1,58 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+import xyz.chunkstories.world.region.format.RegionFileSerialization
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/** Writing and reading back a whole region file (8x8x8 chunks) in a temporary folder */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class RegionFileBenchmark {
+    /** How many of the region's chunks hold blocks, the rest is air */
+    @Param("64", "512")
+    @JvmField
+    var filledChunks = 0
+
+    private lateinit var folder: File
+    private lateinit var writeFile: File
+    private lateinit var readFile: File
+    private lateinit var chunks: Array<ChunkCompressedData?>
+
+    @Setup
+    fun setup() {
+        folder = createTempDir("regions")
+        writeFile = File(folder, "write.csf")
+        readFile = File(folder, "read.csf")
+
+        chunks = arrayOfNulls(8 * 8 * 8)
+        for (i in 0 until 8 * 8 * 8)
+            chunks[i] = if (i < filledChunks)
+                ChunkCompressedData.fromVoxelData(ChunkSamples.generate(ChunkSamples.kinds[i % 2], i.toLong()))
+            else
+                ChunkCompressedData.fromVoxelData(null)
+        RegionFileSerialization.saveRegion(readFile, chunks)
+    }
+
+    @TearDown
+    fun tearDown() {
+        folder.deleteRecursively()
+    }
+
+    @Benchmark
+    fun save(): File {
+        RegionFileSerialization.saveRegion(writeFile, chunks)
+        return writeFile
+    }
+
+    @Benchmark
+    fun load() = RegionFileSerialization.loadChunks(readFile)
+}
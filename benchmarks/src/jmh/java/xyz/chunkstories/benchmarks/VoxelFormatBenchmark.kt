@@ -0,0 +1,47 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import xyz.chunkstories.block.VoxelFormat
+import java.util.concurrent.TimeUnit
+
+/** Packing and unpacking a whole chunk's worth of cells */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class VoxelFormatBenchmark {
+    private val cells = ChunkSamples.generate("surface")
+    private val packed = IntArray(ChunkSamples.CHUNK_VOLUME)
+
+    @Benchmark
+    fun pack(): IntArray {
+        for (i in 0 until ChunkSamples.CHUNK_VOLUME)
+            packed[i] = VoxelFormat.format(i and 0xFFFF, i ushr 8, i and 0xF, (i ushr 4) and 0xF)
+        return packed
+    }
+
+    @Benchmark
+    fun unpack(blackhole: Blackhole) {
+        var ids = 0
+        var light = 0
+        for (cell in cells) {
+            ids += VoxelFormat.id(cell) + VoxelFormat.meta(cell)
+            light += VoxelFormat.sunlight(cell) + VoxelFormat.blocklight(cell)
+        }
+        blackhole.consume(ids)
+        blackhole.consume(light)
+    }
+
+    @Benchmark
+    fun changeLight(): IntArray {
+        for (i in 0 until ChunkSamples.CHUNK_VOLUME)
+            packed[i] = VoxelFormat.changeBlocklight(VoxelFormat.changeSunlight(cells[i], 15), 7)
+        return packed
+    }
+}
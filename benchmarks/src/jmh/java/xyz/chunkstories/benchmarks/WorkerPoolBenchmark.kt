@@ -0,0 +1,69 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.task.WorkerThreadPool
+import xyz.chunkstories.util.concurrency.CompoundFence
+import java.util.concurrent.TimeUnit
+
+/**
+ * Scheduling overhead of the worker pool: a batch of tasks doing (next to) nothing, scheduled then waited on with a
+ * fence, the same way world ticking and the content reload use it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class WorkerPoolBenchmark {
+    @Param("1", "4")
+    @JvmField
+    var threads = 0
+
+    @Param("1", "256")
+    @JvmField
+    var batchSize = 0
+
+    /** Busy work per task, in Blackhole tokens */
+    @Param("0", "1000")
+    @JvmField
+    var work = 0L
+
+    private lateinit var pool: WorkerThreadPool
+
+    @Setup
+    fun setup() {
+        pool = WorkerThreadPool(threads)
+        pool.start()
+    }
+
+    @TearDown
+    fun tearDown() {
+        pool.cleanup()
+    }
+
+    @Benchmark
+    fun scheduleAndWait() {
+        val fence = CompoundFence()
+        for (i in 0 until batchSize) {
+            val task = BusyTask(work)
+            pool.scheduleTask(task)
+            fence.add(task)
+        }
+        fence.traverse()
+    }
+
+    private class BusyTask(private val work: Long) : Task() {
+        override fun task(taskExecutor: TaskExecutor): Boolean {
+            if (work > 0)
+                Blackhole.consumeCPU(work)
+            return true
+        }
+    }
+}
@@ -148,6 +148,8 @@ class ClientImplementation internal constructor(val arguments: Map<String, Strin
         tasks = WorkerThreadPool(workerThreadsCount)
         tasks.start()
 
+        soundManager.preloadSounds()
+
         // Load the correct language
         val lang: String = configuration.getValue("client.game.language")
         if (lang != "")
@@ -189,6 +191,7 @@ class ClientImplementation internal constructor(val arguments: Map<String, Strin
     fun reloadAssets() {
         content.reload()
         inputsManager.reload()
+        soundManager.preloadSounds()
         //TODO hook some rendering stuff in here
     }
 }
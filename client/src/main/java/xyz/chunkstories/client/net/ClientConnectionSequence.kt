@@ -6,7 +6,6 @@
 
 package xyz.chunkstories.client.net
 
-import java.io.File
 import java.util.HashSet
 import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
@@ -19,7 +18,7 @@ import xyz.chunkstories.client.identity.LocalClientIdentity
 import xyz.chunkstories.client.identity.LoggedInClientIdentity
 import xyz.chunkstories.client.net.vanillasockets.TCPServerConnection
 import xyz.chunkstories.content.mods.ModZip
-import xyz.chunkstories.net.Connection
+import xyz.chunkstories.content.mods.ModsManagerImplementation
 import xyz.chunkstories.util.VersionInfo
 
 
@@ -146,18 +145,14 @@ class ClientConnectionSequence constructor(val client: ClientImplementation, val
 
                 requiredMd5s.add(modMd5Hash)
 
-                val cached = File("servermods/$modMd5Hash.zip")
+                val cached = ModsManagerImplementation.serverModFile(modMd5Hash)
                 if (!cached.exists()) {
                     // Sequentially download all the mods from the server
-                    //connection.obtainModFile(modMd5Hash, cached)
-
                     val serverAnswer = Semaphore(0)
-                    var downloadStatus2: Connection.DownloadStatus? = null
 
                     step("Asking server for mod: $modInternalName ($modMd5Hash)")
 
-                    connection.registerExpectedFileStreaming("md5:$modMd5Hash", cached) { downloadStatus ->
-                        downloadStatus2 = downloadStatus
+                    val download = connection.registerExpectedFileStreaming("md5:$modMd5Hash", cached) { downloadStatus ->
                         serverAnswer.release()
 
                         // Create a state telling us the progress
@@ -166,12 +161,22 @@ class ClientConnectionSequence constructor(val client: ClientImplementation, val
                                 get() = "${downloadStatus.bytesDownloaded()} bytes out of ${downloadStatus.totalBytes()}"
                         }
                     }
-                    connection.sendTextMessage("send-mod/md5:$modMd5Hash")
+
+                    // Pick up where a previous attempt stopped
+                    val resumeOffset = download.resumeOffset
+                    if (resumeOffset > 0 && resumeOffset < modSizeInBytes) {
+                        client.logger.info("Resuming download of $modInternalName from byte $resumeOffset")
+                        connection.sendTextMessage("send-mod/md5:$modMd5Hash@$resumeOffset")
+                    } else {
+                        download.partialFile.delete()
+                        connection.sendTextMessage("send-mod/md5:$modMd5Hash")
+                    }
 
                     if(!serverAnswer.tryAcquire(5, TimeUnit.SECONDS))
                         abort("Couldn't obtain mod $modInternalName ($modMd5Hash): server didn't reply in time")
 
-                    downloadStatus2!!.waitsUntilDone()
+                    if (!download.waitsUntilDone())
+                        abort("Download of $modInternalName was interrupted. You can try again.")
                 }
 
                 // Check their size and signature
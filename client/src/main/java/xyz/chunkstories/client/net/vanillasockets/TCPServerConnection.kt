@@ -21,7 +21,6 @@ import xyz.chunkstories.net.vanillasockets.StreamGobbler
 import xyz.chunkstories.world.WorldImplementation
 
 import java.io.DataInputStream
-import java.io.DataOutputStream
 import java.io.IOException
 import java.net.Socket
 import java.util.concurrent.atomic.AtomicBoolean
@@ -66,8 +65,7 @@ open class TCPServerConnection(client: ClientImplementation, connectionSequence:
             val `in` = DataInputStream(socket!!.getInputStream())
             val streamGobbler = ClientGobbler(this, `in`)
 
-            val out = DataOutputStream(socket!!.getOutputStream())
-            sendQueue = SendQueue(this, out)
+            sendQueue = SendQueue(this, socket!!.getOutputStream())
 
             connected = true
 
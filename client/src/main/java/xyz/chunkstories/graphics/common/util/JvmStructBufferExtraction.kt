@@ -13,7 +13,17 @@ fun getStd140AlignedSizeForStruct(struct: GLSLType.JvmStruct): Int {
     return sizeAligned16
 }
 
+private val useReflectiveExtraction = System.getProperty("reflectiveStructExtraction", "false") == "true"
+
 fun extractInterfaceBlock(target: ByteBuffer, offsetInTarget: Int = 0, instance: InterfaceBlock, struct: GLSLType.JvmStruct) {
+    if (useReflectiveExtraction)
+        extractInterfaceBlockReflective(target, offsetInTarget, instance, struct)
+    else
+        Std140StructWriter.forStruct(struct).write(target, offsetInTarget, instance)
+}
+
+/** Reference implementation, reads every field through reflection. Std140StructWriter must match it byte for byte. */
+fun extractInterfaceBlockReflective(target: ByteBuffer, offsetInTarget: Int = 0, instance: InterfaceBlock, struct: GLSLType.JvmStruct) {
     for (field in struct.fields) {
         target.position(offsetInTarget + field.offset)
         extractInterfaceBlockField(target, instance, field)
@@ -47,6 +57,14 @@ private fun extractInterfaceBlockField(target: ByteBuffer, instance: InterfaceBl
                         }
                     }
 
+                    return
+                }
+                data is FloatArray -> {
+                    for ((i, element) in data.withIndex()) {
+                        target.position(basePosition + i * field.type.baseType.inArraySize)
+                        extractBaseTypeRawData(field.type.baseType as GLSLType.BaseType, element, target)
+                    }
+
                     return
                 }
             }
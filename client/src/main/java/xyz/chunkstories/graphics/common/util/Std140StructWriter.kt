@@ -0,0 +1,267 @@
+package xyz.chunkstories.graphics.common.util
+
+import org.joml.*
+import xyz.chunkstories.api.graphics.structs.InterfaceBlock
+import xyz.chunkstories.graphics.common.shaders.GLSLType
+import xyz.chunkstories.graphics.common.shaders.JvmStructField
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.reflect.jvm.isAccessible
+import kotlin.reflect.jvm.javaField
+import kotlin.reflect.jvm.javaGetter
+
+/**
+ * Writes InterfaceBlocks laid out as a given JvmStruct, without going through Kotlin reflection. The layout is walked
+ * once, when the writer is compiled: every field becomes a getter MethodHandle and a store routine with its offset baked
+ * in, writing with absolute puts so the buffer position is never touched. Scalar fields get handles typed to their
+ * primitive type and called with invokeExact, so nothing is boxed on the way; int and float arrays are written straight
+ * from the primitive array.
+ *
+ * Produces the exact same bytes as the reflective extraction path, see extractInterfaceBlockReflective(). Fields of a
+ * type with no std140 translation make compiling the writer fail, rather than the first write.
+ */
+class Std140StructWriter private constructor(val struct: GLSLType.JvmStruct) {
+    private val fieldWriters: Array<FieldWriter> = struct.fields.map { compileField(it) }.toTypedArray()
+
+    fun write(target: ByteBuffer, offset: Int, instance: InterfaceBlock) {
+        for (fieldWriter in fieldWriters)
+            fieldWriter.write(target, offset, instance)
+    }
+
+    private abstract class FieldWriter(val getter: MethodHandle, val offset: Int) {
+        abstract fun write(target: ByteBuffer, base: Int, instance: Any)
+    }
+
+    /** Writes one value of some GLSL type at an absolute index */
+    private interface ValueWriter {
+        fun write(target: ByteBuffer, index: Int, value: Any?)
+    }
+
+    private fun compileField(field: JvmStructField): FieldWriter {
+        return when (val type = field.type) {
+            GLSLType.BaseType.GlslFloat -> object : FieldWriter(compileGetter(field, floatGetterType), field.offset) {
+                override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                    target.putFloat(base + offset, getter.invokeExact(instance) as Float)
+                }
+            }
+            GLSLType.BaseType.GlslInt, GLSLType.BaseType.GlslUInt -> object : FieldWriter(compileGetter(field, intGetterType), field.offset) {
+                override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                    target.putInt(base + offset, getter.invokeExact(instance) as Int)
+                }
+            }
+            GLSLType.BaseType.GlslLong -> object : FieldWriter(compileGetter(field, longGetterType), field.offset) {
+                override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                    target.putInt(base + offset, (getter.invokeExact(instance) as Long).toInt())
+                }
+            }
+            is GLSLType.BaseType -> {
+                val valueWriter = baseTypeWriter(type, field)
+                object : FieldWriter(compileGetter(field, genericGetterType), field.offset) {
+                    override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                        valueWriter.write(target, base + offset, getter.invokeExact(instance) as Any?)
+                    }
+                }
+            }
+            is GLSLType.Array -> {
+                val stride = type.baseType.inArraySize
+                val elementType = type.baseType
+                val elementWriter = when (elementType) {
+                    is GLSLType.BaseType -> baseTypeWriter(elementType, field)
+                    is GLSLType.JvmStruct -> structValueWriter(elementType)
+                    else -> throw unsupported(elementType, field)
+                }
+                object : FieldWriter(compileGetter(field, genericGetterType), field.offset) {
+                    override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                        val start = base + offset
+                        when (val data = getter.invokeExact(instance) as Any?) {
+                            is IntArray -> when (elementType) {
+                                GLSLType.BaseType.GlslInt, GLSLType.BaseType.GlslUInt -> for (i in data.indices)
+                                    target.putInt(start + i * stride, data[i])
+                                else -> for (i in data.indices)
+                                    elementWriter.write(target, start + i * stride, data[i])
+                            }
+                            is FloatArray -> when (elementType) {
+                                GLSLType.BaseType.GlslFloat -> for (i in data.indices)
+                                    target.putFloat(start + i * stride, data[i])
+                                else -> for (i in data.indices)
+                                    elementWriter.write(target, start + i * stride, data[i])
+                            }
+                            is Array<*> -> for (i in data.indices)
+                                elementWriter.write(target, start + i * stride, data[i])
+                            else -> throw Exception("Not an array !")
+                        }
+                    }
+                }
+            }
+            is GLSLType.JvmStruct -> {
+                val valueWriter = structValueWriter(type)
+                object : FieldWriter(compileGetter(field, genericGetterType), field.offset) {
+                    override fun write(target: ByteBuffer, base: Int, instance: Any) {
+                        valueWriter.write(target, base + offset, getter.invokeExact(instance) as Any?)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun structValueWriter(struct: GLSLType.JvmStruct) = object : ValueWriter {
+        // Resolved lazily so we don't recurse while compiling
+        val writer by lazy { forStruct(struct) }
+
+        override fun write(target: ByteBuffer, index: Int, value: Any?) {
+            writer.write(target, index, value as InterfaceBlock)
+        }
+    }
+
+    private fun unsupported(type: GLSLType, field: JvmStructField) =
+            Exception("No std140 translation for $type, used by the field ${field.name} of ${struct.kClass.qualifiedName}")
+
+    private fun baseTypeWriter(baseType: GLSLType.BaseType, field: JvmStructField): ValueWriter = when (baseType) {
+        GLSLType.BaseType.GlslFloat -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                target.putFloat(index, value as Float)
+            }
+        }
+        GLSLType.BaseType.GlslInt, GLSLType.BaseType.GlslUInt -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                target.putInt(index, value as Int)
+            }
+        }
+        GLSLType.BaseType.GlslLong -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                target.putInt(index, (value as Long).toInt())
+            }
+        }
+
+        // SP vectors
+        GLSLType.BaseType.GlslVec2 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector2fc ?: GLSLDefaults.zero2
+                target.putFloat(index, vec.x())
+                target.putFloat(index + 4, vec.y())
+            }
+        }
+        GLSLType.BaseType.GlslVec3 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector3fc ?: GLSLDefaults.zero3
+                target.putFloat(index, vec.x())
+                target.putFloat(index + 4, vec.y())
+                target.putFloat(index + 8, vec.z())
+            }
+        }
+        GLSLType.BaseType.GlslVec4 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector4fc ?: GLSLDefaults.zero4
+                target.putFloat(index, vec.x())
+                target.putFloat(index + 4, vec.y())
+                target.putFloat(index + 8, vec.z())
+                target.putFloat(index + 12, vec.w())
+            }
+        }
+
+        // DP vectors
+        GLSLType.BaseType.GlslVec2d -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector2dc ?: GLSLDefaults.zero2d
+                target.putFloat(index, vec.x().toFloat())
+                target.putFloat(index + 4, vec.y().toFloat())
+            }
+        }
+        GLSLType.BaseType.GlslVec3d -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector3dc ?: GLSLDefaults.zero3d
+                target.putFloat(index, vec.x().toFloat())
+                target.putFloat(index + 4, vec.y().toFloat())
+                target.putFloat(index + 8, vec.z().toFloat())
+            }
+        }
+        GLSLType.BaseType.GlslVec4d -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector4dc ?: GLSLDefaults.zero4d
+                target.putFloat(index, vec.x().toFloat())
+                target.putFloat(index + 4, vec.y().toFloat())
+                target.putFloat(index + 8, vec.z().toFloat())
+                target.putFloat(index + 12, vec.w().toFloat())
+            }
+        }
+
+        // Int & UInt vectors
+        GLSLType.BaseType.GlslIVec2, GLSLType.BaseType.GlslUVec2 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector2ic ?: GLSLDefaults.zero2i
+                target.putInt(index, vec.x())
+                target.putInt(index + 4, vec.y())
+            }
+        }
+        GLSLType.BaseType.GlslIVec3, GLSLType.BaseType.GlslUVec3 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector3ic ?: GLSLDefaults.zero3i
+                target.putInt(index, vec.x())
+                target.putInt(index + 4, vec.y())
+                target.putInt(index + 8, vec.z())
+            }
+        }
+        GLSLType.BaseType.GlslIVec4, GLSLType.BaseType.GlslUVec4 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val vec = value as? Vector4ic ?: GLSLDefaults.zero4i
+                target.putInt(index, vec.x())
+                target.putInt(index + 4, vec.y())
+                target.putInt(index + 8, vec.z())
+                target.putInt(index + 12, vec.w())
+            }
+        }
+
+        GLSLType.BaseType.GlslMat4 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val mat4 = value as? Matrix4fc ?: GLSLDefaults.mat4identity
+                mat4.get(index, target)
+            }
+        }
+        GLSLType.BaseType.GlslMat3 -> object : ValueWriter {
+            override fun write(target: ByteBuffer, index: Int, value: Any?) {
+                val mat3 = value as? Matrix3fc ?: GLSLDefaults.mat3identity
+                // Columns are padded to vec4s, like the reflective path does
+                target.putFloat(index, mat3.m00())
+                target.putFloat(index + 4, mat3.m01())
+                target.putFloat(index + 8, mat3.m02())
+                target.putFloat(index + 12, 0f)
+                target.putFloat(index + 16, mat3.m10())
+                target.putFloat(index + 20, mat3.m11())
+                target.putFloat(index + 24, mat3.m12())
+                target.putFloat(index + 28, 0f)
+                target.putFloat(index + 32, mat3.m20())
+                target.putFloat(index + 36, mat3.m21())
+                target.putFloat(index + 40, mat3.m22())
+                target.putFloat(index + 44, 0f)
+            }
+        }
+
+        GLSLType.BaseType.GlslDouble -> throw unsupported(baseType, field)
+    }
+
+    companion object {
+        private val writers = ConcurrentHashMap<GLSLType.JvmStruct, Std140StructWriter>()
+
+        fun forStruct(struct: GLSLType.JvmStruct): Std140StructWriter = writers[struct]
+                ?: Std140StructWriter(struct).also { writers.putIfAbsent(struct, it) }
+
+        private val lookup = MethodHandles.lookup()
+        private val genericGetterType = MethodType.methodType(Any::class.java, Any::class.java)
+        private val floatGetterType = MethodType.methodType(Float::class.javaPrimitiveType, Any::class.java)
+        private val intGetterType = MethodType.methodType(Int::class.javaPrimitiveType, Any::class.java)
+        private val longGetterType = MethodType.methodType(Long::class.javaPrimitiveType, Any::class.java)
+
+        /** The getter of that field, adapted to the type it will be called with, invokeExact() needs an exact match */
+        private fun compileGetter(field: JvmStructField, type: MethodType): MethodHandle {
+            val property = field.property
+            property.isAccessible = true
+            val handle = property.javaGetter?.let { lookup.unreflect(it) }
+                    ?: property.javaField?.let { lookup.unreflectGetter(it) }
+                    ?: throw Exception("Property ${field.name} has neither a getter nor a backing field")
+            return handle.asType(type)
+        }
+    }
+}
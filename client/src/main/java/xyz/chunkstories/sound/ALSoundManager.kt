@@ -37,6 +37,8 @@ import xyz.chunkstories.sound.source.DummySoundSource
 class ALSoundManager(private val client: ClientImplementation) : ClientSoundManager {
     private val library: SoundsLibrary = SoundsLibrary(client)
     private val playingSoundSources = ConcurrentLinkedQueue<ALSoundSource>()
+    /** Sources whose sample is still being decoded, they start playing once it's ready */
+    private val waitingSoundSources = ConcurrentLinkedQueue<ALSoundSource>()
 
     private val shutdownState = AtomicBoolean(false)
 
@@ -152,15 +154,47 @@ class ALSoundManager(private val client: ClientImplementation) : ClientSoundMana
     }
 
     private fun addSoundSource(soundSource: ALSoundSource) {
+        val soundData = soundSource.soundData
+        if (soundData is SoundDataPending && !soundData.isReady) {
+            waitingSoundSources.add(soundSource)
+            return
+        }
+
         soundSource.play()
         playingSoundSources.add(soundSource)
     }
 
+    /** Starts the sources whose sample finished decoding, and drops those whose sample failed to */
+    private fun startWaitingSources() {
+        val i = waitingSoundSources.iterator()
+        while (i.hasNext()) {
+            val soundSource = i.next()
+            val soundData = soundSource.soundData as SoundDataPending
+            if (soundSource.stoppedBeforePlaying) {
+                i.remove()
+            } else if (soundData.isReady) {
+                i.remove()
+                soundSource.play()
+                playingSoundSources.add(soundSource)
+            } else if (soundData.failed) {
+                i.remove()
+            }
+        }
+    }
+
+    /** Decodes the sounds the content refers to ahead of time, on the worker threads */
+    fun preloadSounds() {
+        library.preloadReferencedSounds()
+    }
+
     fun updateAllSoundSources() {
         val result= alGetError()
         if (result != AL_NO_ERROR)
             logger.error("Error while iterating:" + SoundDataOggSample.getALErrorString(result))
 
+        library.uploadDecodedSamples()
+        startWaitingSources()
+
         removeUnplayingSources()
         for (soundSource in playingSoundSources) {
             soundSource.update(this)
@@ -194,6 +228,7 @@ class ALSoundManager(private val client: ClientImplementation) : ClientSoundMana
     }
 
     fun stopAnySound(sfx: String) {
+        waitingSoundSources.removeIf { it.soundData.name.contains(sfx) }
         val i = playingSoundSources.iterator()
         while (i.hasNext()) {
             val soundSource = i.next()
@@ -205,6 +240,7 @@ class ALSoundManager(private val client: ClientImplementation) : ClientSoundMana
     }
 
     fun stopAnySound() {
+        waitingSoundSources.clear()
         for (source in playingSoundSources)
             source.stop()
         playingSoundSources.clear()
@@ -0,0 +1,105 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.sound
+
+import org.lwjgl.BufferUtils
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.content.Asset
+import xyz.chunkstories.api.math.byteArrayAsHexString
+import xyz.chunkstories.sound.ogg.PcmSample
+import java.io.*
+import java.nio.ByteOrder
+import java.security.MessageDigest
+
+/**
+ * Keeps decoded samples on disk (./cache/sounds/), named after a hash of the compressed asset, so they can be read back
+ * instead of going through the Vorbis decoder again. PCM is a lot bigger than Ogg, so this is opt-in: -DsoundPcmCache=true
+ */
+class PcmCache(private val folder: File) {
+
+    fun keyFor(asset: Asset): String {
+        val digest = MessageDigest.getInstance("MD5")
+        asset.read().use { input ->
+            val buffer = ByteArray(16 * 1024)
+            while (true) {
+                val read = input.read(buffer)
+                if (read == -1)
+                    break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return byteArrayAsHexString(digest.digest())
+    }
+
+    fun read(key: String): PcmSample? {
+        val file = File(folder, "$key.pcm")
+        if (!file.exists())
+            return null
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { dis ->
+                if (dis.readInt() != MAGIC || dis.readInt() != VERSION)
+                    return null
+                // Samples are stored in the byte order of the machine that decoded them
+                if (dis.readBoolean() != nativeLittleEndian)
+                    return null
+
+                val channels = dis.readInt()
+                val rate = dis.readInt()
+                val bytes = ByteArray(dis.readInt())
+                dis.readFully(bytes)
+
+                val data = BufferUtils.createByteBuffer(bytes.size)
+                data.put(bytes)
+                data.flip()
+                return PcmSample(channels, rate, data)
+            }
+        } catch (e: IOException) {
+            logger.warn("Discarding unreadable cached sample $file: ${e.message}")
+            return null
+        }
+    }
+
+    fun write(key: String, sample: PcmSample) {
+        try {
+            folder.mkdirs()
+            val file = File(folder, "$key.pcm")
+            val temp = File(folder, "$key.pcm.tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { dos ->
+                dos.writeInt(MAGIC)
+                dos.writeInt(VERSION)
+                dos.writeBoolean(nativeLittleEndian)
+
+                dos.writeInt(sample.channels)
+                dos.writeInt(sample.rate)
+
+                val data = sample.data.duplicate()
+                val bytes = ByteArray(data.remaining())
+                data.get(bytes)
+                dos.writeInt(bytes.size)
+                dos.write(bytes)
+            }
+            if (!temp.renameTo(file)) {
+                file.delete()
+                temp.renameTo(file)
+            }
+        } catch (e: IOException) {
+            logger.warn("Couldn't write cached sample $key: ${e.message}")
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger("sound.cache")
+
+        val enabled = System.getProperty("soundPcmCache", "false") == "true"
+
+        private const val MAGIC = 0x4353504d // "CSPM"
+        private const val VERSION = 1
+
+        private val nativeLittleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+    }
+}
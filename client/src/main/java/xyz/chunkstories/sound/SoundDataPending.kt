@@ -0,0 +1,34 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.sound
+
+/**
+ * Stands in for a sample that is still being decoded. Sources created with it are held back by ALSoundManager until
+ * the library resolves it, then play as if they had the real thing from the start.
+ */
+class SoundDataPending(val soundName: String) : SoundData() {
+    @Volatile
+    var resolved: SoundData? = null
+
+    @Volatile
+    var failed = false
+
+    val isReady: Boolean
+        get() = resolved != null
+
+    override fun getLengthMs(): Long = resolved?.lengthMs ?: 0L
+
+    override fun loadedOk(): Boolean = resolved?.loadedOk() ?: false
+
+    override fun getBuffer(): Int = resolved?.buffer ?: 0
+
+    override fun destroy() {
+        // The resolved data belongs to the library
+    }
+
+    override fun getName(): String = soundName
+}
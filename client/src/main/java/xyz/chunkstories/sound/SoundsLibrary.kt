@@ -6,29 +6,118 @@
 
 package xyz.chunkstories.sound
 
-import java.util.HashMap
-
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.content.Asset
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
 import xyz.chunkstories.client.ClientImplementation
+import xyz.chunkstories.sound.ogg.PcmSample
 import xyz.chunkstories.sound.ogg.SoundDataOggSample
 import xyz.chunkstories.sound.ogg.SoundDataOggStream
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 
+/**
+ * Samples are decoded on the worker threads: the first obtainSample() for some sound hands out a SoundDataPending, and
+ * the decoded data is uploaded to OpenAL by uploadDecodedSamples(), on the thread running the sound manager.
+ */
 class SoundsLibrary(private val client: ClientImplementation) {
+    private val soundsData = ConcurrentHashMap<String, SoundData>()
+    private val pendingSamples = ConcurrentHashMap<String, SoundDataPending>()
+
+    private class DecodedSample(val pending: SoundDataPending, val sample: PcmSample?)
+
+    private val decodedSamples = ConcurrentLinkedQueue<DecodedSample>()
 
+    private val pcmCache = if (PcmCache.enabled) PcmCache(File("./cache/sounds/")) else null
+
+    /** Returns the sample if it's ready, a SoundDataPending if it's being decoded, and null if there is no such sound */
     fun obtainSample(soundEffect: String?): SoundData? {
         if (soundEffect == null)
             return null
 
-        return soundsData.getOrPut(soundEffect) {
-            if (soundEffect.endsWith(".ogg")) {
-               loadOggSample(soundEffect)
-            } else throw Exception("Unhandled extension: $soundEffect")
+        soundsData[soundEffect]?.let { return it }
+        if (!soundEffect.endsWith(".ogg"))
+            throw Exception("Unhandled extension: $soundEffect")
+
+        pendingSamples[soundEffect]?.let { return it }
+        val asset = client.content.getAsset(soundEffect) ?: return null
+
+        var scheduled = false
+        val pending = pendingSamples.computeIfAbsent(soundEffect) {
+            scheduled = true
+            SoundDataPending(it)
+        }
+        if (scheduled)
+            client.tasks.scheduleTask(DecodeSampleTask(pending, asset))
+        return pending
+    }
+
+    private inner class DecodeSampleTask(val pending: SoundDataPending, val asset: Asset) : Task() {
+        override fun task(taskExecutor: TaskExecutor): Boolean {
+            decodedSamples.add(DecodedSample(pending, decode(asset)))
+            return true
+        }
+    }
+
+    private fun decode(asset: Asset): PcmSample? {
+        try {
+            val key = pcmCache?.keyFor(asset)
+            if (key != null)
+                pcmCache?.read(key)?.let { return it }
+
+            val sample = PcmSample.decodeOgg(asset.read())
+            if (key != null)
+                pcmCache?.write(key, sample)
+            return sample
+        } catch (e: Exception) {
+            logger.error("Failed to decode sample ${asset.name}: ${e.message}")
+            return null
+        }
+    }
+
+    /** Hands the samples decoded since the last call to OpenAL, and resolves the sources waiting on them */
+    fun uploadDecodedSamples() {
+        while (true) {
+            val decoded = decodedSamples.poll() ?: break
+            val pending = decoded.pending
+            val name = pending.soundName
+
+            val sampleData = decoded.sample?.let { SoundDataOggSample(name, it) }
+            if (sampleData != null && sampleData.loadedOk()) {
+                soundsData[name] = sampleData
+                pending.resolved = sampleData
+                pendingSamples.remove(name)
+            } else {
+                // Stays in pendingSamples, so we don't try decoding it again every time it's played
+                logger.error("Failed to load sample $name")
+                pending.failed = true
+            }
         }
     }
 
-    private fun loadOggSample(sampleName: String): SoundData {
-        val sampleData = SoundDataOggSample(client.content.getAsset(sampleName))
-        sampleData.name = sampleName
-        return if (sampleData.loadedOk()) sampleData else throw Exception("Failed to load sample $sampleName")
+    /** Starts decoding every sound the content definitions mention, so they are ready when first played */
+    fun preloadReferencedSounds() {
+        client.tasks.scheduleTask(object : Task() {
+            override fun task(taskExecutor: TaskExecutor): Boolean {
+                val referenced = HashSet<String>()
+                for (asset in client.content.modsManager.getAllAssetsByExtension(".hjson")) {
+                    try {
+                        val text = asset.reader().use { it.readText() }
+                        for (match in soundReference.findAll(text))
+                            referenced.add(match.value.removePrefix("./"))
+                    } catch (e: Exception) {
+                        // Unreadable definitions get reported by the stores
+                    }
+                }
+
+                for (soundName in referenced)
+                    obtainSample(soundName)
+                logger.debug("Preloading ${referenced.size} sounds referenced by the content")
+                return true
+            }
+        })
     }
 
     fun obtainBufferedSample(musicName: String): SoundDataBuffered? {
@@ -52,9 +141,13 @@ class SoundsLibrary(private val client: ClientImplementation) {
             soundData.destroy()
         }
         soundsData.clear()
+        pendingSamples.clear()
+        decodedSamples.clear()
     }
 
     companion object {
-        private val soundsData = HashMap<String, SoundData>()
+        private val logger = LoggerFactory.getLogger("sound.library")
+
+        private val soundReference = Regex("[A-Za-z0-9_./\\-]+\\.ogg")
     }
 }
@@ -351,6 +351,8 @@ public class OggInputStream extends InputStream {
 
 	private int readIndex;
 	private ByteBuffer pcmBuffer = BufferUtils.createByteBuffer(4096 * 500);
+	/** Shares pcmBuffer's contents, for bulk reads that don't disturb its position */
+	private ByteBuffer pcmView = pcmBuffer.duplicate();
 
 	@Override
 	public int read() throws IOException {
@@ -383,25 +385,28 @@ public class OggInputStream extends InputStream {
 
 	@Override
 	public int read(byte[] b, int off, int len) throws IOException {
-		for (int i = 0; i < len; i++) {
-			try {
-				int value = read();
-				if (value >= 0) {
-					b[i] = (byte) value;
-				} else {
-					if (i == 0) {
-						return -1;
-					} else {
-						return i;
-					}
-				}
-			} catch (IOException e) {
-				System.out.println(e);
-				return i;
+		// Copies straight out of the decoded PCM, a page at a time, rather than going through read() for every byte
+		int copied = 0;
+		while (copied < len) {
+			if (readIndex >= pcmBuffer.position()) {
+				if (reachedEnd)
+					break;
+				pcmBuffer.clear();
+				readPCM();
+				readIndex = 0;
+				if (pcmBuffer.position() == 0)
+					break;
 			}
+
+			int n = Math.min(len - copied, pcmBuffer.position() - readIndex);
+			pcmView.limit(pcmBuffer.position());
+			pcmView.position(readIndex);
+			pcmView.get(b, off + copied, n);
+			readIndex += n;
+			copied += n;
 		}
 
-		return len;
+		return copied == 0 && len > 0 ? -1 : copied;
 	}
 
 	public int getChannel() {
@@ -0,0 +1,56 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.sound.ogg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A fully decoded sound: 16 bit signed samples in the native byte order, interleaved when there is more than one
+ * channel. Decoding doesn't touch OpenAL, so it can happen on any thread.
+ */
+public class PcmSample {
+	public final int channels;
+	public final int rate;
+	public final ByteBuffer data;
+
+	public PcmSample(int channels, int rate, ByteBuffer data) {
+		this.channels = channels;
+		this.rate = rate;
+		this.data = data;
+	}
+
+	/** Decodes a whole Ogg Vorbis stream, closing it once done */
+	public static PcmSample decodeOgg(InputStream inputStream) throws IOException {
+		try (InputStream source = inputStream; OggInputStream oggInput = new OggInputStream(source)) {
+			int channels = oggInput.getChannel();
+			int rate = oggInput.getRate();
+			if (channels <= 0 || rate <= 0)
+				throw new IOException("Not a valid Ogg Vorbis stream");
+
+			byte[] decoded = new byte[64 * 1024];
+			int size = 0;
+			while (true) {
+				if (size == decoded.length)
+					decoded = Arrays.copyOf(decoded, decoded.length * 2);
+				int read = oggInput.read(decoded, size, decoded.length - size);
+				if (read < 0)
+					break;
+				size += read;
+			}
+
+			ByteBuffer data = BufferUtils.createByteBuffer(size);
+			data.put(decoded, 0, size);
+			data.flip();
+			return new PcmSample(channels, rate, data);
+		}
+	}
+}
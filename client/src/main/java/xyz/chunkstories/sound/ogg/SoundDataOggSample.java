@@ -19,12 +19,6 @@ import static org.lwjgl.openal.AL10.alDeleteBuffers;
 import static org.lwjgl.openal.AL10.alGenBuffers;
 import static org.lwjgl.openal.AL10.alGetError;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.nio.ByteBuffer;
-
-import org.lwjgl.BufferUtils;
-
 import xyz.chunkstories.api.content.Asset;
 import xyz.chunkstories.sound.SoundData;
 
@@ -37,34 +31,31 @@ public class SoundDataOggSample extends SoundData {
 	public SoundDataOggSample(Asset asset) {
 		if (asset != null) {
 			try {
-				ByteArrayOutputStream sampleDataOutputStream = new ByteArrayOutputStream();
-				OggInputStream oggInput = new OggInputStream(new DataInputStream(asset.read()));
-				while (!oggInput.atEnd()) {
-					sampleDataOutputStream.write(oggInput.read());
-				}
-				oggInput.close();
-
-				byte[] sampleDataByteArray = sampleDataOutputStream.toByteArray();
+				upload(PcmSample.decodeOgg(asset.read()));
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
-				ByteBuffer sampleDataByteBuffer = BufferUtils.createByteBuffer(sampleDataByteArray.length);
-				sampleDataByteBuffer.put(sampleDataByteArray);
-				sampleDataByteBuffer.flip();
+	/** Uploads an already decoded sample, this has to be called with the OpenAL context around */
+	public SoundDataOggSample(String name, PcmSample sample) {
+		this.name = name;
+		upload(sample);
+	}
 
-				// Compute length in milliseconds based on sample length divided by rate & channels
-				length = sampleDataByteArray.length * 1000L / (oggInput.info.channels * oggInput.getRate());
+	private void upload(PcmSample sample) {
+		// Compute length in milliseconds based on sample length divided by rate & channels
+		length = sample.data.remaining() * 1000L / (sample.channels * sample.rate);
 
-				int format = oggInput.info.channels == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16;
+		int format = sample.channels == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16;
 
-				openAlBufferId = alGenBuffers();
-				alBufferData(openAlBufferId, format, sampleDataByteBuffer, oggInput.getRate());
+		openAlBufferId = alGenBuffers();
+		alBufferData(openAlBufferId, format, sample.data, sample.rate);
 
-				int result;
-				if ((result = alGetError()) != AL_NO_ERROR)
-					System.out.println(getALErrorString(result));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
+		int result;
+		if ((result = alGetError()) != AL_NO_ERROR)
+			System.out.println(getALErrorString(result));
 	}
 
 	public static String getALErrorString(int err) {
@@ -19,6 +19,10 @@ open class ALSoundSource constructor(open val soundData: SoundData, position: Ve
     private val lock = ReentrantLock()
     private var soundStartTime: Long = 0
 
+    /** Set when stopped before it even got to play, like while its sample is still being decoded */
+    var stoppedBeforePlaying = false
+        private set
+
     fun play() {
         openAlSourceId = alGenSources()
 
@@ -41,6 +45,10 @@ open class ALSoundSource constructor(open val soundData: SoundData, position: Ve
         get() = mode != SoundSource.Mode.LOOPED && System.currentTimeMillis() - soundStartTime > soundData.lengthMs
 
     override fun stop() {
+        if (openAlSourceId == 0) {
+            stoppedBeforePlaying = true
+            return
+        }
         alSourceStop(openAlSourceId)
         cleanup()
     }
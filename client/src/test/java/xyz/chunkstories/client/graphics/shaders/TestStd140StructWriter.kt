@@ -0,0 +1,85 @@
+package xyz.chunkstories.client.graphics.shaders
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import xyz.chunkstories.api.graphics.structs.InterfaceBlock
+import xyz.chunkstories.graphics.common.shaders.GLSLDialect
+import xyz.chunkstories.graphics.common.shaders.GLSLType
+import xyz.chunkstories.graphics.common.shaders.compiler.HeadlessShaderCompiler
+import xyz.chunkstories.graphics.common.shaders.compiler.preprocessing.getGlslStruct
+import xyz.chunkstories.graphics.common.util.Std140StructWriter
+import xyz.chunkstories.graphics.common.util.extractInterfaceBlockReflective
+import xyz.chunkstories.util.LogbackSetupHelper
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.reflect.KClass
+
+class TestStd140StructWriter {
+    private val shaderCompiler = HeadlessShaderCompiler(GLSLDialect.VULKAN, javaClass.classLoader, null)
+
+    private fun struct(kClass: KClass<out InterfaceBlock>): GLSLType.JvmStruct = shaderCompiler.getGlslStruct(kClass as KClass<InterfaceBlock>)
+
+    /** Both paths write into a buffer filled with garbage, at an offset, and must leave the exact same bytes behind */
+    private fun compare(instance: InterfaceBlock, struct: GLSLType.JvmStruct, offset: Int) {
+        // mat3 columns are written padded to vec4s, so leave some room past the end of the struct
+        val size = offset + struct.size + 64
+
+        fun buffer() = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder()).apply {
+            for (i in 0 until size)
+                put(i, 0x5A)
+        }
+
+        val reflective = buffer()
+        extractInterfaceBlockReflective(reflective, offset, instance, struct)
+        val compiled = buffer()
+        Std140StructWriter.forStruct(struct).write(compiled, offset, instance)
+
+        assertArrayEquals(ByteArray(size) { reflective.get(it) }, ByteArray(size) { compiled.get(it) })
+    }
+
+    @Test
+    fun testSimpleStructure() {
+        LogbackSetupHelper.setupLoggingForTesting()
+        val struct = struct(TestStructure::class)
+        val instance = TestStructure().apply {
+            floater = 3.25F
+            inter = 42
+            matrix.rotateZ(1.0F)
+            values[2] = 8.0F
+            position.set(1F, 2F, 3F)
+        }
+
+        compare(instance, struct, 0)
+        compare(instance, struct, 96)
+    }
+
+    @Test
+    fun testEveryType() {
+        LogbackSetupHelper.setupLoggingForTesting()
+        val struct = struct(TestEveryTypeStructure::class)
+        val instance = TestEveryTypeStructure()
+        compare(instance, struct, 0)
+        compare(instance, struct, 16 * 7)
+
+        // Change things around, the writer is compiled once but must read the live values
+        instance.scalar = -1F
+        instance.missing = org.joml.Vector4f(9F)
+        instance.bones[2].rotateX(0.7F)
+        instance.nested.inter = -5
+        compare(instance, struct, 0)
+    }
+
+    @Test
+    fun testUnsupportedTypeFailsWhenCompiling() {
+        LogbackSetupHelper.setupLoggingForTesting()
+        val struct = struct(TestDoubleStructure::class)
+        try {
+            Std140StructWriter.forStruct(struct)
+            fail("There is no std140 translation for doubles")
+        } catch (e: Exception) {
+            assertTrue(e.message!!, e.message!!.contains("precise"))
+        }
+    }
+}
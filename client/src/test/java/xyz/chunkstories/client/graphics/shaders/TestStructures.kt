@@ -1,7 +1,6 @@
 package xyz.chunkstories.client.graphics.shaders
 
-import org.joml.Matrix3f
-import org.joml.Vector3f
+import org.joml.*
 import xyz.chunkstories.api.graphics.structs.InterfaceBlock
 
 class TestSubStructure : InterfaceBlock {
@@ -16,4 +15,24 @@ class TestStructure : InterfaceBlock {
     var values = FloatArray(5)
     val inc = arrayOf(TestSubStructure(), TestSubStructure())
     val position = Vector3f()
-}
\ No newline at end of file
+}
+
+class TestEveryTypeStructure : InterfaceBlock {
+    var scalar = 0.25F
+    var counter = 7L
+    var vec2 = Vector2f(1F, 2F)
+    var vec3d = Vector3d(3.5, -4.0, 5.0)
+    var missing: Vector4f? = null
+    var ivec3 = Vector3i(1, -2, 3)
+    var matrix3 = Matrix3f().rotateX(0.5F)
+    var matrix4 = Matrix4f().translate(1F, 2F, 3F).rotateY(0.3F)
+    var bones = Array(4) { Matrix4f().scale(it + 1F) }
+    var ints = intArrayOf(4, 5, 6)
+    var floats = floatArrayOf(0.5F, 1.5F)
+    var nested = TestStructure()
+}
+
+class TestDoubleStructure : InterfaceBlock {
+    var scalar = 0.25F
+    var precise = 1.0
+}
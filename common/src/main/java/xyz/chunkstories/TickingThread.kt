@@ -15,6 +15,7 @@ import xyz.chunkstories.api.plugin.Scheduler
 import xyz.chunkstories.api.util.concurrency.Fence
 import xyz.chunkstories.util.concurrency.SimpleFence
 import xyz.chunkstories.util.concurrency.TrivialFence
+import xyz.chunkstories.util.profiling.TickProfiler
 import xyz.chunkstories.world.WorldImplementation
 import java.util.ArrayList
 import java.util.concurrent.ConcurrentLinkedDeque
@@ -100,7 +101,7 @@ abstract class TickingThread(private val world: WorldImplementation) : Thread()
 
             tick()
 
-            scheduler.runScheduledTasks()
+            schedulerTiming.time { scheduler.runScheduledTasks() }
 
             sync(targetTps)
         }
@@ -193,5 +194,6 @@ abstract class TickingThread(private val world: WorldImplementation) : Thread()
     }
     companion object {
         private val logger = LoggerFactory.getLogger("gameLogic")
+        private val schedulerTiming = TickProfiler.histogram("logic.scheduler")
     }
 }
@@ -6,29 +6,26 @@
 
 package xyz.chunkstories.animation
 
-import java.util.HashMap
-
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
 import xyz.chunkstories.api.content.Content
 import xyz.chunkstories.api.content.Content.AnimationsLibrary
 import xyz.chunkstories.content.GameContentStore
+import java.util.concurrent.ConcurrentHashMap
 
 class AnimationsStore(private val store: GameContentStore) : AnimationsLibrary {
-    private var animations: MutableMap<String, BiovisionAnimation> = HashMap()
+    // Looked up from several reload stages at once
+    private val animations = ConcurrentHashMap<String, BiovisionAnimation>()
 
     override val parent: Content
         get() = store
 
-    private fun loadAnimation(name: String): BiovisionAnimation {
-        val anim = loadBiviosionFile(store.getAsset(name)!!.reader().readText())
-        animations[name] = anim
-        return anim
-    }
+    private fun loadAnimation(name: String): BiovisionAnimation =
+        loadBiviosionFile(store.getAsset(name)!!.reader().readText())
 
     override fun getAnimation(name: String): BiovisionAnimation =
-        animations[name] ?: loadAnimation(name)
+        animations[name] ?: animations.computeIfAbsent(name) { loadAnimation(it) }
 
     override fun reloadAll() {
         animations.clear()
@@ -7,47 +7,116 @@
 package xyz.chunkstories.animation
 
 import org.joml.Matrix4f
+import org.joml.Matrix4fc
+import org.joml.Quaterniond
 import org.joml.Vector3f
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.animation.Animation
-import xyz.chunkstories.api.math.MathUtils.ceil
-import xyz.chunkstories.api.math.MathUtils.floor
 
+/**
+ * A skeletal animation loaded from a .bvh file.
+ *
+ * Poses are evaluated for the whole skeleton at once, parents before children, so every bone costs one multiply instead
+ * of one per ancestor. Evaluated poses are cached by time, quantized to -DanimationPoseSubframes steps per frame, so
+ * every bone query of an entity and every entity at the same point of the animation share the same evaluation.
+ */
 class BiovisionAnimation(val frames: Int, val frameTime: Float, val root: BiovisionBone, val bones: Map<String, BiovisionBone>, val animationData: Array<FloatArray>) : Animation {
+    /** Every bone, parents always before their children */
+    val bonesInOrder: List<BiovisionBone>
+    private val parentIndices: IntArray
+    private val boneIndices: Map<String, Int>
 
-    override fun getBoneHierarchyTransformationMatrix(nameOfEndBone: String, animationTime: Float): Matrix4f {
-        var matrix = Matrix4f()
-        if (frames == 0) {
-            logger
-            return matrix
+    private val offsetMatrices: Array<Matrix4fc>
+
+    private val poseCache = arrayOfNulls<Pose>(poseCacheSize)
+
+    private inner class Pose {
+        var key = -1L
+        val hierarchy = Array(bonesInOrder.size) { Matrix4f() }
+        val withOffset = Array(bonesInOrder.size) { Matrix4f() }
+
+        // Scratch space for evaluating it
+        val local = Matrix4f()
+        val lower = Quaterniond()
+        val upper = Quaterniond()
+    }
+
+    init {
+        val ordered = mutableListOf<BiovisionBone>()
+        fun visit(bone: BiovisionBone) {
+            ordered.add(bone)
+            bone.children.forEach { visit(it) }
         }
+        visit(root)
+        bonesInOrder = ordered
+        boneIndices = ordered.withIndex().associate { (i, bone) -> bone.name to i }
+        parentIndices = IntArray(ordered.size) { i -> ordered[i].parent?.let { boneIndices[it.name] } ?: -1 }
+
+        offsetMatrices = Array(ordered.size) { i -> computeOffsetMatrix(ordered[i]) }
+    }
 
+    /** -1 for bones this animation doesn't have, which don't move */
+    private fun boneIndex(boneName: String) = boneIndices[boneName] ?: -1
+
+    /** Runs block with the pose for that time, evaluating it if it isn't cached yet */
+    private inline fun <T> withPose(animationTime: Float, block: (Pose) -> T): T {
         val frame = animationTime / 1000.0f / frameTime
+        val quantizedFrame = Math.floorMod(Math.round(frame.toDouble() * poseSubframes), frames.toLong() * poseSubframes)
+
+        val slot = (quantizedFrame % poseCacheSize).toInt()
+        val pose = poseCache[slot] ?: synchronized(poseCache) {
+            poseCache[slot] ?: Pose().also { poseCache[slot] = it }
+        }
 
-        val frameUpperBound = ceil(frame)
-        val frameLowerBound = floor(frame)
+        synchronized(pose) {
+            if (pose.key != quantizedFrame) {
+                val frameLower = (quantizedFrame / poseSubframes).toInt()
+                val interp = (quantizedFrame % poseSubframes).toFloat() / poseSubframes
+                // Don't try to interpolate if we're on an exact frame
+                val frameUpper = if (interp == 0.0f) frameLower else (frameLower + 1) % frames
+
+                evaluatePose(pose, frameLower, frameUpper, interp)
+                pose.key = quantizedFrame
+            }
+            return block(pose)
+        }
+    }
 
-        var interp = frame % 1.0f
-        // Don't try to interpolate if we're on an exact frame
-        if (frameLowerBound == frameUpperBound)
-            interp = 0.0f
+    private fun evaluatePose(pose: Pose, frameLower: Int, frameUpper: Int, interp: Float) {
+        for (i in bonesInOrder.indices) {
+            val local = bonesInOrder[i].getTransformationMatrixInterpolatedInternal(frameLower, frameUpper, interp, pose.lower, pose.upper, pose.local)
+            val parent = parentIndices[i]
+            if (parent == -1)
+                pose.hierarchy[i].set(local)
+            else
+                pose.hierarchy[parent].mul(local, pose.hierarchy[i])
 
-        val frameLower = frameLowerBound.toInt() % frames
-        val frameUpper = frameUpperBound.toInt() % frames
+            pose.hierarchy[i].mul(offsetMatrices[i], pose.withOffset[i])
+        }
+    }
 
-        matrix = getBone(nameOfEndBone)!!.getTransformationMatrixInterpolatedRecursive(frameLower, frameUpper, interp)
+    override fun getBoneHierarchyTransformationMatrix(nameOfEndBone: String, animationTime: Float): Matrix4f {
+        if (frames == 0)
+            return Matrix4f()
 
-        return matrix
+        val index = boneIndex(nameOfEndBone)
+        if (index == -1)
+            return Matrix4f()
+
+        return withPose(animationTime) { Matrix4f(it.hierarchy[index]) }
     }
 
     override fun getOffsetMatrix(boneName: String): Matrix4f {
+        val index = boneIndex(boneName)
+        return if (index == -1) Matrix4f() else Matrix4f(offsetMatrices[index])
+    }
+
+    private fun computeOffsetMatrix(bone: BiovisionBone): Matrix4f {
         val offsetMatrix = Matrix4f()
         val offsetTotal = Vector3f()
 
-        val bone = getBone(boneName)
-
         // Accumulate the transformation offset
-        var currentBone = bone
+        var currentBone: BiovisionBone? = bone
         while (currentBone != null) {
             // Coordinates systems n stuff
             offsetTotal.x = offsetTotal.x() + currentBone.offset.y()
@@ -66,19 +135,29 @@ class BiovisionAnimation(val frames: Int, val frameTime: Float, val root: Biovis
     }
 
     override fun getBoneHierarchyTransformationMatrixWithOffset(boneName: String, animationTime: Float): Matrix4f {
-        var matrix: Matrix4f? = null
         if (frames == 0) {
             println("Invalid bone : " + boneName + "in animation" + this)
             return Matrix4f()
         }
 
-        // Get the normal bone transformation
-        matrix = getBoneHierarchyTransformationMatrix(boneName, animationTime)
+        val index = boneIndex(boneName)
+        if (index == -1)
+            return Matrix4f()
+
+        return withPose(animationTime) { Matrix4f(it.withOffset[index]) }
+    }
 
-        // Apply the offset matrix
-        matrix.mul(getOffsetMatrix(boneName))
+    /** Copies the whole pose, with offsets, in dest (indexed like bonesInOrder) in one go */
+    fun getPoseWithOffsets(animationTime: Float, dest: Array<Matrix4f>) {
+        if (frames == 0) {
+            dest.forEach { it.identity() }
+            return
+        }
 
-        return matrix
+        withPose(animationTime) { pose ->
+            for (i in bonesInOrder.indices)
+                dest[i].set(pose.withOffset[i])
+        }
     }
 
     override fun getBone(boneName: String): BiovisionBone? {
@@ -97,36 +176,40 @@ class BiovisionAnimation(val frames: Int, val frameTime: Float, val root: Biovis
     companion object {
         val logger = LoggerFactory.getLogger("animations")
 
-        fun transformBlenderBVHExportToChunkStoriesWorldSpace(matrix: Matrix4f): Matrix4f {
-            val blender2ingame = Matrix4f()
-            // Cs & Blender conventions are both right-handed, ez way to map them is
-            // Blender | Chunk Stories
-            // +X      | +Z
-            // +Y      | +X
-            // +Z      | +Y
-            blender2ingame.m00(0.0f)
-            blender2ingame.m11(0.0f)
-            blender2ingame.m22(0.0f)
-
-            blender2ingame.m02(1.0f)
-            blender2ingame.m10(1.0f)
-            blender2ingame.m21(1.0f)
-
-            // Rotate the matrix first to apply the transformation in blender space
-            blender2ingame.mul(matrix, matrix)
+        private val poseSubframes = Integer.getInteger("animationPoseSubframes", 8).toLong()
+        private const val poseCacheSize = 32
+
+        // Cs & Blender conventions are both right-handed, ez way to map them is
+        // Blender | Chunk Stories
+        // +X      | +Z
+        // +Y      | +X
+        // +Z      | +Y
+        private val blender2ingame: Matrix4fc = Matrix4f().apply {
+            m00(0.0f)
+            m11(0.0f)
+            m22(0.0f)
+
+            m02(1.0f)
+            m10(1.0f)
+            m21(1.0f)
+        }
 
-            //Matrix4f out = new Matrix4f(blender2ingame);
-            //out.invert();
-            val out = Matrix4f()
-            out.m00(0.0f)
-            out.m11(0.0f)
-            out.m22(0.0f)
+        // The inverse of the above
+        private val ingame2blender: Matrix4fc = Matrix4f().apply {
+            m00(0.0f)
+            m11(0.0f)
+            m22(0.0f)
 
-            out.m20(1.0f)
-            out.m01(1.0f)
-            out.m12(1.0f)
+            m20(1.0f)
+            m01(1.0f)
+            m12(1.0f)
+        }
 
-            matrix.mul(out, matrix)
+        /** Transforms matrix in place, and returns it */
+        fun transformBlenderBVHExportToChunkStoriesWorldSpace(matrix: Matrix4f): Matrix4f {
+            // Rotate the matrix first to apply the transformation in blender space
+            blender2ingame.mul(matrix, matrix)
+            matrix.mul(ingame2blender, matrix)
 
             return matrix
         }
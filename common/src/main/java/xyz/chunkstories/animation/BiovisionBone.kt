@@ -13,10 +13,9 @@ import xyz.chunkstories.api.animation.Animation
 import xyz.chunkstories.api.math.MathUtils
 import xyz.chunkstories.api.math.MathUtils.ceil
 import xyz.chunkstories.api.math.MathUtils.floor
-import xyz.chunkstories.api.math.Quaternion4d
 import java.lang.Math
 
-class BiovisionBone(override val name: String, val channels: Int, private val animationDataOffset: Int, val offset: Vector3fc, val children: List<BiovisionBone>) : Animation.SkeletonBone {
+class BiovisionBone(override val name: String, val channels: Int, internal val animationDataOffset: Int, val offset: Vector3fc, val children: List<BiovisionBone>) : Animation.SkeletonBone {
     lateinit var animation: BiovisionAnimation
     override var parent: BiovisionBone? = null
 
@@ -55,63 +54,41 @@ class BiovisionBone(override val name: String, val channels: Int, private val an
         return getTransformationMatrixInterpolatedInternal(frameLower, frameUpper, interp)
     }
 
-    private fun getTransformationMatrixInterpolatedInternal(frameLower: Int, frameUpper: Int, t: Float): Matrix4f {
+    internal fun getTransformationMatrixInterpolatedInternal(frameLower: Int, frameUpper: Int, t: Float): Matrix4f =
+            getTransformationMatrixInterpolatedInternal(frameLower, frameUpper, t, Quaterniond(), Quaterniond(), Matrix4f())
+
+    /** Same as above, but writes in dest and uses the two quaternions given as scratch space, so it doesn't allocate anything */
+    internal fun getTransformationMatrixInterpolatedInternal(frameLower: Int, frameUpper: Int, t: Float, lower: Quaterniond, upper: Quaterniond, dest: Matrix4f): Matrix4f {
         val animationData = animation.animationData
 
         // Read rotation data from where it is
-        val rotXLower: Float
-        val rotYLower: Float
-        val rotZLower: Float
-        if (channels == 6) {
-            rotXLower = toRad(animationData[frameLower][animationDataOffset + 3])
-            rotYLower = toRad(animationData[frameLower][animationDataOffset + 4])
-            rotZLower = toRad(animationData[frameLower][animationDataOffset + 5])
-        } else {
-            rotXLower = toRad(animationData[frameLower][animationDataOffset + 0])
-            rotYLower = toRad(animationData[frameLower][animationDataOffset + 1])
-            rotZLower = toRad(animationData[frameLower][animationDataOffset + 2])
-        }
+        val rotationOffset = if (channels == 6) animationDataOffset + 3 else animationDataOffset
+        lower.rotationX(toRad(animationData[frameLower][rotationOffset + 0]).toDouble())
+                .rotateY(toRad(animationData[frameLower][rotationOffset + 1]).toDouble())
+                .rotateZ(toRad(animationData[frameLower][rotationOffset + 2]).toDouble())
 
-        val rotXUpper: Float
-        val rotYUpper: Float
-        val rotZUpper: Float
-        if (channels == 6) {
-            rotXUpper = toRad(animationData[frameUpper][animationDataOffset + 3])
-            rotYUpper = toRad(animationData[frameUpper][animationDataOffset + 4])
-            rotZUpper = toRad(animationData[frameUpper][animationDataOffset + 5])
-        } else {
-            rotXUpper = toRad(animationData[frameUpper][animationDataOffset + 0])
-            rotYUpper = toRad(animationData[frameUpper][animationDataOffset + 1])
-            rotZUpper = toRad(animationData[frameUpper][animationDataOffset + 2])
+        // Don't try to interpolate if we're on an exact frame
+        if (frameUpper != frameLower || t != 0.0f) {
+            upper.rotationX(toRad(animationData[frameUpper][rotationOffset + 0]).toDouble())
+                    .rotateY(toRad(animationData[frameUpper][rotationOffset + 1]).toDouble())
+                    .rotateZ(toRad(animationData[frameUpper][rotationOffset + 2]).toDouble())
+            lower.slerp(upper, t.toDouble())
         }
 
-        val quaternionXLower = Quaternion4d.fromAxisAngle(Vector3d(1.0, 0.0, 0.0), rotXLower.toDouble())
-        val quaternionYLower = Quaternion4d.fromAxisAngle(Vector3d(0.0, 1.0, 0.0), rotYLower.toDouble())
-        val quaternionZLower = Quaternion4d.fromAxisAngle(Vector3d(0.0, 0.0, 1.0), rotZLower.toDouble())
-        val totalLower = quaternionXLower.mult(quaternionYLower).mult(quaternionZLower)
-
-        val quaternionXUpper = Quaternion4d.fromAxisAngle(Vector3d(1.0, 0.0, 0.0), rotXUpper.toDouble())
-        val quaternionYUpper = Quaternion4d.fromAxisAngle(Vector3d(0.0, 1.0, 0.0), rotYUpper.toDouble())
-        val quaternionZUpper = Quaternion4d.fromAxisAngle(Vector3d(0.0, 0.0, 1.0), rotZUpper.toDouble())
-        val totalUpper = quaternionXUpper.mult(quaternionYUpper).mult(quaternionZUpper)
-
-        // TODO use Quat4f ?
-        val total = Quaternion4d.slerp(totalLower, totalUpper, t.toDouble())
-
-        val matrix = total.toMatrix4f()
+        dest.set(lower)
 
         // Apply transformations
         if (channels == 6) {
-            matrix.m30(matrix.m30() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 0], animationData[frameUpper][animationDataOffset + 0], t))
-            matrix.m31(matrix.m31() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 1], animationData[frameUpper][animationDataOffset + 1], t))
-            matrix.m32(matrix.m32() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 2], animationData[frameUpper][animationDataOffset + 2], t))
+            dest.m30(dest.m30() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 0], animationData[frameUpper][animationDataOffset + 0], t))
+            dest.m31(dest.m31() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 1], animationData[frameUpper][animationDataOffset + 1], t))
+            dest.m32(dest.m32() + MathUtils.mixf(animationData[frameLower][animationDataOffset + 2], animationData[frameUpper][animationDataOffset + 2], t))
         } else {
-            matrix.m30(matrix.m30() + offset.x())
-            matrix.m31(matrix.m31() + offset.y())
-            matrix.m32(matrix.m32() + offset.z())
+            dest.m30(dest.m30() + offset.x())
+            dest.m31(dest.m31() + offset.y())
+            dest.m32(dest.m32() + offset.z())
         }// TODO check on that, I'm not sure if you should apply both when possible
 
-        return BiovisionAnimation.transformBlenderBVHExportToChunkStoriesWorldSpace(matrix)
+        return BiovisionAnimation.transformBlenderBVHExportToChunkStoriesWorldSpace(dest)
     }
 
     private fun toRad(f: Float): Float {
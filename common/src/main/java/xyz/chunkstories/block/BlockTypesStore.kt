@@ -6,7 +6,6 @@
 
 package xyz.chunkstories.block
 
-import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.block.BlockTexture
@@ -18,7 +17,6 @@ import xyz.chunkstories.api.content.json.asDict
 import xyz.chunkstories.api.block.BlockType
 import xyz.chunkstories.api.content.json.asString
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 import java.util.*
 
 class BlockTypesStore(override val content: GameContentStore) : Content.BlockTypes {
@@ -59,7 +57,7 @@ class BlockTypesStore(override val content: GameContentStore) : Content.BlockTyp
         fun readDefinitions(a: Asset) {
             logger.debug("Reading blocks definitions in : $a")
 
-            val json = JsonValue.readHjson(a.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = content.readDefinitionsFile(a).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["blocks"].asDict ?: throw Exception("This json doesn't contain an 'blocks' dict")
 
             for (element in dict.elements) {
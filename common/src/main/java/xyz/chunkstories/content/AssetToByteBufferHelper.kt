@@ -6,28 +6,21 @@
 
 package xyz.chunkstories.content
 
-import java.io.ByteArrayOutputStream
 import java.io.IOException
-import java.io.InputStream
 import java.nio.ByteBuffer
 
 import xyz.chunkstories.api.content.Asset
+import xyz.chunkstories.content.mods.ModZipAsset
 
 object AssetToByteBufferHelper {
 
+    /** Zip assets that are stored uncompressed come back as read-only slices of the mapped zip, without any copy */
     fun loadIntoByteBuffer(asset: Asset): ByteBuffer {
         try {
-            val baos = ByteArrayOutputStream()
+            if (asset is ModZipAsset)
+                return asset.readAsByteBuffer()
 
-            val `is` = asset.read()
-            val buffer = ByteArray(4096)
-            while (`is`.available() > 0) {
-                val r = `is`.read(buffer)
-                baos.write(buffer, 0, r)
-            }
-            `is`.close()
-
-            val bytes = baos.toByteArray()
+            val bytes = asset.read().use { it.readBytes() }
 
             val bb = ByteBuffer.allocateDirect(bytes.size)
             bb.put(bytes)
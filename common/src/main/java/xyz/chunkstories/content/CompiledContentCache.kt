@@ -0,0 +1,174 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.content.json.Json
+import xyz.chunkstories.api.content.json.asBoolean
+import xyz.chunkstories.api.content.json.asDouble
+import xyz.chunkstories.util.CompactJson.readVarInt
+import xyz.chunkstories.util.CompactJson.writeVarInt
+import java.io.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Keeps the parsed form of the .hjson definitions files in a compact binary file, so unchanged files don't need to go
+ * through the hjson parser again. Entries are only used when the fingerprint the mods manager gives for the asset matches.
+ * Disable with -DcompiledContentCache=false
+ */
+class CompiledContentCache(private val file: File) {
+    private class Entry(val fingerprint: Long, val json: Json)
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    @Volatile
+    private var dirty = false
+
+    fun load() {
+        entries.clear()
+        dirty = false
+        if (!file.exists())
+            return
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { dis ->
+                if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                    logger.info("Ignoring compiled content cache from another version")
+                    return
+                }
+                val count = dis.readInt()
+                for (i in 0 until count) {
+                    val name = dis.readUTF()
+                    val fingerprint = dis.readLong()
+                    entries[name] = Entry(fingerprint, readJson(dis))
+                }
+            }
+        } catch (e: IOException) {
+            logger.warn("Discarding unreadable compiled content cache $file: ${e.message}")
+            entries.clear()
+        }
+    }
+
+    fun get(assetName: String, fingerprint: Long): Json? {
+        val entry = entries[assetName] ?: return null
+        return if (entry.fingerprint == fingerprint) entry.json else null
+    }
+
+    fun put(assetName: String, fingerprint: Long, json: Json) {
+        entries[assetName] = Entry(fingerprint, json)
+        dirty = true
+    }
+
+    /** Forgets about assets that no longer exist and writes the cache back if anything changed */
+    fun save(liveAssets: Set<String>) {
+        if (entries.keys.retainAll(liveAssets))
+            dirty = true
+        if (!dirty)
+            return
+
+        try {
+            file.parentFile.mkdirs()
+            val temp = File(file.path + ".tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { dos ->
+                dos.writeInt(MAGIC)
+                dos.writeInt(VERSION)
+                val snapshot = entries.entries.toList()
+                dos.writeInt(snapshot.size)
+                for ((name, entry) in snapshot) {
+                    dos.writeUTF(name)
+                    dos.writeLong(entry.fingerprint)
+                    writeJson(dos, entry.json)
+                }
+            }
+            file.delete()
+            temp.renameTo(file)
+            dirty = false
+        } catch (e: IOException) {
+            logger.warn("Couldn't write compiled content cache $file: ${e.message}")
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger("content.compiledCache")
+
+        private const val MAGIC = 0x43534343 // "CSCC"
+        private const val VERSION = 1
+
+        private const val TAG_NULL = 0
+        private const val TAG_FALSE = 1
+        private const val TAG_TRUE = 2
+        private const val TAG_NUMBER = 3
+        private const val TAG_TEXT = 4
+        private const val TAG_ARRAY = 5
+        private const val TAG_DICT = 6
+
+        val enabled: Boolean
+            get() = System.getProperty("compiledContentCache", "true") != "false"
+
+        fun writeJson(dos: DataOutputStream, json: Json) {
+            when (json) {
+                is Json.Dict -> {
+                    dos.writeByte(TAG_DICT)
+                    writeVarInt(dos, json.elements.size)
+                    for ((key, value) in json.elements) {
+                        writeString(dos, key)
+                        writeJson(dos, value)
+                    }
+                }
+                is Json.Array -> {
+                    dos.writeByte(TAG_ARRAY)
+                    writeVarInt(dos, json.elements.size)
+                    for (element in json.elements)
+                        writeJson(dos, element)
+                }
+                is Json.Value.Text -> {
+                    dos.writeByte(TAG_TEXT)
+                    writeString(dos, json.text)
+                }
+                is Json.Value.Number -> {
+                    dos.writeByte(TAG_NUMBER)
+                    dos.writeDouble(json.asDouble!!)
+                }
+                is Json.Value.Bool -> dos.writeByte(if (json.asBoolean == true) TAG_TRUE else TAG_FALSE)
+                else -> dos.writeByte(TAG_NULL)
+            }
+        }
+
+        fun readJson(dis: DataInputStream): Json = when (val tag = dis.readUnsignedByte()) {
+            TAG_NULL -> Json.Value.Null
+            TAG_FALSE -> Json.Value.Bool(false)
+            TAG_TRUE -> Json.Value.Bool(true)
+            TAG_NUMBER -> Json.Value.Number(dis.readDouble())
+            TAG_TEXT -> Json.Value.Text(readString(dis))
+            TAG_ARRAY -> {
+                val count = readVarInt(dis)
+                Json.Array(List(count) { readJson(dis) })
+            }
+            TAG_DICT -> {
+                val count = readVarInt(dis)
+                val map = LinkedHashMap<String, Json>(count * 2)
+                for (i in 0 until count)
+                    map[readString(dis)] = readJson(dis)
+                Json.Dict(map)
+            }
+            else -> throw IOException("Unknown json tag $tag")
+        }
+
+        /** Unlike writeUTF these aren't limited to 64KB */
+        private fun writeString(dos: DataOutputStream, string: String) {
+            val bytes = string.toByteArray(Charsets.UTF_8)
+            writeVarInt(dos, bytes.size)
+            dos.write(bytes)
+        }
+
+        private fun readString(dis: DataInputStream): String {
+            val bytes = ByteArray(readVarInt(dis))
+            dis.readFully(bytes)
+            return String(bytes, Charsets.UTF_8)
+        }
+    }
+}
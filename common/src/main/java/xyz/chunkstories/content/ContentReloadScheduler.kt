@@ -0,0 +1,128 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content
+
+import org.slf4j.Logger
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.task.WorkerThreadPool
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs the reload of the content stores on a worker pool, each store starting as soon as the ones it depends on are done.
+ * Stages flagged onCallingThread (ie because they touch the graphics backend) are run by the thread calling run().
+ */
+class ContentReloadScheduler(private val logger: Logger) {
+    private val stages = LinkedHashMap<String, Stage>()
+
+    private inner class Stage(val name: String, val dependencies: List<String>, val onCallingThread: Boolean, val action: () -> Unit) {
+        val dependents = mutableListOf<Stage>()
+        val remainingDependencies = AtomicInteger(dependencies.size)
+
+        @Volatile
+        var failed = false
+        var durationNanos = 0L
+    }
+
+    private inner class StageTask(val stage: Stage) : Task() {
+        override fun task(taskExecutor: TaskExecutor): Boolean {
+            execute(stage)
+            return true
+        }
+    }
+
+    private val callingThreadQueue = LinkedBlockingQueue<Stage>()
+    private lateinit var finished: CountDownLatch
+    private lateinit var pool: WorkerThreadPool
+
+    @Volatile
+    private var firstFailure: Throwable? = null
+
+    fun stage(name: String, vararg dependsOn: String, onCallingThread: Boolean = false, action: () -> Unit) {
+        if (stages.containsKey(name))
+            throw Exception("Duplicate reload stage $name")
+        stages[name] = Stage(name, dependsOn.toList(), onCallingThread, action)
+    }
+
+    fun run(pool: WorkerThreadPool) {
+        this.pool = pool
+        for (stage in stages.values) {
+            for (dependency in stage.dependencies) {
+                val dependencyStage = stages[dependency] ?: throw Exception("Reload stage ${stage.name} depends on unknown stage $dependency")
+                dependencyStage.dependents.add(stage)
+            }
+        }
+        checkForCycles()
+
+        val startTime = System.nanoTime()
+        finished = CountDownLatch(stages.size)
+        for (stage in stages.values) {
+            if (stage.dependencies.isEmpty())
+                dispatch(stage)
+        }
+
+        while (finished.count > 0) {
+            val stage = callingThreadQueue.poll(1, TimeUnit.MILLISECONDS) ?: continue
+            execute(stage)
+        }
+
+        val timings = stages.values.joinToString(", ") { "${it.name} ${it.durationNanos / 1000000}ms" + if (it.failed) " (failed)" else "" }
+        logger.info("Reloaded content in ${(System.nanoTime() - startTime) / 1000000}ms: $timings")
+
+        firstFailure?.let { throw it }
+    }
+
+    private fun dispatch(stage: Stage) {
+        if (stage.onCallingThread)
+            callingThreadQueue.add(stage)
+        else
+            pool.scheduleTask(StageTask(stage))
+    }
+
+    private fun execute(stage: Stage) {
+        val skip = stage.dependencies.any { stages[it]!!.failed }
+        if (skip) {
+            stage.failed = true
+        } else {
+            val startTime = System.nanoTime()
+            try {
+                stage.action()
+            } catch (e: Throwable) {
+                logger.error("Reload stage ${stage.name} failed: $e")
+                stage.failed = true
+                if (firstFailure == null)
+                    firstFailure = e
+            }
+            stage.durationNanos = System.nanoTime() - startTime
+        }
+
+        for (dependent in stage.dependents) {
+            if (dependent.remainingDependencies.decrementAndGet() == 0)
+                dispatch(dependent)
+        }
+        finished.countDown()
+    }
+
+    private fun checkForCycles() {
+        val visited = mutableSetOf<Stage>()
+        val onPath = mutableSetOf<Stage>()
+
+        fun visit(stage: Stage) {
+            if (stage in onPath)
+                throw Exception("Reload stages have a dependency cycle through ${stage.name}")
+            if (!visited.add(stage))
+                return
+            onPath.add(stage)
+            stage.dependents.forEach { visit(it) }
+            onPath.remove(stage)
+        }
+        stages.values.forEach { visit(it) }
+    }
+}
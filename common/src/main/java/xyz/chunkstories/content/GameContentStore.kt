@@ -6,13 +6,17 @@
 
 package xyz.chunkstories.content
 
+import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.EngineImplemI
 import xyz.chunkstories.animation.AnimationsStore
 import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.content.Content
+import xyz.chunkstories.api.content.json.Json
 import xyz.chunkstories.api.exceptions.content.mods.NotAllModsLoadedException
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
 import xyz.chunkstories.content.mods.ModsManagerImplementation
 import xyz.chunkstories.crafting.RecipesStore
 import xyz.chunkstories.entity.EntityDefinitionsStore
@@ -23,9 +27,12 @@ import xyz.chunkstories.mesh.MeshStore
 import xyz.chunkstories.net.PacketsStore
 import xyz.chunkstories.particle.ParticlesTypesStore
 import xyz.chunkstories.block.BlockTypesStore
+import xyz.chunkstories.task.WorkerThreadPool
+import xyz.chunkstories.util.concurrency.CompoundFence
 import xyz.chunkstories.world.generator.WorldGeneratorsStore
 
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 class GameContentStore(val engine: EngineImplemI, coreContentLocation: File, requestedMods: List<String>) : Content {
     override val modsManager: ModsManagerImplementation = ModsManagerImplementation(coreContentLocation, requestedMods)
@@ -44,6 +51,14 @@ class GameContentStore(val engine: EngineImplemI, coreContentLocation: File, req
 
     private val localizationManager: LocalizationManagerImplementation = LocalizationManagerImplementation(this, "en")
 
+    private val definitionsFiles = ConcurrentHashMap<String, Json>()
+    private val compiledContentCache = CompiledContentCache(File("./cache/compiled_content/definitions.bin"))
+
+    /** Bumped by every reload(), for whoever keeps things derived from the content around */
+    @Volatile
+    var generation = 0
+        private set
+
     override fun reload() {
         try {
             modsManager.loadEnabledMods()
@@ -51,22 +66,84 @@ class GameContentStore(val engine: EngineImplemI, coreContentLocation: File, req
             e.printStackTrace()
         }
 
-        lootTables.reload()
-        items.reload()
-        blockTypes.reload()
-        recipes.reload()
-        entities.reload()
-        packets.reload()
-        particles.reload()
-        generators.reload()
+        // The first reload happens before the engine spins its own workers, so we bring a temporary pool for that one
+        val enginePool = enginePool()
+        val pool = enginePool ?: WorkerThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors())).also { it.start() }
+        try {
+            parseDefinitionsFiles(pool)
+
+            val scheduler = ContentReloadScheduler(logger)
+            // Those two only drop what they had cached, but anything built from definitions may look models and
+            // animations up right away, so they go first
+            scheduler.stage("models") { models.reloadAll() }
+            scheduler.stage("animations") { animationsLibrary.reloadAll() }
+            scheduler.stage("items", "models", "animations") { items.reload() }
+            // Block textures may live in the graphics backend, which only the main thread may touch
+            scheduler.stage("blockTypes", "items", "models", "animations", onCallingThread = true) { blockTypes.reload() }
+            scheduler.stage("lootTables", "items", "blockTypes") { lootTables.reload() }
+            scheduler.stage("recipes", "items", "blockTypes") { recipes.reload() }
+            scheduler.stage("entities", "items", "blockTypes", "lootTables", "models", "animations") { entities.reload() }
+            scheduler.stage("packets") { packets.reload() }
+            scheduler.stage("particles", "models", "animations") { particles.reload() }
+            scheduler.stage("generators", "blockTypes") { generators.reload() }
+            scheduler.stage("localization") { localizationManager.reload() }
+            scheduler.run(pool)
+        } finally {
+            definitionsFiles.clear()
+            if (enginePool == null)
+                pool.cleanup()
+        }
 
-        animationsLibrary.reloadAll()
+        modsManager.saveHotAssetsList()
+        generation++
+    }
 
-        models.reloadAll()
+    /** The engine's worker pool, once it has one up and running. Engines without workers (tests, tools) may throw there */
+    private fun enginePool(): WorkerThreadPool? = runCatching { engine.tasks as? WorkerThreadPool }.getOrNull()
+
+    /** Parses every .hjson definitions file on the pool, so the stores only have to pick up the results */
+    private fun parseDefinitionsFiles(pool: WorkerThreadPool) {
+        definitionsFiles.clear()
+
+        val compiledCache = if (CompiledContentCache.enabled) compiledContentCache.also { it.load() } else null
+        val definitionsAssets = modsManager.getAllAssetsByExtension(".hjson")
+
+        val fence = CompoundFence()
+        for (asset in definitionsAssets) {
+            val fingerprint = modsManager.assetFingerprint(asset)
+            if (fingerprint != null) {
+                val compiled = compiledCache?.get(asset.name, fingerprint)
+                if (compiled != null) {
+                    definitionsFiles[asset.name] = compiled
+                    continue
+                }
+            }
+
+            val task = object : Task() {
+                override fun task(taskExecutor: TaskExecutor): Boolean {
+                    try {
+                        val json = JsonValue.readHjson(asset.reader()).eat()
+                        definitionsFiles[asset.name] = json
+                        if (fingerprint != null)
+                            compiledCache?.put(asset.name, fingerprint, json)
+                    } catch (e: Exception) {
+                        // The store reading it will parse it again and report the problem
+                    }
+                    return true
+                }
+            }
+            fence.add(task)
+            pool.scheduleTask(task)
+        }
+        fence.traverse()
 
-        localizationManager.reload()
+        compiledCache?.save(definitionsAssets.map { it.name }.toSet())
+        logger.debug("Parsed ${fence.size} of ${definitionsAssets.size} definitions files, the rest came from the compiled content cache")
     }
 
+    /** Returns the parsed contents of a definitions file, using the result of the parallel pre-parsing if there is one */
+    fun readDefinitionsFile(asset: Asset): Json = definitionsFiles[asset.name] ?: JsonValue.readHjson(asset.reader()).eat()
+
     override fun getAsset(assetName: String): Asset? {
         return modsManager.getAsset(assetName)
     }
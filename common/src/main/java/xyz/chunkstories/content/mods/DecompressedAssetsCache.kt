@@ -0,0 +1,119 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content.mods
+
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.util.*
+import java.util.zip.DataFormatException
+import java.util.zip.Inflater
+
+/**
+ * Bounded LRU of inflated zip assets, so repeated reads of the same compressed asset don't pay for decompression again.
+ * Also remembers which assets were asked for, so the next start can prefetch them ahead of the content stores.
+ */
+class DecompressedAssetsCache(private val budgetBytes: Long) {
+    private val entries = LinkedHashMap<ModZipAsset, ByteArray>(256, 0.75f, true)
+    private var usedBytes = 0L
+
+    private val requested: MutableSet<String> = Collections.synchronizedSet(LinkedHashSet<String>())
+
+    /** Returns the inflated bytes of that asset, from the cache if we have them */
+    fun obtain(asset: ModZipAsset): ByteArray {
+        requested.add(asset.name)
+
+        synchronized(entries) {
+            val cached = entries[asset]
+            if (cached != null)
+                return cached
+        }
+
+        val inflated = inflate(asset)
+
+        if (inflated.size <= budgetBytes) {
+            synchronized(entries) {
+                if (entries.put(asset, inflated) == null)
+                    usedBytes += inflated.size
+
+                // Evict the least recently used entries until we're back under budget
+                val iterator = entries.entries.iterator()
+                while (usedBytes > budgetBytes && iterator.hasNext()) {
+                    val eldest = iterator.next()
+                    if (eldest.key === asset)
+                        continue
+                    usedBytes -= eldest.value.size
+                    iterator.remove()
+                }
+            }
+        }
+
+        return inflated
+    }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+            usedBytes = 0
+        }
+    }
+
+    /** Inflates those assets in parallel, ahead of them being actually needed */
+    fun prefetch(assets: Collection<ModZipAsset>) {
+        val startTime = System.nanoTime()
+        assets.parallelStream().forEach {
+            try {
+                obtain(it)
+            } catch (e: IOException) {
+                logger.warn("Failed to prefetch ${it.name}: ${e.message}")
+            }
+        }
+        logger.debug("Prefetched ${assets.size} assets in ${(System.nanoTime() - startTime) / 1000000}ms")
+    }
+
+    fun readHotList(file: File): List<String> = if (file.exists()) file.readLines().filter { it.isNotBlank() } else emptyList()
+
+    fun writeHotList(file: File) {
+        try {
+            file.parentFile.mkdirs()
+            file.writeText(synchronized(requested) { requested.joinToString("\n") })
+        } catch (e: IOException) {
+            logger.warn("Couldn't save hot assets list: ${e.message}")
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger("content.assetsCache")
+
+        fun inflate(asset: ModZipAsset): ByteArray {
+            val entry = asset.entry
+            val compressed = ByteArray(entry.compressedSize + 1) // Raw inflaters want an extra dummy byte
+            val slice = asset.source.slice(entry.dataOffset, entry.compressedSize)
+            slice.get(compressed, 0, entry.compressedSize)
+
+            val inflater = Inflater(true)
+            try {
+                inflater.setInput(compressed)
+                val output = ByteArray(entry.uncompressedSize)
+                var written = 0
+                while (written < output.size) {
+                    val n = inflater.inflate(output, written, output.size - written)
+                    if (n == 0 && (inflater.finished() || inflater.needsInput()))
+                        break
+                    written += n
+                }
+                if (written != output.size)
+                    throw IOException("Truncated zip entry ${entry.name}")
+                return output
+            } catch (e: DataFormatException) {
+                throw IOException("Corrupted zip entry ${entry.name}", e)
+            } finally {
+                inflater.end()
+            }
+        }
+    }
+}
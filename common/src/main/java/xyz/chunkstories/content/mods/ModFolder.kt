@@ -52,6 +52,11 @@ constructor(internal val folder: File) : ModImplementation() {
         return assetsMap[name]
     }
 
+    override fun assetSizeAndDate(asset: Asset): Pair<Long, Long>? {
+        val file = (asset as ModFolderAsset).file
+        return Pair(file.length(), file.lastModified())
+    }
+
     override fun close() {}
 
     override val assets: Sequence<Asset>
@@ -0,0 +1,86 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content.mods
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.math.byteArrayAsHexString
+import java.io.*
+import java.security.MessageDigest
+
+/** The md5 of one asset's content, along with the size and date of what was hashed */
+class AssetHashEntry(val name: String, val size: Long, val lastModified: Long, val md5: String)
+
+/**
+ * Remembers the per-asset hashes of each mod (./cache/modhashes/, one manifest per mod location), so computing a mod's
+ * hash only rereads the assets whose size or date changed since the last start.
+ */
+object ModHashManifest {
+    private val logger = LoggerFactory.getLogger("content.modHashes")
+
+    private const val MANIFEST_MAGIC = 0x43534d48 // "CSMH"
+    private const val MANIFEST_VERSION = 1
+
+    var manifestFolder = File("./cache/modhashes/")
+
+    /** Can be turned off with -DmodHashManifest=false, to rehash everything */
+    var enabled = System.getProperty("modHashManifest", "true") == "true"
+
+    fun manifestFileFor(modLocation: String): File {
+        val pathHash = byteArrayAsHexString(MessageDigest.getInstance("MD5").digest(modLocation.toByteArray()))
+        return File(manifestFolder, "$pathHash.mf")
+    }
+
+    fun read(manifestFile: File): Map<String, AssetHashEntry> {
+        if (!enabled || !manifestFile.exists())
+            return emptyMap()
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(manifestFile))).use { dis ->
+                if (dis.readInt() != MANIFEST_MAGIC || dis.readInt() != MANIFEST_VERSION)
+                    return emptyMap()
+
+                val count = dis.readInt()
+                val entries = HashMap<String, AssetHashEntry>(count * 2)
+                for (i in 0 until count) {
+                    val entry = AssetHashEntry(dis.readUTF(), dis.readLong(), dis.readLong(), dis.readUTF())
+                    entries[entry.name] = entry
+                }
+                return entries
+            }
+        } catch (e: IOException) {
+            logger.warn("Discarding unreadable mod hashes manifest $manifestFile")
+            return emptyMap()
+        }
+    }
+
+    fun write(manifestFile: File, entries: Collection<AssetHashEntry>) {
+        if (!enabled)
+            return
+
+        try {
+            manifestFile.parentFile.mkdirs()
+            val temp = File(manifestFile.path + ".tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { dos ->
+                dos.writeInt(MANIFEST_MAGIC)
+                dos.writeInt(MANIFEST_VERSION)
+
+                dos.writeInt(entries.size)
+                for (entry in entries) {
+                    dos.writeUTF(entry.name)
+                    dos.writeLong(entry.size)
+                    dos.writeLong(entry.lastModified)
+                    dos.writeUTF(entry.md5)
+                }
+            }
+            manifestFile.delete()
+            if (!temp.renameTo(manifestFile))
+                temp.delete()
+        } catch (e: IOException) {
+            logger.warn("Couldn't write mod hashes manifest $manifestFile: ${e.message}")
+        }
+    }
+}
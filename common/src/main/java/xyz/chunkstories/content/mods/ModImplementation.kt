@@ -10,6 +10,8 @@ import java.io.IOException
 import java.security.DigestInputStream
 import java.security.MessageDigest
 import java.util.ArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.Collectors
 
 import org.slf4j.Logger
 
@@ -34,8 +36,13 @@ internal constructor() : Mod {
 
     abstract override fun getAssetByName(name: String): Asset?
 
+    /** Size and date of the file behind that asset, if we can tell: assets with one get their hash remembered */
+    protected open fun assetSizeAndDate(asset: Asset): Pair<Long, Long>? = null
+
     @Synchronized
     private fun computeMD5Hash(): String {
+        val startTime = System.nanoTime()
+
         // Makes a sorted list of the names of all the assets
         val assetsSorted = ArrayList<String>()
         for (asset in assets) {
@@ -43,40 +50,63 @@ internal constructor() : Mod {
         }
 
         assetsSorted.sort()
-        //assetsSorted.sort(Comparator { o1, o2 -> o1.compareTo(o2) })
 
         // Concatenate their names...
-        var completeNamesString = ""
+        val completeNamesString = StringBuilder()
         for (s in assetsSorted)
-            completeNamesString += "$s;"
+            completeNamesString.append(s).append(';')
 
         // MD5 it
-        val hashedNames = byteArrayAsHexString(md.digest(completeNamesString.toByteArray()))
-
-        // Iterate over each asset, hash it then add that to the sb
-        val sb = StringBuilder()
-        for (s in assetsSorted) {
-            val a = this.getAssetByName(s)
-            val buffer = ByteArray(4096)
-            val eater = DigestInputStream(a!!.read(), md)
-            try {
-                while (eater.read(buffer) != -1)
-                ;
-                eater.close()
-            } catch (e: IOException) {
-
+        val md = digests.get()
+        val hashedNames = byteArrayAsHexString(md.digest(completeNamesString.toString().toByteArray()))
+
+        // Hash each asset, in parallel, unless it didn't change since the last time
+        val manifestFile = ModHashManifest.manifestFileFor(loadString)
+        val known = ModHashManifest.read(manifestFile)
+        val rehashed = AtomicInteger()
+        val entries = assetsSorted.parallelStream().map { name ->
+            val asset = getAssetByName(name)!!
+            val sizeAndDate = assetSizeAndDate(asset)
+            val previous = known[name]
+            if (sizeAndDate != null && previous != null && previous.size == sizeAndDate.first && previous.lastModified == sizeAndDate.second)
+                previous
+            else {
+                rehashed.incrementAndGet()
+                AssetHashEntry(name, sizeAndDate?.first ?: -1L, sizeAndDate?.second ?: -1L, hashAsset(asset))
             }
+        }.collect(Collectors.toList())
 
-            // Append
-            sb.append(byteArrayAsHexString(md.digest()))
-        }
+        if (rehashed.get() > 0 || known.size != entries.size)
+            ModHashManifest.write(manifestFile, entries.filter { it.size != -1L })
+
+        // Append the hash of each asset, in order
+        val sb = StringBuilder()
+        for (entry in entries)
+            sb.append(entry.md5)
         // Append hash of list of names
         sb.append(hashedNames)
 
+        logger?.debug("Hashed ${rehashed.get()} out of ${entries.size} assets in ${(System.nanoTime() - startTime) / 1000000}ms")
+
         // Hash the whole stuff again
         return byteArrayAsHexString(md.digest(sb.toString().toByteArray()))
     }
 
+    private fun hashAsset(asset: Asset): String {
+        val md = digests.get()
+        md.reset()
+        val buffer = ByteArray(16 * 1024)
+        try {
+            DigestInputStream(asset.read(), md).use { eater ->
+                while (eater.read(buffer) != -1)
+                ;
+            }
+        } catch (e: IOException) {
+
+        }
+        return byteArrayAsHexString(md.digest())
+    }
+
     abstract fun close()
 
     fun logger(): Logger? {
@@ -84,6 +114,6 @@ internal constructor() : Mod {
     }
 
     companion object {
-        val md: MessageDigest = MessageDigest.getInstance("MD5")
+        private val digests = ThreadLocal.withInitial { MessageDigest.getInstance("MD5") }
     }
 }
@@ -8,6 +8,10 @@ package xyz.chunkstories.content.mods
 
 import java.io.File
 import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 import java.util.HashMap
 import java.util.zip.ZipFile
 
@@ -16,11 +20,20 @@ import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.exceptions.content.mods.ModLoadFailureException
 
+/**
+ * A mod packaged as a zip file. The file is memory-mapped and indexed once (see ZipAssetIndex): stored entries are
+ * served as slices of the mapping, deflated ones are inflated through the shared DecompressedAssetsCache.
+ */
 class ModZip @Throws(ModLoadFailureException::class)
-constructor(val zipFileLocation: File) : ModImplementation() {
-    internal val zipFile: ZipFile
+constructor(val zipFileLocation: File, internal val assetsCache: DecompressedAssetsCache = DecompressedAssetsCache(0)) : ModImplementation() {
+    private val channel: FileChannel
+    private val mapped: MappedByteBuffer
     private val assetsMap: MutableMap<String, ModZipAsset> = HashMap()
 
+    /** Only opened for entries our own index can't deal with */
+    private val zipFileDelegate = lazy { ZipFile(zipFileLocation) }
+    internal val zipFile: ZipFile by zipFileDelegate
+
     override val loadString: String
         get() = zipFileLocation.absolutePath
 
@@ -30,14 +43,24 @@ constructor(val zipFileLocation: File) : ModImplementation() {
 
     init {
         try {
-            this.zipFile = ZipFile(zipFileLocation)
-
-            val e = zipFile.entries()
-            while (e.hasMoreElements()) {
-                val entry = e.nextElement()
-                if (!entry.isDirectory) {
-                    val assetName = entry.name
-                    assetsMap[assetName] = ModZipAsset(this, assetName, entry)
+            channel = FileChannel.open(zipFileLocation.toPath(), StandardOpenOption.READ)
+            if (channel.size() > Int.MAX_VALUE)
+                throw IOException("Zip file too large to be mapped")
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+
+            val entries = ZipAssetIndex.loadOrBuild(zipFileLocation, mapped)
+            if (entries != null) {
+                for (entry in entries)
+                    assetsMap[entry.name] = ModZipAsset(this, entry.name, entry)
+            } else {
+                // Layouts we don't parse (zip64) go through java.util.zip entirely
+                val e = zipFile.entries()
+                while (e.hasMoreElements()) {
+                    val entry = e.nextElement()
+                    if (!entry.isDirectory) {
+                        val assetName = entry.name
+                        assetsMap[assetName] = ModZipAsset(this, assetName, ZipIndexEntry(assetName, entry.method, entry.crc.toInt(), -1, -1, -1))
+                    }
                 }
             }
 
@@ -49,13 +72,26 @@ constructor(val zipFileLocation: File) : ModImplementation() {
         logger = LoggerFactory.getLogger("mod." + this.modInfo.internalName)
     }
 
+    /** Zero-copy, read-only view of a region of the zip */
+    internal fun slice(offset: Long, length: Int): ByteBuffer {
+        val view = mapped.duplicate()
+        view.position(offset.toInt())
+        view.limit(offset.toInt() + length)
+        return view.slice().asReadOnlyBuffer()
+    }
+
     override fun getAssetByName(name: String): Asset? {
         return assetsMap[name]
     }
 
+    /** Any change to the zip invalidates all of its assets */
+    override fun assetSizeAndDate(asset: Asset): Pair<Long, Long>? = Pair(zipFileLocation.length(), zipFileLocation.lastModified())
+
     override fun close() {
         try {
-            zipFile.close()
+            channel.close()
+            if (zipFileDelegate.isInitialized())
+                zipFile.close()
         } catch (e: IOException) {
             e.printStackTrace()
         }
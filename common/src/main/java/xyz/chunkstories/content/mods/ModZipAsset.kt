@@ -1,16 +1,21 @@
 package xyz.chunkstories.content.mods
 
 import xyz.chunkstories.api.content.Asset
-import xyz.chunkstories.api.content.mods.Mod
+import xyz.chunkstories.util.ByteBufferInputStream
+import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.io.InputStream
-import java.util.zip.ZipEntry
+import java.nio.ByteBuffer
 
-class ModZipAsset(override val source: ModZip, override val name: String, internal var entry: ZipEntry) : Asset {
+class ModZipAsset(override val source: ModZip, override val name: String, internal val entry: ZipIndexEntry) : Asset {
 
     override fun read(): InputStream {
         try {
-            return source.zipFile.getInputStream(entry)
+            return when {
+                entry.isStored -> ByteBufferInputStream(source.slice(entry.dataOffset, entry.uncompressedSize))
+                entry.isDeflated -> ByteArrayInputStream(source.assetsCache.obtain(this))
+                else -> source.zipFile.getInputStream(source.zipFile.getEntry(name))
+            }
         } catch (e: IOException) {
             source.logger()!!.warn("Failed to read asset : " + name + " from " + source)
             e.printStackTrace()
@@ -19,7 +24,19 @@ class ModZipAsset(override val source: ModZip, override val name: String, intern
 
     }
 
+    /** Stored entries come back as a read-only slice of the mapped zip, the rest as a fresh direct buffer */
+    fun readAsByteBuffer(): ByteBuffer {
+        if (entry.isStored)
+            return source.slice(entry.dataOffset, entry.uncompressedSize)
+
+        val bytes = if (entry.isDeflated) source.assetsCache.obtain(this) else read().use { it.readBytes() }
+        val bb = ByteBuffer.allocateDirect(bytes.size)
+        bb.put(bytes)
+        bb.flip()
+        return bb
+    }
+
     override fun toString(): String {
         return "[Asset: " + name + " from mod " + source + "]"
     }
-}
\ No newline at end of file
+}
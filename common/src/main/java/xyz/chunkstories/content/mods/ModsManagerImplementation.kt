@@ -39,6 +39,10 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
 
     private var cacheFolder: File? = null
 
+    /** Inflated zip assets, shared by all the zip mods we load */
+    val assetsCache = DecompressedAssetsCache(java.lang.Long.getLong("assetsCacheSize", 64L * 1024 * 1024))
+    private val hotAssetsList = File("./cache/assetsindex/hot_assets.txt")
+
     //TODO move, probably
     val pluginsWithinEnabledMods = ArrayList<PluginInformation>()
 
@@ -98,10 +102,10 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
                     logger.debug("Looking for hashed mod $hash (url = $url)")
 
                     // Look for the mod zip in local fs first.
-                    val zippedMod = File(serverMods.absolutePath + "/" + hash + ".zip")
+                    val zippedMod = serverModFile(hash)
                     if (zippedMod.exists()) {
                         // Awesome we found it !
-                        mod = ModZip(zippedMod)
+                        mod = ModZip(zippedMod, assetsCache)
                     } else if (url != null) {
                         // TODO download and handle files from server
                     } else {
@@ -119,14 +123,14 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
                         // Then look for a .zip file in the same directory
                         var zippedMod = File(modsDir.absolutePath + "/" + name + ".zip")
                         if (zippedMod.exists()) {
-                            mod = ModZip(zippedMod)
+                            mod = ModZip(zippedMod, assetsCache)
                             logger.debug("Found mod in zipfile : $zippedMod")
                         } else {
                             // Finally just look for it in the global os path
                             if (name.endsWith(".zip")) {
                                 zippedMod = File(name)
                                 if (zippedMod.exists()) {
-                                    mod = ModZip(zippedMod)
+                                    mod = ModZip(zippedMod, assetsCache)
                                     logger.debug("Found mod in global zipfile : $zippedMod")
                                 }
                             } else {
@@ -161,6 +165,7 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
     private fun buildModsFileSystem() {
         avaibleAssets.clear()
         avaibleForeignClasses.clear()
+        assetsCache.clear()
 
         pluginsWithinEnabledMods.clear()
 
@@ -180,7 +185,7 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
             if (baseContentLocation.isDirectory)
                 baseContent = ModFolder(baseContentLocation)
             else
-                baseContent = ModZip(baseContentLocation)
+                baseContent = ModZip(baseContentLocation, assetsCache)
         } catch (e: ModLoadFailureException) {
             logger().error("Fatal : failed to load in the base assets folder. Exception : {}", e)
         }
@@ -202,6 +207,20 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
         allAssetsCached = Collections.unmodifiableCollection(allUniqueEntries.map { it.topInstance })
 
         finalClassLoader = childClassLoader
+
+        prefetchHotAssets()
+    }
+
+    /** Inflates, in parallel, the compressed assets the previous content load asked for */
+    private fun prefetchHotAssets() {
+        val hotAssets = assetsCache.readHotList(hotAssetsList).mapNotNull { avaibleAssets[it]?.topInstance as? ModZipAsset }
+        if (hotAssets.isNotEmpty())
+            assetsCache.prefetch(hotAssets)
+    }
+
+    /** Remembers which compressed assets got used, for prefetching them on the next start */
+    fun saveHotAssetsList() {
+        assetsCache.writeHotList(hotAssetsList)
     }
 
     private fun loadModAssets(mod: ModImplementation, parentClassLoader: ClassLoader): ClassLoader {
@@ -297,6 +316,13 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
 
     }
 
+    /** Cheap identity of an asset's contents: the stored CRC for zipped assets, size and timestamp for loose files */
+    fun assetFingerprint(asset: Asset): Long? = when (asset) {
+        is ModZipAsset -> (asset.entry.crc.toLong() shl 32) or (asset.entry.uncompressedSize.toLong() and 0xFFFFFFFFL)
+        is ModFolderAsset -> asset.file.length() * 31 + asset.file.lastModified()
+        else -> null
+    }
+
     val allUniqueEntries: Collection<AssetHierarchy>
         get() = allEntriesCached
 
@@ -397,6 +423,9 @@ constructor(private val baseContentLocation: File, var requestedMods: List<Strin
     companion object {
 
         private val logger = LoggerFactory.getLogger("content.modsManager")
+
+        /** Mods servers ask for are kept by their md5 hash, whoever already has the file needn't download it again */
+        fun serverModFile(md5: String) = File("./servermods/$md5.zip")
     }
 
 }
@@ -0,0 +1,179 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content.mods
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.math.byteArrayAsHexString
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.security.MessageDigest
+
+/** Where an entry's bytes live inside a zip file. dataOffset is -1 when the entry can't be served from the mapped file (zip64 & co) */
+class ZipIndexEntry(val name: String, val method: Int, val crc: Int, val compressedSize: Int, val uncompressedSize: Int, val dataOffset: Long) {
+    val isStored: Boolean
+        get() = method == METHOD_STORED && dataOffset >= 0
+
+    val isDeflated: Boolean
+        get() = method == METHOD_DEFLATED && dataOffset >= 0
+
+    companion object {
+        const val METHOD_STORED = 0
+        const val METHOD_DEFLATED = 8
+    }
+}
+
+/**
+ * Reads the central directory of zip mods straight from their mapped bytes, and keeps the result in a persistent index
+ * (./cache/assetsindex/) so unchanged zips don't have to be walked again on the next start.
+ */
+object ZipAssetIndex {
+    private val logger = LoggerFactory.getLogger("content.assetsIndex")
+
+    private const val INDEX_MAGIC = 0x43534149 // "CSAI"
+    private const val INDEX_VERSION = 2
+
+    private const val EOCD_SIGNATURE = 0x06054b50
+    private const val CENTRAL_SIGNATURE = 0x02014b50
+    private const val LOCAL_SIGNATURE = 0x04034b50
+
+    var indexFolder = File("./cache/assetsindex/")
+
+    /** Returns the file entries (no directories) of the zip, or null if it uses a layout we don't parse ourselves */
+    fun loadOrBuild(zipFile: File, mapped: ByteBuffer): List<ZipIndexEntry>? {
+        val indexFile = indexFileFor(zipFile)
+
+        val cached = readIndex(indexFile, zipFile)
+        if (cached != null)
+            return cached
+
+        val built = parseCentralDirectory(mapped) ?: return null
+        writeIndex(indexFile, zipFile, built)
+        return built
+    }
+
+    fun parseCentralDirectory(mapped: ByteBuffer): List<ZipIndexEntry>? {
+        val buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        val size = buffer.limit()
+
+        // The end of central directory record sits at the end of the file, followed by an optional comment
+        var eocd = -1
+        var i = size - 22
+        val lowest = Math.max(0, size - 22 - 0xFFFF)
+        while (i >= lowest) {
+            if (buffer.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i
+                break
+            }
+            i--
+        }
+        if (eocd == -1)
+            return null
+
+        val entriesCount = buffer.getShort(eocd + 10).toInt() and 0xFFFF
+        val centralDirectoryOffset = buffer.getInt(eocd + 16).toLong() and 0xFFFFFFFFL
+        if (entriesCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL)
+            return null
+
+        val entries = ArrayList<ZipIndexEntry>(entriesCount)
+        var position = centralDirectoryOffset.toInt()
+        for (e in 0 until entriesCount) {
+            if (position + 46 > size || buffer.getInt(position) != CENTRAL_SIGNATURE)
+                return null
+
+            val flags = buffer.getShort(position + 8).toInt() and 0xFFFF
+            val method = buffer.getShort(position + 10).toInt() and 0xFFFF
+            val crc = buffer.getInt(position + 16)
+            val compressedSize = buffer.getInt(position + 20).toLong() and 0xFFFFFFFFL
+            val uncompressedSize = buffer.getInt(position + 24).toLong() and 0xFFFFFFFFL
+            val nameLength = buffer.getShort(position + 28).toInt() and 0xFFFF
+            val extraLength = buffer.getShort(position + 30).toInt() and 0xFFFF
+            val commentLength = buffer.getShort(position + 32).toInt() and 0xFFFF
+            val localHeaderOffset = buffer.getInt(position + 42).toLong() and 0xFFFFFFFFL
+
+            val nameBytes = ByteArray(nameLength)
+            buffer.position(position + 46)
+            buffer.get(nameBytes)
+            val name = String(nameBytes, Charsets.UTF_8)
+
+            position += 46 + nameLength + extraLength + commentLength
+
+            if (name.endsWith("/"))
+                continue
+
+            // Zip64 sizes and encrypted entries are left to java.util.zip
+            if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL || (flags and 1) != 0) {
+                entries.add(ZipIndexEntry(name, method, crc, -1, -1, -1))
+                continue
+            }
+
+            val local = localHeaderOffset.toInt()
+            if (local + 30 > size || buffer.getInt(local) != LOCAL_SIGNATURE)
+                return null
+            val localNameLength = buffer.getShort(local + 26).toInt() and 0xFFFF
+            val localExtraLength = buffer.getShort(local + 28).toInt() and 0xFFFF
+            val dataOffset = localHeaderOffset + 30 + localNameLength + localExtraLength
+
+            entries.add(ZipIndexEntry(name, method, crc, compressedSize.toInt(), uncompressedSize.toInt(), dataOffset))
+        }
+
+        return entries
+    }
+
+    private fun indexFileFor(zipFile: File): File {
+        val pathHash = byteArrayAsHexString(MessageDigest.getInstance("MD5").digest(zipFile.absolutePath.toByteArray()))
+        return File(indexFolder, "$pathHash.idx")
+    }
+
+    private fun readIndex(indexFile: File, zipFile: File): List<ZipIndexEntry>? {
+        if (!indexFile.exists())
+            return null
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(indexFile))).use { dis ->
+                if (dis.readInt() != INDEX_MAGIC || dis.readInt() != INDEX_VERSION)
+                    return null
+                if (dis.readLong() != zipFile.length() || dis.readLong() != zipFile.lastModified())
+                    return null
+
+                val count = dis.readInt()
+                val entries = ArrayList<ZipIndexEntry>(count)
+                for (i in 0 until count) {
+                    entries.add(ZipIndexEntry(dis.readUTF(), dis.readInt(), dis.readInt(), dis.readInt(), dis.readInt(), dis.readLong()))
+                }
+                return entries
+            }
+        } catch (e: IOException) {
+            logger.warn("Discarding unreadable asset index $indexFile")
+            return null
+        }
+    }
+
+    private fun writeIndex(indexFile: File, zipFile: File, entries: List<ZipIndexEntry>) {
+        try {
+            indexFile.parentFile.mkdirs()
+            DataOutputStream(BufferedOutputStream(FileOutputStream(indexFile))).use { dos ->
+                dos.writeInt(INDEX_MAGIC)
+                dos.writeInt(INDEX_VERSION)
+                dos.writeLong(zipFile.length())
+                dos.writeLong(zipFile.lastModified())
+
+                dos.writeInt(entries.size)
+                for (entry in entries) {
+                    dos.writeUTF(entry.name)
+                    dos.writeInt(entry.method)
+                    dos.writeInt(entry.crc)
+                    dos.writeInt(entry.compressedSize)
+                    dos.writeInt(entry.uncompressedSize)
+                    dos.writeLong(entry.dataOffset)
+                }
+            }
+        } catch (e: IOException) {
+            logger.warn("Couldn't write asset index $indexFile: ${e.message}")
+        }
+    }
+}
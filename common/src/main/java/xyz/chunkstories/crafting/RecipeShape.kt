@@ -0,0 +1,51 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.crafting
+
+import xyz.chunkstories.api.item.ItemDefinition
+
+/**
+ * A recipe pattern or the contents of a crafting grid, trimmed down to the box around its non-empty cells, so a pattern
+ * and a grid holding it anywhere come out equal. Used as the key of the recipes index.
+ */
+class RecipeShape(val width: Int, val height: Int, private val cells: Array<ItemDefinition?>) {
+    private val hash = 31 * (31 * width + height) + cells.contentHashCode()
+
+    operator fun get(x: Int, y: Int) = cells[y * width + x]
+
+    fun transposed() = RecipeShape(height, width, Array(cells.size) { i -> this[i / height, i % height] })
+
+    override fun hashCode() = hash
+
+    override fun equals(other: Any?) = other is RecipeShape && other.hash == hash && other.width == width && other.height == height && other.cells.contentEquals(cells)
+
+    companion object {
+        /** Trims rows x columns cells, empty ones being null. Returns null if they're all empty */
+        inline fun trim(rows: Int, columns: Int, cell: (Int, Int) -> ItemDefinition?): RecipeShape? {
+            var minX = columns
+            var minY = rows
+            var maxX = -1
+            var maxY = -1
+            for (y in 0 until rows) {
+                for (x in 0 until columns) {
+                    if (cell(y, x) != null) {
+                        if (x < minX) minX = x
+                        if (x > maxX) maxX = x
+                        if (y < minY) minY = y
+                        if (y > maxY) maxY = y
+                    }
+                }
+            }
+            if (maxX == -1)
+                return null
+
+            val width = maxX - minX + 1
+            val height = maxY - minY + 1
+            return RecipeShape(width, height, Array(width * height) { i -> cell(minY + i / width, minX + i % width) })
+        }
+    }
+}
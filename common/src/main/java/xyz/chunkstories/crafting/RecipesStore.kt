@@ -1,6 +1,5 @@
 package xyz.chunkstories.crafting
 
-import org.hjson.JsonValue
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.content.Content
@@ -8,31 +7,117 @@ import xyz.chunkstories.api.content.json.*
 import xyz.chunkstories.api.crafting.PatternedRecipe
 import xyz.chunkstories.api.crafting.Recipe
 import xyz.chunkstories.api.gui.inventory.InventorySlot
+import xyz.chunkstories.api.item.ItemDefinition
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 
+/**
+ * Recipes are indexed by their trimmed pattern (see RecipeShape) when loaded, so finding the recipe for a crafting grid
+ * is a hash lookup instead of asking every recipe in turn. Patterns are indexed under both orientations, as crafting
+ * grids don't tell which of their dimensions is which. Candidates still get the final word through canCraftUsing(), and
+ * recipes we can't index (anything but patterns) are scanned as before. When several recipes match, the first loaded
+ * still wins.
+ */
 class RecipesStore(val store: GameContentStore) : Content.Recipes {
 
     override val all = mutableListOf<Recipe>()
 
     val logger = LoggerFactory.getLogger("content.items")
 
+    private class IndexedRecipe(val order: Int, val recipe: Recipe)
+
+    private val byShape = HashMap<RecipeShape, MutableList<IndexedRecipe>>()
+    private val unindexed = mutableListOf<IndexedRecipe>()
+    /** How many of all have been sorted into the index, anything added to all directly gets scanned */
+    private var indexedCount = 0
+
     override fun getRecipeForInventorySlots(craftingAreaSlots: Array<Array<InventorySlot.FakeSlot>>): Recipe? {
-        for(recipe in all) {
-            if(recipe.canCraftUsing(craftingAreaSlots))
-                return recipe
+        if (!indexedLookup) {
+            for (recipe in all) {
+                if (recipe.canCraftUsing(craftingAreaSlots))
+                    return recipe
+            }
+            return null
+        }
+
+        var columns = 0
+        for (row in craftingAreaSlots)
+            columns = Math.max(columns, row.size)
+        val shape = RecipeShape.trim(craftingAreaSlots.size, columns) { i, j -> craftingAreaSlots[i].getOrNull(j)?.visibleContents?.first?.definition }
+        return findRecipe(shape) { it.canCraftUsing(craftingAreaSlots) }
+    }
+
+    /** Finds the first recipe for that trimmed grid canCraft accepts */
+    fun findRecipe(shape: RecipeShape?, canCraft: (Recipe) -> Boolean): Recipe? {
+        var found: IndexedRecipe? = null
+        if (shape != null) {
+            val candidates = byShape[shape]
+            if (candidates != null)
+                found = candidates.firstOrNull { canCraft(it.recipe) }
+        }
+
+        for (candidate in unindexed) {
+            if (found != null && candidate.order > found.order)
+                break
+            if (canCraft(candidate.recipe)) {
+                found = candidate
+                break
+            }
+        }
+
+        if (found != null)
+            return found.recipe
+
+        for (i in indexedCount until all.size) {
+            if (canCraft(all[i]))
+                return all[i]
         }
         return null
     }
 
+    /** Adds a recipe made of that pattern (pattern[y][x], null for empty cells) */
+    fun addPatternedRecipe(pattern: Array<Array<ItemDefinition?>>, result: Pair<ItemDefinition, Int>): Recipe {
+        val recipe = PatternedRecipe(pattern, result)
+        val shape = RecipeShape.trim(pattern.size, pattern.map { it.size }.max() ?: 0) { y, x -> pattern[y].getOrNull(x) }
+        add(recipe, shape)
+        return recipe
+    }
+
+    private fun add(recipe: Recipe, shape: RecipeShape?) {
+        if (indexedCount != all.size)
+            reindex()
+
+        val indexed = IndexedRecipe(all.size, recipe)
+        all += recipe
+        indexedCount = all.size
+
+        if (shape == null) {
+            unindexed += indexed
+            return
+        }
+        byShape.getOrPut(shape) { mutableListOf() } += indexed
+        val transposed = shape.transposed()
+        if (transposed != shape)
+            byShape.getOrPut(transposed) { mutableListOf() } += indexed
+    }
+
+    /** Recipes that made it into all without us, can't be indexed by shape */
+    private fun reindex() {
+        for (i in indexedCount until all.size)
+            unindexed += IndexedRecipe(i, all[i])
+        indexedCount = all.size
+    }
+
     override fun reload() {
         all.clear()
+        byShape.clear()
+        unindexed.clear()
+        indexedCount = 0
 
         fun loadRecipes(asset: Asset) {
             logger.debug("Reading recipes in :$asset")
 
             //val gson = Gson()
-            val json = JsonValue.readHjson(asset.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = store.readDefinitionsFile(asset).asDict ?: throw Exception("This json isn't a dict")
             val array = json["recipes"].asArray ?: throw Exception("This json doesn't contain an 'recipes' array")
 
             for (recipeJson in array.elements) {
@@ -58,8 +143,7 @@ class RecipesStore(val store: GameContentStore) : Content.Recipes {
                         val resolvedPattern = Array(patternHeight) { y ->
                             Array(patternWidth) { x -> patternLines[y].toCharArray().getOrNull(x)?.let { ingredientsMap[it.toString()] } }
                         }
-                        val recipe = PatternedRecipe(resolvedPattern, resolvedResult)
-                        all += recipe
+                        val recipe = addPatternedRecipe(resolvedPattern, resolvedResult)
                         logger.info("Successfully loaded recipe $recipe")
                     } else {
                         TODO("Implement recipes with no pattern and a list of ingredients instead")
@@ -73,5 +157,11 @@ class RecipesStore(val store: GameContentStore) : Content.Recipes {
         for (asset in store.modsManager.allAssets.filter { it.name.startsWith("recipes/") && it.name.endsWith(".hjson") }) {
             loadRecipes(asset)
         }
+        logger.debug("Indexed ${all.size} recipes under ${byShape.size} shapes")
+    }
+
+    companion object {
+        /** Can be turned off with -DindexedRecipes=false, to compare */
+        var indexedLookup = System.getProperty("indexedRecipes", "true") == "true"
     }
 }
\ No newline at end of file
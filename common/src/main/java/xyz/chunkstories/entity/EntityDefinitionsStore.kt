@@ -7,7 +7,6 @@
 package xyz.chunkstories.entity
 
 import com.google.gson.Gson
-import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
@@ -15,7 +14,6 @@ import xyz.chunkstories.api.content.Content.EntityDefinitions
 import xyz.chunkstories.api.content.json.asDict
 import xyz.chunkstories.api.entity.EntityDefinition
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 import java.util.*
 
 class EntityDefinitionsStore(override val parent: GameContentStore) : EntityDefinitions {
@@ -29,7 +27,7 @@ class EntityDefinitionsStore(override val parent: GameContentStore) : EntityDefi
         fun readDefinitions(a: Asset) {
             logger.debug("Reading entities definitions in : $a")
 
-            val json = JsonValue.readHjson(a.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = parent.readDefinitionsFile(a).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["entities"].asDict ?: throw Exception("This json doesn't contain an 'entities' dict")
 
             for (element in dict.elements) {
@@ -7,12 +7,17 @@
 package xyz.chunkstories.entity
 
 import org.slf4j.LoggerFactory
-import xyz.chunkstories.api.content.json.stringSerialize
 import xyz.chunkstories.api.content.json.toJson
 import xyz.chunkstories.api.entity.Entity
 import xyz.chunkstories.api.entity.EntitySerialization
 import xyz.chunkstories.api.world.World
+import xyz.chunkstories.util.CompactJson
+import java.io.BufferedOutputStream
+import java.io.ByteArrayInputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
 import java.io.File
+import java.nio.ByteBuffer
 
 object EntityFileSerialization {
     fun readEntityFromDisk(file: File, world: World): Entity? {
@@ -20,8 +25,12 @@ object EntityFileSerialization {
             return null
 
         try {
-            val contents = file.readText()
-            val entity = EntitySerialization.deserializeEntity(world, contents.toJson())
+            val contents = file.readBytes()
+            val json = if (contents.size >= 4 && ByteBuffer.wrap(contents).int == MAGIC)
+                CompactJson.read(DataInputStream(ByteArrayInputStream(contents, 4, contents.size - 4))).single()
+            else
+                String(contents, Charsets.UTF_8).toJson() // Entity files used to be plain json
+            val entity = EntitySerialization.deserializeEntity(world, json)
             return entity
         } catch (e: Exception) {
             logger.warn("Failed to load entity from $file ($e)")
@@ -34,7 +43,10 @@ object EntityFileSerialization {
             file.parentFile.mkdirs()
 
             val json = EntitySerialization.serializeEntity(entity)
-            file.writeText(json.stringSerialize())
+            DataOutputStream(BufferedOutputStream(file.outputStream())).use { dos ->
+                dos.writeInt(MAGIC)
+                CompactJson.write(dos, listOf(json))
+            }
 
             logger.info("Wrote serialized entity to $file")
         } catch (e: Exception) {
@@ -42,5 +54,7 @@ object EntityFileSerialization {
         }
     }
 
+    private const val MAGIC = 0x43534546 // "CSEF"
+
     private val logger = LoggerFactory.getLogger("world.serialization.entity")
 }
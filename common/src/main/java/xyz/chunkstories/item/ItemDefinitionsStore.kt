@@ -6,7 +6,6 @@
 
 package xyz.chunkstories.item
 
-import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
@@ -15,7 +14,6 @@ import xyz.chunkstories.api.content.json.asDict
 import xyz.chunkstories.api.content.mods.ModsManager
 import xyz.chunkstories.api.item.ItemDefinition
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 import java.util.*
 
 class ItemDefinitionsStore(override val parent: GameContentStore) : ItemsDefinitions {
@@ -31,7 +29,7 @@ class ItemDefinitionsStore(override val parent: GameContentStore) : ItemsDefinit
         fun readDefinitions(asset: Asset) {
             logger.debug("Reading items definitions in :$asset")
 
-            val json = JsonValue.readHjson(asset.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = parent.readDefinitionsFile(asset).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["items"].asDict ?: throw Exception("This json doesn't contain an 'items' dict")
 
             for (element in dict.elements) {
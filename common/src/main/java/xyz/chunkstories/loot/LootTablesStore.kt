@@ -1,6 +1,5 @@
 package xyz.chunkstories.loot
 
-import org.hjson.JsonValue
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.content.Content
@@ -8,7 +7,6 @@ import xyz.chunkstories.api.content.json.asDict
 import xyz.chunkstories.api.loot.LootTable
 import xyz.chunkstories.api.loot.makeLootTableFromJson
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 
 class LootTablesStore(val store: GameContentStore) : Content.LootTables {
     val logger = LoggerFactory.getLogger("content.loot")
@@ -21,7 +19,7 @@ class LootTablesStore(val store: GameContentStore) : Content.LootTables {
         fun loadLootTables(asset: Asset) {
             logger.debug("Reading loot tables in :$asset")
 
-            val json = JsonValue.readHjson(asset.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = store.readDefinitionsFile(asset).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["lootTables"].asDict ?: throw Exception("This json doesn't contain an 'lootTables' dict")
 
             for (element in dict.elements) {
@@ -8,6 +8,7 @@ package xyz.chunkstories.mesh;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
+import java.util.Collection;
 
 import assimp.IOStream;
 import assimp.IOSystem;
@@ -22,6 +23,9 @@ public class AssetIOSystem implements IOSystem {
 
 	final Content content;
 
+	/** When set, receives the name of every asset opened, so the callers know what a mesh was built from */
+	Collection<String> openedAssets = null;
+
 	public AssetIOSystem(Content content) {
 		this.content = content;
 	}
@@ -39,6 +43,8 @@ public class AssetIOSystem implements IOSystem {
 	@Override
 	public IOStream open(String arg0) {
 		Asset asset = content.getAsset(arg0);
+		if (asset != null && openedAssets != null)
+			openedAssets.add(asset.getName());
 		return new AssetIOStream(asset);
 	}
 
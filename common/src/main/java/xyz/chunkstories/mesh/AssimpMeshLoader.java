@@ -31,12 +31,14 @@ public class AssimpMeshLoader {
     final MeshStore store;
 
     Importer im = new Importer();
+    final AssetIOSystem ioSystem;
 
     public AssimpMeshLoader(MeshStore meshStore) {
         store = meshStore;
 
         assimp.SettingsKt.setASSIMP_LOAD_TEXTURES(false);
-        im.setIoHandler(new AssetIOSystem(store.parent()));
+        ioSystem = new AssetIOSystem(store.parent());
+        im.setIoHandler(ioSystem);
     }
 
     class VertexBoneWeights {
@@ -49,13 +51,20 @@ public class AssimpMeshLoader {
     ReentrantLock lock = new ReentrantLock();
 
     public Model load(Asset mainAsset) throws MeshLoadException {
+        return load(mainAsset, null);
+    }
+
+    /** Same as load(Asset), also adding to dependencies the names of all the assets Assimp had to read */
+    public Model load(Asset mainAsset, Collection<String> dependencies) throws MeshLoadException {
         if (mainAsset == null)
             throw new MeshLoadException(mainAsset);
 
         try {
             lock.lock();
 
+            ioSystem.openedAssets = dependencies;
             AiScene scene = im.readFile(mainAsset.getName(), im.getIoHandler(), 0);
+            ioSystem.openedAssets = null;
 
             if (scene == null) {
                 logger.error("Could not load meshes from asset: " + mainAsset);
@@ -262,6 +271,7 @@ public class AssimpMeshLoader {
         /*int verticesCount = vertices.size();
         return new Mesh(verticesCount, attributes, meshMaterials);*/
         } finally {
+            ioSystem.openedAssets = null;
             lock.unlock();
         }
     }
@@ -0,0 +1,207 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.mesh
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.content.Asset
+import xyz.chunkstories.api.content.Content
+import xyz.chunkstories.api.graphics.Mesh
+import xyz.chunkstories.api.graphics.MeshAttributeSet
+import xyz.chunkstories.api.graphics.MeshMaterial
+import xyz.chunkstories.api.graphics.VertexFormat
+import xyz.chunkstories.api.graphics.representation.Model
+import xyz.chunkstories.api.math.byteArrayAsHexString
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.security.MessageDigest
+
+/**
+ * Keeps models that went through Assimp in a compact binary form (./cache/meshes/), so they only have to be imported
+ * once. Files are named after a hash of the asset name and contents, and also record the hashes of the other assets
+ * the import read (.mtl files and the likes): an entry is only used if all of those are still the same.
+ * Disable with -DmeshCache=false
+ */
+class MeshCache(private val content: Content, private val folder: File) {
+
+    /** Returns the cache key for that asset, hashing its contents */
+    fun keyFor(asset: Asset): String {
+        val digest = MessageDigest.getInstance("MD5")
+        digest.update(asset.name.toByteArray())
+        digest.update(0)
+        digest.update(hashAsset(asset))
+        return byteArrayAsHexString(digest.digest())
+    }
+
+    fun read(key: String): Model? {
+        val file = File(folder, "$key.mesh")
+        if (!file.exists())
+            return null
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { dis ->
+                if (dis.readInt() != MAGIC || dis.readInt() != VERSION)
+                    return null
+                // Vertex data is stored as is, in the byte order of the machine that wrote it
+                if (dis.readBoolean() != nativeLittleEndian)
+                    return null
+
+                val dependenciesCount = dis.readInt()
+                for (i in 0 until dependenciesCount) {
+                    val name = dis.readUTF()
+                    val hash = ByteArray(16)
+                    dis.readFully(hash)
+                    val asset = content.getAsset(name) ?: return null
+                    if (!hash.contentEquals(hashAsset(asset)))
+                        return null
+                }
+
+                val meshesCount = dis.readInt()
+                val meshes = ArrayList<Mesh>(meshesCount)
+                for (i in 0 until meshesCount)
+                    meshes.add(readMesh(dis))
+                return Model(meshes)
+            }
+        } catch (e: IOException) {
+            logger.warn("Discarding unreadable cached mesh $file: ${e.message}")
+            return null
+        } catch (e: IllegalArgumentException) {
+            // Vertex format that no longer exists
+            return null
+        }
+    }
+
+    /** dependencies lists every asset the import read besides the main one, already hashed in the key */
+    fun write(key: String, mainAsset: Asset, dependencies: Collection<String>, model: Model) {
+        try {
+            folder.mkdirs()
+            val file = File(folder, "$key.mesh")
+            val temp = File(folder, "$key.mesh.tmp")
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { dos ->
+                dos.writeInt(MAGIC)
+                dos.writeInt(VERSION)
+                dos.writeBoolean(nativeLittleEndian)
+
+                val others = dependencies.filter { it != mainAsset.name }.mapNotNull { content.getAsset(it) }
+                dos.writeInt(others.size)
+                for (asset in others) {
+                    dos.writeUTF(asset.name)
+                    dos.write(hashAsset(asset))
+                }
+
+                dos.writeInt(model.meshes.size)
+                for (mesh in model.meshes)
+                    writeMesh(dos, mesh)
+            }
+            if (!temp.renameTo(file)) {
+                file.delete()
+                temp.renameTo(file)
+            }
+        } catch (e: IOException) {
+            logger.warn("Couldn't write cached mesh for ${mainAsset.name}: ${e.message}")
+        }
+    }
+
+    private fun writeMesh(dos: DataOutputStream, mesh: Mesh) {
+        dos.writeInt(mesh.vertices)
+
+        val material = mesh.material
+        dos.writeUTF(material.name)
+        dos.writeUTF(material.tag)
+        dos.writeInt(material.textures.size)
+        for ((name, texture) in material.textures) {
+            dos.writeUTF(name)
+            dos.writeUTF(texture)
+        }
+
+        val boneIds = mesh.boneIds
+        dos.writeBoolean(boneIds != null)
+        if (boneIds != null) {
+            dos.writeInt(boneIds.size)
+            for ((boneName, id) in boneIds) {
+                dos.writeUTF(boneName)
+                dos.writeInt(id)
+            }
+        }
+
+        dos.writeInt(mesh.attributes.size)
+        for (attribute in mesh.attributes) {
+            dos.writeUTF(attribute.name)
+            dos.writeInt(attribute.components)
+            dos.writeUTF(attribute.format.name)
+
+            val data = attribute.data.duplicate()
+            data.position(0)
+            data.limit(data.capacity())
+            val bytes = ByteArray(data.remaining())
+            data.get(bytes)
+            dos.writeInt(bytes.size)
+            dos.write(bytes)
+        }
+    }
+
+    private fun readMesh(dis: DataInputStream): Mesh {
+        val vertices = dis.readInt()
+
+        val materialName = dis.readUTF()
+        val tag = dis.readUTF()
+        val textures = HashMap<String, String>()
+        for (i in 0 until dis.readInt())
+            textures[dis.readUTF()] = dis.readUTF()
+
+        var boneIds: MutableMap<String, Int>? = null
+        if (dis.readBoolean()) {
+            boneIds = HashMap()
+            for (i in 0 until dis.readInt())
+                boneIds[dis.readUTF()] = dis.readInt()
+        }
+
+        val attributesCount = dis.readInt()
+        val attributes = ArrayList<MeshAttributeSet>(attributesCount)
+        for (i in 0 until attributesCount) {
+            val name = dis.readUTF()
+            val components = dis.readInt()
+            val format = VertexFormat.valueOf(dis.readUTF())
+
+            val bytes = ByteArray(dis.readInt())
+            dis.readFully(bytes)
+            val data = ByteBuffer.allocateDirect(bytes.size).order(ByteOrder.nativeOrder())
+            data.put(bytes)
+            data.flip()
+
+            attributes.add(MeshAttributeSet(name, components, format, data))
+        }
+
+        return Mesh(vertices, attributes, MeshMaterial(materialName, textures, tag), boneIds)
+    }
+
+    private fun hashAsset(asset: Asset): ByteArray {
+        val digest = MessageDigest.getInstance("MD5")
+        asset.read().use { input ->
+            val buffer = ByteArray(16 * 1024)
+            while (true) {
+                val read = input.read(buffer)
+                if (read == -1)
+                    break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest()
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger("content.meshes.cache")
+
+        val enabled = System.getProperty("meshCache", "true") == "true"
+
+        private const val MAGIC = 0x43534d43 // "CSMC"
+        /** Bump when the loader starts producing something different for the same input */
+        private const val VERSION = 1
+
+        private val nativeLittleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+    }
+}
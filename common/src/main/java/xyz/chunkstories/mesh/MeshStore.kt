@@ -8,31 +8,52 @@ package xyz.chunkstories.mesh
 
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
-import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.content.Content
 import xyz.chunkstories.api.content.mods.ModsManager
 import xyz.chunkstories.api.exceptions.content.MeshLoadException
 import xyz.chunkstories.api.graphics.representation.Model
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.api.workers.Tasks
 import xyz.chunkstories.content.GameContentStore
-
-import java.util.HashMap
-
-class MeshStore(gameContentStore: GameContentStore) : Content.Models {
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Models are resolved in the background: get() hands out defaultModel until the model is loaded on the worker pool,
+ * so the first appearance of some entity doesn't stall whichever thread asked for it. getOrLoadModel() still blocks
+ * until the model is there, for callers that need the real thing right away.
+ *
+ * Imported models are kept in a MeshCache so Assimp only runs on models it hasn't seen yet.
+ */
+class MeshStore(private val gameContentStore: GameContentStore) : Content.Models {
 
     protected val content: Content
     protected val modsManager: ModsManager
 
-    protected var models: MutableMap<String, Model> = HashMap()
+    private class ModelEntry(val name: String) {
+        @Volatile
+        var model: Model? = null
+        val scheduled = AtomicBoolean(false)
+    }
+
+    private val models = ConcurrentHashMap<String, ModelEntry>()
 
     private val loader: AssimpMeshLoader
+    private val cache: MeshCache?
+
+    /** Where background loads are run, defaults to the engine's workers. Loads happen on the calling thread without either */
+    var workers: Tasks? = null
 
     override val defaultModel: Model
-        get() = get("models/error.obj")
+        get() = getOrLoadModel(errorModelName)
 
     init {
         this.content = gameContentStore
         this.loader = AssimpMeshLoader(this)
         this.modsManager = gameContentStore.modsManager
+        this.cache = if (MeshCache.enabled) MeshCache(gameContentStore, File("./cache/meshes/")) else null
     }
 
     fun reloadAll() {
@@ -40,27 +61,79 @@ class MeshStore(gameContentStore: GameContentStore) : Content.Models {
     }
 
     override fun get(modelName: String): Model {
-        var model: Model? = models[modelName]
+        val entry = entry(modelName)
+        entry.model?.let { return it }
 
-        if (model == null) {
-            val a = modsManager.getAsset(modelName)
-            if (a == null) {
-                logger().error("model: $modelName not found in assets")
-                return defaultModel
-            }
+        if (entry.scheduled.compareAndSet(false, true))
+            schedule(entry)
+        return defaultModel
+    }
+
+    override fun getOrLoadModel(s: String): Model {
+        val entry = entry(s)
+        return entry.model ?: resolve(entry)
+    }
+
+    /** Starts loading those models in the background, if they aren't already */
+    fun preload(modelNames: Collection<String>) {
+        for (modelName in modelNames) {
+            val entry = entry(modelName)
+            if (entry.model == null && entry.scheduled.compareAndSet(false, true))
+                schedule(entry)
+        }
+    }
 
-            try {
-                model = loader.load(a)
-            } catch (e: MeshLoadException) {
-                e.printStackTrace()
-                logger().error("Model " + modelName + " couldn't be load using " + loader.javaClass.name + ", stack trace above.")
-                return defaultModel
+    private fun entry(modelName: String) = models.computeIfAbsent(modelName) { ModelEntry(it) }
+
+    private fun schedule(entry: ModelEntry) {
+        val pool = workers ?: runCatching { gameContentStore.engine.tasks }.getOrNull()
+        if (pool == null) {
+            resolve(entry)
+            return
+        }
+
+        pool.scheduleTask(object : Task() {
+            override fun task(taskExecutor: TaskExecutor): Boolean {
+                resolve(entry)
+                return true
             }
+        })
+    }
+
+    /** Loads the model for that entry once, whoever gets there first does it and the others wait for the result */
+    private fun resolve(entry: ModelEntry): Model = synchronized(entry) {
+        entry.model ?: (loadModel(entry.name) ?: fallback(entry.name)).also { entry.model = it }
+    }
 
-            models[modelName] = model
+    /** Failures are remembered as the error model, so we don't retry every frame */
+    private fun fallback(modelName: String): Model = if (modelName == errorModelName) Model(emptyList()) else defaultModel
+
+    private fun loadModel(modelName: String): Model? {
+        val asset = modsManager.getAsset(modelName)
+        if (asset == null) {
+            logger().error("model: $modelName not found in assets")
+            return null
+        }
+
+        val key = cache?.keyFor(asset)
+        if (key != null) {
+            val cached = cache?.read(key)
+            if (cached != null)
+                return cached
         }
 
-        return model ?: defaultModel
+        val dependencies = mutableSetOf<String>()
+        val model = try {
+            loader.load(asset, dependencies)
+        } catch (e: MeshLoadException) {
+            e.printStackTrace()
+            logger().error("Model " + modelName + " couldn't be load using " + loader.javaClass.name + ", stack trace above.")
+            return null
+        } ?: return null
+
+        if (key != null)
+            cache?.write(key, asset, dependencies, model)
+        return model
     }
 
     fun parent(): Content {
@@ -71,11 +144,8 @@ class MeshStore(gameContentStore: GameContentStore) : Content.Models {
         return logger
     }
 
-    override fun getOrLoadModel(s: String): Model {
-        return get(s)
-    }
-
     companion object {
+        const val errorModelName = "models/error.obj"
 
         private val logger = LoggerFactory.getLogger("content.meshes")
     }
@@ -19,6 +19,7 @@ import xyz.chunkstories.api.world.WorldSub
 import xyz.chunkstories.world.WorldImplementation
 import xyz.chunkstories.world.WorldSubImplementation
 
+import java.io.DataInputStream
 import java.io.File
 import java.io.IOException
 import java.util.concurrent.ConcurrentHashMap
@@ -32,7 +33,7 @@ abstract class Connection(val engine: Engine, val remoteAddress: String, val por
     abstract val isOpen: Boolean
 
     // Below is stuff for downloading/uploading of files
-    private val fileStreamingRequests = ConcurrentHashMap<String, PendingDownload>()
+    private val fileStreamingRequests = ConcurrentHashMap<String, FileDownload>()
 
     abstract fun connect(): Boolean
 
@@ -44,13 +45,16 @@ abstract class Connection(val engine: Engine, val remoteAddress: String, val por
     @Throws(IOException::class, PacketProcessingException::class, IllegalPacketException::class)
     fun handleDatagram(datagram: LogicalPacketDatagram) {
         val definition = datagram.packetDefinition as PacketDefinition
-        if (definition.constructorTakesWorld) {
+        if (definition.handledByConnection) {
+            receiveFileChunk(datagram.data)
+            datagram.dispose()
+        } else if (definition.constructorTakesWorld) {
             val world = world
-            if (world == null)
+            if (world == null) {
                 logger.error("Received packet $definition but no world is up yet !")
-
-            if(world is WorldSubImplementation)
-                world.queueDatagram(datagram)
+                datagram.dispose()
+            } else
+                handleWorldDatagram(world, datagram)
         } else {
             val packet = definition.createNewWithEngine(engine is Client, engine)
             packet!!.receive(datagram.data, userConnection)
@@ -61,6 +65,30 @@ abstract class Connection(val engine: Engine, val remoteAddress: String, val por
         }
     }
 
+    private fun receiveFileChunk(dis: DataInputStream) {
+        val fileTag = dis.readUTF()
+        val totalLength = dis.readLong()
+        val offset = dis.readLong()
+        val length = dis.readInt()
+
+        val download = fileStreamingRequests[fileTag]
+        if (download == null) {
+            logger.warn("Discarding unexpected file chunk with tag: $fileTag")
+            return
+        }
+
+        if (download.receiveChunk(totalLength, offset, length, dis))
+            fileStreamingRequests.remove(fileTag, download)
+    }
+
+    /** World packets are handled by the world, on its own thread */
+    protected open fun handleWorldDatagram(world: WorldImplementation, datagram: LogicalPacketDatagram) {
+        if (world is WorldSubImplementation)
+            world.queueDatagram(datagram)
+        else
+            datagram.dispose()
+    }
+
     abstract fun handleSystemRequest(message: String): Boolean
 
     open fun sendTextMessage(string: String) {
@@ -76,19 +104,16 @@ abstract class Connection(val engine: Engine, val remoteAddress: String, val por
     /**
      * Hints the connection logic that a file with a certain tag is to be expected,
      * and provides it with a location to save it. Unexpected file streaming will be
-     * discarded.
+     * discarded. Ask for the file from the returned download's resumeOffset on.
      */
-    fun registerExpectedFileStreaming(fileTag: String, whereToSave: File, action: DownloadStartAction) {
-        if (fileStreamingRequests.putIfAbsent(fileTag, PendingDownload(whereToSave, action)) != null) {
+    fun registerExpectedFileStreaming(fileTag: String, whereToSave: File, action: DownloadStartAction): FileDownload {
+        val download = FileDownload(whereToSave, action) { isOpen }
+        val existing = fileStreamingRequests.putIfAbsent(fileTag, download)
+        if (existing != null) {
             logger.warn("Requesting twice file: $fileTag")
+            return existing
         }
-    }
-
-    /**
-     * Retreives and removes the expected location for the specified fileTag
-     */
-    fun getLocationForExpectedFile(fileTag: String): PendingDownload? {
-        return fileStreamingRequests.remove(fileTag)
+        return download
     }
 
     interface DownloadStatus {
@@ -97,8 +122,6 @@ abstract class Connection(val engine: Engine, val remoteAddress: String, val por
         fun waitsUntilDone(): Boolean
     }
 
-    inner class PendingDownload(val f: File, val a: DownloadStartAction)
-
     companion object {
         val logger = LoggerFactory.getLogger("net.connection")
     }
@@ -0,0 +1,177 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net
+
+import xyz.chunkstories.api.net.PacketId
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Files are sent as a chain of "file" packets carrying at most -DfileChunkSize bytes (60KiB by default, so whole chunks
+ * fit in a pooled inbound frame), each one laid out as [tag][total length][offset][length][data]. Only one chunk of a transfer is queued at a time: once it's written the
+ * send queue puts the next one at the back of the bulk lane, so transfers interleave with everything else the
+ * connection sends and with each other.
+ *
+ * Chunk data is moved with FileChannel.transferTo(), straight from the file into the send buffer. The sockets here are
+ * plain streams rather than channels, so that's a copy into the coalescing buffer, not a kernel-side sendfile.
+ */
+class FileChunkOutgoing private constructor(private val packetId: PacketId, private val fileTag: String, private val file: File,
+                                            private val totalLength: Long, private val offset: Long) : PacketOutgoingChained {
+    override val priority: SendPriority
+        get() = SendPriority.BULK
+
+    private val length = Math.min(chunkSize.toLong(), totalLength - offset).toInt()
+
+    override fun write(out: DataOutputStream) {
+        val header = ByteArrayOutputStream(fileTag.length + 32)
+        DataOutputStream(header).apply {
+            writeUTF(fileTag)
+            writeLong(totalLength)
+            writeLong(offset)
+            writeInt(length)
+        }
+
+        if (packetId < 127)
+            out.writeByte(packetId)
+        else {
+            out.writeByte(0x80 or (packetId shr 8))
+            out.writeByte(packetId and 0xFF)
+        }
+        out.writeInt(header.size() + length)
+        header.writeTo(out)
+
+        if (length > 0) {
+            val target = Channels.newChannel(out)
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                var transferred = 0L
+                while (transferred < length) {
+                    val moved = channel.transferTo(offset + transferred, length - transferred, target)
+                    if (moved <= 0)
+                        throw IOException("$file got shorter while sending it")
+                    transferred += moved
+                }
+            }
+        }
+    }
+
+    override fun next(): PacketOutgoing? {
+        val nextOffset = offset + length
+        return if (nextOffset < totalLength) FileChunkOutgoing(packetId, fileTag, file, totalLength, nextOffset) else null
+    }
+
+    companion object {
+        /** The fixed id of the "file" system packet */
+        const val filePacketId: PacketId = 0x01
+
+        val chunkSize = Math.max(1024, Integer.getInteger("fileChunkSize", 60 * 1024))
+
+        /** Returns the first chunk of the transfer of that file, from the given offset on. Missing files are sent as empty */
+        fun startTransfer(packetId: PacketId, fileTag: String, file: File, fromOffset: Long): FileChunkOutgoing {
+            val totalLength = if (file.exists()) file.length() else 0L
+            return FileChunkOutgoing(packetId, fileTag, file, totalLength, Math.max(0L, Math.min(fromOffset, totalLength)))
+        }
+    }
+}
+
+/**
+ * Receives the chunks of one file into a .part file next to its destination, and moves it there once complete. What's
+ * left of the .part file after an interrupted download is where the next attempt picks up, see resumeOffset.
+ */
+class FileDownload(val destination: File, private val onStart: DownloadStartAction?, private val connectionOpen: () -> Boolean) : Connection.DownloadStatus {
+    val partialFile = File(destination.path + ".part")
+
+    val resumeOffset: Long
+        get() = if (partialFile.exists()) partialFile.length() else 0L
+
+    private var output: RandomAccessFile? = null
+    private val buffer = ByteArray(16 * 1024)
+
+    @Volatile
+    private var received = 0L
+    @Volatile
+    private var total = -1L
+    @Volatile
+    var succeeded = false
+        private set
+    private val done = CountDownLatch(1)
+
+    /** Writes the chunk down, returns true when it was the last one */
+    fun receiveChunk(totalLength: Long, offset: Long, length: Int, data: DataInputStream): Boolean {
+        var output = this.output
+        if (output == null) {
+            total = totalLength
+            if (totalLength == 0L) {
+                // The other side doesn't have it
+                finish(false)
+                return true
+            }
+
+            partialFile.parentFile?.mkdirs()
+            output = RandomAccessFile(partialFile, "rw")
+            output.setLength(offset)
+            this.output = output
+            received = offset
+            onStart?.invoke(this)
+        }
+
+        if (offset != received)
+            throw IOException("Expected the chunk at $received of $destination but got one at $offset")
+
+        output.seek(offset)
+        var remaining = length
+        while (remaining > 0) {
+            val read = Math.min(remaining, buffer.size)
+            data.readFully(buffer, 0, read)
+            output.write(buffer, 0, read)
+            remaining -= read
+        }
+        received += length
+
+        if (received < total)
+            return false
+
+        output.close()
+        destination.delete()
+        finish(partialFile.renameTo(destination))
+        return true
+    }
+
+    /** Keeps the partial file, for the next attempt to resume from */
+    fun abort() {
+        output?.close()
+        finish(false)
+    }
+
+    private fun finish(success: Boolean) {
+        succeeded = success
+        done.countDown()
+    }
+
+    override fun bytesDownloaded(): Int = received.toInt()
+
+    override fun totalBytes(): Int = total.toInt()
+
+    /** Returns whether the file made it to its destination, gives up if the connection closes first */
+    override fun waitsUntilDone(): Boolean {
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            if (!connectionOpen()) {
+                abort()
+                return false
+            }
+        }
+        return succeeded
+    }
+}
@@ -7,7 +7,11 @@
 package xyz.chunkstories.net
 
 import xyz.chunkstories.api.Engine
+import java.lang.invoke.LambdaMetafactory
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.Constructor
+import java.util.function.Function as JavaFunction
 
 import xyz.chunkstories.api.content.json.Json
 import xyz.chunkstories.api.content.json.asBoolean
@@ -26,6 +30,8 @@ class PacketDefinition constructor(store: GameContentStore, val name: String, va
     }
 
     val isStreamed: Boolean
+    /** Never made into a Packet instance, the connection reads and writes those itself */
+    val handledByConnection: Boolean
     val fixedId: Int
     internal val clientClass: Class<out Packet>?
     internal val serverClass: Class<out Packet>?
@@ -35,10 +41,16 @@ class PacketDefinition constructor(store: GameContentStore, val name: String, va
     internal val serverClassConstructor: Constructor<out Packet>?
     internal val commonClassConstructor: Constructor<out Packet>?
 
+    /** Bound once to the constructors above, calling them without going through reflection */
+    private val clientFactory: JavaFunction<Any, Packet>?
+    private val serverFactory: JavaFunction<Any, Packet>?
+    private val commonFactory: JavaFunction<Any, Packet>?
+
     val constructorTakesWorld: Boolean
 
     init {
         isStreamed = properties["streamed"].asBoolean ?: false
+        handledByConnection = properties["handledByConnection"].asBoolean ?: false
         fixedId = properties["fixedId"].asInt ?: -1
 
         allowedFrom = when(properties["allowedFrom"].asString ?: "all") {
@@ -59,7 +71,7 @@ class PacketDefinition constructor(store: GameContentStore, val name: String, va
         serverClass = properties["serverClass"].asString?.let { resolveClass(store, it) } ?: commonClass
 
         // Security trips in case someone forgets to set up a handler
-        if (this.commonClass == null) {
+        if (this.commonClass == null && !handledByConnection) {
             when {
                 allowedFrom == AllowedFrom.ALL && (this.clientClass == null || this.serverClass == null) -> {
                     throw Exception("Packet can be received from both client and servers, but isn't provided with a way to handle both." + "\nEither commonClass must be set, or both clientClass and serverClass")
@@ -77,6 +89,10 @@ class PacketDefinition constructor(store: GameContentStore, val name: String, va
         clientClassConstructor = extractConstructor(this.clientClass)
         serverClassConstructor = extractConstructor(this.serverClass)
         commonClassConstructor = extractConstructor(this.commonClass)
+
+        clientFactory = clientClassConstructor?.let { bindFactory(it) }
+        serverFactory = serverClassConstructor?.let { bindFactory(it) }
+        commonFactory = commonClassConstructor?.let { bindFactory(it) }
     }
 
     private fun resolveClass(store: GameContentStore, className: String): Class<out Packet>? {
@@ -105,31 +121,72 @@ class PacketDefinition constructor(store: GameContentStore, val name: String, va
         } ?: throw Exception("Packet $name does not provide a valid constructor.")
     }
 
-    fun createNewWithEngine(client: Boolean, engine: Engine): Packet? {
-        assert(!constructorTakesWorld)
-        val parameters = arrayOf<Any>(engine)
+    /**
+     * Spins a lambda calling the constructor directly. That only works when the packet class is visible from our own
+     * class loader, classes coming from mods get a method handle instead, which is still a lot cheaper than reflection.
+     */
+    private fun bindFactory(constructor: Constructor<out Packet>): JavaFunction<Any, Packet> {
+        val handle = lookup.unreflectConstructor(constructor)
+        val packetClass = constructor.declaringClass
+
+        val visible = try {
+            Class.forName(packetClass.name, false, PacketDefinition::class.java.classLoader) == packetClass
+        } catch (e: ClassNotFoundException) {
+            false
+        }
+
+        if (visible) {
+            try {
+                val callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(JavaFunction::class.java),
+                        MethodType.methodType(Any::class.java, Any::class.java), handle, handle.type())
+                @Suppress("UNCHECKED_CAST")
+                return callSite.target.invoke() as JavaFunction<Any, Packet>
+            } catch (e: Exception) {
+                // Falls back to the method handle
+            }
+        }
+
+        val genericHandle = handle.asType(MethodType.methodType(Any::class.java, Any::class.java))
+        return JavaFunction { parameter -> genericHandle.invoke(parameter) as Packet }
+    }
+
+    private fun create(client: Boolean, parameter: Any): Packet? {
+        if (reflectiveInstantiation) {
+            return if (client && clientClass != null)
+                clientClassConstructor!!.newInstance(parameter)
+            else if (!client && serverClass != null)
+                serverClassConstructor!!.newInstance(parameter)
+            else
+                commonClassConstructor!!.newInstance(parameter)
+        }
 
         return if (client && clientClass != null)
-            clientClassConstructor!!.newInstance(*parameters)
+            clientFactory!!.apply(parameter)
         else if (!client && serverClass != null)
-            serverClassConstructor!!.newInstance(*parameters)
+            serverFactory!!.apply(parameter)
         else
-            commonClassConstructor!!.newInstance(*parameters)
+            commonFactory!!.apply(parameter)
+    }
+
+    fun createNewWithEngine(client: Boolean, engine: Engine): Packet? {
+        assert(!constructorTakesWorld)
+        return create(client, engine)
     }
 
     fun createNewWithWorld(client: Boolean, world: World?): Packet? {
         assert(constructorTakesWorld)
-        val parameters = arrayOf<Any>(world!!)
-
-        return if (client && clientClass != null)
-            clientClassConstructor!!.newInstance(*parameters)
-        else if (!client && serverClass != null)
-            serverClassConstructor!!.newInstance(*parameters)
-        else
-            commonClassConstructor!!.newInstance(*parameters)
+        return create(client, world!!)
     }
 
     override fun toString(): String {
         return "PacketDefinition(name=$name, allowedFrom=$allowedFrom, isStreamed=$isStreamed, fixedId=$fixedId, clientClass=$clientClass, serverClass=$serverClass, commonClass=$commonClass, clientClassConstructor=$clientClassConstructor, serverClassConstructor=$serverClassConstructor, commonClassConstructor=$commonClassConstructor, constructorTakesWorld=$constructorTakesWorld)"
     }
-}
\ No newline at end of file
+
+    companion object {
+        private val lookup = MethodHandles.lookup()
+
+        /** Goes back to Constructor.newInstance() with -DreflectivePacketInstantiation=true, or to compare */
+        @JvmStatic
+        var reflectiveInstantiation = System.getProperty("reflectivePacketInstantiation", "false") == "true"
+    }
+}
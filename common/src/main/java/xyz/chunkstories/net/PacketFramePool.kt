@@ -0,0 +1,81 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net
+
+import java.io.ByteArrayInputStream
+import java.io.DataInputStream
+import java.util.ArrayDeque
+
+/** A buffer to read one inbound packet into, along with the streams reading it back, all reused together */
+class PacketFrame internal constructor(val buffer: ByteArray, internal val sizeClass: Int) {
+    private val input = ResettableInputStream(buffer)
+    val data = DataInputStream(input)
+
+    internal fun reset(length: Int) {
+        input.reset(length)
+    }
+
+    private class ResettableInputStream(buffer: ByteArray) : ByteArrayInputStream(buffer) {
+        fun reset(length: Int) {
+            pos = 0
+            mark = 0
+            count = length
+        }
+    }
+}
+
+/**
+ * Size-classed pool for the frames of inbound packets: every non-streamed packet used to get a fresh array of its exact
+ * size, making the garbage produced follow the inbound packet rate. Frames come in powers of two from 256 bytes to
+ * -DpacketFramePoolMaxSize (64KiB by default), bigger packets get a one-off frame. Each size class keeps at most
+ * about 1MiB worth of frames around.
+ *
+ * Frames are handed back by LogicalPacketDatagram.dispose(), datagrams that are never disposed are simply collected.
+ */
+object PacketFramePool {
+    private const val minSizeClass = 8
+
+    private val maxSizeClass = 31 - Integer.numberOfLeadingZeros(Math.max(1 shl minSizeClass, Integer.getInteger("packetFramePoolMaxSize", 64 * 1024)))
+    private const val bytesPerClass = 1024 * 1024
+
+    private val classes = Array(maxSizeClass - minSizeClass + 1) { ArrayDeque<PacketFrame>() }
+
+    /** Can be turned off with -DpacketFramePool=false, to compare */
+    @JvmStatic
+    var enabled = System.getProperty("packetFramePool", "true") == "true"
+
+    fun acquire(length: Int): PacketFrame {
+        val sizeClass = sizeClassFor(length)
+        if (!enabled || sizeClass > maxSizeClass) {
+            val frame = PacketFrame(ByteArray(length), -1)
+            frame.reset(length)
+            return frame
+        }
+
+        val pooled = classes[sizeClass - minSizeClass]
+        val frame = synchronized(pooled) { pooled.pollFirst() } ?: PacketFrame(ByteArray(1 shl sizeClass), sizeClass)
+        frame.reset(length)
+        return frame
+    }
+
+    fun release(frame: PacketFrame) {
+        if (frame.sizeClass == -1)
+            return
+
+        val pooled = classes[frame.sizeClass - minSizeClass]
+        synchronized(pooled) {
+            if (pooled.size < Math.max(4, bytesPerClass shr frame.sizeClass))
+                pooled.addFirst(frame)
+        }
+    }
+
+    private fun sizeClassFor(length: Int): Int {
+        if (length <= 1 shl minSizeClass)
+            return minSizeClass
+        return 32 - Integer.numberOfLeadingZeros(length - 1)
+    }
+}
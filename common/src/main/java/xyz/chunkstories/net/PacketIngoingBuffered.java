@@ -6,16 +6,17 @@
 
 package xyz.chunkstories.net;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 
 public class PacketIngoingBuffered extends LogicalPacketDatagram {
 
-	DataInputStream dis;
+	private PacketFrame frame;
+	private final DataInputStream dis;
 
-	public PacketIngoingBuffered(PacketDefinition packetDefinition, int packetSize, byte[] data) {
+	public PacketIngoingBuffered(PacketDefinition packetDefinition, int packetSize, PacketFrame frame) {
 		super(packetDefinition, packetSize);
-		this.dis = new DataInputStream(new ByteArrayInputStream(data));
+		this.frame = frame;
+		this.dis = frame.getData();
 	}
 
 	@Override
@@ -23,8 +24,12 @@ public class PacketIngoingBuffered extends LogicalPacketDatagram {
 		return dis;
 	}
 
+	/** Returns the frame to the pool: the data must not be read past this point */
 	@Override
 	public void dispose() {
-
+		if (frame != null) {
+			PacketFramePool.INSTANCE.release(frame);
+			frame = null;
+		}
 	}
 }
@@ -9,5 +9,13 @@ import java.io.DataOutputStream
 import java.io.IOException
 
 interface PacketOutgoing {
+    val priority: SendPriority
+        get() = SendPriority.INTERACTIVE
+
     fun write(out: DataOutputStream)
-}
\ No newline at end of file
+}
+
+/** Sent in several parts: once this one is written, the send queue asks for the next one and queues it after the rest */
+interface PacketOutgoingChained : PacketOutgoing {
+    fun next(): PacketOutgoing?
+}
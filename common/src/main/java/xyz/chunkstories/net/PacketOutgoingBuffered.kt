@@ -8,7 +8,7 @@ package xyz.chunkstories.net
 import xyz.chunkstories.api.net.PacketId
 import java.io.DataOutputStream
 
-class PacketOutgoingBuffered(val context: PacketsEncoderDecoder, val id: PacketId, val size: Int, val payload: ByteArray) : PacketOutgoing {
+class PacketOutgoingBuffered(val context: PacketsEncoderDecoder, val id: PacketId, val size: Int, val payload: ByteArray, override val priority: SendPriority = SendPriority.INTERACTIVE) : PacketOutgoing {
 
     private fun writePacketIdHeader(out: DataOutputStream) {
         if (id < 127) out.writeByte(id) else {
@@ -11,7 +11,6 @@ import xyz.chunkstories.api.net.Packet
 import xyz.chunkstories.api.net.PacketId
 import xyz.chunkstories.api.net.packets.PacketText
 import xyz.chunkstories.content.translator.AbstractContentTranslator
-import xyz.chunkstories.net.packets.PacketSendFile
 import xyz.chunkstories.world.WorldImplementation
 import java.io.ByteArrayOutputStream
 import java.io.DataInputStream
@@ -41,7 +40,7 @@ abstract class PacketsEncoderDecoder(protected val store: PacketsStore, val conn
             packetTypeId = secondByte or (firstByte and 0x7F) shl 8
         }
         val def = contentTranslator.getPacketForId(packetTypeId) ?: throw Exception("Unknown packet id: $packetTypeId")
-        if (def.isStreamed || def.name == "file") {
+        if (def.isStreamed) {
             return object : LogicalPacketDatagram(def, -1) {
                 override fun getData(): DataInputStream {
                     return dis
@@ -51,35 +50,18 @@ abstract class PacketsEncoderDecoder(protected val store: PacketsStore, val conn
             }
         }
         val packetLength = dis.readInt()
-        val bitme = ByteArray(packetLength)
-        dis.readFully(bitme)
-        return PacketIngoingBuffered(def, packetLength, bitme)
-    }
-
-    private fun writePacketIdHeader(out: DataOutputStream, id: PacketId) {
-        if (id < 127)
-            out.writeByte(id)
-        else {
-            out.writeByte(0x80 or (id shr 8))
-            out.writeByte(id and 0xFF)
-        }
+        val frame = PacketFramePool.acquire(packetLength)
+        dis.readFully(frame.buffer, 0, packetLength)
+        return PacketIngoingBuffered(def, packetLength, frame)
     }
 
     fun buildOutgoingPacket(packet: Packet): PacketOutgoing {
         try {
             val packetId = findIdForPacket(packet)
-            if (packet is PacketSendFile) {
-                return object : PacketOutgoing {
-                    override fun write(out: DataOutputStream) {
-                        writePacketIdHeader(out, packetId)
-                        packet.send(out)
-                    }
-                }
-            }
             val baos = ByteArrayOutputStream()
             val dos = DataOutputStream(baos)
             packet.send(dos)
-            return PacketOutgoingBuffered(this, packetId, baos.size(), baos.toByteArray())
+            return PacketOutgoingBuffered(this, packetId, baos.size(), baos.toByteArray(), SendPriority.of(packet))
         } catch (e: Exception) {
             logger.error("Error : unable to buffer Packet $packet", e)
             throw e
@@ -91,7 +73,6 @@ abstract class PacketsEncoderDecoder(protected val store: PacketsStore, val conn
         return if (world == null) {
             when (packet) {
                 is PacketText -> 0x00
-                is PacketSendFile -> 0x01
                 else -> throw RuntimeException("Cannot send this packet while not in a world")
             }
         } else {
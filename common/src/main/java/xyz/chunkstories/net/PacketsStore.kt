@@ -10,11 +10,11 @@ import com.google.gson.Gson
 import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.content.json.Json
 import xyz.chunkstories.api.content.json.asDict
 import xyz.chunkstories.api.net.Packet
 import xyz.chunkstories.content.GameContentStore
 import xyz.chunkstories.content.eat
-import java.io.Reader
 import java.util.*
 
 class PacketsStore(val parent: GameContentStore) {
@@ -27,8 +27,8 @@ class PacketsStore(val parent: GameContentStore) {
 
         val gson = Gson()
 
-        fun readDefinitions(r: Reader) {
-            val json = JsonValue.readHjson(r).eat().asDict ?: throw Exception("This json isn't a dict")
+        fun readDefinitions(definitions: Json) {
+            val json = definitions.asDict ?: throw Exception("This json isn't a dict")
             val dict = json["packets"].asDict ?: throw Exception("This json doesn't contain an 'packets' dict")
 
             for (element in dict.elements) {
@@ -47,12 +47,12 @@ class PacketsStore(val parent: GameContentStore) {
         }
 
         // Load system.packets
-        readDefinitions(javaClass.getResourceAsStream("/packets/systemPackets.hjson").reader())
+        readDefinitions(JsonValue.readHjson(javaClass.getResourceAsStream("/packets/systemPackets.hjson").reader()).eat())
 
         // Load the rest
         for (asset in parent.modsManager.allAssets.filter { it.name.startsWith("packets/") && it.name.endsWith(".hjson") }) {
             logger.debug("Reading packets definitions in : $asset")
-            readDefinitions(asset.reader())
+            readDefinitions(parent.readDefinitionsFile(asset))
         }
     }
 
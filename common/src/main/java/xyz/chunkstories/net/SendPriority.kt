@@ -0,0 +1,35 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net
+
+import xyz.chunkstories.api.net.Packet
+import xyz.chunkstories.api.net.packets.PacketEntity
+import xyz.chunkstories.net.packets.*
+
+/**
+ * Which outgoing lane of the SendQueue a packet goes in. Lanes are FIFO and a packet never overtakes one from its own
+ * lane or a more urgent one, so anything that must arrive after some other packet has to be in the same lane or a less
+ * urgent one.
+ */
+enum class SendPriority {
+    /** Entity movement and input, plus the few setup packets everything else depends on */
+    REALTIME,
+    /** Chat, commands, gameplay events: anything we don't know better about */
+    INTERACTIVE,
+    /** Terrain and files, sent within the connection's bandwidth budget if it has one */
+    BULK;
+
+    companion object {
+        fun of(packet: Packet): SendPriority = when (packet) {
+            is PacketEntity, is PacketInput -> REALTIME
+            is PacketContentTranslator, is PacketSendWorldInfo -> REALTIME
+            // Block updates would otherwise overtake the chunk data they apply to
+            is PacketChunkCompressedData, is PacketHeightmap, is PacketUpdateBlock -> BULK
+            else -> INTERACTIVE
+        }
+    }
+}
@@ -9,91 +9,161 @@ package xyz.chunkstories.net.vanillasockets
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.net.Connection
 import xyz.chunkstories.net.PacketOutgoing
+import xyz.chunkstories.net.PacketOutgoingChained
+import xyz.chunkstories.net.SendPriority
+import java.io.BufferedOutputStream
 import java.io.DataOutputStream
 import java.io.IOException
-import java.util.concurrent.LinkedBlockingQueue
+import java.io.OutputStream
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.Semaphore
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 /**
- * The job of this thread is to write datagrams to an output stream. Not much in
- * the way of complexity there
+ * The job of this thread is to write datagrams to an output stream.
+ *
+ * Packets are sorted in one lane per SendPriority, and the most urgent lane with something in it is always written
+ * first, so entity updates don't wait behind megabytes of terrain. The bulk lane can further be held to a bandwidth
+ * budget (-DbulkBytesPerSecond, unlimited by default) so it can't fill the socket buffers ahead of the other lanes
+ * either, at the cost of slower terrain streaming: only worth it on links that are slower than what the server sends.
+ *
+ * Ordering only holds within a lane. A REALTIME entity packet can reach the client before the chunk data queued ahead of
+ * it. Entities never travel with the terrain (chunk data goes out with ChunkCompressedData.stripEntities()), and the
+ * client world keeps them in its own entity list rather than in chunks, so such a packet is processed all the same: the
+ * entity gets created or moved over a chunk the client doesn't have yet, and stands over nothing until the terrain
+ * arrives. Anything that really has to follow the terrain goes in the bulk lane, like block updates do.
+ *
+ * Chained packets (file transfers) only have one part queued at a time, the next part joins the back of its lane once
+ * the previous one is written, so several transfers and the rest of the bulk traffic take turns.
+ *
+ * Writes are coalesced in a buffer and only hit the socket when flush() is called or the buffer fills up.
  */
-class SendQueue(private val connection: Connection, private val outputStream: DataOutputStream) : Thread() {
-    private val sendQueue = LinkedBlockingQueue<PacketOutgoing>()
-    private val queueSemaphore = Semaphore(0)
+class SendQueue(private val connection: Connection, outputStream: OutputStream,
+                private val bulkBytesPerSecond: Int = defaultBulkBytesPerSecond) : Thread() {
+    private val lanes = Array(SendPriority.values().size) { ConcurrentLinkedQueue<PacketOutgoing>() }
+    private val bulkLane = lanes[SendPriority.BULK.ordinal]
 
-    private val deathSemaphore = Semaphore(0)
+    private val out = CountingOutputStream(BufferedOutputStream(outputStream, coalescingBufferSize))
 
-    /** Special one that breaks the loop */
-    private val killerPacket: PacketOutgoing = object : PacketOutgoing {
-        override fun write(out: DataOutputStream) {
-            throw UnsupportedOperationException()
+    private class CountingOutputStream(outputStream: OutputStream) : DataOutputStream(outputStream) {
+        fun resetCount() {
+            written = 0
         }
     }
 
+    private val lock = ReentrantLock()
+    private val wakeUp = lock.newCondition()
+    private var signalled = false
+
+    private val flushRequested = AtomicBoolean(false)
+    /** Set when we flushed while the bulk lane was still throttled: what it writes later needs flushing too */
+    private var owesFlush = false
+
+    @Volatile
+    private var dying = false
+    private val deathSemaphore = Semaphore(0)
+
+    private var bulkTokens = 0.0
+    private var lastRefill = System.nanoTime()
+
     init {
         this.name = "Send queue thread"
     }
 
-    internal inner class Flush : PacketOutgoing {
-        override fun write(out: DataOutputStream) {
-            throw UnsupportedOperationException()
-        }
-    }
-
     fun queue(packet: PacketOutgoing) {
-        sendQueue.add(packet)
-        queueSemaphore.release()
+        lanes[packet.priority.ordinal].add(packet)
+        signal()
     }
 
     fun flush() {
-        val flush = Flush()
-        sendQueue.add(flush)
-        queueSemaphore.release()
+        flushRequested.set(true)
+        signal()
+    }
+
+    private fun signal() {
+        lock.withLock {
+            signalled = true
+            wakeUp.signal()
+        }
     }
 
     override fun run() {
-        while (true) {
-            var packet: PacketOutgoing? = null
+        try {
+            while (!dying) {
+                lock.withLock {
+                    if (!signalled) {
+                        val throttledFor = throttledForNanos()
+                        if (throttledFor > 0)
+                            wakeUp.awaitNanos(throttledFor)
+                        else if (throttledFor < 0)
+                            wakeUp.await()
+                    }
+                    signalled = false
+                }
 
-            try {
-                packet = sendQueue.take()
-            } catch (e1: InterruptedException) {
-                e1.printStackTrace()
+                drain(ignoreBudget = false)
             }
 
-            if (packet === killerPacket) {
-                // Kill request ? accept gracefully our fate
-                break
-            }
+            // Send whatever was queued before shutdown() was called, disconnection messages in particular
+            drain(ignoreBudget = true)
+            out.flush()
+        } catch (e: IOException) {
+            // That's basically terminated connection exceptions
+            handleError("Unable to send: " + e.message)
+        } catch (e: InterruptedException) {
+            // Shutting down
+        }
 
-            if (packet == null) {
-                println("ASSERTION FAILED : THE SEND QUEUE CAN'T CONTAIN NULL PACKETS.")
-                System.exit(-1)
-            } else if (packet is Flush) {
-                try {
-                    outputStream.flush()
-                    //packet.fence.signal()
-                } catch (e: IOException) {
-                    // That's basically terminated connection exceptions
-                    //packet.fence.signal()
-                    handleError("Unable to flush: " + e.message)
-                    break
-                }
+        deathSemaphore.release()
+    }
 
-            } else
-                try {
-                    packet.write(outputStream)
-                } catch (e: IOException) {
-                    // We don't care about that, it's the motd thing mostly
-                    handleError("Unable to send packet: " + e.message)
-                    break
-                }
+    /** Writes everything the lanes and the budget allow, most urgent first, then flushes if asked to */
+    private fun drain(ignoreBudget: Boolean) {
+        while (true) {
+            val packet = lanes[SendPriority.REALTIME.ordinal].poll()
+                    ?: lanes[SendPriority.INTERACTIVE.ordinal].poll()
+                    ?: (if (ignoreBudget || bulkAllowed()) bulkLane.poll() else null)
+                    ?: break
+
+            out.resetCount()
+            packet.write(out)
+            if (packet.priority == SendPriority.BULK)
+                bulkTokens -= out.size()
+
+            if (packet is PacketOutgoingChained)
+                packet.next()?.let { lanes[it.priority.ordinal].add(it) }
+        }
 
+        if (flushRequested.getAndSet(false) || owesFlush) {
+            out.flush()
+            owesFlush = bulkLane.isNotEmpty()
         }
+    }
 
-        deathSemaphore.release()
+    private fun refillBulkTokens() {
+        val now = System.nanoTime()
+        // Don't let an idle connection bank more than a quarter second worth of budget
+        bulkTokens = Math.min(bulkBytesPerSecond / 4.0, bulkTokens + (now - lastRefill) * bulkBytesPerSecond / 1e9)
+        lastRefill = now
+    }
+
+    private fun bulkAllowed(): Boolean {
+        if (bulkBytesPerSecond <= 0)
+            return true
+        refillBulkTokens()
+        return bulkTokens > 0
+    }
+
+    /** How long until the bulk lane has budget again, 0 if it has, or -1 if it has nothing to send anyway */
+    private fun throttledForNanos(): Long {
+        if (bulkLane.isEmpty())
+            return -1
+        if (bulkAllowed())
+            return 0
+        return Math.max(1_000_000L, (-bulkTokens * 1e9 / bulkBytesPerSecond).toLong() + 1)
     }
 
     private fun handleError(reason: String) {
@@ -102,15 +172,20 @@ class SendQueue(private val connection: Connection, private val outputStream: Da
     }
 
     fun shutdown() {
-        sendQueue.add(killerPacket)
-        queueSemaphore.release()
-
-        // 5s grace time
-        deathSemaphore.tryAcquire(5, TimeUnit.SECONDS)
-        sendQueue.clear()
+        dying = true
+        signal()
+
+        // 5s grace time, unless we are shutting down from the send thread itself after an error
+        if (currentThread() != this)
+            deathSemaphore.tryAcquire(5, TimeUnit.SECONDS)
+        for (lane in lanes)
+            lane.clear()
     }
 
     companion object {
         private val logger = LoggerFactory.getLogger("net")
+
+        private val coalescingBufferSize = Integer.getInteger("sendCoalescingBufferSize", 64 * 1024)
+        private val defaultBulkBytesPerSecond = Integer.getInteger("bulkBytesPerSecond", 0)
     }
 }
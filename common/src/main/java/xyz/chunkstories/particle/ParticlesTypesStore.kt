@@ -8,7 +8,6 @@ package xyz.chunkstories.particle
 
 import com.google.gson.Gson
 import com.google.gson.internal.LinkedTreeMap
-import org.hjson.JsonValue
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.Asset
 import xyz.chunkstories.api.content.Content
@@ -17,7 +16,6 @@ import xyz.chunkstories.api.content.json.asString
 import xyz.chunkstories.api.particles.ParticleType
 import xyz.chunkstories.api.particles.ParticleTypeDefinition
 import xyz.chunkstories.content.GameContentStore
-import xyz.chunkstories.content.eat
 import xyz.chunkstories.content.extractProperties
 import java.util.*
 
@@ -34,7 +32,7 @@ class ParticlesTypesStore(override val parent: GameContentStore) : Content.Parti
         fun readDefinitions(a: Asset) {
             logger.debug("Reading particle definitions in : $a")
 
-            val json = JsonValue.readHjson(a.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = parent.readDefinitionsFile(a).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["particles"].asDict ?: throw Exception("This json doesn't contain an 'particles' dict")
 
             for (element in dict.elements) {
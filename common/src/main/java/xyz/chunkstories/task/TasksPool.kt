@@ -12,12 +12,15 @@ import java.util.concurrent.Semaphore
 import java.util.concurrent.atomic.AtomicInteger
 
 abstract class TasksPool<T : Task?> {
-    var tasksQueue: Deque<T> = ConcurrentLinkedDeque()
+    /** A task waiting in the queue, along with when it was (re)scheduled so the pool can tell how long it waited */
+    class Queued<T>(@JvmField val task: T, @JvmField val scheduledAt: Long)
+
+    var tasksQueue: Deque<Queued<T>> = ConcurrentLinkedDeque()
     var tasksCounter = Semaphore(0)
     var tasksQueueSize = AtomicInteger(0)
 
     fun scheduleTask(task: T) {
-        tasksQueue.add(task)
+        tasksQueue.add(Queued(task, System.nanoTime()))
         tasksCounter.release()
         tasksQueueSize.incrementAndGet()
     }
@@ -24,13 +24,18 @@ class WorkerThread(internal val pool: WorkerThreadPool, internal val id: Int) :
             pool.tasksCounter.acquireUninterruptibly()
 
             // If one such permit was found to exist, assert a task is readily avaible
-            val task = pool.tasksQueue.poll()!!
+            val queued = pool.tasksQueue.poll()!!
+            val task = queued.task
 
             // Only die task can break the loop
             if (task === pool.DIE)
                 break
 
+            val start = System.nanoTime()
+            WorkerThreadPool.waitTiming.record(start - queued.scheduledAt)
+
             val result = task.run(this)
+            WorkerThreadPool.runTiming.record(System.nanoTime() - start)
             pool.tasksRan++
 
             // Depending on the result we either reschedule the task or decrement the
@@ -11,10 +11,11 @@ import xyz.chunkstories.api.workers.TaskExecutor
 import xyz.chunkstories.api.workers.Tasks
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
+import xyz.chunkstories.util.profiling.TickProfiler
 
 open class WorkerThreadPool(protected var threadsCount: Int) : TasksPool<Task>(), Tasks {
     val pending: Collection<Task>
-        get() = super.tasksQueue
+        get() = super.tasksQueue.map { it.task }
 
     protected lateinit var workers: Array<WorkerThread>
 
@@ -41,7 +42,7 @@ open class WorkerThreadPool(protected var threadsCount: Int) : TasksPool<Task>()
     }
 
     internal fun rescheduleTask(task: Task) {
-        tasksQueue.addLast(task)
+        tasksQueue.addLast(TasksPool.Queued(task, System.nanoTime()))
         tasksCounter.release()
 
         tasksRescheduled++
@@ -73,7 +74,7 @@ open class WorkerThreadPool(protected var threadsCount: Int) : TasksPool<Task>()
         var antiInfiniteLoop = 500
         val i = this.tasksQueue.iterator()
         while (i.hasNext()) {
-            val task = i.next()
+            val task = i.next().task
             antiInfiniteLoop--
             if (antiInfiniteLoop < 0)
                 return
@@ -87,5 +88,8 @@ open class WorkerThreadPool(protected var threadsCount: Int) : TasksPool<Task>()
 
     companion object {
         private val logger = LoggerFactory.getLogger("workers")
+
+        internal val waitTiming = TickProfiler.histogram("workers.wait")
+        internal val runTiming = TickProfiler.histogram("workers.run")
     }
 }
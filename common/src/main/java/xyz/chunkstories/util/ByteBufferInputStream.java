@@ -0,0 +1,50 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Reads from a ByteBuffer without copying it; the buffer's position is advanced as bytes are consumed. */
+public class ByteBufferInputStream extends InputStream {
+
+	final ByteBuffer inputBuffer;
+
+	public ByteBufferInputStream(ByteBuffer inputBuffer) {
+		this.inputBuffer = inputBuffer;
+	}
+
+	@Override
+	public int read() {
+		if (!inputBuffer.hasRemaining())
+			return -1;
+		return inputBuffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0)
+			return 0;
+		if (!inputBuffer.hasRemaining())
+			return -1;
+		int toRead = Math.min(len, inputBuffer.remaining());
+		inputBuffer.get(b, off, toRead);
+		return toRead;
+	}
+
+	@Override
+	public long skip(long n) {
+		int toSkip = (int) Math.max(0, Math.min(n, inputBuffer.remaining()));
+		inputBuffer.position(inputBuffer.position() + toSkip);
+		return toSkip;
+	}
+
+	@Override
+	public int available() {
+		return inputBuffer.remaining();
+	}
+}
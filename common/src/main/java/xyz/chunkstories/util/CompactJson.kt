@@ -0,0 +1,180 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util
+
+import xyz.chunkstories.api.content.json.Json
+import xyz.chunkstories.api.content.json.asBoolean
+import xyz.chunkstories.api.content.json.asDouble
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+/**
+ * Binary encoding for Json trees we write a lot of, namely saved entities and cell components.
+ *
+ * A block of trees shares one string table, written up front: trait names, field names and the likes of item names
+ * repeat across every entity of a chunk and are only stored once, then referenced by index. Integral numbers are zigzag
+ * varints, so coordinates, amounts and ids take one to three bytes instead of their decimal text.
+ */
+object CompactJson {
+    const val VERSION = 1
+
+    private const val TAG_NULL = 0
+    private const val TAG_FALSE = 1
+    private const val TAG_TRUE = 2
+    private const val TAG_INT = 3
+    private const val TAG_FLOAT = 4
+    private const val TAG_DOUBLE = 5
+    private const val TAG_TEXT = 6
+    private const val TAG_ARRAY = 7
+    private const val TAG_DICT = 8
+
+    fun write(out: DataOutput, trees: List<Json>) {
+        val strings = LinkedHashMap<String, Int>()
+        for (tree in trees)
+            collectStrings(tree, strings)
+
+        writeVarInt(out, VERSION)
+        writeVarInt(out, strings.size)
+        for (string in strings.keys) {
+            val bytes = string.toByteArray(Charsets.UTF_8)
+            writeVarInt(out, bytes.size)
+            out.write(bytes)
+        }
+
+        writeVarInt(out, trees.size)
+        for (tree in trees)
+            writeTree(out, tree, strings)
+    }
+
+    fun read(input: DataInput): List<Json> {
+        val version = readVarInt(input)
+        if (version != VERSION)
+            throw IOException("Unsupported compact json version $version")
+
+        val strings = Array(readVarInt(input)) {
+            val bytes = ByteArray(readVarInt(input))
+            input.readFully(bytes)
+            String(bytes, Charsets.UTF_8)
+        }
+
+        return List(readVarInt(input)) { readTree(input, strings) }
+    }
+
+    private fun collectStrings(json: Json, strings: MutableMap<String, Int>) {
+        when (json) {
+            is Json.Dict -> for ((key, value) in json.elements) {
+                strings.getOrPut(key) { strings.size }
+                collectStrings(value, strings)
+            }
+            is Json.Array -> for (element in json.elements)
+                collectStrings(element, strings)
+            is Json.Value.Text -> strings.getOrPut(json.text) { strings.size }
+        }
+    }
+
+    private fun writeTree(out: DataOutput, json: Json, strings: Map<String, Int>) {
+        when (json) {
+            is Json.Dict -> {
+                out.writeByte(TAG_DICT)
+                writeVarInt(out, json.elements.size)
+                for ((key, value) in json.elements) {
+                    writeVarInt(out, strings.getValue(key))
+                    writeTree(out, value, strings)
+                }
+            }
+            is Json.Array -> {
+                out.writeByte(TAG_ARRAY)
+                writeVarInt(out, json.elements.size)
+                for (element in json.elements)
+                    writeTree(out, element, strings)
+            }
+            is Json.Value.Text -> {
+                out.writeByte(TAG_TEXT)
+                writeVarInt(out, strings.getValue(json.text))
+            }
+            is Json.Value.Number -> writeNumber(out, json.asDouble!!)
+            is Json.Value.Bool -> out.writeByte(if (json.asBoolean == true) TAG_TRUE else TAG_FALSE)
+            else -> out.writeByte(TAG_NULL)
+        }
+    }
+
+    private fun writeNumber(out: DataOutput, value: Double) {
+        val asInt = value.toInt()
+        when {
+            asInt.toDouble() == value && !(value == 0.0 && 1.0 / value < 0) -> {
+                out.writeByte(TAG_INT)
+                writeVarInt(out, (asInt shl 1) xor (asInt shr 31))
+            }
+            value.toFloat().toDouble() == value || value.isNaN() -> {
+                out.writeByte(TAG_FLOAT)
+                out.writeFloat(value.toFloat())
+            }
+            else -> {
+                out.writeByte(TAG_DOUBLE)
+                out.writeDouble(value)
+            }
+        }
+    }
+
+    private fun readTree(input: DataInput, strings: Array<String>): Json = when (val tag = input.readUnsignedByte()) {
+        TAG_NULL -> Json.Value.Null
+        TAG_FALSE -> Json.Value.Bool(false)
+        TAG_TRUE -> Json.Value.Bool(true)
+        TAG_INT -> {
+            val zigzag = readVarInt(input)
+            Json.Value.Number(((zigzag ushr 1) xor -(zigzag and 1)).toDouble())
+        }
+        TAG_FLOAT -> Json.Value.Number(input.readFloat().toDouble())
+        TAG_DOUBLE -> Json.Value.Number(input.readDouble())
+        TAG_TEXT -> Json.Value.Text(string(strings, readVarInt(input)))
+        TAG_ARRAY -> {
+            val count = readVarInt(input)
+            Json.Array(List(count) { readTree(input, strings) })
+        }
+        TAG_DICT -> {
+            val count = readVarInt(input)
+            val map = LinkedHashMap<String, Json>(count * 2)
+            for (i in 0 until count) {
+                val key = string(strings, readVarInt(input))
+                map[key] = readTree(input, strings)
+            }
+            Json.Dict(map)
+        }
+        else -> throw IOException("Unknown compact json tag $tag")
+    }
+
+    private fun string(strings: Array<String>, index: Int): String {
+        if (index < 0 || index >= strings.size)
+            throw IOException("String index $index out of bounds")
+        return strings[index]
+    }
+
+    /** Unsigned LEB128, also used by CompiledContentCache and the chunk data */
+    fun writeVarInt(out: DataOutput, value: Int) {
+        var v = value
+        while (v and 0x7F.inv() != 0) {
+            out.writeByte((v and 0x7F) or 0x80)
+            v = v ushr 7
+        }
+        out.writeByte(v)
+    }
+
+    fun readVarInt(input: DataInput): Int {
+        var value = 0
+        var shift = 0
+        while (true) {
+            val b = input.readUnsignedByte()
+            value = value or ((b and 0x7F) shl shift)
+            if (b and 0x80 == 0)
+                return value
+            shift += 7
+            if (shift > 28)
+                throw IOException("Malformed varint")
+        }
+    }
+}
@@ -6,134 +6,266 @@
 
 package xyz.chunkstories.util.math;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import xyz.chunkstories.api.world.heightmap.Heightmap;
+import xyz.chunkstories.world.heightmap.HeightmapImplementation;
+
+/**
+ * Greedy mesher for far terrain: turns a square patch of one of a heightmap's mip levels into few quads, merging
+ * neighbouring cells of equal height and block type into rectangles. Where neighbouring cells differ in height a wall
+ * closes the gap, and the patch borders get skirts hanging skirtDepth blocks down, hiding the cracks against patches of
+ * other LOD rings.
+ *
+ * Quads are written straight into the caller's buffer as 4 vertices of [x, y, z (floats), block type id, face (ints)],
+ * counter-clockwise seen from the front, in blocks relative to the heightmap's corner. The top of a cell is its height + 1.
+ *
+ * A mesher keeps its mask around from one patch to the next: give each thread its own.
+ */
 public class HeightmapMesher {
-	public HeightmapMesher(int[] heightmap, int[] ids, int offset, int dimension, int x0, int y0, int heightmapSize) {
-		this.heightmap = heightmap;
-		this.ids = ids;
-		this.offset = offset;
-		this.dimension = dimension;
+	public static final int VERTEX_SIZE = 5 * 4;
+	public static final int QUAD_SIZE = 4 * VERTEX_SIZE;
 
-		this.x0 = x0;
-		this.y0 = y0;
-		this.heightmapSize = heightmapSize;
-		mask = new boolean[dimension * dimension];
+	public static final int FACE_TOP = 0;
+	public static final int FACE_POSITIVE_X = 1;
+	public static final int FACE_NEGATIVE_X = 2;
+	public static final int FACE_POSITIVE_Z = 3;
+	public static final int FACE_NEGATIVE_Z = 4;
+
+	private boolean[] mask = new boolean[0];
+
+	private int[] heights, ids;
+	private int offset, resolution, level, x0, z0, size;
+
+	private ByteBuffer out;
+	private int quads;
+	private boolean overflowed;
+
+	/** Meshes that patch of an available heightmap, see below. Returns 0 if the heightmap isn't available */
+	public int mesh(HeightmapImplementation heightmap, int level, int x0, int z0, int size, int skirtDepth, ByteBuffer out) {
+		if (!(heightmap.getState() instanceof Heightmap.State.Available))
+			return 0;
+		return mesh(heightmap.getHeightData(), heightmap.getBlockTypesData(), level, x0, z0, size, skirtDepth, out);
 	}
 
-	boolean[] mask;
-	int[] heightmap, ids;
-	int offset, dimension;
+	/**
+	 * Meshes the size x size cells from (x0, z0) on of mip level 'level', coordinates being in cells of that level, out of
+	 * heightmap data laid out like HeightmapImplementation's. Cells with a negative height have no data and are left out.
+	 *
+	 * Returns how many quads were written, or -1 if out ran out of room: out is then left as it was.
+	 */
+	public int mesh(int[] heightData, int[] blockTypesData, int level, int x0, int z0, int size, int skirtDepth, ByteBuffer out) {
+		this.heights = heightData;
+		this.ids = blockTypesData;
+		this.offset = HeightmapImplementation.Companion.getMainMimpmapOffsets()[level];
+		this.resolution = 256 >> level;
+		this.level = level;
+		this.x0 = x0;
+		this.z0 = z0;
+		this.size = Math.max(0, Math.min(size, Math.min(resolution - x0, resolution - z0)));
+
+		this.out = out;
+		this.quads = 0;
+		this.overflowed = false;
+		int startPosition = out.position();
+
+		int cells = this.size * this.size;
+		if (mask.length < cells)
+			mask = new boolean[cells];
+		else
+			Arrays.fill(mask, 0, cells, false);
+
+		meshTops();
+		meshWalls();
+		meshSkirts(skirtDepth);
 
-	int n = 0;
-	int x, y, w, h;
-	int x0, y0, heightmapSize;
+		this.heights = null;
+		this.ids = null;
+		this.out = null;
 
-	private int accessHeightmap(int x, int y) {
-		return heightmap[offset + (x0 + x) * heightmapSize + (y0 + y)];
+		if (overflowed) {
+			out.position(startPosition);
+			return -1;
+		}
+		return quads;
 	}
 
-	private int accessData(int x, int y) {
-		return ids[offset + (x0 + x) * heightmapSize + (y0 + y)];
+	private int height(int i, int j) {
+		return heights[offset + (x0 + i) * resolution + (z0 + j)];
 	}
 
-	public Surface nextSurface() {
-		// boolean[] mask = new boolean[dimension * dimension];
-		while (n < dimension * dimension) {
-			// Only creates faces once !
-			if (!mask[n]) {
-				x = n / dimension;
-				y = n % dimension;
-				int level = accessHeightmap(x, y);
-				if (level >= 0) {
-					mask[n] = true;
-
-					w = 1;
-					h = 1;
-
-					int i;
-					// Expand X as long as we can
-					for (int j = x + 1; j < dimension; j++) {
-						i = j * dimension + y;
-						if (accessHeightmap(j, y) == level && !mask[i]) {
-							// We are clear to expand the rectangle
-							w++;
-							mask[i] = true;
-						} else {
-							break;
-						}
-					}
-					// Expand Y as long as we can
-					for (int j = y + 1; j < dimension; j++) {
-						// Check the entire next line
-						boolean wholeLineIsOk = true;
-						for (int k = x; k < x + w; k++) {
-							i = k * dimension + j;
-							if (accessHeightmap(k, j) == level && !mask[i]) {
-
-							} else {
-								wholeLineIsOk = false;
-								break;
-							}
-						}
-						if (wholeLineIsOk) {
-							// We are clear to expand the rectangle
-							for (int k = x; k < x + w; k++) {
-								i = k * dimension + j;
-								mask[i] = true;
-							}
-							h++;
-						} else {
-							break;
-						}
-					}
-					n++;
+	private int id(int i, int j) {
+		return ids[offset + (x0 + i) * resolution + (z0 + j)];
+	}
+
+	/** Cell coordinate to blocks */
+	private float blocks(int cell) {
+		return cell << level;
+	}
 
-					return new Surface(x, y, w, h, level, accessData(x, y));
-					// System.out.println("Contains rectangle of "+level+" start: "+x+":"+y+" size:
-					// "+w+"x"+h);
+	private void meshTops() {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				// Only creates faces once !
+				if (mask[i * size + j])
+					continue;
+				int height = height(i, j);
+				if (height < 0)
+					continue;
+				int id = id(i, j);
+				mask[i * size + j] = true;
+
+				// Expand along X as long as we can
+				int w = 1;
+				while (i + w < size && !mask[(i + w) * size + j] && height(i + w, j) == height && id(i + w, j) == id) {
+					mask[(i + w) * size + j] = true;
+					w++;
 				}
+
+				// Then along Z, a whole line at a time
+				int h = 1;
+				expand: while (j + h < size) {
+					for (int k = i; k < i + w; k++) {
+						if (mask[k * size + j + h] || height(k, j + h) != height || id(k, j + h) != id)
+							break expand;
+					}
+					for (int k = i; k < i + w; k++)
+						mask[k * size + j + h] = true;
+					h++;
+				}
+
+				float xa = blocks(x0 + i), xb = blocks(x0 + i + w);
+				float za = blocks(z0 + j), zb = blocks(z0 + j + h);
+				float y = height + 1;
+				quad(xa, y, za, xa, y, zb, xb, y, zb, xb, y, za, id, FACE_TOP);
 			}
-			n++;
 		}
-		return null;
 	}
 
-	class Surface {
-		// Describes a uniform surface
-
-		int x, y, w, h, level, id;
+	/** Walls between neighbouring cells of different heights, merged along runs of identical walls */
+	private void meshWalls() {
+		// Between i and i + 1
+		for (int i = 0; i + 1 < size; i++) {
+			float x = blocks(x0 + i + 1);
+			int j = 0;
+			while (j < size) {
+				int a = height(i, j), b = height(i + 1, j);
+				if (a < 0 || b < 0 || a == b) {
+					j++;
+					continue;
+				}
+				int id = a > b ? id(i, j) : id(i + 1, j);
+				int run = 1;
+				while (j + run < size && height(i, j + run) == a && height(i + 1, j + run) == b
+						&& (a > b ? id(i, j + run) : id(i + 1, j + run)) == id)
+					run++;
 
-		public int getX() {
-			return x;
+				wallX(x, blocks(z0 + j), blocks(z0 + j + run), Math.min(a, b) + 1, Math.max(a, b) + 1, a > b, id);
+				j += run;
+			}
 		}
 
-		public int getY() {
-			return y;
-		}
+		// Between j and j + 1
+		for (int j = 0; j + 1 < size; j++) {
+			float z = blocks(z0 + j + 1);
+			int i = 0;
+			while (i < size) {
+				int a = height(i, j), b = height(i, j + 1);
+				if (a < 0 || b < 0 || a == b) {
+					i++;
+					continue;
+				}
+				int id = a > b ? id(i, j) : id(i, j + 1);
+				int run = 1;
+				while (i + run < size && height(i + run, j) == a && height(i + run, j + 1) == b
+						&& (a > b ? id(i + run, j) : id(i + run, j + 1)) == id)
+					run++;
 
-		public int getW() {
-			return w;
+				wallZ(z, blocks(x0 + i), blocks(x0 + i + run), Math.min(a, b) + 1, Math.max(a, b) + 1, a > b, id);
+				i += run;
+			}
 		}
+	}
 
-		public int getH() {
-			return h;
-		}
+	/** Walls hanging down from the 4 borders of the patch, facing out */
+	private void meshSkirts(int skirtDepth) {
+		if (skirtDepth <= 0 || size == 0)
+			return;
 
-		public int getLevel() {
-			return level;
+		for (int side = 0; side < 2; side++) {
+			int i = side == 0 ? 0 : size - 1;
+			float x = blocks(x0 + i + side);
+			int j = 0;
+			while (j < size) {
+				int height = height(i, j);
+				if (height < 0) {
+					j++;
+					continue;
+				}
+				int id = id(i, j);
+				int run = 1;
+				while (j + run < size && height(i, j + run) == height && id(i, j + run) == id)
+					run++;
+
+				wallX(x, blocks(z0 + j), blocks(z0 + j + run), height + 1 - skirtDepth, height + 1, side == 1, id);
+				j += run;
+			}
 		}
 
-		public int getId() {
-			return id;
+		for (int side = 0; side < 2; side++) {
+			int j = side == 0 ? 0 : size - 1;
+			float z = blocks(z0 + j + side);
+			int i = 0;
+			while (i < size) {
+				int height = height(i, j);
+				if (height < 0) {
+					i++;
+					continue;
+				}
+				int id = id(i, j);
+				int run = 1;
+				while (i + run < size && height(i + run, j) == height && id(i + run, j) == id)
+					run++;
+
+				wallZ(z, blocks(x0 + i), blocks(x0 + i + run), height + 1 - skirtDepth, height + 1, side == 1, id);
+				i += run;
+			}
 		}
+	}
+
+	private void wallX(float x, float za, float zb, float yLow, float yHigh, boolean facingPositive, int id) {
+		if (facingPositive)
+			quad(x, yLow, za, x, yHigh, za, x, yHigh, zb, x, yLow, zb, id, FACE_POSITIVE_X);
+		else
+			quad(x, yLow, zb, x, yHigh, zb, x, yHigh, za, x, yLow, za, id, FACE_NEGATIVE_X);
+	}
+
+	private void wallZ(float z, float xa, float xb, float yLow, float yHigh, boolean facingPositive, int id) {
+		if (facingPositive)
+			quad(xa, yLow, z, xb, yLow, z, xb, yHigh, z, xa, yHigh, z, id, FACE_POSITIVE_Z);
+		else
+			quad(xb, yLow, z, xa, yLow, z, xa, yHigh, z, xb, yHigh, z, id, FACE_NEGATIVE_Z);
+	}
 
-		public Surface(int x, int y, int w, int h, int level, int id) {
-			super();
-			this.x = x;
-			this.y = y;
-			this.w = w;
-			this.h = h;
-			this.level = level;
-			this.id = id;
+	private void quad(float ax, float ay, float az, float bx, float by, float bz, float cx, float cy, float cz, float dx,
+			float dy, float dz, int id, int face) {
+		if (overflowed || out.remaining() < QUAD_SIZE) {
+			overflowed = true;
+			return;
 		}
+		vertex(ax, ay, az, id, face);
+		vertex(bx, by, bz, id, face);
+		vertex(cx, cy, cz, id, face);
+		vertex(dx, dy, dz, id, face);
+		quads++;
+	}
+
+	private void vertex(float x, float y, float z, int id, int face) {
+		out.putFloat(x);
+		out.putFloat(y);
+		out.putFloat(z);
+		out.putInt(id);
+		out.putInt(face);
 	}
 }
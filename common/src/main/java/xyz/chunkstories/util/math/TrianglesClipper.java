@@ -9,109 +9,173 @@ package xyz.chunkstories.util.math;
 import java.nio.ByteBuffer;
 
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3dc;
-import org.joml.Vector3f;
 import org.joml.Vector3fc;
 import org.joml.Vector4f;
 
 /**
- * Cuts up triangles so they don't stick outside the boundaries of the block (iirc)
+ * Cuts up triangles so they don't stick outside the boundaries of a decal's box, giving back the pieces that remain along
+ * with their texture coordinates on the decal.
  *
- * Straight from the 6th gate of hell, forged in the shattered skulls of fresh
- * babies, this code should not be messed with. Proceed at your own risk.
+ * Input triangles are 3 vertices of [position, normal] (18 floats, only the first normal is looked at to skip
+ * back-facing triangles), output vertices are [position, decal uv] (5 floats). A triangle clips to at most
+ * MAX_TRIANGLES_PER_INPUT pieces.
  *
- * Aka I made this work in one evening years ago and it deserves a proper rewrite :)
+ * Clippers keep all their scratch state to themselves and don't allocate while clipping: use one per thread, either
+ * your own or forCurrentThread(). Intermediate vertices live on a small stack of floats (4 per vertex, clip space), and
+ * each clipping step pops what it pushed once it's done.
  */
 public class TrianglesClipper {
-	private static Matrix4f toClipSpace;
-	private static Matrix4f fromClipSpace;
+	public static final int INPUT_TRIANGLE_FLOATS = 18;
+	public static final int OUTPUT_VERTEX_FLOATS = 5;
+	/** Each of the 4 borders can split every piece in two */
+	public static final int MAX_TRIANGLES_PER_INPUT = 16;
 
-	private static ByteBuffer out;
+	private static final ThreadLocal<TrianglesClipper> perThread = ThreadLocal.withInitial(TrianglesClipper::new);
 
-	public static synchronized int clipTriangles(ByteBuffer in, ByteBuffer out, Matrix4f rotationMatrix,
-			Vector3dc originPosition, Vector3fc direction, Vector3dc size) {
-		int actualCount = 0;
+	/** The clipper of the calling thread */
+	public static TrianglesClipper forCurrentThread() {
+		return perThread.get();
+	}
 
-		toClipSpace = new Matrix4f(rotationMatrix);
-		toClipSpace.translate(
-				new Vector3f((float) originPosition.x(), (float) originPosition.y(), (float) originPosition.z())
-						.negate());
+	private final Matrix4f toClipSpace = new Matrix4f();
+	private final Matrix4f fromClipSpace = new Matrix4f();
+	private final Matrix4f resize = new Matrix4f();
+	private final Matrix4f decal = new Matrix4f();
+	private float directionX, directionY, directionZ;
 
-		Matrix4f resize = new Matrix4f();
-		resize.scale(new Vector3f(1f / (float) size.x(), 1f / (float) size.y(), 1));
+	private final Vector4f temp = new Vector4f();
+	private final Vector4f transformedTemp = new Vector4f();
 
-		resize.transpose();
+	// 3 input vertices, 2 more per clipping step at most
+	private final float[] stack = new float[4 * (3 + 4 * 2)];
+	private int top = 0;
 
-		resize.mul(toClipSpace, toClipSpace);
+	private final float[] triangle = new float[INPUT_TRIANGLE_FLOATS];
+
+	// Either one of those is where the pieces go
+	private float[] outArray;
+	private int outStart, outPosition;
+	private ByteBuffer outBuffer;
+
+	/** Sets up the box to clip against: the decal is size.x by size.y, centered on originPosition and projected along direction */
+	public void setDecal(Matrix4fc rotationMatrix, Vector3dc originPosition, Vector3fc direction, Vector3dc size) {
+		toClipSpace.set(rotationMatrix);
+		toClipSpace.translate(-(float) originPosition.x(), -(float) originPosition.y(), -(float) originPosition.z());
 
-		Matrix4f decal = new Matrix4f();
-		decal.translate(new Vector3f(0.5f, 0.5f, 1.0f));
+		resize.identity();
+		resize.scale(1f / (float) size.x(), 1f / (float) size.y(), 1);
+		resize.transpose();
+		resize.mul(toClipSpace, toClipSpace);
 
+		decal.identity();
+		decal.translate(0.5f, 0.5f, 1.0f);
 		decal.mul(toClipSpace, toClipSpace);
 
-		fromClipSpace = new Matrix4f();
 		toClipSpace.invert(fromClipSpace);
 
-		TrianglesClipper.out = out;
+		directionX = direction.x();
+		directionY = direction.y();
+		directionZ = direction.z();
+	}
 
-		while (in.hasRemaining()) {
-			Vector3f triVert1 = new Vector3f(in.getFloat(), in.getFloat(), in.getFloat());
-
-			// Skip backward-facing tris
-			Vector3f normal = new Vector3f(in.getFloat(), in.getFloat(), in.getFloat());
-			if (normal.dot(direction) >= 0) {
-				for (int i = 0; i < 12; i++)
-					in.getFloat();
-				continue;
-			}
+	/**
+	 * Clips triangleCount triangles read from triangles[offset] on, writing the pieces from out[outOffset] on. When out
+	 * fills up writing wraps around to outOffset, the oldest pieces making room for the new ones.
+	 *
+	 * Returns how many vertices were written, wrapped around or not.
+	 */
+	public int clip(float[] triangles, int offset, int triangleCount, float[] out, int outOffset) {
+		outArray = out;
+		outStart = outOffset;
+		outPosition = outOffset;
+		outBuffer = null;
+
+		int count = 0;
+		for (int t = 0; t < triangleCount; t++)
+			count += 3 * clipTriangle(triangles, offset + t * INPUT_TRIANGLE_FLOATS);
+
+		outArray = null;
+		return count;
+	}
 
-			Vector3f triVert2 = new Vector3f(in.getFloat(), in.getFloat(), in.getFloat());
-			// Etc
-			for (int i = 0; i < 3; i++)
-				in.getFloat();
-			Vector3f triVert3 = new Vector3f(in.getFloat(), in.getFloat(), in.getFloat());
-			// Etc
-			for (int i = 0; i < 3; i++)
-				in.getFloat();
+	/** Same as clip(), for triangles in a buffer. Output wraps around to the start of out when full */
+	public int clip(ByteBuffer in, ByteBuffer out) {
+		outArray = null;
+		outBuffer = out;
 
-			actualCount += 3 * cull(triVert1, triVert2, triVert3);
+		int count = 0;
+		while (in.hasRemaining()) {
+			for (int i = 0; i < INPUT_TRIANGLE_FLOATS; i++)
+				triangle[i] = in.getFloat();
+			count += 3 * clipTriangle(triangle, 0);
 		}
 
-		return actualCount;
+		outBuffer = null;
+		return count;
 	}
 
-	private static int cull(Vector3f vert1, Vector3f vert2, Vector3f vert3) {
-		Vector4f tv1 = new Vector4f();
-		toClipSpace.transform(new Vector4f(vert1.x(), vert1.y(), vert1.z(), 1.0f), tv1);
-		// Matrix4f.transform(toClipSpace, new Vector4f(vert1.x(), vert1.y(), vert1.z(),
-		// 1.0f), null);
-		Vector4f tv2 = new Vector4f();
-		toClipSpace.transform(new Vector4f(vert2.x(), vert2.y(), vert2.z(), 1.0f), tv2);
-		// Matrix4f.transform(toClipSpace, new Vector4f(vert2.x(), vert2.y(), vert2.z(),
-		// 1.0f), null);
-		Vector4f tv3 = new Vector4f();
-		toClipSpace.transform(new Vector4f(vert3.x(), vert3.y(), vert3.z(), 1.0f), tv3);
-		// Matrix4f.transform(toClipSpace, new Vector4f(vert3.x(), vert3.y(), vert3.z(),
-		// 1.0f), null);
-
-		if (tv1.x() < 0.0 && tv2.x() < 0.0 && tv3.x() < 0.0)
+	/** Uses the calling thread's clipper */
+	public static int clipTriangles(ByteBuffer in, ByteBuffer out, Matrix4f rotationMatrix, Vector3dc originPosition,
+			Vector3fc direction, Vector3dc size) {
+		TrianglesClipper clipper = forCurrentThread();
+		clipper.setDecal(rotationMatrix, originPosition, direction, size);
+		return clipper.clip(in, out);
+	}
+
+	private int clipTriangle(float[] t, int o) {
+		// Skip backward-facing tris
+		if (t[o + 3] * directionX + t[o + 4] * directionY + t[o + 5] * directionZ >= 0)
+			return 0;
+
+		top = 0;
+		int tv1 = pushTransformed(t[o], t[o + 1], t[o + 2]);
+		int tv2 = pushTransformed(t[o + 6], t[o + 7], t[o + 8]);
+		int tv3 = pushTransformed(t[o + 12], t[o + 13], t[o + 14]);
+
+		float[] s = stack;
+		if (s[tv1] < 0.0 && s[tv2] < 0.0 && s[tv3] < 0.0)
 			return 0;
-		if (tv1.y() < 0.0 && tv2.y() < 0.0 && tv3.y() < 0.0)
+		if (s[tv1 + 1] < 0.0 && s[tv2 + 1] < 0.0 && s[tv3 + 1] < 0.0)
 			return 0;
-		if (tv1.x() > 1.0 && tv2.x() > 1.0 && tv3.x() > 1.0)
+		if (s[tv1] > 1.0 && s[tv2] > 1.0 && s[tv3] > 1.0)
 			return 0;
-		if (tv1.y() > 1.0 && tv2.y() > 1.0 && tv3.y() > 1.0)
+		if (s[tv1 + 1] > 1.0 && s[tv2 + 1] > 1.0 && s[tv3 + 1] > 1.0)
 			return 0;
 		return cullLeft(tv1, tv2, tv3);
 	}
 
-	private static int cullLeft(Vector4f vert1, Vector4f vert2, Vector4f vert3) {
-		// Sort
-		Vector4f v1, v2, v3;
-		if (vert1.x() > vert2.x()) {
-			if (vert1.x() > vert3.x()) {
+	private int pushTransformed(float x, float y, float z) {
+		toClipSpace.transform(temp.set(x, y, z, 1.0f));
+		int v = top;
+		stack[v] = temp.x;
+		stack[v + 1] = temp.y;
+		stack[v + 2] = temp.z;
+		stack[v + 3] = temp.w;
+		top += 4;
+		return v;
+	}
+
+	/** Pushes (a - b) * factor + b */
+	private int pushBetween(int a, int b, float factor) {
+		float[] s = stack;
+		int v = top;
+		for (int i = 0; i < 4; i++)
+			s[v + i] = (s[a + i] - s[b + i]) * factor + s[b + i];
+		top += 4;
+		return v;
+	}
+
+	/** Returns the 3 vertices sorted along that component, packed in an int from lowest to highest */
+	private int sorted(int vert1, int vert2, int vert3, int component) {
+		float[] s = stack;
+		float a = s[vert1 + component], b = s[vert2 + component], c = s[vert3 + component];
+		int v1, v2, v3;
+		if (a > b) {
+			if (a > c) {
 				v3 = vert1;
-				if (vert2.x() > vert3.x()) {
+				if (b > c) {
 					v2 = vert2;
 					v1 = vert3;
 				} else {
@@ -120,7 +184,7 @@ public class TrianglesClipper {
 				}
 			} else {
 				v2 = vert1;
-				if (vert2.x() > vert3.x()) {
+				if (b > c) {
 					v3 = vert2;
 					v1 = vert3;
 				} else {
@@ -129,9 +193,9 @@ public class TrianglesClipper {
 				}
 			}
 		} else {
-			if (vert2.x() > vert3.x()) {
+			if (b > c) {
 				v3 = vert2;
-				if (vert1.x() > vert3.x()) {
+				if (a > c) {
 					v2 = vert1;
 					v1 = vert3;
 				} else {
@@ -144,271 +208,175 @@ public class TrianglesClipper {
 				v1 = vert1;
 			}
 		}
-		if (v1.x() <= v2.x() && v2.x() <= v3.x()) {
+		return v1 | (v2 << 8) | (v3 << 16);
+	}
 
-		} else {
-			/*System.out.println("cullLeft: X ordering is wrong: " + v1.x() + " " + v2.x() + " " + v3.x());
-			System.out.println("Input was: " + vert1.x() + " " + vert2.x() + " " + vert3.x());
-			System.out.println("Input aka: " + vert1 + " " + vert2 + " " + vert3);*/
+	private int cullLeft(int vert1, int vert2, int vert3) {
+		int order = sorted(vert1, vert2, vert3, 0);
+		int v1 = order & 0xFF, v2 = (order >> 8) & 0xFF, v3 = order >> 16;
+		float[] s = stack;
+		float x1 = s[v1], x2 = s[v2], x3 = s[v3];
+		// NaNs
+		if (!(x1 <= x2 && x2 <= x3))
 			return 0;
-		}
 
-		// Actual culling here
+		int savedTop = top;
+		int count;
 		float border = 0.0f;
 		// One point is clipping
-		if (v1.x() < border && v2.x() > border && v3.x() > border) {
-			float d2to1 = v2.x() - v1.x();
-			float d2tb = v2.x();
-			Vector4f v2to1 = new Vector4f(v1).sub(v2);
-			v2to1.mul((d2tb) / d2to1);
-			v2to1.add(v2);
+		if (x1 < border && x2 > border && x3 > border) {
+			int v2to1 = pushBetween(v1, v2, x2 / (x2 - x1));
 			int t = cullRight(v2to1, v2, v3);
 
-			float d3to1 = v3.x() - v1.x();
-			float d3tb = v3.x();
-			Vector4f v3to1 = new Vector4f(v1).sub(v3);
-			v3to1.mul((d3tb) / d3to1);
-			v3to1.add(v3);
-			return t + cullRight(v2to1, v3, v3to1);
+			int v3to1 = pushBetween(v1, v3, x3 / (x3 - x1));
+			count = t + cullRight(v2to1, v3, v3to1);
 		}
 		// Two points are
-		else if (v1.x() < border && v2.x() < border && v3.x() > border) {
-			float d3tb = v3.x();
-
-			float d3to1 = v3.x() - v1.x();
-			Vector4f v3to1 = new Vector4f(v1).sub(v3);
-			v3to1.mul((d3tb) / d3to1);
-			v3to1.add(v3);
-
-			float d3to2 = v3.x() - v2.x();
-			Vector4f v3to2 = new Vector4f(v2).sub(v3);
-			v3to2.mul((d3tb) / d3to2);
-			v3to2.add(v3);
-
-			// System.out.println("v3to1"+v3to1);
-
-			return cullRight(v3to1, v3, v3to2);
+		else if (x1 < border && x2 < border && x3 > border) {
+			int v3to1 = pushBetween(v1, v3, x3 / (x3 - x1));
+			int v3to2 = pushBetween(v2, v3, x3 / (x3 - x2));
+			count = cullRight(v3to1, v3, v3to2);
 		}
 		// All are
-		else if (v1.x() < border && v2.x() < border && v3.x() < border) {
-			// System.out.println("all out !");
-			return 0;
+		else if (x1 < border && x2 < border && x3 < border) {
+			count = 0;
 		}
 		// None are
 		else {
-			return cullRight(v1, v2, v3);
+			count = cullRight(v1, v2, v3);
 		}
+		top = savedTop;
+		return count;
 	}
 
-	private static int cullRight(Vector4f v1, Vector4f v2, Vector4f v3) {
+	private int cullRight(int v1, int v2, int v3) {
+		float[] s = stack;
+		float x1 = s[v1], x2 = s[v2], x3 = s[v3];
+
+		int savedTop = top;
+		int count;
 		float border = 1.0f;
 		// One point is clipping
-		if (v1.x() < border && v2.x() < border && v3.x() > border) {
-			// System.out.println("clipping...");
+		if (x1 < border && x2 < border && x3 > border) {
 			// Continue the two segments up to the border
-			float d2t3 = v3.x() - v2.x();
-			float d2tb = border - v2.x();
-			Vector4f v2to3 = new Vector4f(v3).sub(v2);
-			v2to3.mul((d2tb) / d2t3);
-			v2to3.add(v2);
-			// System.out.println(v2to3+" is in of clip ("+v2to3.x+")");
-			// other one
-
-			float d1t3 = v3.x() - v1.x();
-			float d1tb = border - v1.x();
-			Vector4f v1to3 = new Vector4f(v3).sub(v1);
-			v1to3.mul((d1tb) / d1t3);
-			v1to3.add(v1);
-			// System.out.println(v1to3+" is in of clip ("+v1to3.x+")");
-
-			return cullTop(v1, v2, v1to3) + cullTop(v2to3, v2, v1to3);
+			int v2to3 = pushBetween(v3, v2, (border - x2) / (x3 - x2));
+			int v1to3 = pushBetween(v3, v1, (border - x1) / (x3 - x1));
+			count = cullTop(v1, v2, v1to3) + cullTop(v2to3, v2, v1to3);
 		}
 		// Two points are
-		else if (v1.x() < border && v2.x() > border && v3.x() > border) {
-			float d1t3 = v3.x() - v1.x();
-			float d1tb = border - v1.x();
-			Vector4f v1to3 = new Vector4f(v3).sub(v1);
-			v1to3.mul((d1tb) / d1t3);
-			v1to3.add(v1);
-			// other one
-			float d1t2 = v2.x() - v1.x();
-			// float d1tb = border - v1.x;
-			Vector4f v1to2 = new Vector4f(v2).sub(v1);
-			v1to2.mul((d1tb) / d1t2);
-			v1to2.add(v1);
-
-			return cullTop(v1, v1to2, v1to3);
-		} else if (v1.x() > border && v2.x() > border && v3.x() > border) {
-			// System.out.println("all out !");
-			return 0;
+		else if (x1 < border && x2 > border && x3 > border) {
+			int v1to3 = pushBetween(v3, v1, (border - x1) / (x3 - x1));
+			int v1to2 = pushBetween(v2, v1, (border - x1) / (x2 - x1));
+			count = cullTop(v1, v1to2, v1to3);
+		} else if (x1 > border && x2 > border && x3 > border) {
+			count = 0;
 		} else {
-			return cullTop(v1, v2, v3);
+			count = cullTop(v1, v2, v3);
 		}
+		top = savedTop;
+		return count;
 	}
 
-	private static int cullTop(Vector4f vert1, Vector4f vert2, Vector4f vert3) {
-		Vector4f v1, v2, v3;
-		if (vert1.y() > vert2.y()) {
-			if (vert1.y() > vert3.y()) {
-				v3 = vert1;
-				if (vert2.y() > vert3.y()) {
-					v2 = vert2;
-					v1 = vert3;
-				} else {
-					v2 = vert3;
-					v1 = vert2;
-				}
-			} else {
-				v2 = vert1;
-				if (vert2.y() > vert3.y()) {
-					v3 = vert2;
-					v1 = vert3;
-				} else {
-					v3 = vert3;
-					v1 = vert2;
-				}
-			}
-		} else {
-			if (vert2.y() > vert3.y()) {
-				v3 = vert2;
-				if (vert1.y() > vert3.y()) {
-					v2 = vert1;
-					v1 = vert3;
-				} else {
-					v2 = vert3;
-					v1 = vert1;
-				}
-			} else {
-				v2 = vert2;
-				v3 = vert3;
-				v1 = vert1;
-			}
-		}
-		if (v1.y() <= v2.y() && v2.y() <= v3.y()) {
-
-		} else {
-			System.out.println(":poop: Y" + v1 + v2 + v3);
+	private int cullTop(int vert1, int vert2, int vert3) {
+		int order = sorted(vert1, vert2, vert3, 1);
+		int v1 = order & 0xFF, v2 = (order >> 8) & 0xFF, v3 = order >> 16;
+		float[] s = stack;
+		float y1 = s[v1 + 1], y2 = s[v2 + 1], y3 = s[v3 + 1];
+		// NaNs
+		if (!(y1 <= y2 && y2 <= y3))
 			return 0;
-		}
-		// Actual culling here
 
+		int savedTop = top;
+		int count;
 		float border = 1.0f;
 		// One point is clipping
-		if (v1.y() < border && v2.y() < border && v3.y() > border) {
-			// System.out.println("clipping...");
+		if (y1 < border && y2 < border && y3 > border) {
 			// Continue the two segments up to the border
-			float d2t3 = v3.y() - v2.y();
-			float d2tb = border - v2.y();
-			Vector4f v2to3 = new Vector4f(v3).sub(v2);
-			v2to3.mul((d2tb) / d2t3);
-			v2to3.add(v2);
-			// System.out.println(v2to3+" is in of clip ("+v2to3.y+")");
-			// other one
-
-			float d1t3 = v3.y() - v1.y();
-			float d1tb = border - v1.y();
-			Vector4f v1to3 = new Vector4f(v3).sub(v1);
-			v1to3.mul((d1tb) / d1t3);
-			v1to3.add(v1);
-			// System.out.println(v1to3+" is in of clip ("+v1to3.y+")");
-
-			return cullBot(v1, v2, v1to3) + cullBot(v2to3, v2, v1to3);
+			int v2to3 = pushBetween(v3, v2, (border - y2) / (y3 - y2));
+			int v1to3 = pushBetween(v3, v1, (border - y1) / (y3 - y1));
+			count = cullBot(v1, v2, v1to3) + cullBot(v2to3, v2, v1to3);
 		}
 		// Two points are
-		else if (v1.y() < border && v2.y() > border && v3.y() > border) {
-			float d1t3 = v3.y() - v1.y();
-			float d1tb = border - v1.y();
-			Vector4f v1to3 = new Vector4f(v3).sub(v1);
-			v1to3.mul((d1tb) / d1t3);
-			v1to3.add(v1);
-			// other one
-			float d1t2 = v2.y() - v1.y();
-			// float d1tb = border - v1.y;
-			Vector4f v1to2 = new Vector4f(v2).sub(v1);
-			v1to2.mul((d1tb) / d1t2);
-			v1to2.add(v1);
-
-			return cullBot(v1, v1to2, v1to3);
-		} else if (v1.y() > border && v2.y() > border && v3.y() > border) {
-			// System.out.println("all out !");
-			return 0;
+		else if (y1 < border && y2 > border && y3 > border) {
+			int v1to3 = pushBetween(v3, v1, (border - y1) / (y3 - y1));
+			int v1to2 = pushBetween(v2, v1, (border - y1) / (y2 - y1));
+			count = cullBot(v1, v1to2, v1to3);
+		} else if (y1 > border && y2 > border && y3 > border) {
+			count = 0;
 		} else {
-			return cullBot(v1, v2, v3);
+			count = cullBot(v1, v2, v3);
 		}
+		top = savedTop;
+		return count;
 	}
 
-	private static int cullBot(Vector4f v1, Vector4f v2, Vector4f v3) {
+	private int cullBot(int v1, int v2, int v3) {
+		float[] s = stack;
+		float y1 = s[v1 + 1], y2 = s[v2 + 1], y3 = s[v3 + 1];
+
+		int savedTop = top;
+		int count;
 		float border = 0.0f;
 		// One point is clipping
-		if (v1.y() < border && v2.y() > border && v3.y() > border) {
-			float d2to1 = v2.y() - v1.y();
-			float d2tb = v2.y();
-			Vector4f v2to1 = new Vector4f(v1).sub(v2);
-			v2to1.mul((d2tb) / d2to1);
-			v2to1.add(v2);
+		if (y1 < border && y2 > border && y3 > border) {
+			int v2to1 = pushBetween(v1, v2, y2 / (y2 - y1));
 			int t = cullDone(v2to1, v2, v3);
 
-			float d3to1 = v3.y() - v1.y();
-			float d3tb = v3.y();
-			Vector4f v3to1 = new Vector4f(v1).sub(v3);
-			v3to1.mul((d3tb) / d3to1);
-			v3to1.add(v3);
-			return t + cullDone(v2to1, v3, v3to1);
+			int v3to1 = pushBetween(v1, v3, y3 / (y3 - y1));
+			count = t + cullDone(v2to1, v3, v3to1);
 		}
 		// Two points are
-		else if (v1.y() < border && v2.y() < border && v3.y() > border) {
-			float d3tb = v3.y();
-
-			float d3to1 = v3.y() - v1.y();
-			Vector4f v3to1 = new Vector4f(v1).sub(v3);
-			v3to1.mul((d3tb) / d3to1);
-			v3to1.add(v3);
-
-			float d3to2 = v3.y() - v2.y();
-			Vector4f v3to2 = new Vector4f(v2).sub(v3);
-			v3to2.mul((d3tb) / d3to2);
-			v3to2.add(v3);
-
-			// System.out.println("v3to1"+v3to1);
-
-			return cullDone(v3to1, v3, v3to2);
+		else if (y1 < border && y2 < border && y3 > border) {
+			int v3to1 = pushBetween(v1, v3, y3 / (y3 - y1));
+			int v3to2 = pushBetween(v2, v3, y3 / (y3 - y2));
+			count = cullDone(v3to1, v3, v3to2);
 		}
 		// All are
-		else if (v1.y() < border && v2.y() < border && v3.y() < border) {
-			return 0;
-			// System.out.println("all out !");
+		else if (y1 < border && y2 < border && y3 < border) {
+			count = 0;
 		}
 		// None are
 		else {
-			return cullDone(v1, v2, v3);
+			count = cullDone(v1, v2, v3);
 		}
+		top = savedTop;
+		return count;
 	}
 
-	private static int cullDone(Vector4f vert1, Vector4f vert2, Vector4f vert3) {
-		out(vert1);
-		out(vert2);
-		out(vert3);
-
+	private int cullDone(int v1, int v2, int v3) {
+		out(v1);
+		out(v2);
+		out(v3);
 		return 1;
 	}
 
-	private static Vector4f transformedTemp = new Vector4f();
-
-	private static void out(Vector4f transformMe) {
-		// Wrap round out buffer
-		if (out.position() == out.capacity())
-			out.position(0);
-
-		// out(vert, tm.x, tm.y);
-		// Vector4f keke = Matrix4f.transform(fromClipSpace, tm, null);
-
-		fromClipSpace.transform(transformMe, transformedTemp);
-
-		out.putFloat((float) transformedTemp.x());
-		out.putFloat((float) transformedTemp.y());
-		out.putFloat((float) transformedTemp.z());
-
-		out.putFloat(transformMe.x());
-		out.putFloat(transformMe.y());
+	private void out(int v) {
+		float[] s = stack;
+		temp.set(s[v], s[v + 1], s[v + 2], s[v + 3]);
+		fromClipSpace.transform(temp, transformedTemp);
+
+		if (outArray != null) {
+			// Wrap round out array
+			if (outPosition + OUTPUT_VERTEX_FLOATS > outArray.length)
+				outPosition = outStart;
+
+			float[] o = outArray;
+			o[outPosition] = transformedTemp.x;
+			o[outPosition + 1] = transformedTemp.y;
+			o[outPosition + 2] = transformedTemp.z;
+			o[outPosition + 3] = s[v];
+			o[outPosition + 4] = s[v + 1];
+			outPosition += OUTPUT_VERTEX_FLOATS;
+		} else {
+			// Wrap round out buffer
+			if (outBuffer.position() == outBuffer.capacity())
+				outBuffer.position(0);
+
+			outBuffer.putFloat(transformedTemp.x);
+			outBuffer.putFloat(transformedTemp.y);
+			outBuffer.putFloat(transformedTemp.z);
+			outBuffer.putFloat(s[v]);
+			outBuffer.putFloat(s[v + 1]);
+		}
 	}
 }
@@ -0,0 +1,131 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util.profiling
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Fixed-size, lock-free histogram of durations, in log-linear microsecond buckets (four per power of two, so within
+ * ~25% of the real value). Recording is one atomic increment.
+ *
+ * It's rolling: samples land in the current window, and percentiles are computed over the current and the previous
+ * windows, so old spikes age out after two windows.
+ */
+class LatencyHistogram(val name: String, private val windowNanos: Long = 10_000_000_000L) {
+    private val windows = arrayOf(AtomicLongArray(BUCKETS), AtomicLongArray(BUCKETS))
+    private val windowsMax = arrayOf(AtomicLong(), AtomicLong())
+
+    @Volatile
+    private var current = 0
+    @Volatile
+    private var windowStart = System.nanoTime()
+
+    val totalCount = AtomicLong()
+
+    fun record(nanos: Long) {
+        rotateIfNeeded()
+        val window = current
+        windows[window].incrementAndGet(bucketOf(nanos / 1000))
+        val max = windowsMax[window]
+        while (true) {
+            val previous = max.get()
+            if (nanos <= previous || max.compareAndSet(previous, nanos))
+                break
+        }
+        totalCount.incrementAndGet()
+    }
+
+    inline fun <T> time(block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(System.nanoTime() - start)
+        }
+    }
+
+    private fun rotateIfNeeded() {
+        val now = System.nanoTime()
+        if (now - windowStart < windowNanos)
+            return
+        synchronized(this) {
+            if (now - windowStart < windowNanos)
+                return
+            val next = 1 - current
+            val buckets = windows[next]
+            for (i in 0 until BUCKETS)
+                buckets.set(i, 0)
+            windowsMax[next].set(0)
+            current = next
+            windowStart = now
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        for (window in 0..1) {
+            for (i in 0 until BUCKETS)
+                windows[window].set(i, 0)
+            windowsMax[window].set(0)
+        }
+        totalCount.set(0)
+        windowStart = System.nanoTime()
+    }
+
+    fun snapshot(): Snapshot {
+        rotateIfNeeded()
+        val merged = LongArray(BUCKETS)
+        var count = 0L
+        for (window in windows)
+            for (i in 0 until BUCKETS) {
+                val c = window.get(i)
+                merged[i] += c
+                count += c
+            }
+
+        fun percentile(p: Double): Long {
+            if (count == 0L)
+                return 0
+            val rank = Math.ceil(count * p).toLong().coerceAtLeast(1)
+            var seen = 0L
+            for (i in 0 until BUCKETS) {
+                seen += merged[i]
+                if (seen >= rank)
+                    return bucketUpperBound(i)
+            }
+            return bucketUpperBound(BUCKETS - 1)
+        }
+
+        val maxMicros = Math.max(windowsMax[0].get(), windowsMax[1].get()) / 1000
+        return Snapshot(name, count, totalCount.get(), percentile(0.5), percentile(0.9), percentile(0.99), maxMicros)
+    }
+
+    /** Percentiles and max in microseconds, count over the last two windows */
+    data class Snapshot(val name: String, val count: Long, val totalCount: Long, val p50: Long, val p90: Long, val p99: Long, val max: Long)
+
+    companion object {
+        const val BUCKETS = 8 + 60 * 4
+
+        fun bucketOf(micros: Long): Int {
+            if (micros < 8)
+                return Math.max(0, micros.toInt())
+            val msb = 63 - java.lang.Long.numberOfLeadingZeros(micros)
+            val sub = ((micros ushr (msb - 2)) and 3).toInt()
+            return Math.min(BUCKETS - 1, 8 + (msb - 3) * 4 + sub)
+        }
+
+        /** The largest value that lands in that bucket */
+        fun bucketUpperBound(bucket: Int): Long {
+            if (bucket < 8)
+                return bucket.toLong()
+            val msb = (bucket - 8) / 4 + 3
+            val sub = (bucket - 8) % 4
+            return ((5L + sub) shl (msb - 2)) - 1
+        }
+    }
+}
@@ -0,0 +1,55 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util.profiling
+
+import com.google.gson.GsonBuilder
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Always-on registry of LatencyHistograms for the engine's hot paths (world tick phases, IO tasks, worker tasks).
+ * Hold on to the histogram you get from histogram() rather than looking it up by name every time.
+ */
+object TickProfiler {
+    private val histograms = ConcurrentHashMap<String, LatencyHistogram>()
+
+    fun histogram(name: String): LatencyHistogram = histograms.computeIfAbsent(name) { LatencyHistogram(it) }
+
+    fun snapshot(): List<LatencyHistogram.Snapshot> = histograms.values.map { it.snapshot() }.sortedBy { it.name }
+
+    /** Clears the samples, the histograms themselves are kept since callers hold on to them */
+    fun reset() {
+        histograms.values.forEach { it.clear() }
+    }
+
+    /** Human-readable table, one line per histogram, times in ms */
+    fun report(): List<String> {
+        val lines = mutableListOf(String.format("%-40s %8s %9s %9s %9s %9s", "section", "count", "p50", "p90", "p99", "max"))
+        for (s in snapshot()) {
+            if (s.count == 0L)
+                continue
+            lines.add(String.format("%-40s %8d %9.3f %9.3f %9.3f %9.3f", s.name, s.count, s.p50 / 1000.0, s.p90 / 1000.0, s.p99 / 1000.0, s.max / 1000.0))
+        }
+        return lines
+    }
+
+    /** Machine-readable dump of every histogram, times in microseconds */
+    fun dumpJson(): String {
+        val dump = mapOf(
+                "timestamp" to System.currentTimeMillis(),
+                "unit" to "us",
+                "sections" to snapshot())
+        return GsonBuilder().setPrettyPrinting().create().toJson(dump)
+    }
+
+    fun dumpToFile(folder: File = File("./profiling/")): File {
+        folder.mkdirs()
+        val file = File(folder, "profile-${System.currentTimeMillis()}.json")
+        file.writeText(dumpJson())
+        return file
+    }
+}
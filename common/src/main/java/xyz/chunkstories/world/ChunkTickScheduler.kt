@@ -0,0 +1,195 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world
+
+import xyz.chunkstories.api.block.BlockType
+import xyz.chunkstories.api.math.MathUtils.floor
+import xyz.chunkstories.api.player.Player
+import xyz.chunkstories.api.player.entityIfIngame
+import xyz.chunkstories.world.chunk.ChunkImplementation
+import java.lang.reflect.Method
+
+/**
+ * Decides which chunks get ticked and when. The set of chunks near players is only rebuilt when one of them crosses a
+ * chunk border, and is kept sorted in distance buckets so the nearest chunks are served first.
+ *
+ * Every chunk in the set gets ticked once every physicsRate world ticks, but they are spread over those ticks instead
+ * of all going at once. At most chunkTicksBudget chunks are ticked per world tick (-DchunkTicksBudget): past that, half
+ * the budget still goes to the nearest chunks and the other half rotates over the farther ones, which then wait for
+ * their next turn (see ChunkTickSpread).
+ */
+class ChunkTickScheduler(private val world: WorldMasterImplementation) {
+    private val sizeInChunks = world.properties.size.sizeInChunks
+    private val heightInChunks = world.properties.size.heightInChunks
+
+    /** Last chunk each player was seen in, packed with chunkKey() */
+    private val playersChunks = HashMap<Player, Long>()
+
+    /** Chunks near players, nearest buckets first */
+    private var tickable = LongArray(0)
+
+    private val spread = ChunkTickSpread(Integer.getInteger("chunkTicksBudget", 512))
+
+    /** Which block type ids actually override tick(), by the world's content translator ids */
+    private var tickingBlockTypes = BooleanArray(0)
+    private var tickingBuiltFrom: Map<BlockType, Int>? = null
+    private var tickingBuiltFromSize = -1
+    private var tickingBuiltForGeneration = -1
+
+    val tickableChunksCount: Int
+        get() = tickable.size
+
+    fun tick(ticksElapsed: Long, physicsRate: Int) {
+        if (playersMoved())
+            rebuildTickable()
+        updateTickingBlockTypes()
+
+        val selected = spread.select(tickable.size, ticksElapsed, physicsRate)
+        for (n in 0 until selected) {
+            val key = tickable[spread.selected[n]]
+            val chunk = world.chunksManager.getChunk(keyX(key), keyY(key), keyZ(key)) ?: continue
+            chunk.tick(tickingBlockTypes)
+        }
+    }
+
+    /** Rebuilds tickingBlockTypes when the content got reloaded or the translator's mappings changed */
+    private fun updateTickingBlockTypes() {
+        val translator = world.contentTranslator
+        val mappings = translator.voxelMappings
+        val generation = translator.content.generation
+        if (mappings === tickingBuiltFrom && mappings.size == tickingBuiltFromSize && generation == tickingBuiltForGeneration)
+            return
+
+        val ticking = BooleanArray((mappings.values.max() ?: 0) + 1)
+        val overridesTick = HashMap<Class<*>, Boolean>()
+        for ((blockType, id) in mappings)
+            ticking[id] = overridesTick.getOrPut(blockType.javaClass) { overridesTick(blockType.javaClass) }
+
+        tickingBlockTypes = ticking
+        tickingBuiltFrom = mappings
+        tickingBuiltFromSize = mappings.size
+        tickingBuiltForGeneration = generation
+    }
+
+    private fun playersMoved(): Boolean {
+        var moved = false
+        val stillHere = HashSet<Player>()
+        for (player in world.players) {
+            val location = player.entityIfIngame?.location ?: continue
+            stillHere.add(player)
+
+            val key = chunkKey(floor(location.x() / 32.0), floor(location.y() / 32.0), floor(location.z() / 32.0))
+            if (playersChunks.put(player, key) != key)
+                moved = true
+        }
+        if (playersChunks.keys.retainAll(stillHere))
+            moved = true
+        return moved
+    }
+
+    private fun rebuildTickable() {
+        // Chunks within two chunks (64 blocks, center to center) of a player, by squared distance in chunks
+        val buckets = Array(MAX_DISTANCE_SQUARED + 1) { LinkedHashSet<Long>() }
+        val seen = HashSet<Long>()
+        for (playerChunk in playersChunks.values) {
+            val px = keyX(playerChunk)
+            val py = keyY(playerChunk)
+            val pz = keyZ(playerChunk)
+            for (dx in -RADIUS..RADIUS)
+                for (dy in -RADIUS..RADIUS)
+                    for (dz in -RADIUS..RADIUS) {
+                        val distanceSquared = dx * dx + dy * dy + dz * dz
+                        if (distanceSquared > MAX_DISTANCE_SQUARED)
+                            continue
+                        val y = py + dy
+                        if (y < 0 || y >= heightInChunks)
+                            continue
+                        val key = chunkKey(px + dx, y, pz + dz)
+                        buckets[distanceSquared].add(key)
+                    }
+        }
+
+        // A chunk near several players goes in its nearest bucket
+        val ordered = ArrayList<Long>()
+        for (bucket in buckets)
+            for (key in bucket)
+                if (seen.add(key))
+                    ordered.add(key)
+        tickable = ordered.toLongArray()
+    }
+
+    private fun chunkKey(chunkX: Int, chunkY: Int, chunkZ: Int): Long {
+        val x = Math.floorMod(chunkX, sizeInChunks).toLong()
+        val z = Math.floorMod(chunkZ, sizeInChunks).toLong()
+        return (x shl 40) or ((chunkY.toLong() and 0xFFFFF) shl 20) or z
+    }
+
+    private fun keyX(key: Long) = (key ushr 40).toInt()
+    private fun keyY(key: Long) = ((key ushr 20) and 0xFFFFF).toInt()
+    private fun keyZ(key: Long) = (key and 0xFFFFF).toInt()
+
+    companion object {
+        private const val RADIUS = 2
+        private const val MAX_DISTANCE_SQUARED = 4
+
+        /** The BlockType.tick() chunks call, the most specific one taking the cells they hand out */
+        private val baseTick: Method = BlockType::class.java.methods
+                .filter { it.name == "tick" && it.declaringClass == BlockType::class.java && it.parameterCount == 1 }
+                .filter { it.parameterTypes[0].isAssignableFrom(ChunkImplementation.ChunkCellProxy::class.java) }
+                .reduce { a, b -> if (a.parameterTypes[0].isAssignableFrom(b.parameterTypes[0])) b else a }
+
+        /** Whether that block type class overrides that exact tick(), rather than just having some other method called tick */
+        fun overridesTick(blockTypeClass: Class<out BlockType>) =
+                blockTypeClass.getMethod(baseTick.name, *baseTick.parameterTypes).declaringClass != BlockType::class.java
+    }
+}
+
+/**
+ * Picks which of the tickable chunks (by index, nearest first) to tick on a given world tick. Each chunk has its turn
+ * once every physicsRate ticks, chunk i on the ticks where ticksElapsed % physicsRate == i % physicsRate. When a tick's
+ * share is over budget, the nearest budget / 2 chunks of it are ticked and the rest of the budget goes round the
+ * leftover chunks from where it stopped last time, so every chunk still gets ticked eventually.
+ */
+class ChunkTickSpread(private val budget: Int) {
+    /** The indices picked by the last select() */
+    var selected = IntArray(0)
+        private set
+
+    /** Per phase, where the rotation over the leftover chunks resumes */
+    private var cursors = IntArray(0)
+
+    /** Returns how many indices were put in selected */
+    fun select(count: Int, ticksElapsed: Long, physicsRate: Int): Int {
+        if (cursors.size != physicsRate)
+            cursors = IntArray(physicsRate)
+
+        val phase = (ticksElapsed % physicsRate).toInt()
+        val slots = if (phase < count) (count - phase + physicsRate - 1) / physicsRate else 0
+        val picked = Math.min(slots, Math.max(0, budget))
+        if (selected.size < picked)
+            selected = IntArray(picked)
+
+        if (slots <= picked) {
+            for (slot in 0 until slots)
+                selected[slot] = phase + slot * physicsRate
+            return slots
+        }
+
+        val nearest = picked / 2
+        for (slot in 0 until nearest)
+            selected[slot] = phase + slot * physicsRate
+
+        val leftover = slots - nearest
+        var cursor = cursors[phase] % leftover
+        for (n in nearest until picked) {
+            selected[n] = phase + (nearest + cursor) * physicsRate
+            cursor = (cursor + 1) % leftover
+        }
+        cursors[phase] = cursor
+        return picked
+    }
+}
@@ -0,0 +1,133 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world
+
+import xyz.chunkstories.api.entity.Entity
+import xyz.chunkstories.api.entity.EntityID
+import xyz.chunkstories.api.math.MathUtils.floor
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.api.workers.Tasks
+import xyz.chunkstories.util.concurrency.CompoundFence
+import java.util.concurrent.locks.Lock
+import kotlin.concurrent.withLock
+
+/**
+ * Ticks entities on the worker threads, partitioned by region, see RegionPartitionedTicker.
+ *
+ * The entities list is copied under the entities write lock, which isn't held while the partitions tick: tasks on the
+ * same worker pool take it too (acquiring regions, chunk holders changing state...), and would otherwise keep the
+ * workers the partitions need. Entities spawned or removed from within a partition are queued up, and applied once all
+ * passes are done, so the list doesn't change under the workers anyway.
+ *
+ * Enable with -DparallelEntityTicking=true. Below -DparallelEntityTickingThreshold entities, ticking stays serial.
+ */
+class ParallelEntityTicker(private val world: WorldImplementation) {
+    private val partitions = RegionPartitionedTicker<Entity>(Math.max(1, world.properties.size.sizeInChunks / 8))
+
+    fun shouldTickInParallel(entitiesCount: Int) = enabled && entitiesCount >= threshold
+
+    fun tick() {
+        partitions.tick(world.entitiesLock.writeLock(), world.entities_, world.gameInstance.engine.tasks,
+                { it.location.x() }, { it.location.z() }, { it.tick() },
+                { entity, e -> world.logger.error("Error ticking entity $entity", e) })
+    }
+
+    /** Returns true if the spawn was queued because we're ticking a partition on this thread */
+    fun deferSpawn(entity: Entity) = partitions.defer { world.addEntity(entity) }
+
+    /** Returns true if the removal was queued because we're ticking a partition on this thread */
+    fun deferDespawn(id: EntityID) = partitions.defer { world.removeEntity(id) }
+
+    companion object {
+        private val enabled = System.getProperty("parallelEntityTicking", "false") == "true"
+        private val threshold = Integer.getInteger("parallelEntityTickingThreshold", 256)
+    }
+}
+
+/**
+ * Ticks things on a worker pool, partitioned by the region they are in. Partitions are ticked in passes such that two
+ * partitions ticking at the same time are never neighbours, counting the world wrapping around: anything one does
+ * within a region of itself is never racing with another partition.
+ *
+ * Along each axis regions alternate between two colors, and when the world is an odd number of regions wide the last
+ * one gets a third color of its own, since it's next to the first one across the wrap. That makes up to 3x3 passes.
+ *
+ * Work deferred from within a partition is run once all passes are done, partition by partition in region order, so the
+ * outcome doesn't depend on which worker got to what first.
+ */
+class RegionPartitionedTicker<T>(private val sizeInRegions: Int) {
+    private class Partition<T>(val pass: Int) {
+        val items = ArrayList<T>()
+        val deferred = ArrayList<() -> Unit>()
+    }
+
+    private val currentPartition = ThreadLocal<Partition<T>?>()
+
+    fun tick(items: Collection<T>, tasks: Tasks, x: (T) -> Double, z: (T) -> Double, tick: (T) -> Unit, onError: (T, Exception) -> Unit) {
+        val partitions = HashMap<Long, Partition<T>>()
+        for (item in items) {
+            val regionX = Math.floorMod(floor(x(item) / 256.0), sizeInRegions)
+            val regionZ = Math.floorMod(floor(z(item) / 256.0), sizeInRegions)
+            partitions.getOrPut(regionX.toLong() * sizeInRegions + regionZ) { Partition(passOf(regionX, regionZ, sizeInRegions)) }.items.add(item)
+        }
+        val ordered = partitions.entries.sortedBy { it.key }.map { it.value }
+
+        for (pass in 0 until PASSES) {
+            val fence = CompoundFence()
+            for (partition in ordered) {
+                if (partition.pass != pass)
+                    continue
+                val task = TaskTickPartition(partition, tick, onError)
+                tasks.scheduleTask(task)
+                fence.add(task)
+            }
+            fence.traverse()
+        }
+
+        for (partition in ordered)
+            for (action in partition.deferred)
+                action()
+    }
+
+    /** Ticks a copy of items made while holding lock, which is released before the passes start */
+    fun tick(lock: Lock, items: Collection<T>, tasks: Tasks, x: (T) -> Double, z: (T) -> Double, tick: (T) -> Unit, onError: (T, Exception) -> Unit) =
+            tick(lock.withLock { items.toList() }, tasks, x, z, tick, onError)
+
+    /** Queues that action for after the passes if we're ticking a partition on this thread, and returns true if so */
+    fun defer(action: () -> Unit): Boolean {
+        val partition = currentPartition.get() ?: return false
+        partition.deferred.add(action)
+        return true
+    }
+
+    private inner class TaskTickPartition(private val partition: Partition<T>, private val tick: (T) -> Unit, private val onError: (T, Exception) -> Unit) : Task() {
+        override fun task(taskExecutor: TaskExecutor): Boolean {
+            currentPartition.set(partition)
+            try {
+                for (item in partition.items) {
+                    try {
+                        tick(item)
+                    } catch (e: Exception) {
+                        onError(item, e)
+                    }
+                }
+            } finally {
+                currentPartition.set(null)
+            }
+            return true
+        }
+    }
+
+    companion object {
+        const val PASSES = 9
+
+        private fun color(region: Int, sizeInRegions: Int) = if (sizeInRegions % 2 == 1 && region == sizeInRegions - 1) 2 else region and 1
+
+        fun passOf(regionX: Int, regionZ: Int, sizeInRegions: Int) = color(regionX, sizeInRegions) * 3 + color(regionZ, sizeInRegions)
+    }
+}
@@ -0,0 +1,15 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world
+
+import xyz.chunkstories.api.net.Packet
+import xyz.chunkstories.api.world.WorldUser
+
+/** A world user on the other end of a connection: chunk holders it registers to send it their data once it's available */
+interface RemoteWorldUser : WorldUser {
+    fun pushPacket(packet: Packet)
+}
@@ -42,14 +42,17 @@ import xyz.chunkstories.content.translator.InitialContentTranslator
 import xyz.chunkstories.content.translator.LoadedContentTranslator
 import xyz.chunkstories.net.Connection
 import xyz.chunkstories.net.LogicalPacketDatagram
+import xyz.chunkstories.net.PacketDefinition
 import xyz.chunkstories.util.alias
 import xyz.chunkstories.util.concurrency.CompoundFence
+import xyz.chunkstories.util.profiling.TickProfiler
 import xyz.chunkstories.world.chunk.ChunksStorage
 import xyz.chunkstories.world.heightmap.HeightmapsStorage
 import xyz.chunkstories.world.io.IOTasks
 import xyz.chunkstories.world.region.RegionsStorage
 import java.io.File
 import java.util.*
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.locks.ReadWriteLock
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
@@ -77,6 +80,8 @@ sealed class WorldImplementation constructor(
 
     override val collisionsManager by lazy { DefaultWorldCollisionsManager(this) }
 
+    val entityTicker by lazy { ParallelEntityTicker(this) }
+
     val internalDataLock = ReentrantLock()
 
     override var ticksElapsed: Long by alias(internalData::ticksCounter)
@@ -111,11 +116,17 @@ sealed class WorldImplementation constructor(
             return -1
         }
 
+        if (entityTicker.deferSpawn(entity))
+            return entity.id
+
         entities_.add(entity)
         return entity.id
     }
 
     override fun removeEntity(id: EntityID): Boolean {
+        if (entityTicker.deferDespawn(id))
+            return getEntity(id) != null
+
         try {
             entitiesLock.writeLock().lock()
             val entity = getEntity(id) ?: return false
@@ -132,9 +143,15 @@ sealed class WorldImplementation constructor(
         ticksElapsed++
         gameInstance.pluginManager.fireEvent(WorldTickEvent(this))
 
-        entitiesLock.writeLock().withLock {
-            for (entity in entities_.toList()) {
-                entity.tick()
+        entitiesTiming.time {
+            if (entityTicker.shouldTickInParallel(entities_.size)) {
+                entityTicker.tick()
+            } else {
+                entitiesLock.writeLock().withLock {
+                    for (entity in entities_.toList()) {
+                        entity.tick()
+                    }
+                }
             }
         }
 
@@ -225,6 +242,11 @@ sealed class WorldImplementation constructor(
 
     companion object {
         val worldPropertiesFilename = "properties.json"
+
+        internal val tickTiming = TickProfiler.histogram("world.tick")
+        internal val entitiesTiming = TickProfiler.histogram("world.tick.entities")
+        internal val chunksTiming = TickProfiler.histogram("world.tick.chunks")
+        internal val compressionTiming = TickProfiler.histogram("world.tick.compressChangedChunks")
     }
 
     override val logger = LoggerFactory.getLogger("world")
@@ -242,6 +264,11 @@ open class WorldMasterImplementation constructor(
 
     val playersMetadata = WorldPlayersMetadata(this)
 
+    val chunkTickScheduler by lazy { ChunkTickScheduler(this) }
+    val physicsRate = 4
+
+    private val incomingDatagrams = ConcurrentLinkedQueue<Pair<LogicalPacketDatagram, Player>>()
+
     override val folderPath: String
         get() = folder.path
 
@@ -269,34 +296,40 @@ open class WorldMasterImplementation constructor(
         return gameInstance.getPlayer(playerName)
     }
 
-    override fun tick() {
-        // TODO: processIncommingPackets();
-        // TODO: flush all
+    override fun tick() = tickTiming.time {
+        processIncomingDatagrams()
         super.tick()
 
         if (ticksElapsed % 60 == 0L) {
-            for (region in this.regionsManager.regionsList) {
-                // TODO probably should be some sort of async task eventually
-                region.compressChangedChunks()
+            compressionTiming.time {
+                for (region in this.regionsManager.regionsList) {
+                    // TODO probably should be some sort of async task eventually
+                    region.compressChangedChunks()
+                }
             }
         }
 
-        val physicsRate = 4
-        val players = this.players
-        if (this.ticksElapsed % physicsRate == 0L) {
-            for (chunk in this.chunksManager.allLoadedChunks) {
-                var minDistance = Double.MAX_VALUE
-                val chunkLocation = Location(this, chunk.chunkX * 32.0 + 16.0, chunk.chunkY * 32.0 + 16.0, chunk.chunkZ * 32.0 + 16.0)
-                for(player in players) {
-                    val playerLocation = player.entityIfIngame?.location ?: continue
-                    val distance = playerLocation.distance(chunkLocation)
-                    if(distance < minDistance)
-                        minDistance = distance
-                }
+        chunksTiming.time {
+            chunkTickScheduler.tick(ticksElapsed, physicsRate)
+        }
+    }
 
-                if(minDistance < 32 * 2.0) {
-                    chunk.tick(this.ticksElapsed / physicsRate)
-                }
+    /** Packets from remote players, queued by their connection's thread and handled at the start of the next tick */
+    fun queueDatagram(datagram: LogicalPacketDatagram, player: Player) {
+        incomingDatagrams.add(Pair(datagram, player))
+    }
+
+    private fun processIncomingDatagrams() {
+        while (true) {
+            val (datagram, player) = incomingDatagrams.poll() ?: break
+            try {
+                val definition = datagram.packetDefinition as PacketDefinition
+                val packet = definition.createNewWithWorld(false, this)!!
+                packet.receive(datagram.data, player)
+            } catch (e: Exception) {
+                logger.warn("Exception while processing datagram from $player: ${e.message}")
+            } finally {
+                datagram.dispose()
             }
         }
     }
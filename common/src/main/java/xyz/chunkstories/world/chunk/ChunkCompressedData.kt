@@ -11,6 +11,7 @@ import java.io.DataInputStream
 import java.io.DataOutputStream
 import net.jpountz.lz4.LZ4Exception
 import xyz.chunkstories.api.entity.traits.TraitDontSave
+import xyz.chunkstories.util.CompactJson
 
 sealed class ChunkCompressedData(internal val entities: Json.Array ) {
 
@@ -76,6 +77,12 @@ sealed class ChunkCompressedData(internal val entities: Json.Array ) {
             return compressed
         }
 
+        /** Compresses raw voxel data that doesn't belong to a loaded chunk (ie straight from the map converter) */
+        fun fromVoxelData(voxelDataArray: IntArray?, entities: Json.Array = Json.Array(emptyList())): ChunkCompressedData {
+            val compressedVoxelData = voxelDataArray?.let { compressVoxelData(it) } ?: return Air(entities)
+            return NonAir(compressedVoxelData, Json.Array(emptyList()), entities)
+        }
+
         fun compressChunkData(chunk: ChunkImplementation): ChunkCompressedData {
             val compressedEntityData = Json.Array(chunk.entitiesWithinChunk.filter { it.traits[TraitDontSave::class] == null }.map { EntitySerialization.serializeEntity(it) })
 
@@ -96,24 +103,63 @@ sealed class ChunkCompressedData(internal val entities: Json.Array ) {
 
 
         fun fromBytes(dis: DataInputStream): ChunkCompressedData {
-            val type = dis.read()
-            return if(type == 0) {
-                Air(dis.readUTF().toJson().asArray!!)
-            } else {
-                val compressedVoxelDataSize = dis.readInt()
-                val compressedVoxelData = ByteArray(compressedVoxelDataSize)
-                dis.readFully(compressedVoxelData)
-
-                NonAir(compressedVoxelData, dis.readUTF().toJson().asArray!!,  dis.readUTF().toJson().asArray!!)
+            return when (val type = dis.read()) {
+                TYPE_AIR -> Air(CompactJson.read(dis).single() as Json.Array)
+                TYPE_NON_AIR -> {
+                    val compressedVoxelData = ByteArray(CompactJson.readVarInt(dis))
+                    dis.readFully(compressedVoxelData)
+
+                    val (extendedData, entities) = CompactJson.read(dis)
+                    NonAir(compressedVoxelData, extendedData as Json.Array, entities as Json.Array)
+                }
+                // Regions and packets written before the compact format carried their json as text
+                TYPE_LEGACY_AIR -> Air(dis.readUTF().toJson().asArray!!)
+                TYPE_LEGACY_NON_AIR -> {
+                    val compressedVoxelDataSize = dis.readInt()
+                    val compressedVoxelData = ByteArray(compressedVoxelDataSize)
+                    dis.readFully(compressedVoxelData)
+
+                    NonAir(compressedVoxelData, dis.readUTF().toJson().asArray!!, dis.readUTF().toJson().asArray!!)
+                }
+                else -> throw UnloadableChunkDataException("Unknown chunk data type $type")
+            }
+        }
+
+        private const val TYPE_LEGACY_AIR = 0
+        private const val TYPE_LEGACY_NON_AIR = 1
+        private const val TYPE_AIR = 2
+        private const val TYPE_NON_AIR = 3
+
+        /** Write the old json-as-text format, for going back to an older build (-DlegacyChunkDataFormat=true) */
+        val writeLegacyFormat: Boolean
+            get() = System.getProperty("legacyChunkDataFormat", "false") == "true"
+    }
+
+    fun toBytes(dos: DataOutputStream, legacyFormat: Boolean = writeLegacyFormat) {
+        if (legacyFormat) {
+            toLegacyBytes(dos)
+            return
+        }
+
+        when (this) {
+            is Air -> {
+                dos.write(TYPE_AIR)
+                CompactJson.write(dos, listOf(entities))
+            }
+            is NonAir -> {
+                dos.write(TYPE_NON_AIR)
+                CompactJson.writeVarInt(dos, blockData.size)
+                dos.write(blockData)
+                CompactJson.write(dos, listOf(blocksADditionalAdata, entities))
             }
         }
     }
 
-    fun toBytes(dos: DataOutputStream) {
+    private fun toLegacyBytes(dos: DataOutputStream) {
         if(this is Air)
-            dos.write(0)
+            dos.write(TYPE_LEGACY_AIR)
         else
-            dos.write(1)
+            dos.write(TYPE_LEGACY_NON_AIR)
 
         if(this is NonAir) {
             dos.writeInt(this.blockData.size)
@@ -12,11 +12,11 @@ import xyz.chunkstories.api.world.chunk.ChunkHolder
 import xyz.chunkstories.api.world.region.Region
 import xyz.chunkstories.net.packets.PacketChunkCompressedData
 import xyz.chunkstories.util.concurrency.TrivialFence
+import xyz.chunkstories.world.RemoteWorldUser
 import xyz.chunkstories.world.WorldTool
 import xyz.chunkstories.world.io.TaskLoadChunk
 import net.jpountz.lz4.LZ4Factory
 import org.slf4j.LoggerFactory
-import xyz.chunkstories.api.server.RemotePlayer
 import xyz.chunkstories.world.WorldSubImplementation
 import xyz.chunkstories.world.region.RegionImplementation
 import java.util.*
@@ -45,7 +45,7 @@ class ChunkHolderImplementation(override val region: RegionImplementation, overr
 
     //No usersLock : we use the parent region usersLock & userCount
     override val users: MutableSet<WorldUser> = HashSet()
-    private val usersWaitingForIntialData = HashSet<RemotePlayer>()
+    private val usersWaitingForIntialData = HashSet<RemoteWorldUser>()
 
     /** Used by IO operations only  */
     var compressedData: ChunkCompressedData? = null
@@ -193,7 +193,7 @@ class ChunkHolderImplementation(override val region: RegionImplementation, overr
 
                 globalRegisteredUsers.incrementAndGet()
 
-                if(user is RemotePlayer) {
+                if(user is RemoteWorldUser) {
                     if(this.state is ChunkHolder.State.Available) {
                         user.pushPacket(PacketChunkCompressedData(chunk!!, compressedData!!))
                     } else {
@@ -223,6 +223,7 @@ class ChunkHolderImplementation(override val region: RegionImplementation, overr
             if (users.remove(user)) {
                 globalRegisteredUsers.decrementAndGet()
                 region.usersCount--
+                usersWaitingForIntialData.remove(user)
             }
 
             if (users.isEmpty() && wasNotEmpty) {
@@ -321,7 +322,7 @@ class ChunkHolderImplementation(override val region: RegionImplementation, overr
     }
 
     fun eventLoadFinishes(chunk: ChunkImplementation) {
-        val playersToSendDataTo: List<RemotePlayer>?
+        val playersToSendDataTo: List<RemoteWorldUser>?
 
         try {
             region.world.entitiesLock.writeLock().lock()
@@ -351,7 +352,7 @@ class ChunkHolderImplementation(override val region: RegionImplementation, overr
     }
 
     fun eventGenerationFinishes(chunk: ChunkImplementation) {
-        val playersToSendDataTo: List<RemotePlayer>?
+        val playersToSendDataTo: List<RemoteWorldUser>?
 
         // Get the compressed data done first, to avoid keeping the lock for longer than necessary
         // val compressedData = compressChunkData(chunk)
@@ -336,11 +336,24 @@ class ChunkImplementation constructor(override val holder: ChunkHolderImplementa
         allCellComponents.remove(index)
     }
 
-    fun tick(tick: Long) {
+    /** How many times tick() was called, picks the eighth of the chunk the next call looks at */
+    private var ticksDone = 0
+
+    /**
+     * Sweeps an eighth of the chunk, a different one each time so skipped turns don't leave cells out, only looking up
+     * cells whose block type is flagged in tickingBlockTypes
+     */
+    fun tick(tickingBlockTypes: BooleanArray) {
+        val blockData = blockData ?: return
+
         val stride = 8
-        val offset = (tick % stride.toLong()).toInt()
+        val offset = ticksDone++ and (stride - 1)
         for (i in 0 until 32 * 32 * 32 / stride) {
             val j = i * stride + offset
+            val id = VoxelFormat.id(blockData[j])
+            if (id >= tickingBlockTypes.size || !tickingBlockTypes[id])
+                continue
+
             val x = j / 1024
             val y = (j / 32) % 32
             val z = (j) % 32
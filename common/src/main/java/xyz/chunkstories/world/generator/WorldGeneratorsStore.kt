@@ -13,12 +13,10 @@ import xyz.chunkstories.api.content.Content
 import xyz.chunkstories.api.world.generator.BlankWorldGenerator
 import xyz.chunkstories.api.world.generator.WorldGeneratorDefinition
 import xyz.chunkstories.content.GameContentStore
-import org.hjson.JsonValue
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.api.content.json.Json
 import xyz.chunkstories.api.content.json.asDict
-import xyz.chunkstories.content.eat
 import xyz.chunkstories.content.extractProperties
 import java.util.*
 
@@ -37,7 +35,7 @@ class WorldGeneratorsStore(override val parent: GameContentStore) : Content.Worl
         fun readDefinitions(a: Asset) {
             logger.debug("Reading generators definitions in : $a")
 
-            val json = JsonValue.readHjson(a.reader()).eat().asDict ?: throw Exception("This json isn't a dict")
+            val json = parent.readDefinitionsFile(a).asDict ?: throw Exception("This json isn't a dict")
             val dict = json["generators"].asDict ?: throw Exception("This json doesn't contain an 'generators' dict")
 
             for (element in dict.elements) {
@@ -0,0 +1,195 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world.generator
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.world.WorldUser
+import xyz.chunkstories.api.world.heightmap.Heightmap
+import xyz.chunkstories.world.WorldMasterImplementation
+import xyz.chunkstories.world.heightmap.HeightmapImplementation
+import java.io.File
+import java.util.ArrayDeque
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Generates every region column within a radius of a center point ahead of time, so players walking there later only
+ * have to load it.
+ *
+ * Columns are walked outwards from the center and up to maxColumnsInFlight of them are generated at once: neighbouring
+ * columns run their waves at the same time, which keeps the workers busy while each column waits on its own wave
+ * barrier. Once a column is generated it is let go and goes through the normal unload & save path, so memory use stays
+ * bounded by the in-flight window rather than by the radius.
+ *
+ * Columns that are saved are appended to a progress file in the world folder, so an interrupted run picks up where it
+ * stopped.
+ */
+class WorldPregenerator(val world: WorldMasterImplementation, val centerRegionX: Int, val centerRegionZ: Int, val radius: Int,
+                        private val maxColumnsInFlight: Int = Math.max(2, Runtime.getRuntime().availableProcessors())) : Thread(), WorldUser {
+    private val sizeInRegions = world.properties.size.sizeInChunks / 8
+    private val heightInRegions = world.properties.size.heightInChunks / 8
+
+    private val progressFile = File(world.folderPath + "/" + progressFilename)
+
+    private val cancelled = AtomicBoolean(false)
+
+    val columnsTotal: Int
+    @Volatile
+    var columnsDone = 0
+        private set
+    @Volatile
+    var columnsSkipped = 0
+        private set
+    @Volatile
+    var finished = false
+        private set
+
+    private var startTime = 0L
+
+    /** In world slices (one per chunk column, 64 per region column) generated per second since the start */
+    val slicesPerSecond: Double
+        get() {
+            val seconds = (System.nanoTime() - startTime) / 1e9
+            return if (seconds <= 0.0) 0.0 else columnsDone * 64 / seconds
+        }
+
+    private val columns: List<Long>
+
+    private class Column(val regionX: Int, val regionZ: Int, val heightmap: HeightmapImplementation) {
+        var released = false
+    }
+
+    init {
+        name = "World pregeneration"
+        isDaemon = true
+
+        // Outwards from the center, deduplicated since big radiuses wrap around the world
+        val ordered = LinkedHashSet<Long>()
+        for (distance in 0..radius)
+            for (dx in -distance..distance)
+                for (dz in -distance..distance) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != distance)
+                        continue
+                    ordered.add(key(Math.floorMod(centerRegionX + dx, sizeInRegions), Math.floorMod(centerRegionZ + dz, sizeInRegions)))
+                }
+        columns = ordered.toList()
+        columnsTotal = columns.size
+    }
+
+    override fun run() {
+        startTime = System.nanoTime()
+
+        val alreadyDone = readProgress()
+        val pending = ArrayDeque<Long>()
+        for (column in columns) {
+            if (column in alreadyDone && heightmapFile(regionX(column), regionZ(column)).exists())
+                columnsSkipped++
+            else
+                pending.add(column)
+        }
+        logger.info("Pregenerating $columnsTotal region columns around $centerRegionX, $centerRegionZ ($columnsSkipped already done)")
+
+        val inFlight = mutableListOf<Column>()
+        var lastReport = System.currentTimeMillis()
+
+        try {
+            // Once cancelled, nothing new gets scheduled but we still see the columns in flight through to being saved
+            while (inFlight.isNotEmpty() || (!cancelled.get() && pending.isNotEmpty())) {
+                while (!cancelled.get() && pending.isNotEmpty() && inFlight.size < maxColumnsInFlight) {
+                    val column = pending.removeFirst()
+                    val regionX = regionX(column)
+                    val regionZ = regionZ(column)
+                    inFlight.add(Column(regionX, regionZ, world.heightmapsManager.acquireHeightmap(this, regionX, regionZ)))
+                }
+
+                val iterator = inFlight.iterator()
+                while (iterator.hasNext()) {
+                    val column = iterator.next()
+                    if (!column.released) {
+                        val state = column.heightmap.state
+                        if (state is Heightmap.State.Generating || state is Heightmap.State.Loading)
+                            continue
+                        // Lets it go through the usual unload path, which saves it
+                        column.released = true
+                        if (!column.heightmap.unregisterUser(this)) {
+                            // Someone else (a player) is using it, it will get saved when they are done with it
+                            iterator.remove()
+                            columnsDone++
+                            continue
+                        }
+                    }
+
+                    if (isSaved(column)) {
+                        iterator.remove()
+                        progressFile.appendText("${column.regionX} ${column.regionZ}\n")
+                        columnsDone++
+                    }
+                }
+
+                val now = System.currentTimeMillis()
+                if (now - lastReport >= 5000) {
+                    logger.info(status())
+                    lastReport = now
+                }
+
+                sleep(50)
+            }
+        } catch (e: InterruptedException) {
+            // Stopped
+        } finally {
+            for (column in inFlight)
+                if (!column.released)
+                    column.heightmap.unregisterUser(this)
+            finished = true
+        }
+
+        logger.info(if (cancelled.get()) "Pregeneration stopped: ${status()}" else "Pregeneration done: ${status()}")
+    }
+
+    /** Stops scheduling new columns. The thread ends once the ones in flight are generated and saved, join() it to wait for that */
+    fun cancel() {
+        cancelled.set(true)
+    }
+
+    fun status(): String {
+        val done = columnsDone + columnsSkipped
+        return String.format("%d/%d region columns (%.1f%%), %.1f slices/s", done, columnsTotal, 100.0 * done / Math.max(1, columnsTotal), slicesPerSecond)
+    }
+
+    /** Saved means both the heightmap and the regions it covers have been unloaded, which they only do once written */
+    private fun isSaved(column: Column): Boolean {
+        if (world.heightmapsManager.getHeightmap(column.regionX, column.regionZ) != null)
+            return false
+        for (regionY in 0 until heightInRegions)
+            if (world.regionsManager.getRegion(column.regionX, regionY, column.regionZ) != null)
+                return false
+        return true
+    }
+
+    private fun readProgress(): Set<Long> {
+        if (!progressFile.exists())
+            return emptySet()
+        return progressFile.readLines().mapNotNull { line ->
+            val parts = line.trim().split(' ')
+            if (parts.size != 2)
+                null
+            else
+                key(parts[0].toIntOrNull() ?: return@mapNotNull null, parts[1].toIntOrNull() ?: return@mapNotNull null)
+        }.toSet()
+    }
+
+    private fun heightmapFile(regionX: Int, regionZ: Int) = File(world.folderPath + "/heightmaps/" + regionX + "." + regionZ + ".heightmap")
+
+    private fun key(regionX: Int, regionZ: Int) = (regionX.toLong() shl 32) or (regionZ.toLong() and 0xFFFFFFFFL)
+    private fun regionX(key: Long) = (key shr 32).toInt()
+    private fun regionZ(key: Long) = key.toInt()
+
+    companion object {
+        const val progressFilename = "pregeneration.txt"
+
+        private val logger = LoggerFactory.getLogger("world.pregeneration")
+    }
+}
@@ -0,0 +1,175 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world.heightmap
+
+import net.jpountz.lz4.LZ4Factory
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+enum class HeightmapCodec {
+    /** Plain LZ4, what you want most of the time */
+    LZ4_FAST,
+    /** LZ4 at compression level 10, smaller files for a lot more CPU */
+    LZ4_HIGH,
+    /** Zigzag-encoded deltas along z as varints, no real compression but next to no CPU either */
+    DELTA_VARINT;
+
+    companion object {
+        /** Set with -DheightmapCodec=lz4_fast|lz4_high|delta_varint */
+        val default: HeightmapCodec by lazy {
+            val name = System.getProperty("heightmapCodec", "lz4_fast")
+            values().find { it.name.equals(name, ignoreCase = true) } ?: LZ4_FAST
+        }
+    }
+}
+
+/**
+ * Reads and writes the top-level (non-mipmapped) heights & block types of a heightmap. Files start with a header
+ * (magic, codec, both payload sizes) followed by the two payloads, written in one gathered write. Files written before
+ * that header existed (size + LZ4 block, twice) are still read.
+ *
+ * All the buffers involved are kept per thread and reused, nothing gets allocated per heightmap.
+ */
+object HeightmapFileSerialization {
+    private const val MAGIC = 0xC5A7E401.toInt() // negative, so it can't be mistaken for a legacy payload size
+    private const val HEADER_SIZE = 16
+
+    private const val CELLS = 256 * 256
+    private const val RAW_SIZE = CELLS * 4
+    /** Larger than both LZ4's worst case and 5 bytes per varint */
+    private const val PAYLOAD_CAPACITY = CELLS * 5
+
+    private val factory = LZ4Factory.fastestInstance()
+    private val fastCompressor = factory.fastCompressor()
+    private val highCompressor = factory.highCompressor(10)
+    private val decompressor = factory.fastDecompressor()
+
+    private class Buffers {
+        val raw: ByteBuffer = ByteBuffer.allocateDirect(RAW_SIZE)
+        val header: ByteBuffer = ByteBuffer.allocateDirect(HEADER_SIZE)
+        val heights: ByteBuffer = ByteBuffer.allocateDirect(PAYLOAD_CAPACITY)
+        val ids: ByteBuffer = ByteBuffer.allocateDirect(PAYLOAD_CAPACITY)
+        val file: ByteBuffer = ByteBuffer.allocateDirect(HEADER_SIZE + PAYLOAD_CAPACITY * 2)
+        val gather = arrayOf(header, heights, ids)
+    }
+
+    private val buffers = ThreadLocal.withInitial { Buffers() }
+
+    @JvmStatic
+    @JvmOverloads
+    fun write(file: File, heights: IntArray, ids: IntArray, codec: HeightmapCodec = HeightmapCodec.default) {
+        val buffers = buffers.get()
+
+        encode(codec, heights, buffers.raw, buffers.heights)
+        encode(codec, ids, buffers.raw, buffers.ids)
+
+        val header = buffers.header
+        header.clear()
+        header.putInt(MAGIC)
+        header.putInt(codec.ordinal)
+        header.putInt(buffers.heights.remaining())
+        header.putInt(buffers.ids.remaining())
+        header.flip()
+
+        file.parentFile?.mkdirs()
+        FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING).use { channel ->
+            while (buffers.ids.hasRemaining())
+                channel.write(buffers.gather)
+        }
+    }
+
+    /** Fills heights and ids (at least 256*256 long) with the contents of the file */
+    @JvmStatic
+    fun read(file: File, heights: IntArray, ids: IntArray) {
+        val buffers = buffers.get()
+        val contents = buffers.file
+        contents.clear()
+
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            if (channel.size() > contents.capacity())
+                throw IOException("Heightmap file $file is too large (${channel.size()} bytes)")
+            while (contents.hasRemaining() && channel.read(contents) >= 0) {
+            }
+        }
+        contents.flip()
+
+        val first = contents.getInt(0)
+        if (first == MAGIC) {
+            val codecId = contents.getInt(4)
+            val codec = HeightmapCodec.values().getOrNull(codecId) ?: throw IOException("Unknown heightmap codec $codecId in $file")
+            val heightsSize = contents.getInt(8)
+            decode(codec, contents, HEADER_SIZE, heightsSize, buffers.raw, heights)
+            decode(codec, contents, HEADER_SIZE + heightsSize, contents.getInt(12), buffers.raw, ids)
+        } else {
+            // Legacy layout: [size][lz4 block] for the heights, then the same for the ids
+            decode(HeightmapCodec.LZ4_HIGH, contents, 4, first, buffers.raw, heights)
+            decode(HeightmapCodec.LZ4_HIGH, contents, 8 + first, contents.getInt(4 + first), buffers.raw, ids)
+        }
+    }
+
+    /** Leaves out ready to be read from position 0 */
+    private fun encode(codec: HeightmapCodec, data: IntArray, raw: ByteBuffer, out: ByteBuffer) {
+        out.clear()
+        when (codec) {
+            HeightmapCodec.LZ4_FAST, HeightmapCodec.LZ4_HIGH -> {
+                raw.clear()
+                raw.asIntBuffer().put(data, 0, CELLS)
+                val compressor = if (codec == HeightmapCodec.LZ4_HIGH) highCompressor else fastCompressor
+                val length = compressor.compress(raw, 0, RAW_SIZE, out, 0, out.capacity())
+                out.limit(length)
+            }
+            HeightmapCodec.DELTA_VARINT -> {
+                var previous = 0
+                for (i in 0 until CELLS) {
+                    val delta = data[i] - previous
+                    previous = data[i]
+
+                    var zigzag = (delta shl 1) xor (delta shr 31)
+                    while (zigzag and 0x7F.inv() != 0) {
+                        out.put(((zigzag and 0x7F) or 0x80).toByte())
+                        zigzag = zigzag ushr 7
+                    }
+                    out.put(zigzag.toByte())
+                }
+                out.flip()
+            }
+        }
+    }
+
+    private fun decode(codec: HeightmapCodec, source: ByteBuffer, offset: Int, length: Int, raw: ByteBuffer, into: IntArray) {
+        if (length < 0 || offset + length > source.limit())
+            throw IOException("Truncated heightmap data")
+
+        when (codec) {
+            HeightmapCodec.LZ4_FAST, HeightmapCodec.LZ4_HIGH -> {
+                decompressor.decompress(source, offset, raw, 0, RAW_SIZE)
+                raw.clear()
+                raw.asIntBuffer().get(into, 0, CELLS)
+            }
+            HeightmapCodec.DELTA_VARINT -> {
+                var position = offset
+                var previous = 0
+                for (i in 0 until CELLS) {
+                    var zigzag = 0
+                    var shift = 0
+                    while (true) {
+                        val b = source.get(position++).toInt()
+                        zigzag = zigzag or ((b and 0x7F) shl shift)
+                        if (b and 0x80 == 0)
+                            break
+                        shift += 7
+                    }
+                    previous += (zigzag ushr 1) xor -(zigzag and 1)
+                    into[i] = previous
+                }
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import xyz.chunkstories.api.player.Player
 import xyz.chunkstories.api.player.entityIfIngame
 import xyz.chunkstories.api.server.RemotePlayer
 import xyz.chunkstories.api.world.cell.CellData
+import xyz.chunkstories.block.VoxelFormat
 import xyz.chunkstories.world.WorldImplementation
 import java.io.File
 import java.util.*
@@ -307,37 +308,68 @@ class HeightmapImplementation internal constructor(private val storage: Heightma
         val h = getHeight(lx, lz)
 
         // If we place something solid over the last solid thing
-        if (newData.blockType.solid || newData.blockType.name.endsWith("water")) {
-            if (y >= h || h == -1) {
-                heightData[index(lx, lz)] = y
-                blockTypesData[index(lx, lz)] = world.gameInstance.contentTranslator.getIdForVoxel(newData.blockType)
-            }
+        if (isTopCandidate(newData.blockType)) {
+            if (y >= h || h == -1)
+                setColumn(lx, lz, y, world.gameInstance.contentTranslator.getIdForVoxel(newData.blockType))
         } else {
-            // If removing the top block, start a loop to find bottom.
+            // If removing the top block, scan down the raw voxel data to find the new top
             if (y == h && h > 0) {
-                var raw_data: Int
-
-                var loaded = false
-                var solid = false
-                var liquid = false
-
-                var height = y
-                do {
-                    height--
-                    loaded = world.chunksManager.isChunkLoaded(x / 32, height / 32, z / 32)
-
-                    val cellData = world.getCell(x, height, z)?.data ?: return
-                    solid = cellData.blockType.solid
-                    liquid = cellData.blockType.name.endsWith("water")
-                    with(world.contentTranslator) {
-                        raw_data = cellData.blockType.assignedId
+                val translator = world.contentTranslator
+                var height = y - 1
+                while (height >= 0) {
+                    val chunk = world.chunksManager.getChunk(x / 32, height / 32, z / 32) ?: return
+                    val blockData = chunk.blockData
+
+                    // Skip air chunks altogether
+                    if (blockData == null) {
+                        height = (height and 31.inv()) - 1
+                        continue
                     }
-                } while (height >= 0 && loaded && !solid && !liquid)
 
-                if (loaded) {
-                    heightData[index(lx, lz)] = y
-                    blockTypesData[index(lx, lz)] = raw_data
+                    val columnBase = (x and 31) * 32 * 32 + (z and 31)
+                    val chunkBottom = height and 31.inv()
+                    while (height >= chunkBottom) {
+                        val id = VoxelFormat.id(blockData[columnBase + (height and 31) * 32])
+                        val blockType = translator.getVoxelForId(id)
+                        if (blockType != null && isTopCandidate(blockType)) {
+                            setColumn(lx, lz, height, id)
+                            return
+                        }
+                        height--
+                    }
                 }
+
+                // Nothing left in that column
+                setColumn(lx, lz, 0, translator.getIdForVoxel(world.content.blockTypes.air))
+            }
+        }
+    }
+
+    private fun isTopCandidate(blockType: BlockType) = blockType.solid || blockType.name.endsWith("water")
+
+    /** Changes one column and keeps the mip chain above it and its slab bounds up to date */
+    private fun setColumn(lx: Int, lz: Int, height: Int, blockTypeId: Int) {
+        val index = index(lx, lz)
+        val previousHeight = heightData[index]
+        heightData[index] = height
+        blockTypesData[index] = blockTypeId
+
+        for (level in 1..8)
+            updateMipCell(level, lx shr level, lz shr level)
+
+        if (!::min.isInitialized)
+            return
+        val slabX = lx / 32
+        val slabZ = lz / 32
+        when {
+            // The previous extreme moved inwards, the new one could be anywhere in the slab
+            previousHeight == max[slabX][slabZ] && height < previousHeight -> computeSlabMinMax(slabX, slabZ)
+            previousHeight == min[slabX][slabZ] && height > previousHeight -> computeSlabMinMax(slabX, slabZ)
+            else -> {
+                if (height > max[slabX][slabZ])
+                    max[slabX][slabZ] = height
+                if (height < min[slabX][slabZ])
+                    min[slabX][slabZ] = height
             }
         }
     }
@@ -411,45 +443,37 @@ class HeightmapImplementation internal constructor(private val storage: Heightma
     }
 
     private fun generateMipLevels() {
-        //if (state !is Heightmap.State.Available)
-        //    return
-
         // Max mipmaps
-        var resolution = 128
-        var offset = 0
-        while (resolution > 1) {
+        for (level in 1..8) {
+            val resolution = 256 shr level
             for (x in 0 until resolution)
-                for (z in 0 until resolution) {
-                    // Fetch from the current resolution
-                    // int v00 = heights[offset + (resolution * 2) * (x * 2) + (z * 2)];
-                    // int v01 = heights[offset + (resolution * 2) * (x * 2) + (z * 2 + 1)];
-                    // int v10 = heights[offset + (resolution * 2) * (x * 2 + 1) + (z * 2)];
-                    // int v11 = heights[offset + (resolution * 2) * (x * 2 + 1) + (z * 2) + 1];
-
-                    var maxIndex = 0
-                    var maxHeight = 0
-                    for (i in 0..1)
-                        for (j in 0..1) {
-                            val locationThere = offset + resolution * 2 * (x * 2 + i) + z * 2 + j
-                            val heightThere = heightData!![locationThere]
-
-                            if (heightThere >= maxHeight) {
-                                maxIndex = locationThere
-                                maxHeight = heightThere
-                            }
-                        }
-
-                    // int maxHeight = max(max(v00, v01), max(v10, v11));
+                for (z in 0 until resolution)
+                    updateMipCell(level, x, z)
+        }
+    }
 
-                    // Skip the already passed steps and the current resolution being sampled data
-                    // to go write the next one
-                    heightData[offset + resolution * 2 * (resolution * 2) + resolution * x + z] = maxHeight
-                    blockTypesData[offset + resolution * 2 * (resolution * 2) + resolution * x + z] = blockTypesData[maxIndex]
+    /** Recomputes one cell of a mip level from the 2x2 cells under it in the previous level */
+    private fun updateMipCell(level: Int, x: Int, z: Int) {
+        val resolution = 256 shr level
+        val sourceOffset = mainMimpmapOffsets[level - 1]
+        val sourceResolution = resolution * 2
+
+        var maxIndex = sourceOffset + sourceResolution * (x * 2) + z * 2
+        var maxHeight = 0
+        for (i in 0..1)
+            for (j in 0..1) {
+                val locationThere = sourceOffset + sourceResolution * (x * 2 + i) + z * 2 + j
+                val heightThere = heightData[locationThere]
+
+                if (heightThere >= maxHeight) {
+                    maxIndex = locationThere
+                    maxHeight = heightThere
                 }
+            }
 
-            offset += resolution * 2 * resolution * 2
-            resolution /= 2
-        }
+        val destination = mainMimpmapOffsets[level] + resolution * x + z
+        heightData[destination] = maxHeight
+        blockTypesData[destination] = blockTypesData[maxIndex]
     }
 
     private fun computeChunkSlabsMinMax() {
@@ -457,21 +481,23 @@ class HeightmapImplementation internal constructor(private val storage: Heightma
         max = Array(8) { IntArray(8) }
 
         for (i in 0..7)
-            for (j in 0..7) {
-                var minl = Integer.MAX_VALUE
-                var maxl = 0
-                for (a in 0..31)
-                    for (b in 0..31) {
-                        val h = heightData[index(i * 32 + a, j * 32 + b)]
-                        if (h > maxl)
-                            maxl = h
-                        if (h < minl)
-                            minl = h
-                    }
-                min[i][j] = minl
-                max[i][j] = maxl
-            }
+            for (j in 0..7)
+                computeSlabMinMax(i, j)
+    }
 
+    private fun computeSlabMinMax(i: Int, j: Int) {
+        var minl = Integer.MAX_VALUE
+        var maxl = 0
+        for (a in 0..31)
+            for (b in 0..31) {
+                val h = heightData[index(i * 32 + a, j * 32 + b)]
+                if (h > maxl)
+                    maxl = h
+                if (h < minl)
+                    minl = h
+            }
+        min[i][j] = minl
+        max[i][j] = maxl
     }
 
     override fun toString(): String {
@@ -6,9 +6,6 @@
 
 package xyz.chunkstories.world.heightmap;
 
-import java.io.FileOutputStream;
-import java.nio.ByteBuffer;
-
 import xyz.chunkstories.api.workers.TaskExecutor;
 import xyz.chunkstories.api.world.heightmap.Heightmap;
 import xyz.chunkstories.world.io.IOTask;
@@ -26,39 +23,7 @@ public class IOTaskSaveHeightmap extends IOTask {
 			if (!(heightmap.getState() instanceof Heightmap.State.Saving))
 				throw new RuntimeException("Illegal state: You can't save a heightmap not in the saving state !");
 
-			heightmap.getFile().getParentFile().mkdirs();
-			if (!heightmap.getFile().exists())
-				heightmap.getFile().createNewFile();
-			FileOutputStream out = new FileOutputStream(heightmap.getFile());
-
-			int[] heights = heightmap.getHeightData();
-			int[] ids = heightmap.getBlockTypesData();
-
-			ByteBuffer writeMe = ByteBuffer.allocate(256 * 256 * 4);
-
-			for (int i = 0; i < 256 * 256; i++)
-				writeMe.putInt(heights[i]);
-
-			byte[] compressed = HeightmapImplementation.Companion.getCompressor().compress(writeMe.array());
-
-			int compressedSize = compressed.length;
-
-			byte[] size = ByteBuffer.allocate(4).putInt(compressedSize).array();
-			out.write(size);
-			out.write(compressed);
-
-			writeMe.clear();
-			for (int i = 0; i < 256 * 256; i++)
-				writeMe.putInt(ids[i]);
-
-			compressed = HeightmapImplementation.Companion.getCompressor().compress(writeMe.array());
-			compressedSize = compressed.length;
-
-			size = ByteBuffer.allocate(4).putInt(compressedSize).array();
-			out.write(size);
-			out.write(compressed);
-
-			out.close();
+			HeightmapFileSerialization.write(heightmap.getFile(), heightmap.getHeightData(), heightmap.getBlockTypesData());
 
 			//System.out.println("wrote "+heightmap.getFile());
 		} catch (Exception e) {
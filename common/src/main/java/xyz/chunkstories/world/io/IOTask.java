@@ -9,4 +9,6 @@ package xyz.chunkstories.world.io;
 import xyz.chunkstories.api.workers.Task;
 
 public abstract class IOTask extends Task {
+	/** Set by IOTasks when (re)queued, to measure how long tasks wait */
+	volatile long scheduledAt;
 }
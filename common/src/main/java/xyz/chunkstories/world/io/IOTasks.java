@@ -15,6 +15,8 @@ import org.slf4j.LoggerFactory;
 
 import xyz.chunkstories.api.workers.TaskExecutor;
 import xyz.chunkstories.api.world.World;
+import xyz.chunkstories.util.profiling.LatencyHistogram;
+import xyz.chunkstories.util.profiling.TickProfiler;
 
 /** A shitty task system to deal with I/O */
 public class IOTasks extends Thread implements TaskExecutor {
@@ -36,6 +38,7 @@ public class IOTasks extends Thread implements TaskExecutor {
 	}
 
 	public boolean scheduleTask(IOTask task) {
+		task.scheduledAt = System.nanoTime();
 		boolean code = tasks.add(task);
 		tasksCounter.release();
 		return code;
@@ -64,8 +67,13 @@ public class IOTasks extends Thread implements TaskExecutor {
 			} else if (task == DIE) {
 				break;
 			} else {
+				long start = System.nanoTime();
+				waitTiming.record(start - task.scheduledAt);
 				try {
 					boolean taskSuccessfull = task.run(this);
+					long took = System.nanoTime() - start;
+					runTiming.record(took);
+					runTimingByClass.get(task.getClass()).record(took);
 
 					// If it returns false, requeue it.
 					if (!taskSuccessfull)
@@ -81,6 +89,7 @@ public class IOTasks extends Thread implements TaskExecutor {
 	}
 
 	void rescheduleTask(IOTask task) {
+		task.scheduledAt = System.nanoTime();
 		tasks.add(task);
 		tasksCounter.release();
 	}
@@ -132,6 +141,20 @@ public class IOTasks extends Thread implements TaskExecutor {
 
 	private static final Logger logger = LoggerFactory.getLogger("world.io");
 
+	private static final LatencyHistogram waitTiming = TickProfiler.INSTANCE.histogram("io.wait");
+	private static final LatencyHistogram runTiming = TickProfiler.INSTANCE.histogram("io.run");
+
+	/** Run times by kind of task, looked up once per class. Anonymous classes go by their binary name (ie WorldServer$1) */
+	private static final ClassValue<LatencyHistogram> runTimingByClass = new ClassValue<LatencyHistogram>() {
+		@Override
+		protected LatencyHistogram computeValue(Class<?> type) {
+			String name = type.getSimpleName();
+			if (name.isEmpty())
+				name = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+			return TickProfiler.INSTANCE.histogram("io.run." + name);
+		}
+	};
+
 	public Logger logger() {
 		return logger;
 	}
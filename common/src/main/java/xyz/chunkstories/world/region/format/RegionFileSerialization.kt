@@ -3,6 +3,8 @@ package xyz.chunkstories.world.region.format
 import org.slf4j.LoggerFactory
 import xyz.chunkstories.world.chunk.ChunkCompressedData
 import xyz.chunkstories.world.region.RegionImplementation
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.DataInputStream
 import java.io.DataOutputStream
@@ -15,6 +17,16 @@ object RegionFileSerialization {
         dis.close()
     }
 
+    /** Reads a region file into compressed chunks, indexed like saveRegion(file, chunks) expects them */
+    fun loadChunks(file: File): Array<ChunkCompressedData?> {
+        val chunks = arrayOfNulls<ChunkCompressedData>(8 * 8 * 8)
+        DataInputStream(BufferedInputStream(file.inputStream())).use { dis ->
+            readHeader(dis)
+            readContents(dis) { x, y, z, data -> chunks[x * 64 + y * 8 + z] = data }
+        }
+        return chunks
+    }
+
     fun saveRegion(file: File, region: RegionImplementation) {
         val dos = DataOutputStream(file.outputStream())
         writeHeader(dos)
@@ -22,7 +34,20 @@ object RegionFileSerialization {
         dos.close()
     }
 
+    /** Writes a region file straight from compressed chunks, indexed the same way as RegionImplementation's holders (x * 64 + y * 8 + z) */
+    fun saveRegion(file: File, chunks: Array<ChunkCompressedData?>) {
+        val dos = DataOutputStream(BufferedOutputStream(file.outputStream()))
+        writeHeader(dos)
+        writeContents(dos) { x, y, z -> chunks[x * 64 + y * 8 + z] }
+        dos.close()
+    }
+
     fun readHeaderAndDispatch(dis: DataInputStream, region: RegionImplementation) {
+        readHeader(dis)
+        readContents(dis, region)
+    }
+
+    private fun readHeader(dis: DataInputStream) {
         val magicNumber = dis.readLong()
 
         if(magicNumber != 6003953969960732739L)
@@ -31,13 +56,13 @@ object RegionFileSerialization {
         val versionNumber = dis.readInt()
         val writeTimestamp = dis.readLong()
 
-        if(versionNumber == 0x2E)
-            readContents(dis, region)
-        else
+        if(versionNumber != 0x2E)
             throw Exception("Unsupported revision: $versionNumber")
     }
 
-    fun readContents(dis: DataInputStream, region: RegionImplementation) {
+    fun readContents(dis: DataInputStream, region: RegionImplementation) = readContents(dis) { x, y, z, data -> region.getChunkHolder(x, y, z).compressedData = data }
+
+    fun readContents(dis: DataInputStream, chunkData: (Int, Int, Int, ChunkCompressedData) -> Unit) {
         // First load the compressed chunk data sizes
         val chunksSizes = IntArray(8 * 8 * 8)
         for (a in 0 until 8 * 8 * 8) {
@@ -50,7 +75,7 @@ object RegionFileSerialization {
                 for (c in 0..7) {
                     val expectedSize = chunksSizes[a * 8 * 8 + b * 8 + c]
                     if (expectedSize > 0) {
-                        region.getChunkHolder(a, b, c).compressedData = ChunkCompressedData.fromBytes(dis)
+                        chunkData(a, b, c, ChunkCompressedData.fromBytes(dis))
                     }
                 }
     }
@@ -62,13 +87,14 @@ object RegionFileSerialization {
         dos.writeLong(System.currentTimeMillis())
     }
 
-    fun writeContents(dos: DataOutputStream, region: RegionImplementation) {
+    fun writeContents(dos: DataOutputStream, region: RegionImplementation) = writeContents(dos) { x, y, z -> region.getChunkHolder(x, y, z).compressedData }
+
+    fun writeContents(dos: DataOutputStream, chunkData: (Int, Int, Int) -> ChunkCompressedData?) {
         val dataPerChunk =
                 (0..7).map { x ->
                     (0..7).map { y ->
                         (0..7).map { z ->
-                            val chunkHolder = region.getChunkHolder(x, y, z)
-                            val compressedChunkData = chunkHolder.compressedData
+                            val compressedChunkData = chunkData(x, y, z)
                             if (compressedChunkData != null)
                                 captureOutputData { compressedChunkData.toBytes(it) }
                             else
@@ -0,0 +1,160 @@
+package xyz.chunkstories.animation
+
+import org.joml.Matrix4f
+import org.joml.Vector3d
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.api.math.MathUtils
+import xyz.chunkstories.api.math.Quaternion4d
+
+class TestBiovisionPose {
+    private val bvh = """
+        HIERARCHY
+        ROOT Hips
+        {
+            OFFSET 0.0 0.0 1.0
+            CHANNELS 6 Xposition Yposition Zposition Xrotation Yrotation Zrotation
+            JOINT Spine
+            {
+                OFFSET 0.0 0.0 0.5
+                CHANNELS 3 Xrotation Yrotation Zrotation
+                JOINT Head
+                {
+                    OFFSET 0.0 0.1 0.4
+                    CHANNELS 3 Xrotation Yrotation Zrotation
+                    End Site
+                    {
+                        OFFSET 0.0 0.0 0.2
+                    }
+                }
+            }
+            JOINT Leg
+            {
+                OFFSET 0.2 0.0 -0.1
+                CHANNELS 3 Xrotation Yrotation Zrotation
+                End Site
+                {
+                    OFFSET 0.0 0.0 -0.8
+                }
+            }
+        }
+        MOTION
+        Frames: 3
+        Frame Time: 0.1
+        0.0 0.0 0.0 0.0 0.0 0.0 10.0 0.0 0.0 0.0 20.0 0.0 -15.0 0.0 5.0
+        0.1 0.2 0.0 5.0 0.0 10.0 20.0 5.0 0.0 0.0 30.0 10.0 15.0 0.0 -5.0
+        0.2 0.0 0.1 10.0 5.0 0.0 30.0 -5.0 10.0 5.0 10.0 0.0 45.0 20.0 0.0
+    """.trimIndent()
+
+    /** A single bone turning most of the way around, so interpolating between its two frames goes past half a turn */
+    private val bvhLongTurn = """
+        HIERARCHY
+        ROOT Hips
+        {
+            OFFSET 0.0 0.0 1.0
+            CHANNELS 6 Xposition Yposition Zposition Xrotation Yrotation Zrotation
+            End Site
+            {
+                OFFSET 0.0 0.0 0.5
+            }
+        }
+        MOTION
+        Frames: 2
+        Frame Time: 0.1
+        0.0 0.0 0.0 10.0 0.0 10.0
+        0.0 0.0 0.0 30.0 -20.0 200.0
+    """.trimIndent()
+
+    /** One bone the way the animation used to compute it, with the API's Quaternion4d */
+    private fun referenceLocal(bone: BiovisionBone, frameLower: Int, frameUpper: Int, t: Float): Matrix4f {
+        val data = bone.animation.animationData
+        val offset = bone.animationDataOffset
+        val rotationOffset = if (bone.channels == 6) offset + 3 else offset
+
+        fun rotation(frame: Int): Quaternion4d {
+            fun toRad(f: Float) = (f / 180 * Math.PI).toFloat().toDouble()
+            val x = Quaternion4d.fromAxisAngle(Vector3d(1.0, 0.0, 0.0), toRad(data[frame][rotationOffset + 0]))
+            val y = Quaternion4d.fromAxisAngle(Vector3d(0.0, 1.0, 0.0), toRad(data[frame][rotationOffset + 1]))
+            val z = Quaternion4d.fromAxisAngle(Vector3d(0.0, 0.0, 1.0), toRad(data[frame][rotationOffset + 2]))
+            return x.mult(y).mult(z)
+        }
+
+        val matrix = Quaternion4d.slerp(rotation(frameLower), rotation(frameUpper), t.toDouble()).toMatrix4f()
+        if (bone.channels == 6) {
+            matrix.m30(matrix.m30() + MathUtils.mixf(data[frameLower][offset + 0], data[frameUpper][offset + 0], t))
+            matrix.m31(matrix.m31() + MathUtils.mixf(data[frameLower][offset + 1], data[frameUpper][offset + 1], t))
+            matrix.m32(matrix.m32() + MathUtils.mixf(data[frameLower][offset + 2], data[frameUpper][offset + 2], t))
+        } else {
+            matrix.m30(matrix.m30() + bone.offset.x())
+            matrix.m31(matrix.m31() + bone.offset.y())
+            matrix.m32(matrix.m32() + bone.offset.z())
+        }
+        return BiovisionAnimation.transformBlenderBVHExportToChunkStoriesWorldSpace(matrix)
+    }
+
+    /** What the animation used to do: walk up from the bone to the root, then apply the offset walking up again */
+    private fun reference(animation: BiovisionAnimation, boneName: String, frameLower: Int, frameUpper: Int, interp: Float): Matrix4f {
+        var bone: BiovisionBone? = animation.getBone(boneName)!!
+        val matrix = Matrix4f()
+        while (bone != null) {
+            referenceLocal(bone, frameLower, frameUpper, interp).mul(matrix, matrix)
+            bone = bone.parent
+        }
+        return matrix.mul(animation.getOffsetMatrix(boneName))
+    }
+
+    private fun assertClose(expected: Matrix4f, actual: Matrix4f) {
+        assertTrue("expected $expected but got $actual", expected.equals(actual, 1e-4f))
+    }
+
+    @Test
+    fun testPoseMatchesRecursiveEvaluation() {
+        val animation = loadBiviosionFile(bvh)
+
+        for (boneName in listOf("Hips", "Spine", "Head", "Leg")) {
+            // On frames
+            for (frame in 0 until 3)
+                assertClose(reference(animation, boneName, frame, frame, 0.0f), animation.getBoneHierarchyTransformationMatrixWithOffset(boneName, frame * 100.0f))
+
+            // Halfway between frames, which is a multiple of the quantization step
+            assertClose(reference(animation, boneName, 0, 1, 0.5f), animation.getBoneHierarchyTransformationMatrixWithOffset(boneName, 50.0f))
+            assertClose(reference(animation, boneName, 2, 0, 0.5f), animation.getBoneHierarchyTransformationMatrixWithOffset(boneName, 250.0f))
+        }
+    }
+
+    @Test
+    fun testWholePose() {
+        val animation = loadBiviosionFile(bvh)
+        val pose = Array(animation.bonesInOrder.size) { Matrix4f() }
+        animation.getPoseWithOffsets(150.0f, pose)
+
+        for ((i, bone) in animation.bonesInOrder.withIndex())
+            assertClose(animation.getBoneHierarchyTransformationMatrixWithOffset(bone.name, 150.0f), pose[i])
+
+        // Parents come first
+        for ((i, bone) in animation.bonesInOrder.withIndex())
+            bone.parent?.let { assertTrue(animation.bonesInOrder.indexOf(it) < i) }
+    }
+
+    @Test
+    fun testUnknownBonesDontMove() {
+        val animation = loadBiviosionFile(bvh)
+
+        // Not the root's transform, which is anything but the identity at that time
+        assertEquals(Matrix4f(), animation.getBoneHierarchyTransformationMatrix("Tail", 150.0f))
+        assertEquals(Matrix4f(), animation.getBoneHierarchyTransformationMatrixWithOffset("Tail", 150.0f))
+        assertEquals(Matrix4f(), animation.getOffsetMatrix("Tail"))
+        assertTrue(animation.getBoneHierarchyTransformationMatrix("Hips", 150.0f) != Matrix4f())
+    }
+
+    @Test
+    fun testPastHalfATurn() {
+        val animation = loadBiviosionFile(bvhLongTurn)
+
+        for (frame in 0 until 2)
+            assertClose(reference(animation, "Hips", frame, frame, 0.0f), animation.getBoneHierarchyTransformationMatrixWithOffset("Hips", frame * 100.0f))
+        for (step in 1 until 8)
+            assertClose(reference(animation, "Hips", 0, 1, step / 8.0f), animation.getBoneHierarchyTransformationMatrixWithOffset("Hips", step * 100.0f / 8))
+    }
+}
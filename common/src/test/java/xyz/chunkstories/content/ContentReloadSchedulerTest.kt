@@ -0,0 +1,111 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.task.WorkerThreadPool
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+class ContentReloadSchedulerTest {
+    private val logger = LoggerFactory.getLogger("test.reload")
+    private val pool = WorkerThreadPool(4).also { it.start() }
+
+    @After
+    fun tearDown() {
+        pool.cleanup()
+    }
+
+    @Test
+    fun testDependenciesRunFirst() {
+        val random = Random(7)
+        val finished = ConcurrentHashMap<String, Long>()
+        val started = ConcurrentHashMap<String, Long>()
+        val dependencies = mutableMapOf<String, List<String>>()
+
+        // A random DAG: each stage depends on a few of the ones declared before it
+        val scheduler = ContentReloadScheduler(logger)
+        for (i in 0 until 40) {
+            val name = "stage$i"
+            val dependsOn = (0 until i).filter { random.nextInt(8) == 0 }.map { "stage$it" }
+            dependencies[name] = dependsOn
+            scheduler.stage(name, *dependsOn.toTypedArray()) {
+                started[name] = System.nanoTime()
+                Thread.sleep(random.nextInt(3).toLong())
+                finished[name] = System.nanoTime()
+            }
+        }
+        scheduler.run(pool)
+
+        assertEquals(40, finished.size)
+        for ((name, dependsOn) in dependencies)
+            for (dependency in dependsOn)
+                assertTrue("$name started before $dependency was done", finished[dependency]!! <= started[name]!!)
+    }
+
+    @Test
+    fun testOnCallingThread() {
+        val callingThread = Thread.currentThread()
+        val threads = ConcurrentHashMap<String, Thread>()
+
+        val scheduler = ContentReloadScheduler(logger)
+        scheduler.stage("a") { threads["a"] = Thread.currentThread() }
+        scheduler.stage("b", "a", onCallingThread = true) { threads["b"] = Thread.currentThread() }
+        scheduler.stage("c", "b") { threads["c"] = Thread.currentThread() }
+        scheduler.stage("d", onCallingThread = true) { threads["d"] = Thread.currentThread() }
+        scheduler.run(pool)
+
+        assertSame(callingThread, threads["b"])
+        assertSame(callingThread, threads["d"])
+        assertFalse(threads["a"] === callingThread)
+        assertFalse(threads["c"] === callingThread)
+    }
+
+    @Test
+    fun testFailuresPropagate() {
+        val ran = ConcurrentLinkedQueue<String>()
+        val failure = IllegalStateException("broken definitions")
+
+        val scheduler = ContentReloadScheduler(logger)
+        scheduler.stage("a") { ran.add("a") }
+        scheduler.stage("b", "a") { throw failure }
+        scheduler.stage("c", "b") { ran.add("c") }
+        scheduler.stage("d", "a") { ran.add("d") }
+        try {
+            scheduler.run(pool)
+            fail("The failure of b should be rethrown")
+        } catch (e: IllegalStateException) {
+            assertSame(failure, e)
+        }
+
+        // What depends on the failed stage is skipped, the rest still runs
+        assertEquals(setOf("a", "d"), ran.toSet())
+    }
+
+    @Test(expected = Exception::class)
+    fun testUnknownDependency() {
+        val scheduler = ContentReloadScheduler(logger)
+        scheduler.stage("a", "missing") {}
+        scheduler.run(pool)
+    }
+
+    @Test(expected = Exception::class)
+    fun testCycle() {
+        val scheduler = ContentReloadScheduler(logger)
+        scheduler.stage("a", "b") {}
+        scheduler.stage("b", "a") {}
+        scheduler.run(pool)
+    }
+}
@@ -6,7 +6,13 @@
 
 package xyz.chunkstories.content
 
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
 import org.junit.Test
+import xyz.chunkstories.mesh.AssimpMeshLoader
+import xyz.chunkstories.mesh.MeshCache
+import java.nio.file.Files
 
 class ContentTests {
 
@@ -41,6 +47,46 @@ class ContentTests {
         }
     }
 
+    @Test
+    fun testMeshCacheRoundTrip() {
+        val testContext = TestGameContext("")
+        val content = testContext.content
+        // Straight from Assimp, not through the store and whatever ./cache/meshes/ has
+        val loader = AssimpMeshLoader(content.models)
+        val folder = Files.createTempDirectory("meshcache").toFile()
+
+        try {
+            for (modelName in listOf("models/human/human.dae", "voxels/blockmodels/cube.dae")) {
+                val asset = content.getAsset(modelName)!!
+                val dependencies = mutableSetOf<String>()
+                val imported = loader.load(asset, dependencies)
+
+                val cache = MeshCache(content, folder)
+                val key = cache.keyFor(asset)
+                assertNull(cache.read(key))
+                cache.write(key, asset, dependencies, imported)
+                val cached = MeshCache(content, folder).read(key)
+                assertNotNull("$modelName wasn't cached", cached)
+
+                assertEquals(imported.meshes.size, cached!!.meshes.size)
+                for ((a, b) in imported.meshes.zip(cached.meshes)) {
+                    assertEquals(a.vertices, b.vertices)
+                    assertEquals(a.material.tag, b.material.tag)
+                    assertEquals(a.material.textures, b.material.textures)
+                    assertEquals(a.boneIds, b.boneIds)
+                    assertEquals(a.attributes.map { it.name }, b.attributes.map { it.name })
+                    for ((x, y) in a.attributes.zip(b.attributes)) {
+                        assertEquals(x.format, y.format)
+                        assertEquals(x.components, y.components)
+                        assertEquals(x.data.duplicate().rewind(), y.data.duplicate().rewind())
+                    }
+                }
+            }
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+
     @Test
     fun testContentLoadByItself() {
         val testContext = TestGameContext("")
@@ -3,8 +3,13 @@ package xyz.chunkstories.content
 import org.hjson.JsonArray
 import org.hjson.JsonObject
 import org.hjson.JsonValue
+import org.junit.Assert.assertEquals
 import org.junit.Test
 import xyz.chunkstories.api.content.json.Json
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
 
 class HJsonTest {
     @Test
@@ -14,6 +19,17 @@ class HJsonTest {
         //val map: LinkedTreeMap<Any?, Any?> = gson.fromJson(json, LinkedTreeMap::class.java) as LinkedTreeMap<Any?, Any?>
     }
 
+    @Test
+    fun testCompiledContentRoundTrip() {
+        val json = JsonValue.readHjson(text).eat()
+
+        val baos = ByteArrayOutputStream()
+        CompiledContentCache.writeJson(DataOutputStream(baos), json)
+        val readBack = CompiledContentCache.readJson(DataInputStream(ByteArrayInputStream(baos.toByteArray())))
+
+        assertEquals(json.toString(), readBack.toString())
+    }
+
 
     val text = """
         {
@@ -0,0 +1,68 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import xyz.chunkstories.content.mods.ModFolder
+import xyz.chunkstories.content.mods.ModHashManifest
+import xyz.chunkstories.content.mods.ModZip
+import xyz.chunkstories.content.mods.ZipAssetIndex
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.util.*
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/** Mod hashes must not depend on the manifest being there, nor on the mod being a folder or the zip made from it */
+class ModHashTest {
+
+    @Test
+    fun testHashesWithManifest() {
+        val folder = Files.createTempDirectory("modhashtest").toFile()
+        ModHashManifest.manifestFolder = File(folder, "manifests")
+        ZipAssetIndex.indexFolder = File(folder, "index")
+
+        try {
+            val modFolder = File(folder, "mod")
+            File(modFolder, "textures").mkdirs()
+            File(modFolder, "modInfo.json").writeText("""{ "internalName" : "test", "name": "Test mod", "version": "1" }""")
+            val random = Random(42)
+            for (i in 0 until 50)
+                File(modFolder, "textures/texture$i.bin").writeBytes(ByteArray(1000 + i * 100).also { random.nextBytes(it) })
+
+            // Computed from scratch, then with the manifest written by the first pass
+            val firstHash = ModFolder(modFolder).hash
+            assertEquals(firstHash, ModFolder(modFolder).hash)
+
+            ModHashManifest.enabled = false
+            assertEquals(firstHash, ModFolder(modFolder).hash)
+            ModHashManifest.enabled = true
+
+            // Same hash as the zip servers distribute
+            val zipFile = File(folder, "mod.zip")
+            ZipOutputStream(FileOutputStream(zipFile)).use { zos ->
+                for (asset in ModFolder(modFolder).assets) {
+                    zos.putNextEntry(ZipEntry(asset.name))
+                    asset.read().use { it.copyTo(zos) }
+                }
+            }
+            val zipMod = ModZip(zipFile)
+            assertEquals(firstHash, zipMod.hash)
+            zipMod.close()
+
+            // Changing an asset must be noticed despite the manifest
+            File(modFolder, "textures/texture7.bin").writeBytes(ByteArray(42))
+            assertNotEquals(firstHash, ModFolder(modFolder).hash)
+        } finally {
+            ModHashManifest.enabled = true
+            folder.deleteRecursively()
+        }
+    }
+}
@@ -0,0 +1,74 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.content
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.content.mods.DecompressedAssetsCache
+import xyz.chunkstories.content.mods.ModZip
+import xyz.chunkstories.content.mods.ZipAssetIndex
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.util.*
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/** Checks our own zip indexing serves the same bytes java.util.zip would, for both stored and deflated entries */
+class ModZipTest {
+
+    @Test
+    fun testMappedZipAssets() {
+        val folder = Files.createTempDirectory("modziptest").toFile()
+        // Global, put back afterwards so the other tests don't end up using our folder
+        val indexFolder = ZipAssetIndex.indexFolder
+        ZipAssetIndex.indexFolder = File(folder, "index")
+
+        try {
+            val random = Random(42)
+            val stored = ByteArray(100_000).also { random.nextBytes(it) }
+            val deflated = "Some very compressible text ".repeat(5000).toByteArray()
+
+            val zipFile = File(folder, "test.zip")
+            ZipOutputStream(FileOutputStream(zipFile)).use { zos ->
+                zos.putNextEntry(ZipEntry("modInfo.json"))
+                zos.write("""{ "internalName" : "test", "name": "Test mod", "version": "1" }""".toByteArray())
+
+                zos.putNextEntry(ZipEntry("folder/"))
+
+                val storedEntry = ZipEntry("folder/stored.bin")
+                storedEntry.method = ZipEntry.STORED
+                storedEntry.size = stored.size.toLong()
+                storedEntry.crc = CRC32().also { it.update(stored) }.value
+                zos.putNextEntry(storedEntry)
+                zos.write(stored)
+
+                zos.putNextEntry(ZipEntry("folder/deflated.txt"))
+                zos.write(deflated)
+            }
+
+            // Twice: once building the index, once reading it back from the cache
+            for (pass in 0 until 2) {
+                val mod = ModZip(zipFile, DecompressedAssetsCache(1024 * 1024))
+                assertTrue(mod.getAssetByName("folder/") == null)
+                assertArrayEquals(stored, mod.getAssetByName("folder/stored.bin")!!.read().readBytes())
+                assertArrayEquals(deflated, mod.getAssetByName("folder/deflated.txt")!!.read().readBytes())
+
+                val buffer = AssetToByteBufferHelper.loadIntoByteBuffer(mod.getAssetByName("folder/stored.bin")!!)
+                val bytes = ByteArray(buffer.remaining())
+                buffer.get(bytes)
+                assertArrayEquals(stored, bytes)
+                mod.close()
+            }
+        } finally {
+            ZipAssetIndex.indexFolder = indexFolder
+            folder.deleteRecursively()
+        }
+    }
+}
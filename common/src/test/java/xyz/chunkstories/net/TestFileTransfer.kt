@@ -0,0 +1,226 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.*
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.nio.file.Files
+import java.util.*
+import java.util.concurrent.CompletableFuture
+
+/**
+ * Sends files through FileChunkOutgoing and reads them back with FileDownload, over a byte array standing in for the
+ * socket, or over an actual one where a connection dropping in the middle of a transfer matters
+ */
+class TestFileTransfer {
+    private val packetId = FileChunkOutgoing.filePacketId
+
+    private fun randomFile(folder: File, size: Int): File {
+        val bytes = ByteArray(size)
+        Random(size.toLong()).nextBytes(bytes)
+        val file = File(folder, "source.bin")
+        file.writeBytes(bytes)
+        return file
+    }
+
+    private fun send(source: File, fromOffset: Long): ByteArray {
+        val buffer = ByteArrayOutputStream()
+        val out = DataOutputStream(buffer)
+        var chunk: PacketOutgoing? = FileChunkOutgoing.startTransfer(packetId, "test", source, fromOffset)
+        while (chunk != null) {
+            chunk.write(out)
+            chunk = (chunk as PacketOutgoingChained).next()
+        }
+        return buffer.toByteArray()
+    }
+
+    /** Returns how many chunks it took */
+    private fun receive(stream: ByteArray, download: FileDownload): Int {
+        val input = DataInputStream(ByteArrayInputStream(stream))
+        var chunks = 0
+        while (input.available() > 0) {
+            assertEquals(packetId, input.readByte().toInt())
+            val packetLength = input.readInt()
+            assertTrue(packetLength <= input.available())
+
+            assertEquals("test", input.readUTF())
+            val totalLength = input.readLong()
+            val offset = input.readLong()
+            val length = input.readInt()
+            chunks++
+            if (download.receiveChunk(totalLength, offset, length, input))
+                break
+        }
+        assertEquals("Chunks kept coming after the download was done", 0, input.available())
+        return chunks
+    }
+
+    /** Cuts the connection once limit bytes went through */
+    private class CuttingStream(private val out: OutputStream, private val limit: Long) : OutputStream() {
+        var written = 0L
+
+        override fun write(b: Int) = write(byteArrayOf(b.toByte()), 0, 1)
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            val allowed = Math.min(len.toLong(), limit - written).toInt()
+            out.write(b, off, allowed)
+            written += allowed
+            if (allowed < len)
+                throw IOException("Connection cut")
+        }
+    }
+
+    /**
+     * Serves one connection the way the server answers send-mod requests: the client asks for the file from some
+     * offset on, and gets the chain of chunks from there. Completes with the number of bytes sent.
+     */
+    private fun serve(server: ServerSocket, source: File, cutAfter: Long): CompletableFuture<Long> = CompletableFuture.supplyAsync {
+        server.accept().use { socket ->
+            val fromOffset = DataInputStream(socket.getInputStream()).readLong()
+            val stream = CuttingStream(socket.getOutputStream(), cutAfter)
+            val out = DataOutputStream(BufferedOutputStream(stream))
+            try {
+                var chunk: PacketOutgoing? = FileChunkOutgoing.startTransfer(packetId, "test", source, fromOffset)
+                while (chunk != null) {
+                    chunk.write(out)
+                    chunk = (chunk as PacketOutgoingChained).next()
+                }
+                out.flush()
+            } catch (e: IOException) {
+                // Cut on purpose
+            }
+            stream.written
+        }
+    }
+
+    /** Asks for the file from where the download is at, returns whether it completed before the connection dropped */
+    private fun download(port: Int, download: FileDownload): Boolean {
+        Socket(InetAddress.getLoopbackAddress(), port).use { socket ->
+            DataOutputStream(socket.getOutputStream()).writeLong(download.resumeOffset)
+            val input = DataInputStream(BufferedInputStream(socket.getInputStream()))
+            try {
+                while (true) {
+                    assertEquals(packetId, input.readByte().toInt())
+                    input.readInt()
+                    assertEquals("test", input.readUTF())
+                    if (download.receiveChunk(input.readLong(), input.readLong(), input.readInt(), input))
+                        return download.succeeded
+                }
+            } catch (e: IOException) {
+                download.abort()
+                return false
+            }
+        }
+    }
+
+    @Test
+    fun testTransfer() {
+        val folder = Files.createTempDirectory("fileTransfer").toFile()
+        try {
+            val size = 4 * 1024 * 1024 + 123
+            val source = randomFile(folder, size)
+            val destination = File(folder, "destination.bin")
+
+            val start = System.nanoTime()
+            val stream = send(source, 0L)
+            val download = FileDownload(destination, null) { true }
+            val chunks = receive(stream, download)
+            val elapsed = (System.nanoTime() - start) / 1e9
+
+            assertTrue(download.succeeded)
+            assertEquals((size + FileChunkOutgoing.chunkSize - 1) / FileChunkOutgoing.chunkSize, chunks)
+            assertArrayEquals(source.readBytes(), destination.readBytes())
+            assertFalse(download.partialFile.exists())
+            println("Transferred ${size / 1024}KiB in $chunks chunks, ${"%.1f".format(size / 1024.0 / 1024.0 / elapsed)}MiB/s")
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testResume() {
+        val folder = Files.createTempDirectory("fileTransfer").toFile()
+        try {
+            val size = 500_000
+            val source = randomFile(folder, size)
+            val destination = File(folder, "destination.bin")
+
+            // A previous attempt got cut off in the middle of a chunk
+            val cutAt = FileChunkOutgoing.chunkSize * 3 + 1000
+            val firstAttempt = FileDownload(destination, null) { true }
+            firstAttempt.partialFile.writeBytes(source.readBytes().copyOf(cutAt))
+
+            val download = FileDownload(destination, null) { true }
+            assertEquals(cutAt.toLong(), download.resumeOffset)
+
+            val stream = send(source, download.resumeOffset)
+            assertTrue("Resuming sent as much as starting over", stream.size < size - cutAt + FileChunkOutgoing.chunkSize)
+            receive(stream, download)
+
+            assertTrue(download.succeeded)
+            assertArrayEquals(source.readBytes(), destination.readBytes())
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testMissingFile() {
+        val folder = Files.createTempDirectory("fileTransfer").toFile()
+        try {
+            val destination = File(folder, "destination.bin")
+            val download = FileDownload(destination, null) { true }
+            receive(send(File(folder, "missing.bin"), 0L), download)
+
+            assertFalse(download.succeeded)
+            assertFalse(download.waitsUntilDone())
+            assertFalse(destination.exists())
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testResumeOverSocket() {
+        val folder = Files.createTempDirectory("fileTransfer").toFile()
+        try {
+            val size = 1_000_000
+            val source = randomFile(folder, size)
+            val destination = File(folder, "destination.bin")
+
+            ServerSocket(0, 1, InetAddress.getLoopbackAddress()).use { server ->
+                // The connection drops a few thousand bytes into the fourth chunk
+                val firstServe = serve(server, source, FileChunkOutgoing.chunkSize * 3L + 5000)
+                val firstAttempt = FileDownload(destination, null) { true }
+                assertFalse(download(server.localPort, firstAttempt))
+                firstServe.get()
+
+                assertFalse(firstAttempt.succeeded)
+                assertFalse(destination.exists())
+
+                val download = FileDownload(destination, null) { true }
+                val resumeOffset = download.resumeOffset
+                assertTrue("Only $resumeOffset bytes were kept", resumeOffset >= FileChunkOutgoing.chunkSize * 3L)
+                assertTrue(resumeOffset < size)
+
+                val secondServe = serve(server, source, Long.MAX_VALUE)
+                assertTrue(download(server.localPort, download))
+                val sent = secondServe.get()
+
+                assertTrue("Resuming sent $sent bytes", sent < size - resumeOffset + FileChunkOutgoing.chunkSize)
+                assertArrayEquals(source.readBytes(), destination.readBytes())
+                assertFalse(download.partialFile.exists())
+            }
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+}
@@ -0,0 +1,71 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.EOFException
+
+class TestPacketFramePool {
+
+    @Test
+    fun testSizeClasses() {
+        for (length in listOf(0, 1, 255, 256, 257, 4096, 4097, 65536)) {
+            val frame = PacketFramePool.acquire(length)
+            assertTrue("frame too small for $length", frame.buffer.size >= length)
+            assertEquals("frame size isn't a power of two", 1, Integer.bitCount(frame.buffer.size))
+            PacketFramePool.release(frame)
+        }
+
+        // Bigger than the biggest size class, exact fit and not kept
+        val huge = PacketFramePool.acquire(65537)
+        assertEquals(65537, huge.buffer.size)
+        PacketFramePool.release(huge)
+        assertNotSame(huge, PacketFramePool.acquire(65537))
+    }
+
+    @Test
+    fun testFramesAreReused() {
+        val frame = PacketFramePool.acquire(1000)
+        PacketFramePool.release(frame)
+        assertSame(frame, PacketFramePool.acquire(600))
+    }
+
+    @Test
+    fun testReusedFramesOnlyExposeTheirLength() {
+        val first = PacketFramePool.acquire(8)
+        first.buffer.fill(0x7F, 0, 8)
+        PacketFramePool.release(first)
+
+        val second = PacketFramePool.acquire(4)
+        assertSame(first, second)
+        for (i in 0 until 4)
+            second.buffer[i] = i.toByte()
+
+        val data = second.data
+        for (i in 0 until 4)
+            assertEquals(i, data.readByte().toInt())
+        try {
+            data.readByte()
+            fail("Read past the frame length")
+        } catch (e: EOFException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun testDisposeOnlyReleasesOnce() {
+        val frame = PacketFramePool.acquire(300)
+        val datagram = PacketIngoingBuffered(null, 300, frame)
+        datagram.dispose()
+        datagram.dispose()
+
+        val a = PacketFramePool.acquire(300)
+        val b = PacketFramePool.acquire(300)
+        assertNotSame(a, b)
+    }
+}
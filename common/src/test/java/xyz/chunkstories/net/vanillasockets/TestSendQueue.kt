@@ -0,0 +1,213 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.net.vanillasockets
+
+import org.junit.Assert.*
+import org.junit.Test
+import xyz.chunkstories.api.net.Packet
+import xyz.chunkstories.api.server.UserConnection
+import xyz.chunkstories.content.DummyEngine
+import xyz.chunkstories.net.Connection
+import xyz.chunkstories.net.PacketOutgoing
+import xyz.chunkstories.net.PacketOutgoingChained
+import xyz.chunkstories.net.PacketsEncoderDecoder
+import xyz.chunkstories.net.SendPriority
+import xyz.chunkstories.world.WorldImplementation
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.OutputStream
+
+/** Each packet writes its id (1-127) followed by zeroes, so the ids found in the output give the order they went out in */
+class TestSendQueue {
+    private class TestPacket(val id: Int, val size: Int, override val priority: SendPriority) : PacketOutgoing {
+        override fun write(out: DataOutputStream) {
+            out.writeByte(id)
+            out.write(ByteArray(size))
+        }
+    }
+
+    private class ChainedPacket(val ids: List<Int>) : PacketOutgoingChained {
+        override val priority = SendPriority.BULK
+
+        override fun write(out: DataOutputStream) {
+            out.writeByte(ids.first())
+        }
+
+        override fun next() = if (ids.size > 1) ChainedPacket(ids.drop(1)) else null
+    }
+
+    /** Remembers the ids it saw and when they reached it */
+    private class RecordingStream : OutputStream() {
+        val ids = mutableListOf<Int>()
+        val arrivals = mutableMapOf<Int, Long>()
+
+        @Synchronized
+        override fun write(b: Int) {
+            if (b and 0xFF != 0) {
+                ids.add(b and 0xFF)
+                arrivals[b and 0xFF] = System.nanoTime()
+            }
+        }
+
+        @Synchronized
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            for (i in off until off + len)
+                write(b[i].toInt())
+        }
+    }
+
+    private class TestConnection : Connection(DummyEngine(), "localhost", 0) {
+        @Volatile
+        var closedBecause: String? = null
+
+        override val encoderDecoder: PacketsEncoderDecoder
+            get() = throw UnsupportedOperationException()
+        override val isOpen = true
+        override val world: WorldImplementation? = null
+        override val userConnection: UserConnection? = null
+
+        override fun connect() = true
+        override fun flush() {}
+        override fun handleSystemRequest(message: String) = false
+        override fun pushPacket(packet: Packet) {}
+        override fun close(reason: String) {
+            closedBecause = reason
+        }
+    }
+
+    @Test
+    fun testLanesOrdering() {
+        val stream = RecordingStream()
+        val queue = SendQueue(TestConnection(), stream)
+
+        queue.queue(TestPacket(1, 1000, SendPriority.BULK))
+        queue.queue(TestPacket(2, 1000, SendPriority.BULK))
+        queue.queue(TestPacket(3, 10, SendPriority.INTERACTIVE))
+        queue.queue(TestPacket(4, 10, SendPriority.REALTIME))
+        queue.queue(TestPacket(5, 10, SendPriority.INTERACTIVE))
+        queue.queue(TestPacket(6, 10, SendPriority.REALTIME))
+        queue.flush()
+        queue.start()
+        queue.shutdown()
+
+        // Most urgent lane first, FIFO within a lane
+        assertEquals(listOf(4, 6, 3, 5, 1, 2), stream.ids)
+    }
+
+    @Test
+    fun testChainedPacketsTakeTurns() {
+        val stream = RecordingStream()
+        val queue = SendQueue(TestConnection(), stream)
+
+        queue.queue(ChainedPacket(listOf(1, 2, 3)))
+        queue.queue(ChainedPacket(listOf(11, 12)))
+        queue.queue(TestPacket(21, 100, SendPriority.BULK))
+        queue.flush()
+        queue.start()
+        queue.shutdown()
+
+        // Only the next part of a transfer is queued, behind what was already in the lane
+        assertEquals(listOf(1, 11, 21, 2, 12, 3), stream.ids)
+    }
+
+    @Test
+    fun testBulkBudget() {
+        val stream = RecordingStream()
+        val bytesPerSecond = 100_000
+        val queue = SendQueue(TestConnection(), stream, bytesPerSecond)
+        queue.start()
+
+        val start = System.nanoTime()
+        for (id in 1..20)
+            queue.queue(TestPacket(id, 10_000, SendPriority.BULK))
+        queue.flush()
+
+        // Something urgent in the middle of it doesn't wait for the bulk lane
+        Thread.sleep(300)
+        val realtimeQueuedAt = System.nanoTime()
+        queue.queue(TestPacket(100, 10, SendPriority.REALTIME))
+        queue.flush()
+
+        while (synchronized(stream) { 20 !in stream.arrivals } && System.nanoTime() - start < 10_000_000_000L)
+            Thread.sleep(10)
+        queue.shutdown()
+
+        synchronized(stream) {
+            assertEquals((1..20).toList(), stream.ids.filter { it != 100 })
+            // 200KB at 100KB/s, the first packet goes out with the budget still at zero
+            val seconds = (stream.arrivals[20]!! - start) / 1e9
+            assertTrue("200KB went out in ${seconds}s", seconds > 1.5)
+
+            val realtimeDelay = (stream.arrivals[100]!! - realtimeQueuedAt) / 1e9
+            assertTrue("The realtime packet waited ${realtimeDelay}s", realtimeDelay < 0.2)
+            assertTrue(stream.arrivals[100]!! < stream.arrivals[20]!!)
+        }
+    }
+
+    @Test
+    fun testUnlimitedByDefault() {
+        val stream = RecordingStream()
+        val queue = SendQueue(TestConnection(), stream)
+        queue.start()
+
+        val start = System.nanoTime()
+        for (id in 1..100)
+            queue.queue(TestPacket(id, 64 * 1024, SendPriority.BULK))
+        queue.flush()
+
+        while (synchronized(stream) { 100 !in stream.arrivals } && System.nanoTime() - start < 10_000_000_000L)
+            Thread.sleep(1)
+        queue.shutdown()
+
+        synchronized(stream) {
+            assertEquals((1..100).toList(), stream.ids)
+            // 6.4MB that would take over 3s at the old 2MB/s default
+            assertTrue((stream.arrivals[100]!! - start) / 1e9 < 2.0)
+        }
+    }
+
+    @Test
+    fun testShutdownSendsWhatWasQueued() {
+        val stream = RecordingStream()
+        // Throttled to the point nothing bulk would go out for a good while
+        val queue = SendQueue(TestConnection(), stream, 1)
+
+        // The first bulk packet goes out on the budget, which leaves it in debt for the next 1000 seconds
+        queue.queue(TestPacket(1, 1000, SendPriority.BULK))
+        queue.queue(TestPacket(2, 1000, SendPriority.BULK))
+        queue.queue(TestPacket(3, 10, SendPriority.INTERACTIVE))
+        queue.start()
+
+        val start = System.nanoTime()
+        queue.shutdown()
+        queue.join(1000)
+
+        assertTrue("shutdown() took too long", (System.nanoTime() - start) / 1e9 < 2.0)
+        assertFalse(queue.isAlive)
+        // What was queued still goes out, in lane order, budget or not: disconnection messages rely on that
+        assertEquals(listOf(3, 1, 2), stream.ids)
+    }
+
+    @Test
+    fun testWriteErrorClosesTheConnection() {
+        val connection = TestConnection()
+        val broken = object : OutputStream() {
+            override fun write(b: Int) = throw IOException("Connection reset")
+            override fun write(b: ByteArray, off: Int, len: Int) = throw IOException("Connection reset")
+        }
+        val queue = SendQueue(connection, broken)
+        queue.start()
+
+        queue.queue(TestPacket(1, 10, SendPriority.INTERACTIVE))
+        queue.flush()
+        queue.join(5000)
+
+        assertFalse(queue.isAlive)
+        assertNotNull(connection.closedBecause)
+        assertTrue(connection.closedBecause!!.contains("Connection reset"))
+    }
+}
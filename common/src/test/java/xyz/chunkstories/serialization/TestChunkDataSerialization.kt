@@ -0,0 +1,83 @@
+package xyz.chunkstories.serialization
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.api.content.json.Json
+import xyz.chunkstories.api.content.json.asDouble
+import xyz.chunkstories.api.content.json.stringSerialize
+import xyz.chunkstories.util.CompactJson
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class TestChunkDataSerialization {
+    private fun itemDrop(i: Int) = Json.Dict(mapOf(
+            "type" to Json.Value.Text("item_drop"),
+            "traits" to Json.Dict(mapOf(
+                    "location" to Json.Dict(mapOf(
+                            "x" to Json.Value.Number(100.5 + i),
+                            "y" to Json.Value.Number(64.0),
+                            "z" to Json.Value.Number(-3.0 - i * 0.1))),
+                    "item" to Json.Dict(mapOf(
+                            "name" to Json.Value.Text(if (i % 2 == 0) "stone" else "dirt"),
+                            "amount" to Json.Value.Number((i % 64).toDouble()),
+                            "enchanted" to Json.Value.Bool(i % 7 == 0),
+                            "owner" to Json.Value.Null))))))
+
+    // Small enough for the legacy format, which can't write more than 64KB of json
+    private val entities = Json.Array(List(200) { itemDrop(it) })
+
+    private fun roundTrip(data: ChunkCompressedData, legacy: Boolean): ChunkCompressedData {
+        val baos = ByteArrayOutputStream()
+        DataOutputStream(baos).use { data.toBytes(it, legacy) }
+        return ChunkCompressedData.fromBytes(DataInputStream(ByteArrayInputStream(baos.toByteArray())))
+    }
+
+    @Test
+    fun testRoundTrips() {
+        val voxelData = IntArray(32 * 32 * 32) { it % 7 }
+        val withEntities = ChunkCompressedData.fromVoxelData(voxelData, entities)
+
+        for (legacy in listOf(false, true)) {
+            val read = roundTrip(withEntities, legacy) as ChunkCompressedData.NonAir
+            assertArrayEquals(voxelData, read.extractVoxelData())
+            assertEquals(entities.stringSerialize(), read.extractEntities().stringSerialize())
+
+            val air = roundTrip(ChunkCompressedData.Air(entities), legacy)
+            assertEquals(entities.stringSerialize(), air.extractEntities().stringSerialize())
+        }
+    }
+
+    @Test
+    fun testNoSizeLimit() {
+        val lots = Json.Array(List(5000) { itemDrop(it) })
+        val read = roundTrip(ChunkCompressedData.Air(lots), false)
+        assertEquals(lots.stringSerialize(), read.extractEntities().stringSerialize())
+    }
+
+    @Test
+    fun testNumbers() {
+        val numbers = listOf(0.0, -0.0, 1.0, -1.0, 127.0, 128.0, Int.MAX_VALUE.toDouble(), Int.MIN_VALUE.toDouble(), 1e12, 0.5, 0.1, Math.PI, Double.MAX_VALUE)
+        val tree = Json.Array(numbers.map { Json.Value.Number(it) })
+
+        val baos = ByteArrayOutputStream()
+        CompactJson.write(DataOutputStream(baos), listOf(tree))
+        val read = CompactJson.read(DataInputStream(ByteArrayInputStream(baos.toByteArray()))).single() as Json.Array
+
+        for ((expected, actual) in numbers.zip(read.elements))
+            assertEquals(java.lang.Double.doubleToLongBits(expected), java.lang.Double.doubleToLongBits(actual.asDouble!!))
+    }
+
+    @Test
+    fun testSmallerThanJson() {
+        val baos = ByteArrayOutputStream()
+        CompactJson.write(DataOutputStream(baos), listOf(entities))
+        val json = entities.stringSerialize().toByteArray(Charsets.UTF_8)
+        println("200 item drops: ${baos.size()} bytes compact, ${json.size} bytes as json")
+        assertTrue("Compact form should be under half the json size", baos.size() < json.size / 2)
+    }
+}
@@ -0,0 +1,72 @@
+package xyz.chunkstories.serialization
+
+import net.jpountz.lz4.LZ4Factory
+import org.junit.Assert.assertArrayEquals
+import org.junit.Test
+import xyz.chunkstories.world.heightmap.HeightmapCodec
+import xyz.chunkstories.world.heightmap.HeightmapFileSerialization
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.util.*
+
+class TestHeightmapSerialization {
+    private val heights = IntArray(256 * 256)
+    private val ids = IntArray(256 * 256)
+
+    init {
+        // Something terrain-looking: smooth heights, large patches of the same block
+        val random = Random(42)
+        for (x in 0 until 256)
+            for (z in 0 until 256) {
+                heights[x * 256 + z] = (64 + 20 * Math.sin(x / 17.0) * Math.cos(z / 23.0)).toInt() + random.nextInt(2)
+                ids[x * 256 + z] = if ((x / 32 + z / 32) % 3 == 0) 4 else 2
+            }
+    }
+
+    @Test
+    fun testRoundTrips() {
+        val file = File.createTempFile("heightmap", ".heightmap")
+        file.deleteOnExit()
+
+        for (codec in HeightmapCodec.values()) {
+            HeightmapFileSerialization.write(file, heights, ids, codec)
+
+            val readHeights = IntArray(256 * 256)
+            val readIds = IntArray(256 * 256)
+            HeightmapFileSerialization.read(file, readHeights, readIds)
+
+            assertArrayEquals(heights, readHeights)
+            assertArrayEquals(ids, readIds)
+        }
+    }
+
+    @Test
+    fun testReadsLegacyFiles() {
+        val file = File.createTempFile("heightmap", ".heightmap")
+        file.deleteOnExit()
+        writeLegacy(file)
+
+        val readHeights = IntArray(256 * 256)
+        val readIds = IntArray(256 * 256)
+        HeightmapFileSerialization.read(file, readHeights, readIds)
+
+        assertArrayEquals(heights, readHeights)
+        assertArrayEquals(ids, readIds)
+    }
+
+    /** What IOTaskSaveHeightmap used to do */
+    private fun writeLegacy(file: File) {
+        val compressor = LZ4Factory.fastestInstance().highCompressor(10)
+        FileOutputStream(file).use { out ->
+            for (array in arrayOf(heights, ids)) {
+                val writeMe = ByteBuffer.allocate(256 * 256 * 4)
+                for (i in 0 until 256 * 256)
+                    writeMe.putInt(array[i])
+                val compressed = compressor.compress(writeMe.array())
+                out.write(ByteBuffer.allocate(4).putInt(compressed.size).array())
+                out.write(compressed)
+            }
+        }
+    }
+}
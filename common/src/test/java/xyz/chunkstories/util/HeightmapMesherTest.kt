@@ -0,0 +1,96 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.util.math.HeightmapMesher
+import xyz.chunkstories.world.heightmap.HeightmapImplementation
+import java.nio.ByteBuffer
+
+class HeightmapMesherTest {
+    private val dataSize = HeightmapImplementation.mainMimpmapOffsets[9]
+
+    /** Rolling hills, with the mip chain built like HeightmapImplementation does */
+    private fun terrain(): Pair<IntArray, IntArray> {
+        val heights = IntArray(dataSize)
+        val ids = IntArray(dataSize)
+        for (x in 0 until 256)
+            for (z in 0 until 256) {
+                val height = 40 + (8 * Math.sin(x / 17.0) + 6 * Math.cos(z / 11.0)).toInt()
+                heights[x * 256 + z] = height
+                ids[x * 256 + z] = if (height > 44) 2 else 1
+            }
+
+        for (level in 1..8) {
+            val resolution = 256 shr level
+            val source = HeightmapImplementation.mainMimpmapOffsets[level - 1]
+            for (x in 0 until resolution)
+                for (z in 0 until resolution) {
+                    var maxIndex = source + resolution * 2 * (x * 2) + z * 2
+                    for (i in 0..1)
+                        for (j in 0..1) {
+                            val index = source + resolution * 2 * (x * 2 + i) + z * 2 + j
+                            if (heights[index] >= heights[maxIndex])
+                                maxIndex = index
+                        }
+                    val destination = HeightmapImplementation.mainMimpmapOffsets[level] + resolution * x + z
+                    heights[destination] = heights[maxIndex]
+                    ids[destination] = ids[maxIndex]
+                }
+        }
+        return Pair(heights, ids)
+    }
+
+    @Test
+    fun testFlatPatch() {
+        val heights = IntArray(dataSize) { 10 }
+        val out = ByteBuffer.allocate(64 * HeightmapMesher.QUAD_SIZE)
+        // One top and four skirts
+        assertEquals(5, HeightmapMesher().mesh(heights, IntArray(dataSize), 2, 4, 4, 16, 2, out))
+        assertEquals(5 * HeightmapMesher.QUAD_SIZE, out.position())
+    }
+
+    @Test
+    fun testTopsCoverThePatch() {
+        val (heights, ids) = terrain()
+        val mesher = HeightmapMesher()
+        val out = ByteBuffer.allocate(16 * 1024 * 1024)
+
+        for (level in 0..4) {
+            out.clear()
+            val quads = mesher.mesh(heights, ids, level, 0, 0, 256 shr level, 4, out)
+            assertTrue("Merged nothing at level $level", quads < (256 shr level) * (256 shr level))
+            out.flip()
+
+            var area = 0.0
+            for (q in 0 until quads) {
+                val positions = FloatArray(12)
+                var face = 0
+                for (v in 0 until 4) {
+                    positions[v * 3] = out.float
+                    positions[v * 3 + 1] = out.float
+                    positions[v * 3 + 2] = out.float
+                    out.int
+                    face = out.int
+                }
+                if (face == HeightmapMesher.FACE_TOP)
+                    area += Math.abs((positions[6] - positions[0]) * (positions[8] - positions[2]))
+            }
+            assertEquals("Tops don't cover the region exactly at level $level", 256.0 * 256.0, area, 0.0)
+        }
+    }
+
+    @Test
+    fun testOverflow() {
+        val (heights, ids) = terrain()
+        val out = ByteBuffer.allocate(100)
+        assertEquals(-1, HeightmapMesher().mesh(heights, ids, 0, 0, 0, 64, 4, out))
+        assertEquals(0, out.position())
+    }
+}
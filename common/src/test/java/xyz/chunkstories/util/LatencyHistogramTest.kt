@@ -0,0 +1,34 @@
+package xyz.chunkstories.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.util.profiling.LatencyHistogram
+
+class LatencyHistogramTest {
+    @Test
+    fun testBucketsCoverValues() {
+        for (micros in listOf(0L, 1L, 7L, 8L, 9L, 15L, 16L, 1000L, 16_666L, 1_000_000L, 123_456_789L)) {
+            val bucket = LatencyHistogram.bucketOf(micros)
+            assertTrue("$micros fits under its bucket", micros <= LatencyHistogram.bucketUpperBound(bucket))
+            if (bucket > 0)
+                assertTrue("$micros is above the previous bucket", micros > LatencyHistogram.bucketUpperBound(bucket - 1))
+        }
+    }
+
+    @Test
+    fun testPercentiles() {
+        val histogram = LatencyHistogram("test")
+        // 90 fast samples around 100us, 10 slow ones around 10ms
+        for (i in 0 until 90)
+            histogram.record(100_000L)
+        for (i in 0 until 10)
+            histogram.record(10_000_000L)
+
+        val snapshot = histogram.snapshot()
+        assertEquals(100, snapshot.count)
+        assertTrue(snapshot.p50 in 100..125)
+        assertTrue(snapshot.p99 in 10_000..12_500)
+        assertEquals(10_000, snapshot.max)
+    }
+}
@@ -0,0 +1,111 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.util
+
+import org.joml.Matrix4f
+import org.joml.Vector3d
+import org.joml.Vector3f
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.util.math.TrianglesClipper
+import java.nio.ByteBuffer
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+/** Clips random triangle soups around random decals, with both the current clipper and the one it replaced */
+class TrianglesClipperTest {
+    private class Decal(val rotation: Matrix4f, val origin: Vector3d, val direction: Vector3f, val size: Vector3d)
+
+    private fun randomDecal(random: Random): Decal {
+        val direction = Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalize()
+        val up = if (Math.abs(direction.y) > 0.9f) Vector3f(1f, 0f, 0f) else Vector3f(0f, 1f, 0f)
+        val rotation = Matrix4f().lookAlong(direction, up)
+        val origin = Vector3d(random.nextDouble() * 4.0 - 2.0, random.nextDouble() * 4.0 - 2.0, random.nextDouble() * 4.0 - 2.0)
+        val size = Vector3d(0.25 + random.nextDouble() * 2.0, 0.25 + random.nextDouble() * 2.0, 1.0)
+        return Decal(rotation, origin, direction, size)
+    }
+
+    private fun randomTriangles(random: Random, count: Int): FloatArray {
+        val triangles = FloatArray(count * TrianglesClipper.INPUT_TRIANGLE_FLOATS)
+        for (i in triangles.indices)
+            triangles[i] = random.nextFloat() * 6f - 3f
+        return triangles
+    }
+
+    private fun reference(triangles: FloatArray, decal: Decal): FloatArray {
+        val input = ByteBuffer.allocate(triangles.size * 4)
+        input.asFloatBuffer().put(triangles)
+        val output = ByteBuffer.allocate(triangles.size / TrianglesClipper.INPUT_TRIANGLE_FLOATS * TrianglesClipper.MAX_TRIANGLES_PER_INPUT * 3 * TrianglesClipper.OUTPUT_VERTEX_FLOATS * 4)
+        val vertices = ReferenceTrianglesClipper.clipTriangles(input, output, decal.rotation, decal.origin, decal.direction, decal.size)
+        output.flip()
+        val floats = FloatArray(output.remaining() / 4)
+        output.asFloatBuffer().get(floats)
+        assertEquals(vertices * TrianglesClipper.OUTPUT_VERTEX_FLOATS, floats.size)
+        return floats
+    }
+
+    private fun clip(clipper: TrianglesClipper, triangles: FloatArray, decal: Decal): FloatArray {
+        val triangleCount = triangles.size / TrianglesClipper.INPUT_TRIANGLE_FLOATS
+        val out = FloatArray(triangleCount * TrianglesClipper.MAX_TRIANGLES_PER_INPUT * 3 * TrianglesClipper.OUTPUT_VERTEX_FLOATS)
+        clipper.setDecal(decal.rotation, decal.origin, decal.direction, decal.size)
+        val vertices = clipper.clip(triangles, 0, triangleCount, out, 0)
+        return out.copyOf(vertices * TrianglesClipper.OUTPUT_VERTEX_FLOATS)
+    }
+
+    private fun assertSameVertices(expected: FloatArray, actual: FloatArray) {
+        assertEquals(expected.size, actual.size)
+        for (i in expected.indices)
+            assertEquals(expected[i], actual[i], 1e-4f * Math.max(1f, Math.abs(expected[i])))
+    }
+
+    @Test
+    fun testMatchesReference() {
+        val random = Random(1234)
+        val clipper = TrianglesClipper()
+        var clippedVertices = 0
+        for (i in 0 until 200) {
+            val decal = randomDecal(random)
+            val triangles = randomTriangles(random, 100)
+
+            val expected = reference(triangles, decal)
+            assertSameVertices(expected, clip(clipper, triangles, decal))
+            clippedVertices += expected.size / TrianglesClipper.OUTPUT_VERTEX_FLOATS
+
+            // The buffer version too
+            val input = ByteBuffer.allocate(triangles.size * 4)
+            input.asFloatBuffer().put(triangles)
+            val output = ByteBuffer.allocate(expected.size * 4 + 4)
+            TrianglesClipper.clipTriangles(input, output, decal.rotation, decal.origin, decal.direction, decal.size)
+            output.flip()
+            val fromBuffer = FloatArray(output.remaining() / 4)
+            output.asFloatBuffer().get(fromBuffer)
+            assertSameVertices(expected, fromBuffer)
+        }
+        assertTrue("Nothing got clipped, the test is meaningless", clippedVertices > 1000)
+    }
+
+    @Test
+    fun testConcurrentClipping() {
+        val random = Random(5678)
+        val decals = List(64) { randomDecal(random) }
+        val soups = List(64) { randomTriangles(random, 200) }
+        val expected = List(64) { reference(soups[it], decals[it]) }
+
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val results = executor.invokeAll(List(64) { i ->
+                Callable { clip(TrianglesClipper.forCurrentThread(), soups[i], decals[i]) }
+            })
+            for (i in 0 until 64)
+                assertSameVertices(expected[i], results[i].get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
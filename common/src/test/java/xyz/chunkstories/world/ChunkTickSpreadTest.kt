@@ -0,0 +1,72 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ChunkTickSpreadTest {
+    private val physicsRate = 4
+
+    /** Runs that many world ticks, returns how many times each chunk got picked */
+    private fun run(spread: ChunkTickSpread, count: Int, ticks: Int, perTick: (Int) -> Unit = {}): IntArray {
+        val timesTicked = IntArray(count)
+        for (tick in 0 until ticks) {
+            val selected = spread.select(count, tick.toLong(), physicsRate)
+            perTick(selected)
+            for (n in 0 until selected) {
+                val index = spread.selected[n]
+                assertEquals("Chunk $index picked out of its turn", (tick % physicsRate), index % physicsRate)
+                timesTicked[index]++
+            }
+        }
+        return timesTicked
+    }
+
+    @Test
+    fun testSpreadUnderBudget() {
+        val count = 125
+        val perTick = mutableListOf<Int>()
+        val timesTicked = run(ChunkTickSpread(512), count, physicsRate * 10) { perTick.add(it) }
+
+        // Every chunk exactly once per sweep, and sweeps split evenly over the ticks
+        for (index in 0 until count)
+            assertEquals(10, timesTicked[index])
+        for (selected in perTick)
+            assertTrue(selected == count / physicsRate || selected == count / physicsRate + 1)
+    }
+
+    @Test
+    fun testBudgetIsRespected() {
+        val budget = 10
+        run(ChunkTickSpread(budget), 1000, physicsRate * 50) { assertTrue("$it chunks ticked at once", it <= budget) }
+    }
+
+    @Test
+    fun testEveryChunkGetsItsTurn() {
+        val budget = 10
+        val count = 1000
+        // Per phase, 5 nearest slots always go and 5 rotate over the 245 others: 49 sweeps for them to all come up
+        val timesTicked = run(ChunkTickSpread(budget), count, physicsRate * 49)
+
+        for (index in 0 until count)
+            assertTrue("Chunk $index never ticked", timesTicked[index] > 0)
+        // The nearest ones still tick every sweep
+        for (index in 0 until physicsRate * budget / 2)
+            assertEquals(49, timesTicked[index])
+    }
+
+    @Test
+    fun testShrinkingSet() {
+        val spread = ChunkTickSpread(4)
+        run(spread, 500, physicsRate * 7)
+        // The cursors left over from a larger set must not point past a smaller one: 2 rotating slots over 6 leftovers
+        val timesTicked = run(spread, 30, physicsRate * 3)
+        assertTrue(timesTicked.all { it > 0 })
+    }
+}
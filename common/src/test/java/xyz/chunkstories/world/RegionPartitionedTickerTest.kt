@@ -0,0 +1,164 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.world
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.task.WorkerThreadPool
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.thread
+import kotlin.concurrent.withLock
+
+class RegionPartitionedTickerTest {
+    private val pool = WorkerThreadPool(4).also { it.start() }
+
+    private class Thing(val name: Int, val x: Double, val z: Double)
+
+    @After
+    fun tearDown() {
+        pool.cleanup()
+    }
+
+    @Test
+    fun testNeighboursNeverShareAPass() {
+        for (size in 1..9) {
+            for (x in 0 until size)
+                for (z in 0 until size)
+                    for (dx in -1..1)
+                        for (dz in -1..1) {
+                            val nx = Math.floorMod(x + dx, size)
+                            val nz = Math.floorMod(z + dz, size)
+                            if (nx == x && nz == z)
+                                continue
+                            assertNotEquals("Regions $x $z and $nx $nz are neighbours in a world $size regions wide",
+                                    RegionPartitionedTicker.passOf(x, z, size), RegionPartitionedTicker.passOf(nx, nz, size))
+                        }
+        }
+    }
+
+    @Test
+    fun testTicksEverythingOnce() {
+        val random = Random(3)
+        val things = List(2000) { Thing(it, random.nextDouble() * 5 * 256 - 256, random.nextDouble() * 5 * 256) }
+        val ticked = ConcurrentHashMap<Int, AtomicInteger>()
+
+        RegionPartitionedTicker<Thing>(5).tick(things, pool, { it.x }, { it.z },
+                { ticked.getOrPut(it.name) { AtomicInteger() }.incrementAndGet() }, { _, e -> throw e })
+
+        assertEquals(things.size, ticked.size)
+        assertTrue(ticked.values.all { it.get() == 1 })
+    }
+
+    @Test
+    fun testNeighboursDontTickConcurrently() {
+        val size = 3
+        val random = Random(4)
+        val things = List(900) { Thing(it, random.nextDouble() * size * 256, random.nextDouble() * size * 256) }
+        val busy = Array(size) { Array(size) { AtomicInteger() } }
+        val overlaps = AtomicInteger()
+
+        RegionPartitionedTicker<Thing>(size).tick(things, pool, { it.x }, { it.z }, {
+            val rx = (it.x / 256).toInt()
+            val rz = (it.z / 256).toInt()
+            busy[rx][rz].incrementAndGet()
+            for (dx in -1..1)
+                for (dz in -1..1)
+                    if ((dx != 0 || dz != 0) && busy[Math.floorMod(rx + dx, size)][Math.floorMod(rz + dz, size)].get() > 0)
+                        overlaps.incrementAndGet()
+            Thread.yield()
+            busy[rx][rz].decrementAndGet()
+        }, { _, e -> throw e })
+
+        assertEquals(0, overlaps.get())
+    }
+
+    @Test
+    fun testDeferredWorkRunsAfterwardsInRegionOrder() {
+        val ticker = RegionPartitionedTicker<Thing>(4)
+        // One thing per region, in scrambled order
+        val things = (0 until 16).shuffled(Random(5)).map { Thing(it, (it / 4) * 256.0 + 10, (it % 4) * 256.0 + 10) }
+        val events = ConcurrentLinkedQueue<String>()
+
+        ticker.tick(things, pool, { it.x }, { it.z }, { thing ->
+            events.add("tick ${thing.name}")
+            assertTrue(ticker.defer { events.add("spawn ${thing.name}") })
+            assertTrue(ticker.defer { events.add("despawn ${thing.name}") })
+        }, { _, e -> throw e })
+
+        val list = events.toList()
+        assertTrue(list.take(16).all { it.startsWith("tick") })
+        assertEquals((0 until 16).flatMap { listOf("spawn $it", "despawn $it") }, list.drop(16))
+
+        // Outside of a tick, nothing gets deferred
+        assertFalse(ticker.defer { events.add("late") })
+        assertFalse("late" in events)
+    }
+
+    @Test
+    fun testErrorsDontStopThePartition() {
+        val things = List(10) { Thing(it, 1.0, 1.0) }
+        val ticked = AtomicInteger()
+        val errors = AtomicInteger()
+
+        RegionPartitionedTicker<Thing>(2).tick(things, pool, { it.x }, { it.z }, {
+            ticked.incrementAndGet()
+            if (it.name % 3 == 0)
+                throw IllegalStateException()
+        }, { _, _ -> errors.incrementAndGet() })
+
+        assertEquals(10, ticked.get())
+        assertEquals(4, errors.get())
+    }
+
+    @Test
+    fun testPassesDontHoldTheLock() {
+        val lock = ReentrantReadWriteLock()
+        val things = List(100) { Thing(it, (it % 4) * 256.0 + 10, (it / 25) * 256.0 + 10) }
+        val ticked = AtomicInteger()
+        var failure: Throwable? = null
+
+        val logic = thread {
+            try {
+                lock.writeLock().withLock {
+                    // Other pool tasks wanting the lock (regions being acquired, chunk holders...), enough to take every worker
+                    repeat(8) {
+                        pool.scheduleTask(object : Task() {
+                            override fun task(taskExecutor: TaskExecutor): Boolean {
+                                lock.writeLock().withLock { Thread.sleep(1) }
+                                return true
+                            }
+                        })
+                    }
+                    Thread.sleep(50)
+                }
+
+                RegionPartitionedTicker<Thing>(4).tick(lock.writeLock(), things, pool, { it.x }, { it.z }, {
+                    // And entity ticks doing the same, like a loading agent acquiring a chunk holder
+                    lock.writeLock().withLock { ticked.incrementAndGet() }
+                }, { _, e -> throw e })
+            } catch (t: Throwable) {
+                failure = t
+            }
+        }
+
+        logic.join(10_000)
+        assertFalse("The tick deadlocked", logic.isAlive)
+        assertNull(failure)
+        assertEquals(things.size, ticked.get())
+    }
+}
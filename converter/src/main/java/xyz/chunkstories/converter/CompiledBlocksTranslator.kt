@@ -0,0 +1,57 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.converter
+
+import xyz.chunkstories.api.content.ContentTranslator
+import xyz.chunkstories.api.converter.MinecraftBlocksTranslator
+import xyz.chunkstories.api.converter.NonTrivialMapper
+import xyz.chunkstories.block.VoxelFormat
+
+/**
+ * The trivial mappers of a MinecraftBlocksTranslator baked into a flat table indexed by (mcId << 4) | meta, holding the
+ * final voxel data. 0 means nothing to place (air or unmapped), NON_TRIVIAL means the block has to go through its mapper.
+ */
+class CompiledBlocksTranslator(val mappers: MinecraftBlocksTranslator, translator: ContentTranslator) {
+    private val table = IntArray(4096 * 16)
+    private val nonTrivial = BooleanArray(4096 * 16)
+
+    var trivialEntries = 0
+        private set
+    var nonTrivialEntries = 0
+        private set
+
+    init {
+        for (mcId in 1 until 4096)
+            for (meta in 0 until 16) {
+                val mapper = mappers.getMapper(mcId, meta) ?: continue
+                val index = (mcId shl 4) or meta
+
+                if (mapper is NonTrivialMapper) {
+                    table[index] = NON_TRIVIAL
+                    nonTrivial[index] = true
+                    nonTrivialEntries++
+                    continue
+                }
+
+                val cellData = mapper.output(mcId, meta.toByte())
+                table[index] = with(translator) {
+                    VoxelFormat.format(cellData.blockType.assignedId, cellData.extraData, cellData.sunlightLevel, cellData.blocklightLevel)
+                }
+                trivialEntries++
+            }
+    }
+
+    /** mcId and meta must already be masked to 12 and 4 bits */
+    fun lookup(mcId: Int, meta: Int): Int = table[(mcId shl 4) or meta]
+
+    /** Only meaningful when lookup() returned NON_TRIVIAL, as that's also a (very unlikely) valid voxel */
+    fun isNonTrivial(mcId: Int, meta: Int): Boolean = nonTrivial[(mcId shl 4) or meta]
+
+    companion object {
+        const val NON_TRIVIAL = -1
+    }
+}
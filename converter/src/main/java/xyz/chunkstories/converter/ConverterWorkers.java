@@ -18,6 +18,7 @@ import xyz.chunkstories.api.world.WorldUser;
 import xyz.chunkstories.api.world.chunk.ChunkHolder;
 import xyz.chunkstories.api.world.heightmap.Heightmap;
 import xyz.chunkstories.task.TasksPool;
+import xyz.chunkstories.task.TasksPool.Queued;
 import xyz.chunkstories.util.concurrency.CompoundFence;
 import xyz.chunkstories.util.concurrency.SimpleFence;
 import xyz.chunkstories.world.WorldTool;
@@ -90,9 +91,10 @@ public class ConverterWorkers extends TasksPool<Task> implements Tasks {
 				getTasksCounter().acquireUninterruptibly();
 
 				// If one such permit was found to exist, assert a task is readily avaible
-				Task task = getTasksQueue().poll();
+				Queued<Task> queued = getTasksQueue().poll();
 
-				assert task != null;
+				assert queued != null;
+				Task task = queued.task;
 
 				// Only die task can break the loop
 				if (task == DIE)
@@ -141,7 +143,7 @@ public class ConverterWorkers extends TasksPool<Task> implements Tasks {
 	long tasksRescheduled = 0;
 
 	void rescheduleTask(Task task) {
-		getTasksQueue().add(task);
+		getTasksQueue().add(new Queued<>(task, System.nanoTime()));
 		getTasksCounter().release();
 
 		tasksRescheduled++;
@@ -15,6 +15,7 @@ import xyz.chunkstories.util.concurrency.CompoundFence
 import xyz.chunkstories.world.WorldImplementation
 import xyz.chunkstories.world.WorldTool
 import xyz.chunkstories.world.chunk.ChunkHolderImplementation
+import io.xol.enklume.MinecraftRegion
 import io.xol.enklume.MinecraftWorld
 import io.xol.enklume.nbt.NBTInt
 import xyz.chunkstories.api.Engine
@@ -90,88 +91,44 @@ constructor(verboseMode: Boolean, mcFolder: File, csFolder: File, mcWorldName: S
 
         verbose("Entering step one: converting raw block data")
 
-        // Prepares the loops
-        val size = csWorld.properties.size
-
-        val mcRegionStartX = MinecraftWorld.blockToRegionCoordinates(minecraftOffsetX)
-        val mcRegionStartZ = MinecraftWorld.blockToRegionCoordinates(minecraftOffsetZ)
-
-        val mcRegionEndX = MinecraftWorld.blockToRegionCoordinates(minecraftOffsetX + size.sizeInChunks * 32)
-        val mcRegionEndZ = MinecraftWorld.blockToRegionCoordinates(minecraftOffsetZ + size.sizeInChunks * 32)
-
-        var minecraftChunksImported = 0
-        val minecraftChunksToImport = (size.sizeInChunks * 32).toLong() * (size.sizeInChunks * 32).toLong() / (16 * 16)
-
-        var completion = 0.0
-        var lastPercentageShow = System.currentTimeMillis()
-
-        try {
-            // We do this minecraft region per minecraft region.
-            for (minecraftRegionX in mcRegionStartX until mcRegionEndX) {
-                for (minecraftRegionZ in mcRegionStartZ until mcRegionEndZ) {
-                    // Load the culprit (There isn't any fancy world management, the getRegion()
-                    // actually loads the entire region file)
-                    val minecraftRegion = mcWorld.getRegion(minecraftRegionX, minecraftRegionZ)
-
-                    val waitForTheBoys = CompoundFence()
-
-                    // Iterate over each chunk within the minecraft region
-                    // TODO Good candidate for task-ifying
-                    for (minecraftCurrentChunkXinsideRegion in 0..31) {
-                        for (minecraftCuurrentChunkZinsideRegion in 0..31) {
-                            // Map minecraft chunk-space to chunk stories's
-                            val chunkStoriesCurrentChunkX = (minecraftCurrentChunkXinsideRegion + minecraftRegionX * 32) * 16 - minecraftOffsetX
-                            val chunkStoriesCurrentChunkZ = (minecraftCuurrentChunkZinsideRegion + minecraftRegionZ * 32) * 16 - minecraftOffsetZ
-
-                            // Is it within our borders ?
-                            if (chunkStoriesCurrentChunkX >= 0
-                                    && chunkStoriesCurrentChunkX < csWorld.properties.size.sizeInChunks * 32
-                                    && chunkStoriesCurrentChunkZ >= 0
-                                    && chunkStoriesCurrentChunkZ < csWorld.properties.size.sizeInChunks * 32) {
-
-                                if (minecraftRegion != null) {
-                                    val minecraftChunk = minecraftRegion.getChunk(
-                                            minecraftCurrentChunkXinsideRegion, minecraftCuurrentChunkZinsideRegion)
-
-                                    val task = TaskConvertMcChunk(minecraftRegion, minecraftChunk,
-                                            chunkStoriesCurrentChunkX, chunkStoriesCurrentChunkZ,
-                                            minecraftCurrentChunkXinsideRegion, minecraftCuurrentChunkZinsideRegion,
-                                            minecraftRegionX, minecraftRegionZ, mappers)
-                                    workers.scheduleTask(task)
-                                    waitForTheBoys.add(task)
-                                }
-                            }
-
-                        }
-                    }
-
-                    waitForTheBoys.traverse()
-                    workers.dropAll()
-
-                    // Close region
-                    minecraftRegion?.close()
-                    System.gc()
-
-                    // Display progress
-                    minecraftChunksImported += 32 * 32
-                    if (Math.floor(
-                                    minecraftChunksImported.toDouble() / minecraftChunksToImport.toDouble() * 100) > completion) {
-                        completion = Math
-                                .floor(minecraftChunksImported.toDouble() / minecraftChunksToImport.toDouble() * 100)
-
-                        if (completion >= 100.0 || System.currentTimeMillis() - lastPercentageShow > 5000) {
-                            verbose("$completion% ... (${csWorld.regionsManager.countChunks()} chunks loaded ) using ${Runtime.getRuntime().freeMemory() / 1024 / 1024}/${Runtime.getRuntime().maxMemory() / 1024 / 1024}Mb ")
-                            lastPercentageShow = System.currentTimeMillis()
-                        }
-                    }
-
-                }
+        val translator = CompiledBlocksTranslator(mappers, csWorld.contentTranslator)
+        verbose("Compiled ${translator.trivialEntries} trivial block mappings (${translator.nonTrivialEntries} non-trivial ones)")
+
+        val startTime = System.nanoTime()
+
+        // Stream the block data straight into region files
+        val pipeline = RegionStreamingPipeline(this, csWorld, mcWorld, minecraftOffsetX, minecraftOffsetZ, translator, workers, Math.max(2, threadsCount * 2))
+        pipeline.run()
+
+        val seconds = (System.nanoTime() - startTime) / 1e9
+        verbose("Wrote ${pipeline.regionsWritten.get()} regions (${pipeline.chunksWritten.get()} non-empty chunks) in ${String.format("%.1f", seconds)}s, " +
+                "${pipeline.blocksConverted.get()} blocks at ${String.format("%.0f", pipeline.blocksConverted.get() / seconds)} blocks/s")
+
+        // Then the blocks that need to look at their surroundings, through the world
+        verbose("Applying ${pipeline.deferredBlocks.values.sumBy { it.size }} non-trivial blocks")
+        val wave = CompoundFence()
+        val openRegions = mutableListOf<MinecraftRegion>()
+        for ((key, blocks) in pipeline.deferredBlocks) {
+            val minecraftRegionX = (key shr 32).toInt()
+            val minecraftRegionZ = key.toInt()
+            val minecraftRegion = mcWorld.getRegion(minecraftRegionX, minecraftRegionZ) ?: continue
+            openRegions.add(minecraftRegion)
+
+            val task = TaskApplyNonTrivialMappers(minecraftRegion, minecraftRegionX, minecraftRegionZ, blocks, mappers)
+            workers.scheduleTask(task)
+            wave.add(task)
+
+            if (wave.size >= threadsCount) {
+                wave.traverse()
+                wave.clear()
+                workers.dropAll()
+                openRegions.forEach { it.close() }
+                openRegions.clear()
             }
-        } catch (e: Exception) {
-            e.printStackTrace()
         }
-
-        // csWorld.unloadUselessData();
+        wave.traverse()
+        workers.dropAll()
+        openRegions.forEach { it.close() }
     }
 
     protected fun stepTwoCreateHeightmapData(csWorld: WorldTool) {
@@ -0,0 +1,177 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.converter
+
+import io.xol.enklume.MinecraftRegion
+import io.xol.enklume.MinecraftWorld
+import xyz.chunkstories.world.WorldTool
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+import xyz.chunkstories.world.region.format.RegionFileSerialization
+import java.io.File
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Converts the block data one Chunk Stories region at a time, without going through the world's chunk management:
+ *  - the calling thread walks the regions and opens the Minecraft regions they need ahead of the workers
+ *  - workers decode the Minecraft chunks and translate them straight into voxel IntArrays through a
+ *    CompiledBlocksTranslator, then compress them
+ *  - a writer thread writes the finished regions to their .csf files
+ * At most maxRegionsInFlight regions are being worked on at once, which is what bounds memory usage.
+ * Blocks needing a NonTrivialMapper are collected and applied afterwards through the usual world path.
+ */
+class RegionStreamingPipeline(private val converter: MultithreadedOfflineWorldConverter, private val csWorld: WorldTool,
+                              private val mcWorld: MinecraftWorld, private val minecraftOffsetX: Int, private val minecraftOffsetZ: Int,
+                              private val translator: CompiledBlocksTranslator, private val workers: ConverterWorkers,
+                              private val maxRegionsInFlight: Int) {
+
+    /** A block that needs a NonTrivialMapper, applied once all the regions are written */
+    class DeferredBlock(val mcId: Int, val meta: Int, val csX: Int, val y: Int, val csZ: Int, val mcChunkXInsideRegion: Int, val mcChunkZInsideRegion: Int, val x: Int, val z: Int)
+
+    /** failure is set when converting the region blew up with something we can't just log and go past */
+    internal class ConvertedRegion(val regionX: Int, val regionZ: Int, val chunks: Array<ChunkCompressedData?>, val deferredBlocks: Map<Long, MutableList<DeferredBlock>>,
+                                   val failure: Throwable? = null)
+
+    private val inFlight = Semaphore(maxRegionsInFlight)
+    private val toWrite = LinkedBlockingQueue<ConvertedRegion>()
+
+    internal val mcRegions = OpenMinecraftRegions(mcWorld, maxRegionsInFlight + 4)
+
+    /** Non-trivial blocks, by Minecraft region (see mcRegionKey) */
+    val deferredBlocks = HashMap<Long, MutableList<DeferredBlock>>()
+
+    val regionsWritten = AtomicLong()
+    val chunksWritten = AtomicLong()
+    val blocksConverted = AtomicLong()
+
+    @Volatile
+    private var firstFailure: Throwable? = null
+
+    fun run() {
+        val sizeInRegions = csWorld.properties.size.sizeInChunks / 8
+        val regionsToConvert = sizeInRegions.toLong() * sizeInRegions
+
+        val writer = Thread({ writeRegions(regionsToConvert) }, "Converter region writer")
+        writer.start()
+
+        for (regionX in 0 until sizeInRegions) {
+            for (regionZ in 0 until sizeInRegions) {
+                inFlight.acquireUninterruptibly()
+
+                // Read ahead: open every Minecraft region this one overlaps before handing it out
+                val needed = mutableListOf<OpenMinecraftRegions.Handle>()
+                val firstMcRegionX = Math.floorDiv(regionX * 256 + minecraftOffsetX, 512)
+                val lastMcRegionX = Math.floorDiv(regionX * 256 + 255 + minecraftOffsetX, 512)
+                val firstMcRegionZ = Math.floorDiv(regionZ * 256 + minecraftOffsetZ, 512)
+                val lastMcRegionZ = Math.floorDiv(regionZ * 256 + 255 + minecraftOffsetZ, 512)
+                for (mcRegionX in firstMcRegionX..lastMcRegionX)
+                    for (mcRegionZ in firstMcRegionZ..lastMcRegionZ)
+                        needed.add(mcRegions.acquire(mcRegionX, mcRegionZ))
+
+                workers.scheduleTask(TaskConvertRegion(this, translator, regionX, regionZ, minecraftOffsetX, minecraftOffsetZ, needed))
+            }
+        }
+
+        writer.join()
+        mcRegions.closeAll()
+
+        firstFailure?.let { throw RuntimeException("Some regions couldn't be converted", it) }
+    }
+
+    /** Every region handed out must come back through there, failed or not: the writer waits for all of them */
+    internal fun regionConverted(region: ConvertedRegion) {
+        toWrite.add(region)
+    }
+
+    private fun writeRegions(regionsToConvert: Long) {
+        val startTime = System.nanoTime()
+        var lastProgressShown = startTime
+        while (regionsWritten.get() < regionsToConvert) {
+            val region = toWrite.take()
+
+            if (region.failure != null) {
+                converter.verbose("Failed to convert region ${region.regionX} ${region.regionZ}: ${region.failure}")
+                if (firstFailure == null)
+                    firstFailure = region.failure
+            } else try {
+                val file = File(csWorld.folderPath + "/regions/" + region.regionX + ".0." + region.regionZ + ".csf")
+                file.parentFile.mkdirs()
+                RegionFileSerialization.saveRegion(file, region.chunks)
+                chunksWritten.addAndGet(region.chunks.count { it is ChunkCompressedData.NonAir }.toLong())
+            } catch (e: Throwable) {
+                // Whatever happens, keep counting regions and giving back their permits so run() doesn't hang
+                converter.verbose("Failed to write region ${region.regionX} ${region.regionZ}: $e")
+                e.printStackTrace()
+                if (e !is Exception && firstFailure == null)
+                    firstFailure = e
+            }
+
+            synchronized(deferredBlocks) {
+                for ((mcRegion, blocks) in region.deferredBlocks)
+                    deferredBlocks.getOrPut(mcRegion) { mutableListOf() }.addAll(blocks)
+            }
+
+            val written = regionsWritten.incrementAndGet()
+            inFlight.release()
+
+            val now = System.nanoTime()
+            if (now - lastProgressShown > 5_000_000_000L || written == regionsToConvert) {
+                val seconds = (now - startTime) / 1e9
+                converter.verbose("${Math.floor(written * 100.0 / regionsToConvert)}% ... $written/$regionsToConvert regions, " +
+                        "${String.format("%.2f", written / seconds)} regions/s, using ${(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024 / 1024}/${Runtime.getRuntime().maxMemory() / 1024 / 1024}Mb")
+                lastProgressShown = now
+            }
+        }
+    }
+
+    companion object {
+        fun mcRegionKey(mcRegionX: Int, mcRegionZ: Int) = (mcRegionX.toLong() shl 32) or (mcRegionZ.toLong() and 0xFFFFFFFFL)
+    }
+}
+
+/** Keeps recently used Minecraft regions open, closing the least recently used ones nobody is working on */
+internal class OpenMinecraftRegions(private val mcWorld: MinecraftWorld, private val capacity: Int) {
+    inner class Handle(val mcRegionX: Int, val mcRegionZ: Int, val region: MinecraftRegion?) {
+        var users = 0
+
+        fun release() {
+            synchronized(this@OpenMinecraftRegions) {
+                users--
+                evict()
+            }
+        }
+    }
+
+    private val open = LinkedHashMap<Long, Handle>(16, 0.75f, true)
+
+    @Synchronized
+    fun acquire(mcRegionX: Int, mcRegionZ: Int): Handle {
+        val key = RegionStreamingPipeline.mcRegionKey(mcRegionX, mcRegionZ)
+        val handle = open.getOrPut(key) { Handle(mcRegionX, mcRegionZ, mcWorld.getRegion(mcRegionX, mcRegionZ)) }
+        handle.users++
+        evict()
+        return handle
+    }
+
+    private fun evict() {
+        val iterator = open.values.iterator()
+        while (open.size > capacity && iterator.hasNext()) {
+            val handle = iterator.next()
+            if (handle.users > 0)
+                continue
+            handle.region?.close()
+            iterator.remove()
+        }
+    }
+
+    @Synchronized
+    fun closeAll() {
+        open.values.forEach { it.region?.close() }
+        open.clear()
+    }
+}
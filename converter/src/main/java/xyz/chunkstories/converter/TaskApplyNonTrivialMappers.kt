@@ -0,0 +1,55 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.converter
+
+import io.xol.enklume.MinecraftRegion
+import xyz.chunkstories.api.converter.MinecraftBlocksTranslator
+import xyz.chunkstories.api.converter.NonTrivialMapper
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.api.world.chunk.ChunkHolder
+import xyz.chunkstories.converter.ConverterWorkers.ConverterWorkerThread
+import xyz.chunkstories.converter.RegionStreamingPipeline.DeferredBlock
+import xyz.chunkstories.util.concurrency.CompoundFence
+import xyz.chunkstories.world.chunk.ChunkHolderImplementation
+
+/** Applies the blocks the streaming pass couldn't translate on its own, through the world, once their region files exist */
+class TaskApplyNonTrivialMappers(private val minecraftRegion: MinecraftRegion, private val minecraftRegionX: Int, private val minecraftRegionZ: Int,
+                                 private val blocks: List<DeferredBlock>, private val mappers: MinecraftBlocksTranslator) : Task() {
+
+    override fun task(taskExecutor: TaskExecutor): Boolean {
+        val thread = taskExecutor as ConverterWorkerThread
+        val csWorld = thread.world()
+
+        try {
+            // Load the chunks those blocks land in
+            val compoundFence = CompoundFence()
+            for ((columnX, columnZ) in blocks.map { Pair(it.csX / 32, it.csZ / 32) }.distinct()) {
+                var y = 0
+                while (y < OfflineWorldConverter.mcWorldHeight) {
+                    val holder = csWorld.chunksManager.acquireChunkHolderWorldCoordinates(thread, columnX * 32, y, columnZ * 32) as ChunkHolderImplementation
+                    compoundFence.add(holder.waitUntilStateIs(ChunkHolder.State.Available::class.java))
+
+                    if (thread.aquiredChunkHolders.add(holder))
+                        thread.chunksAcquired++
+                    y += 32
+                }
+            }
+            compoundFence.traverse()
+
+            for (block in blocks) {
+                val mapper = mappers.getMapper(block.mcId, block.meta) as? NonTrivialMapper ?: continue
+                mapper.output(csWorld, block.csX, block.y, block.csZ, block.mcId, block.meta, minecraftRegion, block.mcChunkXInsideRegion, block.mcChunkZInsideRegion, block.x, block.y, block.z)
+            }
+        } catch (e: Exception) {
+            thread.converter().verbose("Issue with the non-trivial blocks of region $minecraftRegionX $minecraftRegionZ.")
+            e.printStackTrace()
+        }
+
+        return true
+    }
+}
@@ -0,0 +1,128 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.converter
+
+import io.xol.enklume.MinecraftChunk
+import xyz.chunkstories.api.workers.Task
+import xyz.chunkstories.api.workers.TaskExecutor
+import xyz.chunkstories.converter.RegionStreamingPipeline.DeferredBlock
+import xyz.chunkstories.world.chunk.ChunkCompressedData
+
+/** Decodes and translates all the Minecraft chunks making up one Chunk Stories region, 32x32 columns at a time */
+internal class TaskConvertRegion(private val pipeline: RegionStreamingPipeline, private val translator: CompiledBlocksTranslator,
+                                 private val regionX: Int, private val regionZ: Int, private val minecraftOffsetX: Int, private val minecraftOffsetZ: Int,
+                                 private val mcRegions: List<OpenMinecraftRegions.Handle>) : Task() {
+
+    override fun task(taskExecutor: TaskExecutor): Boolean {
+        val chunks = arrayOfNulls<ChunkCompressedData>(8 * 8 * 8)
+        val deferred = HashMap<Long, MutableList<DeferredBlock>>()
+        var blocksConverted = 0L
+        var failure: Throwable? = null
+
+        try {
+            val column = scratch.get()
+            column.reset()
+            for (cx in 0..7)
+                for (cz in 0..7) {
+                    blocksConverted += convertColumn(column, cx, cz, deferred)
+
+                    for (cy in 0..7) {
+                        val voxelData = if (column.nonEmpty[cy]) column.voxelData[cy] else null
+                        chunks[cx * 64 + cy * 8 + cz] = ChunkCompressedData.fromVoxelData(voxelData)
+                        if (voxelData != null) {
+                            voxelData.fill(0)
+                            column.nonEmpty[cy] = false
+                        }
+                    }
+                }
+        } catch (e: Exception) {
+            (taskExecutor as ConverterWorkers.ConverterWorkerThread).converter().verbose("Issue converting region $regionX $regionZ.")
+            e.printStackTrace()
+        } catch (e: Throwable) {
+            failure = e
+        } finally {
+            mcRegions.forEach { it.release() }
+
+            // Even if we're going down, the writer is waiting for this region
+            pipeline.blocksConverted.addAndGet(blocksConverted)
+            pipeline.regionConverted(RegionStreamingPipeline.ConvertedRegion(regionX, regionZ, chunks, deferred, failure))
+        }
+        return true
+    }
+
+    /** Returns how many blocks were placed */
+    private fun convertColumn(column: ColumnScratch, cx: Int, cz: Int, deferred: MutableMap<Long, MutableList<DeferredBlock>>): Int {
+        var converted = 0
+        val csColumnX = regionX * 256 + cx * 32
+        val csColumnZ = regionZ * 256 + cz * 32
+
+        // A 32x32 column is made of 2x2 Minecraft chunks
+        for (half in 0 until 4) {
+            val csChunkX = csColumnX + (half and 1) * 16
+            val csChunkZ = csColumnZ + (half shr 1) * 16
+
+            val mcChunkX = Math.floorDiv(csChunkX + minecraftOffsetX, 16)
+            val mcChunkZ = Math.floorDiv(csChunkZ + minecraftOffsetZ, 16)
+            val mcRegionX = Math.floorDiv(mcChunkX, 32)
+            val mcRegionZ = Math.floorDiv(mcChunkZ, 32)
+            val insideRegionX = Math.floorMod(mcChunkX, 32)
+            val insideRegionZ = Math.floorMod(mcChunkZ, 32)
+
+            val handle = mcRegions.find { it.mcRegionX == mcRegionX && it.mcRegionZ == mcRegionZ } ?: continue
+            val region = handle.region ?: continue
+            val minecraftChunk: MinecraftChunk = synchronized(handle) { region.getChunk(insideRegionX, insideRegionZ) } ?: continue
+
+            val offsetInColumnX = csChunkX - csColumnX
+            val offsetInColumnZ = csChunkZ - csColumnZ
+            for (x in 0..15)
+                for (z in 0..15)
+                    for (y in 0 until OfflineWorldConverter.mcWorldHeight) {
+                        val mcId = minecraftChunk.getBlockID(x, y, z) and 0xFFF
+
+                        // Ignore air blocks
+                        if (mcId == 0)
+                            continue
+
+                        val meta = minecraftChunk.getBlockMeta(x, y, z) and 0xF
+                        val raw = translator.lookup(mcId, meta)
+                        if (raw == 0)
+                            continue
+
+                        if (raw == CompiledBlocksTranslator.NON_TRIVIAL && translator.isNonTrivial(mcId, meta)) {
+                            deferred.getOrPut(RegionStreamingPipeline.mcRegionKey(mcRegionX, mcRegionZ)) { mutableListOf() }
+                                    .add(DeferredBlock(mcId, meta, csChunkX + x, y, csChunkZ + z, insideRegionX, insideRegionZ, x, z))
+                            continue
+                        }
+
+                        val cy = y shr 5
+                        column.voxelData[cy][(offsetInColumnX + x) * 32 * 32 + (y and 31) * 32 + (offsetInColumnZ + z)] = raw
+                        column.nonEmpty[cy] = true
+                        converted++
+                    }
+        }
+        return converted
+    }
+
+    /** Per-thread voxel arrays for the 8 chunks of a column, reused from one column to the next */
+    private class ColumnScratch {
+        val voxelData = Array(8) { IntArray(32 * 32 * 32) }
+        val nonEmpty = BooleanArray(8)
+
+        /** In case a previous region bailed out halfway through a column */
+        fun reset() {
+            for (cy in 0..7) {
+                if (nonEmpty[cy])
+                    voxelData[cy].fill(0)
+                nonEmpty[cy] = false
+            }
+        }
+    }
+
+    companion object {
+        private val scratch = ThreadLocal.withInitial { ColumnScratch() }
+    }
+}
@@ -42,4 +42,18 @@ shadowJar.apply {
     baseName = "server"
     classifier = ""
     version = ""
-}
\ No newline at end of file
+}
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs a server in-process and ramps up headless bots against it"
+    main = "xyz.chunkstories.server.loadtest.LoadTestKt"
+    classpath = sourceSets["main"].runtimeClasspath
+    args = (project.findProperty("loadTestArgs") as String?)?.split(' ') ?: emptyList()
+}
+
+tasks.register<JavaExec>("pregenerate") {
+    description = "Generates the terrain around the server world's spawn ahead of time"
+    main = "xyz.chunkstories.server.PregenerateKt"
+    classpath = sourceSets["main"].runtimeClasspath
+    args = (project.findProperty("pregenerateArgs") as String?)?.split(' ') ?: emptyList()
+}
@@ -7,8 +7,10 @@
 package xyz.chunkstories.server
 
 import org.fusesource.jansi.AnsiConsole
+import org.joml.Vector3d
 import org.slf4j.Logger
 import xyz.chunkstories.EngineImplemI
+import xyz.chunkstories.TickingThread
 import xyz.chunkstories.api.Engine
 import xyz.chunkstories.api.content.ContentTranslator
 import xyz.chunkstories.api.player.Player
@@ -71,7 +73,7 @@ fun main(args: Array<String>) {
         }
     }
 
-    DedicatedServer(coreContentLocation, requestedMods)
+    DedicatedServer(coreContentLocation, requestedMods).run()
 }
 
 class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) : Host, EngineImplemI {
@@ -95,6 +97,9 @@ class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) :
 
     internal val keepRunning = AtomicBoolean(true)
 
+    lateinit var tickingThread: TickingThread
+        private set
+
     private val initTimestamp = System.currentTimeMillis() / 1000
     val uptime: Long
         get() = System.currentTimeMillis() / 1000 - initTimestamp
@@ -152,7 +157,7 @@ class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) :
                     seed = Random().nextLong().toString(),
                     size = size,
                     generator = config.getValue(DedicatedServerOptions.worldGenerator),
-                    spawn = TODO("generate a decent spawn point")
+                    spawn = Vector3d(size.squareSizeInBlocks / 2.0, 100.0, size.squareSizeInBlocks / 2.0)
             ))
         }
 
@@ -179,8 +184,18 @@ class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) :
         installHostCommands(this)
 
         // Finally start logic
-        // TODO("world.startTicking()")
+        tickingThread = object : TickingThread(world) {
+            override fun tick() {
+                tickWorld()
+                connectionsManager.flushAll()
+            }
+        }
+        tickingThread.name = "World logic thread"
+        tickingThread.start()
+    }
 
+    /** Runs the console until the server is asked to stop, then shuts it down */
+    fun run() {
         console.run()
         shutdown()
     }
@@ -188,7 +203,7 @@ class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) :
     private fun shutdown() {
         // When stopped, close sockets and save config.
         logger.info("Stopping world logic")
-        TODO("world.stopTicking()")
+        tickingThread.terminate().traverse()
 
         logger.info("Killing all connections")
         connectionsManager.terminate()
@@ -211,7 +226,7 @@ class DedicatedServer(coreContentLocation: File, requestedMods: List<String>) :
         // Runtime.getRuntime().exit(0)
     }
 
-    internal fun requestShutdown() {
+    fun requestShutdown() {
         tasks.cleanup()
         keepRunning.set(false)
     }
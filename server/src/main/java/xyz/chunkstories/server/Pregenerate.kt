@@ -0,0 +1,79 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server
+
+import xyz.chunkstories.api.math.MathUtils.floor
+import xyz.chunkstories.util.VersionInfo
+import xyz.chunkstories.world.generator.WorldPregenerator
+import java.io.File
+
+/**
+ * Standalone pregeneration: loads the server's world, generates the requested area around the spawn (or a given region)
+ * and exits. Run it again after an interruption and it resumes.
+ */
+fun main(args: Array<String>) {
+    var coreContentLocation = File("core_content.zip")
+    var requestedMods = emptyList<String>()
+    var radius = 8
+    var centerX: Int? = null
+    var centerZ: Int? = null
+    var columnsInFlight = Math.max(2, Runtime.getRuntime().availableProcessors())
+
+    for (argument in args) {
+        val value = argument.substringAfter('=', "")
+        when {
+            argument.startsWith("--core=") -> coreContentLocation = File(value)
+            argument.startsWith("--mods=") -> requestedMods = value.split(',').map { it.trim() }.filter { it.isNotEmpty() }
+            argument.startsWith("--radius=") -> radius = value.toInt()
+            argument.startsWith("--center=") -> {
+                val parts = value.split(',')
+                centerX = parts[0].trim().toInt()
+                centerZ = parts[1].trim().toInt()
+            }
+            argument.startsWith("--in-flight=") -> columnsInFlight = value.toInt()
+            else -> {
+                var helpText = "Chunk Stories world pregeneration " + VersionInfo.versionJson.verboseVersion + "\n"
+
+                helpText += if (argument == "-h" || argument == "--help")
+                    "Valid parameters: \n"
+                else
+                    "Unrecognized parameter: $argument\n"
+
+                helpText += "--core=whaterverfolder/ or --core=whatever.zip Base content to load the world with\n"
+                helpText += "--mods=xxx,yyy Mods to load the world with\n"
+                helpText += "--radius=8 Radius to generate, in regions (256 blocks)\n"
+                helpText += "--center=rx,rz Region to center on, defaults to the one of the spawn\n"
+                helpText += "--in-flight=n Region columns generated at once, defaults to the amount of cores\n"
+
+                println(helpText)
+                return
+            }
+        }
+    }
+
+    val server = DedicatedServer(coreContentLocation, requestedMods)
+    val serverThread = Thread({ server.run() }, "Dedicated server")
+    serverThread.start()
+
+    val spawn = server.world.properties.spawn
+    val pregenerator = WorldPregenerator(server.world,
+            centerX ?: floor(spawn.x() / 256), centerZ ?: floor(spawn.z() / 256), radius, columnsInFlight)
+
+    // Ctrl-C stops scheduling new columns, and holds the exit until the in-flight ones are saved and recorded as done
+    Runtime.getRuntime().addShutdownHook(Thread {
+        if (!pregenerator.finished) {
+            pregenerator.cancel()
+            pregenerator.join()
+        }
+    })
+
+    pregenerator.start()
+    pregenerator.join()
+
+    server.requestShutdown()
+    serverThread.join()
+}
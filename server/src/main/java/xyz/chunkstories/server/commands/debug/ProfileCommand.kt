@@ -0,0 +1,43 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.commands.debug
+
+import xyz.chunkstories.api.plugin.commands.Command
+import xyz.chunkstories.api.plugin.commands.CommandEmitter
+import xyz.chunkstories.api.server.Host
+import xyz.chunkstories.server.commands.AbstractHostCommandHandler
+import xyz.chunkstories.util.profiling.TickProfiler
+
+/** /profile shows the tick phases, IO and worker timings; /profile dump writes them as json; /profile reset starts over */
+class ProfileCommand(serverConsole: Host) : AbstractHostCommandHandler(serverConsole) {
+
+    init {
+        host.pluginManager.registerCommand("profile", this)
+    }
+
+    override fun handleCommand(emitter: CommandEmitter, command: Command, arguments: Array<String>): Boolean {
+        if (command.name == "profile" && emitter.hasPermission("server.debug.profile")) {
+            when (arguments.getOrNull(0)) {
+                "dump" -> {
+                    val file = TickProfiler.dumpToFile()
+                    emitter.sendMessage("#00FFD0Profile written to ${file.path}")
+                }
+                "reset" -> {
+                    TickProfiler.reset()
+                    emitter.sendMessage("#00FFD0Profiler reset")
+                }
+                else -> {
+                    emitter.sendMessage("#00FFD0Timings over the last 10-20s, in ms:")
+                    for (line in TickProfiler.report())
+                        emitter.sendMessage("#00FFD0$line")
+                }
+            }
+            return true
+        }
+        return false
+    }
+}
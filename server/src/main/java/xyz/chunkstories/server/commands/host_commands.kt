@@ -13,6 +13,8 @@ import xyz.chunkstories.server.commands.debug.*
 import xyz.chunkstories.server.commands.player.*
 import xyz.chunkstories.server.commands.system.InfoCommands
 import xyz.chunkstories.server.commands.system.ListPlayersCommand
+import xyz.chunkstories.server.commands.world.PregenerateCommand
+import xyz.chunkstories.server.commands.world.SetBlockCommand
 import xyz.chunkstories.server.commands.world.SpawnEntityCommand
 import xyz.chunkstories.server.commands.world.TimeCommand
 import xyz.chunkstories.server.commands.world.WeatherCommand
@@ -33,6 +35,7 @@ fun installHostCommands(host: Host) {
     DebugWorldDataCommands(host)
     EntitiesDebugCommands(host)
     MiscDebugCommands(host)
+    ProfileCommand(host)
 
     // Player
     ClearCommand(host)
@@ -48,6 +51,8 @@ fun installHostCommands(host: Host) {
     ListPlayersCommand(host)
 
     // World
+    PregenerateCommand(host)
+    SetBlockCommand(host)
     SpawnEntityCommand(host)
     TimeCommand(host)
     WeatherCommand(host)
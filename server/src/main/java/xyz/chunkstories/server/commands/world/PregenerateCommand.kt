@@ -0,0 +1,76 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.commands.world
+
+import xyz.chunkstories.api.math.MathUtils.floor
+import xyz.chunkstories.api.plugin.commands.Command
+import xyz.chunkstories.api.plugin.commands.CommandEmitter
+import xyz.chunkstories.api.server.Host
+import xyz.chunkstories.server.commands.AbstractHostCommandHandler
+import xyz.chunkstories.world.WorldMasterImplementation
+import xyz.chunkstories.world.generator.WorldPregenerator
+
+/**
+ * Generates the terrain around a point ahead of time, in the background
+ */
+class PregenerateCommand(serverConsole: Host) : AbstractHostCommandHandler(serverConsole) {
+    private var pregenerator: WorldPregenerator? = null
+
+    init {
+        host.pluginManager.registerCommand("pregenerate", this)
+    }
+
+    override fun handleCommand(emitter: CommandEmitter, command: Command, arguments: Array<String>): Boolean {
+        if (!emitter.hasPermission("world.pregenerate")) {
+            emitter.sendMessage("You don't have the permission.")
+            return true
+        }
+
+        val current = pregenerator
+        when {
+            arguments.size == 1 && arguments[0] == "status" -> {
+                if (current == null)
+                    emitter.sendMessage("#82FFDBNo pregeneration was started.")
+                else
+                    emitter.sendMessage("#82FFDB" + (if (current.finished) "Finished: " else "Running: ") + current.status())
+            }
+            arguments.size == 1 && arguments[0] == "stop" -> {
+                if (current == null || current.finished) {
+                    emitter.sendMessage("#82FFDBNo pregeneration is running.")
+                } else {
+                    current.cancel()
+                    emitter.sendMessage("#82FFDBStopping pregeneration, it will resume from there next time.")
+                }
+            }
+            arguments.size == 1 || arguments.size == 3 -> {
+                if (current != null && !current.finished) {
+                    emitter.sendMessage("#FF8966A pregeneration is already running, /pregenerate stop it first.")
+                    return true
+                }
+
+                val world = host.world as? WorldMasterImplementation
+                if (world == null) {
+                    emitter.sendMessage("#FF8966Can only pregenerate on the master world.")
+                    return true
+                }
+
+                val radius = Integer.parseInt(arguments[0])
+                val spawn = world.properties.spawn
+                val regionX = if (arguments.size == 3) Integer.parseInt(arguments[1]) else floor(spawn.x() / 256)
+                val regionZ = if (arguments.size == 3) Integer.parseInt(arguments[2]) else floor(spawn.z() / 256)
+
+                val started = WorldPregenerator(world, regionX, regionZ, radius)
+                started.start()
+                pregenerator = started
+                emitter.sendMessage("#82FFDBPregenerating ${started.columnsTotal} region columns around $regionX, $regionZ")
+            }
+            else -> emitter.sendMessage("Syntax: /pregenerate <radius in regions> [regionX regionZ] | status | stop")
+        }
+
+        return true
+    }
+}
@@ -0,0 +1,50 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.commands.world
+
+import xyz.chunkstories.api.plugin.commands.Command
+import xyz.chunkstories.api.plugin.commands.CommandEmitter
+import xyz.chunkstories.api.server.Host
+import xyz.chunkstories.api.world.cell.CellData
+import xyz.chunkstories.server.commands.AbstractHostCommandHandler
+
+/**
+ * Places (or breaks, with air) a single block
+ */
+class SetBlockCommand(serverConsole: Host) : AbstractHostCommandHandler(serverConsole) {
+
+    init {
+        host.pluginManager.registerCommand("setblock", this)
+    }
+
+    override fun handleCommand(emitter: CommandEmitter, command: Command, arguments: Array<String>): Boolean {
+        if (!emitter.hasPermission("world.setBlock")) {
+            emitter.sendMessage("You don't have the permission.")
+            return true
+        }
+
+        if (arguments.size != 4) {
+            emitter.sendMessage("Syntax: /setblock <x> <y> <z> <blockType>")
+            return true
+        }
+
+        val x = Integer.parseInt(arguments[0])
+        val y = Integer.parseInt(arguments[1])
+        val z = Integer.parseInt(arguments[2])
+
+        val blockType = host.content.blockTypes[arguments[3]]
+        if (blockType == null) {
+            emitter.sendMessage("#FF8966No such block type: ${arguments[3]}")
+            return true
+        }
+
+        if (!host.world.setCellData(x, y, z, CellData(blockType, 0, 0, 0)))
+            emitter.sendMessage("#FF8966Couldn't set the block at $x $y $z, is it loaded ?")
+
+        return true
+    }
+}
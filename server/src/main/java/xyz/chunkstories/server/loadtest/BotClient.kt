@@ -0,0 +1,284 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.loadtest
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.api.math.MathUtils.floor
+import xyz.chunkstories.api.net.Packet
+import xyz.chunkstories.api.net.packets.PacketText
+import xyz.chunkstories.api.server.UserConnection
+import xyz.chunkstories.net.Connection
+import xyz.chunkstories.net.PacketDefinition
+import xyz.chunkstories.net.PacketsEncoderDecoder
+import xyz.chunkstories.net.packets.PacketChunkCompressedData
+import xyz.chunkstories.net.packets.PacketWorldUser
+import xyz.chunkstories.server.DedicatedServer
+import xyz.chunkstories.server.DedicatedServerOptions
+import xyz.chunkstories.util.VersionInfo
+import xyz.chunkstories.world.WorldImplementation
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.net.Socket
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * A headless player: speaks the same protocol and framing as the real client over a TCP socket, walks a circle around
+ * the spawn, asks for the chunks around itself the way the client's world streaming does, and edits blocks now and then.
+ *
+ * The bot runs in the same JVM as the server, so instead of receiving and parsing the content translator it borrows the
+ * world's one: that's the one the server sends anyway.
+ */
+class BotClient(private val server: DedicatedServer, val name: String, private val options: LoadTestOptions, private val stats: LoadTestStats, private val index: Int)
+    : Connection(server, "127.0.0.1", server.config.getIntValue(DedicatedServerOptions.networkPort)) {
+
+    private val serverWorld = server.world
+
+    override val encoderDecoder: PacketsEncoderDecoder = object : PacketsEncoderDecoder(server.content.packets, this) {
+        override val world: WorldImplementation?
+            get() = serverWorld
+    }.also { it.contentTranslator = serverWorld.contentTranslator }
+
+    private lateinit var socket: Socket
+    private lateinit var output: DataOutputStream
+    private val open = AtomicBoolean(false)
+
+    override val isOpen: Boolean
+        get() = open.get()
+
+    override val world: WorldImplementation?
+        get() = serverWorld
+    override val userConnection: UserConnection?
+        get() = null
+
+    private val loggedIn = CountDownLatch(1)
+    private val modsListed = CountDownLatch(1)
+
+    /** Chunks we asked for, packed with chunkKey(), and when */
+    private val requestedChunks = ConcurrentHashMap<Long, Long>()
+    private var registeredChunks = HashSet<Long>()
+
+    private val isChunkPacket = ConcurrentHashMap<PacketDefinition, Boolean>()
+
+    private var angle = index * 2.399 // golden angle, so the bots spread out around the circle
+    private var lastTeleport: Triple<Int, Int, Int>? = null
+    private var nextEdit = System.currentTimeMillis() + options.editIntervalMs
+    private var placeNext = true
+
+    override fun connect(): Boolean {
+        try {
+            socket = Socket(remoteAddress, port)
+            socket.tcpNoDelay = true
+            output = DataOutputStream(BufferedOutputStream(socket.getOutputStream()))
+            open.set(true)
+            stats.botsConnected.incrementAndGet()
+
+            val reader = Thread({ readLoop(DataInputStream(BufferedInputStream(socket.getInputStream()))) }, "Bot $index reader")
+            reader.isDaemon = true
+            reader.start()
+            return true
+        } catch (e: IOException) {
+            logger.warn("Bot $index couldn't connect: ${e.message}")
+            return false
+        }
+    }
+
+    /** Goes through the same steps as ClientConnectionSequence, returns false if the server didn't play along */
+    fun login(): Boolean {
+        val start = System.nanoTime()
+        sendTextMessage("login/start")
+        sendTextMessage("login/username:$name")
+        sendTextMessage("login/logintoken:nopenopenopenopenope")
+        sendTextMessage("login/version:" + VersionInfo.networkProtocolVersion)
+        sendTextMessage("login/confirm")
+        flush()
+        if (!loggedIn.await(10, TimeUnit.SECONDS))
+            return false
+        stats.loginLatency.record(System.nanoTime() - start)
+
+        sendTextMessage("mods")
+        flush()
+        if (!modsListed.await(10, TimeUnit.SECONDS))
+            return false
+
+        sendTextMessage("world/translator")
+        sendTextMessage("world/enter")
+        flush()
+        stats.botsInWorld.incrementAndGet()
+        return true
+    }
+
+    /** Called periodically by the load test driver, moves along the path and keeps the requested chunks in sync */
+    fun step(deltaSeconds: Double) {
+        if (!isOpen)
+            return
+
+        val spawn = serverWorld.properties.spawn
+        angle += options.speed * deltaSeconds / options.pathRadius
+        val x = spawn.x() + Math.cos(angle) * options.pathRadius
+        val z = spawn.z() + Math.sin(angle) * options.pathRadius
+        val y = spawn.y()
+
+        val position = Triple(floor(x), floor(y), floor(z))
+        if (position != lastTeleport) {
+            sendTextMessage("chat//tp ${position.first} ${position.second} ${position.third}")
+            lastTeleport = position
+        }
+
+        updateChunks(position.first shr 5, position.second shr 5, position.third shr 5)
+
+        val now = System.currentTimeMillis()
+        if (options.editIntervalMs > 0 && now >= nextEdit) {
+            val block = if (placeNext) options.editBlock else "air"
+            sendTextMessage("chat//setblock ${position.first} ${position.second - 1} ${position.third} $block")
+            placeNext = !placeNext
+            nextEdit = now + options.editIntervalMs
+            stats.blockEdits.incrementAndGet()
+        }
+
+        flush()
+    }
+
+    private fun updateChunks(chunkX: Int, chunkY: Int, chunkZ: Int) {
+        val sizeInChunks = serverWorld.properties.size.sizeInChunks
+        val heightInChunks = serverWorld.properties.size.heightInChunks
+        val radius = options.viewDistance
+
+        val wanted = HashSet<Long>()
+        for (dx in -radius..radius)
+            for (dz in -radius..radius)
+                for (dy in -1..1) {
+                    val y = chunkY + dy
+                    if (y < 0 || y >= heightInChunks)
+                        continue
+                    wanted.add(chunkKey(Math.floorMod(chunkX + dx, sizeInChunks), y, Math.floorMod(chunkZ + dz, sizeInChunks)))
+                }
+
+        val now = System.nanoTime()
+        for (key in wanted) {
+            if (key in registeredChunks)
+                continue
+            pushPacket(PacketWorldUser.registerChunkPacket(serverWorld, keyX(key), keyY(key), keyZ(key)))
+            requestedChunks[key] = now
+            stats.chunksRequested.incrementAndGet()
+            stats.outstandingChunks.incrementAndGet()
+        }
+        for (key in registeredChunks) {
+            if (key in wanted)
+                continue
+            pushPacket(PacketWorldUser.unregisterChunkPacket(serverWorld, keyX(key), keyY(key), keyZ(key)))
+            if (requestedChunks.remove(key) != null)
+                stats.outstandingChunks.decrementAndGet()
+        }
+        registeredChunks = wanted
+    }
+
+    private fun readLoop(input: DataInputStream) {
+        try {
+            while (isOpen) {
+                val datagram = encoderDecoder.digestIncommingPacket(input)
+                stats.packetsIn.incrementAndGet()
+                val definition = datagram.packetDefinition as PacketDefinition
+
+                if (definition.isStreamed) {
+                    // There's no way to skip over a streamed packet without reading it
+                    close("Unexpected streamed packet $definition")
+                    return
+                }
+
+                if (definition.constructorTakesWorld) {
+                    val chunkPacket = isChunkPacket.getOrPut(definition) { definition.createNewWithWorld(false, serverWorld) is PacketChunkCompressedData }
+                    if (chunkPacket) {
+                        val data = datagram.data
+                        val key = chunkKey(data.readInt(), data.readInt(), data.readInt())
+                        chunkArrived(key)
+                    }
+                } else {
+                    val packet = definition.createNewWithEngine(false, engine)
+                    if (packet is PacketText) {
+                        packet.receive(datagram.data, null)
+                        handleSystemRequest(packet.text)
+                    }
+                }
+                datagram.dispose()
+            }
+        } catch (e: Exception) {
+            close("Connection lost: ${e.message}")
+        }
+    }
+
+    private fun chunkArrived(key: Long) {
+        stats.chunksReceived.incrementAndGet()
+        val requestedAt = requestedChunks.remove(key) ?: return
+        stats.outstandingChunks.decrementAndGet()
+        stats.chunkLatency.record(System.nanoTime() - requestedAt)
+    }
+
+    override fun handleSystemRequest(message: String): Boolean {
+        when {
+            message == "login/ok" -> loggedIn.countDown()
+            message.startsWith("info/mods:") -> modsListed.countDown()
+            message.startsWith("disconnect/") -> close("Disconnected by server: ${message.substring(11)}")
+            else -> return false
+        }
+        return true
+    }
+
+    override fun pushPacket(packet: Packet) {
+        if (!isOpen)
+            return
+        try {
+            val outgoing = encoderDecoder.buildOutgoingPacket(packet)
+            synchronized(output) {
+                outgoing.write(output)
+            }
+            stats.packetsOut.incrementAndGet()
+        } catch (e: IOException) {
+            close("Failed to send: ${e.message}")
+        }
+    }
+
+    override fun flush() {
+        if (!isOpen)
+            return
+        try {
+            synchronized(output) {
+                output.flush()
+            }
+        } catch (e: IOException) {
+            close("Failed to flush: ${e.message}")
+        }
+    }
+
+    override fun close(reason: String) {
+        if (!open.compareAndSet(true, false))
+            return
+        logger.info("Bot $index disconnected: $reason")
+        stats.botsDisconnected.incrementAndGet()
+        stats.outstandingChunks.addAndGet(-requestedChunks.size.toLong())
+        requestedChunks.clear()
+        try {
+            socket.close()
+        } catch (e: IOException) {
+            // Discard errors when disconnecting
+        }
+    }
+
+    private fun chunkKey(chunkX: Int, chunkY: Int, chunkZ: Int) = (chunkX.toLong() shl 40) or (chunkY.toLong() shl 20) or chunkZ.toLong()
+    private fun keyX(key: Long) = (key ushr 40).toInt()
+    private fun keyY(key: Long) = ((key ushr 20) and 0xFFFFF).toInt()
+    private fun keyZ(key: Long) = (key and 0xFFFFF).toInt()
+
+    companion object {
+        private val logger = LoggerFactory.getLogger("loadtest.bot")
+    }
+}
@@ -0,0 +1,182 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.loadtest
+
+import org.slf4j.LoggerFactory
+import xyz.chunkstories.server.DedicatedServer
+import xyz.chunkstories.util.VersionInfo
+import xyz.chunkstories.util.profiling.TickProfiler
+import java.io.File
+import java.util.*
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LoadTestOptions {
+    var coreContentLocation = File("core_content.zip")
+    var requestedMods = emptyList<String>()
+
+    /** How many bots in total, added stepSize at a time every stepIntervalSeconds */
+    var bots = 32
+    var stepSize = 4
+    var stepIntervalSeconds = 15
+    /** How long to keep all the bots connected once they are all in */
+    var durationSeconds = 60
+
+    /** In chunks, around the bot */
+    var viewDistance = 4
+    /** Radius of the circle the bots walk on, in blocks */
+    var pathRadius = 96.0
+    /** In blocks per second */
+    var speed = 8.0
+    var editBlock = "stone"
+    var editIntervalMs = 1000L
+}
+
+private val logger = LoggerFactory.getLogger("loadtest")
+
+/**
+ * Starts a dedicated server in this JVM and connects a ramp of headless bots to it over loopback TCP, reporting every
+ * few seconds how the server copes: packet rates, chunk arrival latency and server TPS. The first ramp step where TPS
+ * falls under 90% of the target is flagged as where the server saturates.
+ */
+fun main(args: Array<String>) {
+    val options = LoadTestOptions()
+    for (argument in args) {
+        val value = argument.substringAfter('=', "")
+        when {
+            argument.startsWith("--core=") -> options.coreContentLocation = File(value)
+            argument.startsWith("--mods=") -> options.requestedMods = value.split(',').map { it.trim() }.filter { it.isNotEmpty() }
+            argument.startsWith("--bots=") -> options.bots = value.toInt()
+            argument.startsWith("--step=") -> options.stepSize = value.toInt()
+            argument.startsWith("--step-interval=") -> options.stepIntervalSeconds = value.toInt()
+            argument.startsWith("--duration=") -> options.durationSeconds = value.toInt()
+            argument.startsWith("--view-distance=") -> options.viewDistance = value.toInt()
+            argument.startsWith("--radius=") -> options.pathRadius = value.toDouble()
+            argument.startsWith("--speed=") -> options.speed = value.toDouble()
+            argument.startsWith("--block=") -> options.editBlock = value
+            argument.startsWith("--edit-interval=") -> options.editIntervalMs = value.toLong()
+            else -> {
+                var helpText = "Chunk Stories server load test " + VersionInfo.versionJson.verboseVersion + "\n"
+
+                helpText += if (argument == "-h" || argument == "--help")
+                    "Valid parameters: \n"
+                else
+                    "Unrecognized parameter: $argument\n"
+
+                helpText += "--core=whaterverfolder/ or --core=whatever.zip Base content to start the server with\n"
+                helpText += "--mods=xxx,yyy Mods to start the server with\n"
+                helpText += "--bots=32 Total amount of bots\n"
+                helpText += "--step=4 --step-interval=15 Bots added per ramp step, and seconds between steps\n"
+                helpText += "--duration=60 Seconds to keep going once all the bots are in\n"
+                helpText += "--view-distance=4 Chunks requested around each bot\n"
+                helpText += "--radius=96 --speed=8 Circle walked by the bots around the spawn, in blocks and blocks/s\n"
+                helpText += "--block=stone --edit-interval=1000 Block placed and removed by the bots, every n ms (0 disables)\n"
+
+                println(helpText)
+                return
+            }
+        }
+    }
+
+    LoadTest(options).run()
+}
+
+class LoadTest(private val options: LoadTestOptions) {
+    private val stats = LoadTestStats()
+    private val bots = mutableListOf<BotClient>()
+
+    private var targetTps = 60.0
+    private var saturatedAt: Int? = null
+
+    fun run() {
+        val server = DedicatedServer(options.coreContentLocation, options.requestedMods)
+        val serverThread = Thread({ server.run() }, "Dedicated server")
+        serverThread.start()
+        targetTps = server.tickingThread.targetTps.toDouble()
+
+        // Bots teleport and edit blocks through commands
+        val names = List(options.bots) { UUID.randomUUID().toString() }
+        server.userPrivileges.admins.addAll(names)
+
+        val scheduler = Executors.newSingleThreadScheduledExecutor { Thread(it, "Load test bots").apply { isDaemon = true } }
+        val stepPeriod = 100L
+        scheduler.scheduleAtFixedRate({
+            synchronized(bots) {
+                for (bot in bots)
+                    bot.step(stepPeriod / 1000.0)
+            }
+        }, stepPeriod, stepPeriod, TimeUnit.MILLISECONDS)
+
+        val reportPeriod = 5L
+        scheduler.scheduleAtFixedRate({ report(server) }, reportPeriod, reportPeriod, TimeUnit.SECONDS)
+
+        try {
+            var connected = 0
+            while (connected < options.bots) {
+                val step = Math.min(options.stepSize, options.bots - connected)
+                logger.info("Ramping up: adding $step bots (${connected + step}/${options.bots})")
+                for (i in 0 until step) {
+                    val bot = BotClient(server, names[connected], options, stats, connected)
+                    connected++
+                    if (!bot.connect() || !bot.login()) {
+                        logger.warn("Bot ${connected - 1} failed to get in the world")
+                        bot.close("Login failed")
+                        continue
+                    }
+                    synchronized(bots) { bots.add(bot) }
+                }
+                Thread.sleep(options.stepIntervalSeconds * 1000L)
+            }
+
+            logger.info("All bots are in, holding for ${options.durationSeconds}s")
+            Thread.sleep(options.durationSeconds * 1000L)
+        } finally {
+            scheduler.shutdownNow()
+            report(server)
+            summary()
+
+            synchronized(bots) {
+                for (bot in bots)
+                    bot.close("Load test over")
+            }
+            server.userPrivileges.admins.removeAll(names)
+            server.requestShutdown()
+            serverThread.join()
+        }
+    }
+
+    private fun report(server: DedicatedServer) {
+        val sample = stats.sample(server.tickingThread.tps.toDouble())
+        val latency = sample.chunkLatency
+        logger.info(String.format("bots %3d | in %8.1f pkt/s | out %8.1f pkt/s | chunks %7.1f/s | chunk latency p50 %7.1fms p90 %7.1fms p99 %7.1fms | outstanding %6d | tps %5.1f",
+                sample.bots, sample.packetsInPerSecond, sample.packetsOutPerSecond, sample.chunksPerSecond,
+                latency.p50 / 1000.0, latency.p90 / 1000.0, latency.p99 / 1000.0, sample.outstandingChunks, sample.serverTps))
+
+        if (saturatedAt == null && sample.bots > 0 && sample.serverTps < targetTps * 0.9) {
+            saturatedAt = sample.bots
+            logger.warn("Server TPS fell under ${targetTps * 0.9} with ${sample.bots} bots")
+        }
+    }
+
+    private fun summary() {
+        val lines = mutableListOf<String>()
+        lines.add("Load test summary")
+        lines.add("Bots: ${stats.botsConnected.get()} connected, ${stats.botsInWorld.get()} got in the world, ${stats.botsDisconnected.get()} disconnected")
+        lines.add("Packets: ${stats.packetsIn.get()} received, ${stats.packetsOut.get()} sent")
+        lines.add("Chunks: ${stats.chunksReceived.get()} received, ${stats.chunksRequested.get()} requested, ${stats.outstandingChunks.get()} still outstanding")
+        lines.add("Block edits: ${stats.blockEdits.get()}")
+        val login = stats.loginLatency.snapshot()
+        lines.add(String.format("Login latency: p50 %.1fms p99 %.1fms", login.p50 / 1000.0, login.p99 / 1000.0))
+        lines.add(saturatedAt?.let { "Saturation: TPS first fell under 90% of $targetTps with $it bots" }
+                ?: "Saturation: not reached")
+        lines.add("")
+        lines.addAll(TickProfiler.report())
+
+        for (line in lines)
+            logger.info(line)
+    }
+}
@@ -0,0 +1,62 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.loadtest
+
+import xyz.chunkstories.util.profiling.LatencyHistogram
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/** Counters shared by every bot, read by the reporter */
+class LoadTestStats {
+    val botsConnected = AtomicInteger()
+    val botsInWorld = AtomicInteger()
+    val botsDisconnected = AtomicInteger()
+
+    val packetsIn = AtomicLong()
+    val packetsOut = AtomicLong()
+    val chunksReceived = AtomicLong()
+    val chunksRequested = AtomicLong()
+    val outstandingChunks = AtomicLong()
+    val blockEdits = AtomicLong()
+
+    /** From sending REGISTER_CHUNK to the chunk data arriving */
+    val chunkLatency = LatencyHistogram("loadtest.chunkArrival")
+
+    /** From login/start to login/ok */
+    val loginLatency = LatencyHistogram("loadtest.login")
+
+    private var lastSampleTime = System.nanoTime()
+    private var lastPacketsIn = 0L
+    private var lastPacketsOut = 0L
+    private var lastChunksReceived = 0L
+
+    data class Sample(val bots: Int, val packetsInPerSecond: Double, val packetsOutPerSecond: Double, val chunksPerSecond: Double,
+                      val chunkLatency: LatencyHistogram.Snapshot, val outstandingChunks: Long, val serverTps: Double)
+
+    /** Rates since the last call */
+    @Synchronized
+    fun sample(serverTps: Double): Sample {
+        val now = System.nanoTime()
+        val seconds = Math.max(1e-3, (now - lastSampleTime) / 1e9)
+        lastSampleTime = now
+
+        val packetsIn = packetsIn.get()
+        val packetsOut = packetsOut.get()
+        val chunksReceived = chunksReceived.get()
+        val sample = Sample(botsInWorld.get(),
+                (packetsIn - lastPacketsIn) / seconds,
+                (packetsOut - lastPacketsOut) / seconds,
+                (chunksReceived - lastChunksReceived) / seconds,
+                chunkLatency.snapshot(),
+                outstandingChunks.get(),
+                serverTps)
+        lastPacketsIn = packetsIn
+        lastPacketsOut = packetsOut
+        lastChunksReceived = chunksReceived
+        return sample
+    }
+}
@@ -18,11 +18,13 @@ import xyz.chunkstories.api.events.player.PlayerLogoutEvent
 import xyz.chunkstories.api.player.entityIfIngame
 import xyz.chunkstories.api.server.UserConnection
 import xyz.chunkstories.net.Connection
+import xyz.chunkstories.net.LogicalPacketDatagram
 import xyz.chunkstories.net.packets.PacketContentTranslator
-import xyz.chunkstories.net.packets.PacketSendFile
 import xyz.chunkstories.net.packets.PacketSendWorldInfo
 import xyz.chunkstories.server.DedicatedServer
 import xyz.chunkstories.server.player.ServerPlayer
+import xyz.chunkstories.world.WorldImplementation
+import xyz.chunkstories.world.WorldMasterImplementation
 import xyz.chunkstories.world.spawnPlayer
 
 @Suppress("LeakingThis")
@@ -36,6 +38,9 @@ abstract class ClientConnection(val server: DedicatedServer, internal val connec
         throw UnsupportedOperationException()
     }
 
+    /** Sends that file to the client from offset on, as a chain of "file" packets (see FileChunkOutgoing). Missing files are sent as empty */
+    abstract fun sendFile(fileTag: String, file: File, offset: Long = 0L)
+
     override fun handleSystemRequest(message: String): Boolean {
         when {
             message.startsWith("info") -> {
@@ -51,10 +56,7 @@ abstract class ClientConnection(val server: DedicatedServer, internal val connec
                 return true
             }
             message == "icon-file" -> {
-                val iconPacket = PacketSendFile(server.engine)
-                iconPacket.file = File("server-icon.png")
-                iconPacket.fileTag = "server-icon"
-                this.pushPacket(iconPacket)
+                this.sendFile("server-icon", File("server-icon.png"))
                 this.flush()
                 return true
             }
@@ -68,10 +70,17 @@ abstract class ClientConnection(val server: DedicatedServer, internal val connec
             this.close("Client-terminated connection")
 
         } else if (message.startsWith("send-mod/")) {
-            val modDescriptor = message.substring(9)
+            // send-mod/md5:<hash>[@<offset to resume from>]
+            var modDescriptor = message.substring(9)
+            var offset = 0L
+            val at = modDescriptor.indexOf('@')
+            if (at != -1) {
+                offset = modDescriptor.substring(at + 1).toLongOrNull() ?: 0L
+                modDescriptor = modDescriptor.substring(0, at)
+            }
 
             val md5 = modDescriptor.substring(4)
-            logger.info("$this asked to be sent mod $md5")
+            logger.info("$this asked to be sent mod $md5" + if (offset > 0) " from byte $offset" else "")
 
             // Give him what he asked for.
             val found = server.modsProvider.obtainModRedistribuable(md5)
@@ -79,10 +88,7 @@ abstract class ClientConnection(val server: DedicatedServer, internal val connec
                 logger.info("No such mod found.")
             } else {
                 logger.info("Pushing mod md5 " + md5 + "to user.")
-                val modUploadPacket = PacketSendFile(server.engine)
-                modUploadPacket.file = found
-                modUploadPacket.fileTag = modDescriptor
-                this.pushPacket(modUploadPacket)
+                this.sendFile(modDescriptor, found, offset)
             }
 
         } else if (message.startsWith("world/")) {
@@ -145,6 +151,14 @@ abstract class ClientConnection(val server: DedicatedServer, internal val connec
         return false
     }
 
+    override fun handleWorldDatagram(world: WorldImplementation, datagram: LogicalPacketDatagram) {
+        val player = player
+        if (player != null && world is WorldMasterImplementation)
+            world.queueDatagram(datagram, player)
+        else
+            datagram.dispose()
+    }
+
     override fun sendTextMessage(string: String) {
         super.sendTextMessage(string)
         if (player == null)
@@ -11,6 +11,7 @@ import xyz.chunkstories.server.DedicatedServer
 import xyz.chunkstories.server.DedicatedServerOptions
 import xyz.chunkstories.server.player.ServerPlayer
 import xyz.chunkstories.util.VersionInfo
+import xyz.chunkstories.util.profiling.TickProfiler
 import java.util.concurrent.ConcurrentHashMap
 
 abstract class ConnectionsManager(val server: DedicatedServer) {
@@ -25,7 +26,7 @@ abstract class ConnectionsManager(val server: DedicatedServer) {
 
     abstract fun open()
 
-    fun flushAll() {
+    fun flushAll() = flushTiming.time {
         for (client in connections)
             client.flush()
     }
@@ -67,4 +68,7 @@ abstract class ConnectionsManager(val server: DedicatedServer) {
         }
     }
 
-}
\ No newline at end of file
+    companion object {
+        private val flushTiming = TickProfiler.histogram("net.flush")
+    }
+}
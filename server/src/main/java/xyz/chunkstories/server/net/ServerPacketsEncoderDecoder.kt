@@ -0,0 +1,22 @@
+//
+// This file is a part of the Chunk Stories Implementation codebase
+// Check out README.md for more information
+// Website: http://chunkstories.xyz
+//
+
+package xyz.chunkstories.server.net
+
+import xyz.chunkstories.net.PacketsEncoderDecoder
+import xyz.chunkstories.server.DedicatedServer
+import xyz.chunkstories.world.WorldImplementation
+
+/** Server-side encoder/decoder, packet ids are the ones of the (only) world the server runs */
+class ServerPacketsEncoderDecoder(val server: DedicatedServer, connection: ClientConnection) : PacketsEncoderDecoder(server.content.packets, connection) {
+    override val world: WorldImplementation?
+        get() = server.world
+
+    init {
+        // The world's translator also carries the fixed ids of the system packets, so it works before logging in too
+        contentTranslator = server.world.contentTranslator
+    }
+}
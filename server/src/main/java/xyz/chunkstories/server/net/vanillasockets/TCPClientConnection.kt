@@ -7,9 +7,8 @@
 package xyz.chunkstories.server.net.vanillasockets
 
 import java.io.BufferedInputStream
-import java.io.BufferedOutputStream
 import java.io.DataInputStream
-import java.io.DataOutputStream
+import java.io.File
 import java.io.IOException
 import java.net.Socket
 import java.util.concurrent.atomic.AtomicBoolean
@@ -17,12 +16,14 @@ import java.util.concurrent.atomic.AtomicBoolean
 import xyz.chunkstories.api.net.Packet
 import xyz.chunkstories.api.server.UserConnection
 import xyz.chunkstories.net.Connection
+import xyz.chunkstories.net.FileChunkOutgoing
 import xyz.chunkstories.net.PacketsEncoderDecoder
 import xyz.chunkstories.net.vanillasockets.SendQueue
 import xyz.chunkstories.net.vanillasockets.StreamGobbler
 import xyz.chunkstories.server.DedicatedServer
 import xyz.chunkstories.server.net.ClientConnection
 import xyz.chunkstories.server.net.ConnectionsManager
+import xyz.chunkstories.server.net.ServerPacketsEncoderDecoder
 import xyz.chunkstories.world.WorldImplementation
 
 class TCPClientConnection constructor(server: DedicatedServer, connectionsManager: ConnectionsManager, internal val socket: Socket) : ClientConnection(server, connectionsManager, socket.inetAddress.hostAddress, socket.port) {
@@ -39,8 +40,7 @@ class TCPClientConnection constructor(server: DedicatedServer, connectionsManage
         get() = server.world
     override val userConnection: UserConnection?
         get() = this
-    override val encoderDecoder: PacketsEncoderDecoder
-        get() = TODO("Not yet implemented")
+    override val encoderDecoder: PacketsEncoderDecoder = ServerPacketsEncoderDecoder(server, this)
 
     init {
         // We get exceptions early if this fails
@@ -48,12 +48,11 @@ class TCPClientConnection constructor(server: DedicatedServer, connectionsManage
         val socketOutputStream = socket.getOutputStream()
 
         val inputDataStream = DataInputStream(BufferedInputStream(socketInputStream))
-        val dataOutputStream = DataOutputStream(BufferedOutputStream(socketOutputStream))
 
         streamGobbler = ServerClientGobbler(this, inputDataStream)
         streamGobbler.start()
 
-        sendQueue = SendQueue(this, dataOutputStream)
+        sendQueue = SendQueue(this, socketOutputStream)
         sendQueue.start()
     }
 
@@ -108,6 +107,10 @@ class TCPClientConnection constructor(server: DedicatedServer, connectionsManage
         }
     }
 
+    override fun sendFile(fileTag: String, file: File, offset: Long) {
+        sendQueue!!.queue(FileChunkOutgoing.startTransfer(FileChunkOutgoing.filePacketId, fileTag, file, offset))
+    }
+
     override fun close(reason: String) {
         if (!closeOnce.compareAndSet(false, true))
             return
@@ -85,7 +85,6 @@ class ServerPlayer(val playerConnection: ClientConnection, override val id: Play
         this.world = world
         this.loadingAgent = ServerPlayerLoadingAgent(this, world)
 
-        TODO()
         /*this.virtualSoundManager = world.soundManager.ServerPlayerVirtualSoundManager(this)
         this.virtualParticlesManager = world.particlesManager.ServerPlayerVirtualParticlesManager(this)
         this.virtualDecalsManager = world.decalsManager.ServerPlayerVirtualDecalsManager(this)*/
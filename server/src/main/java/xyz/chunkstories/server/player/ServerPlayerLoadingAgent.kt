@@ -1,15 +1,19 @@
 package xyz.chunkstories.server.player
 
+import xyz.chunkstories.api.net.Packet
 import xyz.chunkstories.net.packets.PacketWorldUser
 import xyz.chunkstories.api.world.World
-import xyz.chunkstories.api.world.WorldUser
 import xyz.chunkstories.api.world.chunk.ChunkHolder
 import xyz.chunkstories.api.world.region.Region
+import xyz.chunkstories.world.RemoteWorldUser
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
 class ServerPlayerLoadingAgent (val player: ServerPlayer, val world: World) {
-    val user = object : WorldUser {}
+    /** Registers to the chunks on behalf of the player, who gets sent their data as they become available */
+    val user = object : RemoteWorldUser {
+        override fun pushPacket(packet: Packet) = player.pushPacket(packet)
+    }
 
     private val regions = mutableSetOf<Region>()
     private val chunks = mutableSetOf<ChunkHolder>()
@@ -3,4 +3,4 @@ rootProject.name = "chunkstories"
 include("api")
 project(":api").projectDir = File("../chunkstories-api")
 
-include("common", "server", "client", "converter", "launcher")
\ No newline at end of file
+include("common", "server", "client", "converter", "launcher", "benchmarks")
\ No newline at end of file